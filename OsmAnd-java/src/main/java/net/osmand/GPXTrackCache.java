@@ -0,0 +1,834 @@
+package net.osmand;
+
+import net.osmand.GPXUtilities.GPXExtensions;
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.GPXTrackAnalysis;
+import net.osmand.GPXUtilities.Track;
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.GPXUtilities.WptPt;
+
+import org.apache.commons.logging.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Binary cache of GPX files keyed by file path, size and modification time.
+ * Track points are stored by segments in delta encoded columns (lat/lon/time/elevation) together with
+ * precomputed analysis of the file and of every segment, so reopening big track is a memory mapped read
+ * instead of XML parsing. Waypoints, routes and metadata are kept as small GPX document.
+ * Files with route segments (planned routes) are not cached. Read files are touched, so {@link #prune(long)}
+ * removes least recently used files when cache is bigger than limit.
+ */
+public class GPXTrackCache {
+
+	private static final Log log = PlatformUtil.getLog(GPXTrackCache.class);
+
+	public static final String CACHE_EXT = ".gtc";
+
+	private static final int MAGIC = 0x47545243;
+	private static final int VERSION = 1;
+	// same precision as coordinates written by GPXUtilities
+	private static final double COORDINATES_PRECISION = 1e7;
+	private static final double ELEVATION_PRECISION = 1e3;
+
+	private static final int FLAG_ELE = 1;
+	private static final int FLAG_HDOP = 2;
+	private static final int FLAG_TEXT = 4;
+	private static final int FLAG_EXTENSIONS = 8;
+
+	private static final int FLAGS_COLUMN = 0;
+	private static final int LAT_COLUMN = 1;
+	private static final int LON_COLUMN = 2;
+	private static final int TIME_COLUMN = 3;
+	private static final int ELE_COLUMN = 4;
+	private static final int HDOP_COLUMN = 5;
+	private static final int EXTRA_COLUMN = 6;
+	private static final int COLUMNS = 7;
+
+	private final File cacheDir;
+
+	public GPXTrackCache(File cacheDir) {
+		this.cacheDir = cacheDir;
+	}
+
+	public File getCacheFile(File gpx) {
+		return new File(cacheDir, gpx.getName() + "_" + Integer.toHexString(gpx.getAbsolutePath().hashCode()) + CACHE_EXT);
+	}
+
+	/**
+	 * @return cached file or null if it is not cached, outdated or broken
+	 */
+	public CachedGpx read(File gpx) {
+		File cacheFile = getCacheFile(gpx);
+		if (!cacheFile.exists()) {
+			return null;
+		}
+		try {
+			RandomAccessFile raf = new RandomAccessFile(cacheFile, "r");
+			try {
+				FileChannel channel = raf.getChannel();
+				ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				// mapping stays valid after channel is closed
+				CachedGpx cached = readHeader(buffer, gpx);
+				if (cached != null) {
+					cacheFile.setLastModified(System.currentTimeMillis());
+				}
+				return cached;
+			} finally {
+				raf.close();
+			}
+		} catch (IOException e) {
+			log.error("Error reading gpx cache " + cacheFile, e);
+		} catch (RuntimeException e) {
+			log.error("Broken gpx cache " + cacheFile, e);
+		}
+		return null;
+	}
+
+	/**
+	 * @return false if file couldn't be cached (i.e. it contains route segments)
+	 */
+	public boolean write(File gpx, GPXFile gpxFile) {
+		if (!isCacheable(gpxFile)) {
+			return false;
+		}
+		File cacheFile = getCacheFile(gpx);
+		File tmp = new File(cacheDir, cacheFile.getName() + ".tmp");
+		cacheDir.mkdirs();
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+			writeGpx(out, gpx, gpxFile);
+			out.close();
+			out = null;
+			if (!tmp.renameTo(cacheFile)) {
+				cacheFile.delete();
+				return tmp.renameTo(cacheFile);
+			}
+			return true;
+		} catch (IOException e) {
+			log.error("Error writing gpx cache " + cacheFile, e);
+			return false;
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException ignore) {
+					// ignore
+				}
+			}
+			tmp.delete();
+		}
+	}
+
+	/**
+	 * Reads file from cache or parses it and puts to cache.
+	 */
+	public GPXFile loadGPXFile(File gpx) {
+		CachedGpx cached = read(gpx);
+		if (cached != null) {
+			GPXFile gpxFile = cached.toGPXFile(gpx);
+			if (gpxFile != null) {
+				return gpxFile;
+			}
+		}
+		GPXFile gpxFile = GPXUtilities.loadGPXFile(gpx);
+		if (gpxFile.error == null) {
+			write(gpx, gpxFile);
+		}
+		return gpxFile;
+	}
+
+	/**
+	 * Analysis of whole file without elevation and speed data of charts.
+	 */
+	public GPXTrackAnalysis getAnalysis(File gpx) {
+		CachedGpx cached = read(gpx);
+		if (cached == null) {
+			GPXFile gpxFile = GPXUtilities.loadGPXFile(gpx);
+			if (gpxFile.error != null || !write(gpx, gpxFile)) {
+				return gpxFile.getAnalysis(gpx.lastModified());
+			}
+			cached = read(gpx);
+			if (cached == null) {
+				return gpxFile.getAnalysis(gpx.lastModified());
+			}
+		}
+		return cached.getAnalysis();
+	}
+
+	public void remove(File gpx) {
+		getCacheFile(gpx).delete();
+	}
+
+	/**
+	 * Removes cached files of deleted tracks and then least recently used files till cache size is within limit.
+	 */
+	public void prune(long maxSize) {
+		File[] files = cacheDir.listFiles();
+		if (files == null) {
+			return;
+		}
+		List<File> cached = new ArrayList<>();
+		long size = 0;
+		for (File f : files) {
+			if (f.getName().endsWith(CACHE_EXT)) {
+				String path = readPath(f);
+				if (path == null || !new File(path).exists()) {
+					f.delete();
+				} else {
+					cached.add(f);
+					size += f.length();
+				}
+			} else if (f.getName().endsWith(CACHE_EXT + ".tmp")) {
+				// left by interrupted write
+				f.delete();
+			}
+		}
+		if (size <= maxSize) {
+			return;
+		}
+		// modification time could be changed by reads while sorting
+		final Map<File, Long> lastModified = new HashMap<>();
+		for (File f : cached) {
+			lastModified.put(f, f.lastModified());
+		}
+		Collections.sort(cached, new Comparator<File>() {
+			@Override
+			public int compare(File o1, File o2) {
+				return Long.compare(lastModified.get(o1), lastModified.get(o2));
+			}
+		});
+		for (int i = 0; i < cached.size() && size > maxSize; i++) {
+			File f = cached.get(i);
+			long len = f.length();
+			if (f.delete()) {
+				size -= len;
+			}
+		}
+	}
+
+	// path of the gpx file from header of cached file or null if it is broken
+	private static String readPath(File cacheFile) {
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+			try {
+				if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+					return null;
+				}
+				int len = (int) readVarint(in);
+				if (len == 0) {
+					return null;
+				}
+				byte[] bytes = new byte[len - 1];
+				in.readFully(bytes);
+				return new String(bytes, "UTF-8");
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	public void clear() {
+		File[] files = cacheDir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				if (f.getName().endsWith(CACHE_EXT)) {
+					f.delete();
+				}
+			}
+		}
+	}
+
+	private static boolean isCacheable(GPXFile gpxFile) {
+		for (Track t : gpxFile.tracks) {
+			for (TrkSegment s : t.segments) {
+				if (!s.routeSegments.isEmpty() || !s.routeTypes.isEmpty() || s.getRouteData() != null) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	public static class CachedGpx {
+		private final GPXTrackAnalysis analysis;
+		private final byte[] otherContent;
+		private final List<String> extensionKeys;
+		private final List<CachedTrack> tracks;
+
+		private CachedGpx(GPXTrackAnalysis analysis, byte[] otherContent, List<String> extensionKeys,
+				List<CachedTrack> tracks) {
+			this.analysis = analysis;
+			this.otherContent = otherContent;
+			this.extensionKeys = extensionKeys;
+			this.tracks = tracks;
+		}
+
+		public GPXTrackAnalysis getAnalysis() {
+			return analysis;
+		}
+
+		public List<CachedTrack> getTracks() {
+			return tracks;
+		}
+
+		/**
+		 * @return gpx file or null if cache is broken
+		 */
+		public GPXFile toGPXFile(File gpx) {
+			GPXFile gpxFile = GPXUtilities.loadGPXFile(new ByteArrayInputStream(otherContent));
+			if (gpxFile.error != null) {
+				return null;
+			}
+			try {
+				for (CachedTrack ct : tracks) {
+					Track t = new Track();
+					t.name = ct.name;
+					t.desc = ct.desc;
+					putExtensions(t, ct.extensions);
+					for (CachedSegment cs : ct.segments) {
+						t.segments.add(cs.toTrkSegment(extensionKeys));
+					}
+					gpxFile.tracks.add(t);
+				}
+			} catch (RuntimeException e) {
+				log.error("Broken gpx cache " + gpx, e);
+				return null;
+			}
+			gpxFile.addGeneralTrack();
+			gpxFile.path = gpx.getAbsolutePath();
+			gpxFile.modifiedTime = gpx.lastModified();
+			return gpxFile;
+		}
+	}
+
+	public static class CachedTrack {
+		private String name;
+		private String desc;
+		private Map<String, String> extensions;
+		private final List<CachedSegment> segments = new ArrayList<>();
+
+		public String getName() {
+			return name;
+		}
+
+		public List<CachedSegment> getSegments() {
+			return segments;
+		}
+	}
+
+	public static class CachedSegment {
+		private Map<String, String> extensions;
+		private GPXTrackAnalysis analysis;
+		private int pointsCount;
+		private final ByteBuffer[] columns = new ByteBuffer[COLUMNS];
+
+		/**
+		 * Analysis of segment without elevation and speed data of charts, bounds are calculated.
+		 */
+		public GPXTrackAnalysis getAnalysis() {
+			return analysis;
+		}
+
+		public int getPointsCount() {
+			return pointsCount;
+		}
+
+		/**
+		 * Decodes only coordinates, i.e. to draw track.
+		 */
+		public void readCoordinates(double[] lats, double[] lons) {
+			ByteBuffer latColumn = columns[LAT_COLUMN].duplicate();
+			ByteBuffer lonColumn = columns[LON_COLUMN].duplicate();
+			long lat = 0;
+			long lon = 0;
+			for (int i = 0; i < pointsCount; i++) {
+				lat += readSignedVarint(latColumn);
+				lon += readSignedVarint(lonColumn);
+				lats[i] = lat / COORDINATES_PRECISION;
+				lons[i] = lon / COORDINATES_PRECISION;
+			}
+		}
+
+		TrkSegment toTrkSegment(List<String> extensionKeys) {
+			TrkSegment segment = new TrkSegment();
+			putExtensions(segment, extensions);
+			ByteBuffer[] cols = new ByteBuffer[COLUMNS];
+			for (int i = 0; i < COLUMNS; i++) {
+				cols[i] = columns[i].duplicate();
+			}
+			long lat = 0;
+			long lon = 0;
+			long time = 0;
+			long ele = 0;
+			for (int i = 0; i < pointsCount; i++) {
+				int flags = cols[FLAGS_COLUMN].get();
+				WptPt p = new WptPt();
+				lat += readSignedVarint(cols[LAT_COLUMN]);
+				lon += readSignedVarint(cols[LON_COLUMN]);
+				time += readSignedVarint(cols[TIME_COLUMN]);
+				p.lat = lat / COORDINATES_PRECISION;
+				p.lon = lon / COORDINATES_PRECISION;
+				p.time = time;
+				if ((flags & FLAG_ELE) != 0) {
+					ele += readSignedVarint(cols[ELE_COLUMN]);
+					p.ele = ele / ELEVATION_PRECISION;
+				}
+				if ((flags & FLAG_HDOP) != 0) {
+					p.hdop = cols[HDOP_COLUMN].getFloat();
+				}
+				ByteBuffer extra = cols[EXTRA_COLUMN];
+				if ((flags & FLAG_TEXT) != 0) {
+					p.name = readString(extra);
+					p.desc = readString(extra);
+					p.comment = readString(extra);
+					p.category = readString(extra);
+					p.link = readString(extra);
+				}
+				if ((flags & FLAG_EXTENSIONS) != 0) {
+					int cnt = (int) readVarint(extra);
+					Map<String, String> ext = p.getExtensionsToWrite();
+					for (int k = 0; k < cnt; k++) {
+						String key = extensionKeys.get((int) readVarint(extra));
+						String value = readString(extra);
+						ext.put(key, value);
+						if ("speed".equals(key)) {
+							try {
+								p.speed = Float.parseFloat(value);
+							} catch (NumberFormatException e) {
+								// same as gpx parser
+							}
+						}
+					}
+				}
+				segment.points.add(p);
+			}
+			return segment;
+		}
+	}
+
+	private static void putExtensions(GPXExtensions e, Map<String, String> extensions) {
+		if (extensions != null && !extensions.isEmpty()) {
+			e.getExtensionsToWrite().putAll(extensions);
+		}
+	}
+
+	private static void writeGpx(DataOutputStream out, File gpx, GPXFile gpxFile) throws IOException {
+		long timestamp = gpx.lastModified();
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		writeString(out, gpx.getAbsolutePath());
+		out.writeLong(gpx.length());
+		out.writeLong(timestamp);
+		writeAnalysis(out, gpxFile.getAnalysis(timestamp));
+
+		GPXFile other = new GPXFile(gpxFile.author);
+		other.metadata = gpxFile.metadata;
+		other.addPoints(gpxFile.getPoints());
+		other.routes = gpxFile.routes;
+		other.copyExtensions(gpxFile);
+		StringWriter writer = new StringWriter();
+		Exception e = GPXUtilities.writeGpx(writer, other);
+		if (e != null) {
+			throw new IOException(e);
+		}
+		byte[] otherContent = writer.toString().getBytes("UTF-8");
+		out.writeInt(otherContent.length);
+		out.write(otherContent);
+
+		List<String> extensionKeys = new ArrayList<>();
+		Map<String, Integer> keysIndex = new LinkedHashMap<>();
+		List<byte[][]> segmentColumns = new ArrayList<>();
+		List<Track> tracks = new ArrayList<>();
+		for (Track t : gpxFile.tracks) {
+			if (!t.generalTrack) {
+				tracks.add(t);
+				for (TrkSegment s : t.segments) {
+					segmentColumns.add(encodeColumns(s, keysIndex, extensionKeys));
+				}
+			}
+		}
+		out.writeInt(extensionKeys.size());
+		for (String key : extensionKeys) {
+			writeString(out, key);
+		}
+		out.writeInt(tracks.size());
+		int segmentIndex = 0;
+		for (Track t : tracks) {
+			writeString(out, t.name);
+			writeString(out, t.desc);
+			writeExtensions(out, t.getExtensionsToRead());
+			out.writeInt(t.segments.size());
+			for (TrkSegment s : t.segments) {
+				writeExtensions(out, s.getExtensionsToRead());
+				GPXTrackAnalysis analysis = GPXTrackAnalysis.segment(timestamp, s);
+				calculateBounds(analysis, s);
+				writeAnalysis(out, analysis);
+				out.writeInt(s.points.size());
+				byte[][] cols = segmentColumns.get(segmentIndex++);
+				for (byte[] col : cols) {
+					out.writeInt(col.length);
+				}
+				for (byte[] col : cols) {
+					out.write(col);
+				}
+			}
+		}
+	}
+
+	private static byte[][] encodeColumns(TrkSegment s, Map<String, Integer> keysIndex, List<String> extensionKeys)
+			throws IOException {
+		ByteArrayOutputStream[] cols = new ByteArrayOutputStream[COLUMNS];
+		for (int i = 0; i < COLUMNS; i++) {
+			cols[i] = new ByteArrayOutputStream(i == FLAGS_COLUMN ? s.points.size() : 16);
+		}
+		DataOutputStream hdop = new DataOutputStream(cols[HDOP_COLUMN]);
+		long lat = 0;
+		long lon = 0;
+		long time = 0;
+		long ele = 0;
+		for (WptPt p : s.points) {
+			int flags = 0;
+			long plat = Math.round(p.lat * COORDINATES_PRECISION);
+			long plon = Math.round(p.lon * COORDINATES_PRECISION);
+			writeSignedVarint(cols[LAT_COLUMN], plat - lat);
+			writeSignedVarint(cols[LON_COLUMN], plon - lon);
+			writeSignedVarint(cols[TIME_COLUMN], p.time - time);
+			lat = plat;
+			lon = plon;
+			time = p.time;
+			if (!Double.isNaN(p.ele)) {
+				flags |= FLAG_ELE;
+				long pele = Math.round(p.ele * ELEVATION_PRECISION);
+				writeSignedVarint(cols[ELE_COLUMN], pele - ele);
+				ele = pele;
+			}
+			if (!Double.isNaN(p.hdop)) {
+				flags |= FLAG_HDOP;
+				hdop.writeFloat((float) p.hdop);
+			}
+			if (p.name != null || p.desc != null || p.comment != null || p.category != null || p.link != null) {
+				flags |= FLAG_TEXT;
+				writeString(cols[EXTRA_COLUMN], p.name);
+				writeString(cols[EXTRA_COLUMN], p.desc);
+				writeString(cols[EXTRA_COLUMN], p.comment);
+				writeString(cols[EXTRA_COLUMN], p.category);
+				writeString(cols[EXTRA_COLUMN], p.link);
+			}
+			Map<String, String> ext = p.getExtensionsToRead();
+			if (!ext.isEmpty()) {
+				flags |= FLAG_EXTENSIONS;
+				writeVarint(cols[EXTRA_COLUMN], ext.size());
+				for (Entry<String, String> e : ext.entrySet()) {
+					Integer ind = keysIndex.get(e.getKey());
+					if (ind == null) {
+						ind = extensionKeys.size();
+						keysIndex.put(e.getKey(), ind);
+						extensionKeys.add(e.getKey());
+					}
+					writeVarint(cols[EXTRA_COLUMN], ind);
+					writeString(cols[EXTRA_COLUMN], e.getValue());
+				}
+			}
+			cols[FLAGS_COLUMN].write(flags);
+		}
+		hdop.flush();
+		byte[][] res = new byte[COLUMNS][];
+		for (int i = 0; i < COLUMNS; i++) {
+			res[i] = cols[i].toByteArray();
+		}
+		return res;
+	}
+
+	private static void calculateBounds(GPXTrackAnalysis analysis, TrkSegment s) {
+		if (s.points.isEmpty()) {
+			return;
+		}
+		analysis.left = analysis.right = s.points.get(0).lon;
+		analysis.top = analysis.bottom = s.points.get(0).lat;
+		for (WptPt p : s.points) {
+			analysis.left = Math.min(analysis.left, p.lon);
+			analysis.right = Math.max(analysis.right, p.lon);
+			analysis.top = Math.max(analysis.top, p.lat);
+			analysis.bottom = Math.min(analysis.bottom, p.lat);
+		}
+	}
+
+	private static CachedGpx readHeader(ByteBuffer buffer, File gpx) {
+		try {
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				return null;
+			}
+			String path = readString(buffer);
+			long size = buffer.getLong();
+			long timestamp = buffer.getLong();
+			if (!gpx.getAbsolutePath().equals(path) || size != gpx.length() || timestamp != gpx.lastModified()) {
+				return null;
+			}
+			GPXTrackAnalysis analysis = readAnalysis(buffer);
+			byte[] otherContent = new byte[buffer.getInt()];
+			buffer.get(otherContent);
+			int keysCount = buffer.getInt();
+			List<String> extensionKeys = new ArrayList<>(keysCount);
+			for (int i = 0; i < keysCount; i++) {
+				extensionKeys.add(readString(buffer));
+			}
+			int tracksCount = buffer.getInt();
+			List<CachedTrack> tracks = new ArrayList<>(tracksCount);
+			for (int i = 0; i < tracksCount; i++) {
+				CachedTrack t = new CachedTrack();
+				t.name = readString(buffer);
+				t.desc = readString(buffer);
+				t.extensions = readExtensions(buffer);
+				int segmentsCount = buffer.getInt();
+				for (int j = 0; j < segmentsCount; j++) {
+					CachedSegment s = new CachedSegment();
+					s.extensions = readExtensions(buffer);
+					s.analysis = readAnalysis(buffer);
+					s.pointsCount = buffer.getInt();
+					int[] lengths = new int[COLUMNS];
+					for (int c = 0; c < COLUMNS; c++) {
+						lengths[c] = buffer.getInt();
+					}
+					for (int c = 0; c < COLUMNS; c++) {
+						ByteBuffer col = buffer.slice();
+						col.limit(lengths[c]);
+						s.columns[c] = col;
+						buffer.position(buffer.position() + lengths[c]);
+					}
+					t.segments.add(s);
+				}
+				tracks.add(t);
+			}
+			return new CachedGpx(analysis, otherContent, extensionKeys, tracks);
+		} catch (BufferUnderflowException e) {
+			return null;
+		}
+	}
+
+	private static void writeAnalysis(DataOutputStream out, GPXTrackAnalysis a) throws IOException {
+		out.writeFloat(a.totalDistance);
+		out.writeFloat(a.totalDistanceWithoutGaps);
+		out.writeInt(a.totalTracks);
+		out.writeLong(a.startTime);
+		out.writeLong(a.endTime);
+		out.writeLong(a.timeSpan);
+		out.writeLong(a.timeSpanWithoutGaps);
+		out.writeLong(a.timeMoving);
+		out.writeLong(a.timeMovingWithoutGaps);
+		out.writeFloat(a.totalDistanceMoving);
+		out.writeFloat(a.totalDistanceMovingWithoutGaps);
+		out.writeDouble(a.diffElevationUp);
+		out.writeDouble(a.diffElevationDown);
+		out.writeDouble(a.avgElevation);
+		out.writeDouble(a.minElevation);
+		out.writeDouble(a.maxElevation);
+		out.writeFloat(a.minSpeed);
+		out.writeFloat(a.maxSpeed);
+		out.writeFloat(a.avgSpeed);
+		out.writeInt(a.points);
+		out.writeInt(a.wptPoints);
+		out.writeDouble(a.metricEnd);
+		out.writeDouble(a.secondaryMetricEnd);
+		out.writeDouble(a.left);
+		out.writeDouble(a.right);
+		out.writeDouble(a.top);
+		out.writeDouble(a.bottom);
+		out.writeBoolean(a.hasElevationData);
+		out.writeBoolean(a.hasSpeedData);
+		out.writeBoolean(a.hasSpeedInTrack);
+		writeLocation(out, a.locationStart);
+		writeLocation(out, a.locationEnd);
+		if (a.wptCategoryNames == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(a.wptCategoryNames.size());
+			for (String category : a.wptCategoryNames) {
+				writeString(out, category);
+			}
+		}
+	}
+
+	private static GPXTrackAnalysis readAnalysis(ByteBuffer buffer) {
+		GPXTrackAnalysis a = new GPXTrackAnalysis();
+		a.totalDistance = buffer.getFloat();
+		a.totalDistanceWithoutGaps = buffer.getFloat();
+		a.totalTracks = buffer.getInt();
+		a.startTime = buffer.getLong();
+		a.endTime = buffer.getLong();
+		a.timeSpan = buffer.getLong();
+		a.timeSpanWithoutGaps = buffer.getLong();
+		a.timeMoving = buffer.getLong();
+		a.timeMovingWithoutGaps = buffer.getLong();
+		a.totalDistanceMoving = buffer.getFloat();
+		a.totalDistanceMovingWithoutGaps = buffer.getFloat();
+		a.diffElevationUp = buffer.getDouble();
+		a.diffElevationDown = buffer.getDouble();
+		a.avgElevation = buffer.getDouble();
+		a.minElevation = buffer.getDouble();
+		a.maxElevation = buffer.getDouble();
+		a.minSpeed = buffer.getFloat();
+		a.maxSpeed = buffer.getFloat();
+		a.avgSpeed = buffer.getFloat();
+		a.points = buffer.getInt();
+		a.wptPoints = buffer.getInt();
+		a.metricEnd = buffer.getDouble();
+		a.secondaryMetricEnd = buffer.getDouble();
+		a.left = buffer.getDouble();
+		a.right = buffer.getDouble();
+		a.top = buffer.getDouble();
+		a.bottom = buffer.getDouble();
+		a.hasElevationData = buffer.get() != 0;
+		a.hasSpeedData = buffer.get() != 0;
+		a.hasSpeedInTrack = buffer.get() != 0;
+		a.locationStart = readLocation(buffer);
+		a.locationEnd = readLocation(buffer);
+		int categories = buffer.getInt();
+		if (categories >= 0) {
+			Set<String> names = new LinkedHashSet<>();
+			for (int i = 0; i < categories; i++) {
+				names.add(readString(buffer));
+			}
+			a.wptCategoryNames = names;
+		}
+		return a;
+	}
+
+	private static void writeLocation(DataOutputStream out, WptPt p) throws IOException {
+		out.writeBoolean(p != null);
+		if (p != null) {
+			out.writeDouble(p.lat);
+			out.writeDouble(p.lon);
+			out.writeLong(p.time);
+			out.writeDouble(p.ele);
+		}
+	}
+
+	private static WptPt readLocation(ByteBuffer buffer) {
+		if (buffer.get() == 0) {
+			return null;
+		}
+		WptPt p = new WptPt();
+		p.lat = buffer.getDouble();
+		p.lon = buffer.getDouble();
+		p.time = buffer.getLong();
+		p.ele = buffer.getDouble();
+		return p;
+	}
+
+	private static void writeExtensions(DataOutputStream out, Map<String, String> extensions) throws IOException {
+		out.writeInt(extensions.size());
+		for (Entry<String, String> e : extensions.entrySet()) {
+			writeString(out, e.getKey());
+			writeString(out, e.getValue());
+		}
+	}
+
+	private static Map<String, String> readExtensions(ByteBuffer buffer) {
+		int cnt = buffer.getInt();
+		if (cnt == 0) {
+			return Collections.emptyMap();
+		}
+		Map<String, String> extensions = new LinkedHashMap<>();
+		for (int i = 0; i < cnt; i++) {
+			extensions.put(readString(buffer), readString(buffer));
+		}
+		return extensions;
+	}
+
+	// null is written as 0, otherwise length + 1
+	private static void writeString(OutputStream out, String s) throws IOException {
+		if (s == null) {
+			writeVarint(out, 0);
+		} else {
+			byte[] bytes = s.getBytes("UTF-8");
+			writeVarint(out, bytes.length + 1);
+			out.write(bytes);
+		}
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int len = (int) readVarint(buffer);
+		if (len == 0) {
+			return null;
+		}
+		byte[] bytes = new byte[len - 1];
+		buffer.get(bytes);
+		try {
+			return new String(bytes, "UTF-8");
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void writeSignedVarint(OutputStream out, long v) throws IOException {
+		writeVarint(out, (v << 1) ^ (v >> 63));
+	}
+
+	private static long readSignedVarint(ByteBuffer buffer) {
+		long v = readVarint(buffer);
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	private static void writeVarint(OutputStream out, long v) throws IOException {
+		while ((v & ~0x7FL) != 0) {
+			out.write((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		out.write((int) v);
+	}
+
+	private static long readVarint(DataInputStream in) throws IOException {
+		long v = 0;
+		int shift = 0;
+		while (true) {
+			byte b = in.readByte();
+			v |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return v;
+			}
+			shift += 7;
+		}
+	}
+
+	private static long readVarint(ByteBuffer buffer) {
+		long v = 0;
+		int shift = 0;
+		while (true) {
+			byte b = buffer.get();
+			v |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return v;
+			}
+			shift += 7;
+		}
+	}
+}
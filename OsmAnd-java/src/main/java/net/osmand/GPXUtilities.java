@@ -55,6 +55,7 @@ public class GPXUtilities {
 	private static final String PROFILE_TYPE_EXTENSION = "profile";
 	private static final String GAP_PROFILE_TYPE = "gap";
 	private static final String TRKPT_INDEX_EXTENSION = "trkpt_idx";
+	public static final String ROUTE_DATA_EXTENSION = "route_data";
 
 	public final static String GPX_TIME_FORMAT = "yyyy-MM-dd'T'HH:mm:ss'Z'"; //$NON-NLS-1$
 	private final static String GPX_TIME_FORMAT_MILLIS = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"; //$NON-NLS-1$
@@ -416,7 +417,14 @@ public class GPXUtilities {
 		public List<RouteType> routeTypes = new ArrayList<>();
 
 		public boolean hasRoute() {
-			return !routeSegments.isEmpty() && !routeTypes.isEmpty();
+			return (!routeSegments.isEmpty() && !routeTypes.isEmpty()) || getRouteData() != null;
+		}
+
+		/**
+		 * @return route segments in binary form (base64) written instead of route/types extensions
+		 */
+		public String getRouteData() {
+			return getExtensionsToRead().get(ROUTE_DATA_EXTENSION);
 		}
 
 		public List<GPXTrackAnalysis> splitByDistance(double meters, boolean joinSegments) {
@@ -1902,7 +1910,7 @@ public class GPXUtilities {
 	}
 
 	private static void assignRouteExtensionWriter(final TrkSegment segment) {
-		if (segment.hasRoute() && segment.getExtensionsWriter() == null) {
+		if (!segment.routeSegments.isEmpty() && !segment.routeTypes.isEmpty() && segment.getExtensionsWriter() == null) {
 			segment.setExtensionsWriter(new GPXExtensionsWriter() {
 				@Override
 				public void writeExtensions(XmlSerializer serializer) {
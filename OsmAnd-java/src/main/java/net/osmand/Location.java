@@ -124,6 +124,11 @@ public class Location {
         // Based on http://www.ngs.noaa.gov/PUBS_LIB/inverse.pdf
         // using the "Inverse Formula" (section 4)
     	float osmandDist = (float) (net.osmand.util.MapUtils.getDistance(lat1, lon1, lat2, lon2)); 
+        if (results.length == 1) {
+            // distance is replaced by osmandDist anyway, bearings are not needed
+            results[0] = osmandDist;
+            return;
+        }
         int MAXITERS = 20;
         // Convert lat/long to radians
         lat1 *= Math.PI / 180.0;
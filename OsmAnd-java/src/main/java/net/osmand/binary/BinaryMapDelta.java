@@ -0,0 +1,584 @@
+package net.osmand.binary;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.PlatformUtil;
+import net.osmand.binary.OsmandOdb.OsmAndStructure;
+import net.osmand.util.Algorithms;
+
+/**
+ * Block level delta between two versions of obf file. Files are split by protobuf structure: map, routing, poi,
+ * address and transport parts and their nested fixed32 length delimited messages are split until blocks are
+ * smaller than {@link #MAX_BLOCK}, so changed objects don't shift boundaries of the blocks around them.
+ * Blocks of new file that exist in the same part of old file are written as copy operations, others as data.
+ * Delta is applied by one pass over delta with random reads of old file, copied ranges are checked by CRC32
+ * and the result by MD5 of new file.
+ */
+public class BinaryMapDelta {
+
+	private static final Log log = PlatformUtil.getLog(BinaryMapDelta.class);
+
+	public static final String DELTA_EXT = ".obfdelta";
+	public static final int VERSION = 1;
+
+	static final int MAX_BLOCK = 1 << 16;
+	// fields bigger than this are separate blocks
+	static final int MIN_BLOCK = 1 << 10;
+	// smaller blocks are copied only if they continue previous copy
+	private static final int MIN_COPY = 32;
+	// small fields are grouped ~32 in a block by their content
+	private static final int GROUP_MASK = 31;
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final long INVALID_VARINT = Long.MIN_VALUE;
+
+	private static final int VERSION_FIELD = 1;
+	private static final int SOURCE_LENGTH_FIELD = 2;
+	private static final int TARGET_LENGTH_FIELD = 3;
+	private static final int TARGET_MD5_FIELD = 4;
+	// copy operation: shift from the end of previous copy, length and CRC32 of copied bytes
+	private static final int COPY_SHIFT_FIELD = 5;
+	private static final int COPY_LENGTH_FIELD = 6;
+	private static final int COPY_CRC_FIELD = 7;
+	private static final int DATA_FIELD = 8;
+
+	public static class DeltaStats {
+		public long copiedBytes;
+		public long dataBytes;
+		public int copyOperations;
+		public int dataOperations;
+		public final Map<String, Long> partDataBytes = new LinkedHashMap<String, Long>();
+
+		@Override
+		public String toString() {
+			return "copied " + copiedBytes + " bytes in " + copyOperations + " operations, new " + dataBytes
+					+ " bytes in " + dataOperations + " operations " + partDataBytes;
+		}
+	}
+
+	public static DeltaStats createDelta(File oldFile, File newFile, OutputStream output) throws IOException {
+		RandomAccessFile oldRaf = new RandomAccessFile(oldFile, "r");
+		RandomAccessFile newRaf = new RandomAccessFile(newFile, "r");
+		try {
+			BlockReader oldReader = new BlockReader(oldRaf);
+			BlockReader newReader = new BlockReader(newRaf);
+			TLongObjectHashMap<Long> oldBlocks = indexBlocks(oldReader);
+			TLongArrayList bounds = splitFile(newReader);
+			TLongArrayList partStarts = new TLongArrayList();
+			TIntArrayList partFields = new TIntArrayList();
+			readParts(newReader, partStarts, partFields);
+
+			CodedOutputStream cos = CodedOutputStream.newInstance(output);
+			cos.writeUInt32(VERSION_FIELD, VERSION);
+			cos.writeUInt64(SOURCE_LENGTH_FIELD, oldReader.length);
+			cos.writeUInt64(TARGET_LENGTH_FIELD, newReader.length);
+			cos.writeBytes(TARGET_MD5_FIELD, ByteString.copyFrom(md5(newFile)));
+
+			DeltaStats stats = new DeltaStats();
+			DeltaWriter writer = new DeltaWriter(cos, oldReader, stats);
+			byte[] block = new byte[MAX_BLOCK + MIN_BLOCK];
+			int part = 0;
+			for (int i = 0; i < bounds.size() - 1; i++) {
+				long start = bounds.get(i);
+				int len = (int) (bounds.get(i + 1) - start);
+				while (part + 1 < partStarts.size() && partStarts.get(part + 1) <= start) {
+					part++;
+				}
+				if (block.length < len) {
+					block = new byte[len];
+				}
+				newReader.readFully(start, block, len);
+				if (!writer.copy(block, len, partFields.get(part), oldBlocks)) {
+					writer.writeData(block, len);
+					String name = getPartName(partFields.get(part));
+					Long bytes = stats.partDataBytes.get(name);
+					stats.partDataBytes.put(name, (bytes == null ? 0 : bytes) + len);
+				}
+			}
+			writer.flushCopy();
+			cos.flush();
+			log.info("Delta " + oldFile.getName() + " -> " + newFile.getName() + ": " + stats);
+			return stats;
+		} finally {
+			oldRaf.close();
+			newRaf.close();
+		}
+	}
+
+	/**
+	 * Writes patched file to the result file only if it matches size and MD5 of new file stored in delta.
+	 */
+	public static void applyDelta(File oldFile, InputStream delta, File resultFile) throws IOException {
+		File tmp = new File(resultFile.getParentFile(), resultFile.getName() + ".patch");
+		RandomAccessFile source = new RandomAccessFile(oldFile, "r");
+		OutputStream out = null;
+		boolean written = false;
+		try {
+			out = new BufferedOutputStream(new FileOutputStream(tmp), BUFFER_SIZE);
+			MessageDigest md5 = getMessageDigest();
+			byte[] buffer = new byte[BUFFER_SIZE];
+			CodedInputStream in = CodedInputStream.newInstance(delta);
+			long targetLength = -1;
+			byte[] targetMd5 = null;
+			long length = 0;
+			long copyStart = 0;
+			long copyLength = 0;
+			long lastCopyEnd = 0;
+			boolean end = false;
+			while (!end) {
+				in.resetSizeCounter();
+				int t = in.readTag();
+				switch (WireFormat.getTagFieldNumber(t)) {
+				case 0:
+					end = true;
+					break;
+				case VERSION_FIELD:
+					int version = in.readUInt32();
+					if (version != VERSION) {
+						throw new IOException("Unsupported delta version " + version);
+					}
+					break;
+				case SOURCE_LENGTH_FIELD:
+					if (in.readUInt64() != source.length()) {
+						throw new IOException("Delta is created for another version of " + oldFile.getName());
+					}
+					break;
+				case TARGET_LENGTH_FIELD:
+					targetLength = in.readUInt64();
+					break;
+				case TARGET_MD5_FIELD:
+					targetMd5 = in.readBytes().toByteArray();
+					break;
+				case COPY_SHIFT_FIELD:
+					copyStart = lastCopyEnd + in.readSInt64();
+					break;
+				case COPY_LENGTH_FIELD:
+					copyLength = in.readUInt64();
+					break;
+				case COPY_CRC_FIELD:
+					long crc = in.readFixed32() & 0xffffffffL;
+					if (crc != copy(source, copyStart, copyLength, out, md5, buffer)) {
+						throw new IOException("Delta doesn't match " + oldFile.getName() + " at " + copyStart);
+					}
+					lastCopyEnd = copyStart + copyLength;
+					length += copyLength;
+					break;
+				case DATA_FIELD:
+					byte[] data = in.readRawBytes(in.readRawVarint32());
+					out.write(data);
+					md5.update(data);
+					length += data.length;
+					break;
+				default:
+					in.skipField(t);
+					break;
+				}
+			}
+			if (targetMd5 == null || length != targetLength || !MessageDigest.isEqual(targetMd5, md5.digest())) {
+				throw new IOException("Patched file " + resultFile.getName() + " doesn't match delta");
+			}
+			out.close();
+			out = null;
+			written = true;
+		} finally {
+			source.close();
+			Algorithms.closeStream(out);
+			if (!written) {
+				tmp.delete();
+			}
+		}
+		resultFile.delete();
+		if (!tmp.renameTo(resultFile)) {
+			throw new IOException("Patched file is not renamed to " + resultFile.getName());
+		}
+	}
+
+	private static long copy(RandomAccessFile source, long start, long length, OutputStream out,
+			MessageDigest md5, byte[] buffer) throws IOException {
+		if (start < 0 || start + length > source.length()) {
+			throw new IOException("Copy is out of source file " + start);
+		}
+		CRC32 crc = new CRC32();
+		source.seek(start);
+		while (length > 0) {
+			int read = (int) Math.min(buffer.length, length);
+			source.readFully(buffer, 0, read);
+			crc.update(buffer, 0, read);
+			md5.update(buffer, 0, read);
+			out.write(buffer, 0, read);
+			length -= read;
+		}
+		return crc.getValue();
+	}
+
+	private static class DeltaWriter {
+		private final CodedOutputStream cos;
+		private final BlockReader old;
+		private final DeltaStats stats;
+		private byte[] oldBlock = new byte[MAX_BLOCK + MIN_BLOCK];
+		private final CRC32 crc = new CRC32();
+		private final CRC32 copyCrc = new CRC32();
+		private long copyStart;
+		private long copyLength;
+		private long lastCopyEnd;
+		// position in old file expected for next block
+		private long nextOld;
+
+		DeltaWriter(CodedOutputStream cos, BlockReader old, DeltaStats stats) {
+			this.cos = cos;
+			this.old = old;
+			this.stats = stats;
+		}
+
+		boolean copy(byte[] block, int len, int part, TLongObjectHashMap<Long> oldBlocks) throws IOException {
+			long pos = -1;
+			if (equalsOld(nextOld, block, len)) {
+				pos = nextOld;
+			} else if (len >= MIN_COPY) {
+				crc.reset();
+				crc.update(block, 0, len);
+				Long p = oldBlocks.get(getBlockKey(crc.getValue(), len, part));
+				if (p != null && equalsOld(p, block, len)) {
+					pos = p;
+				}
+			}
+			if (pos < 0) {
+				return false;
+			}
+			if (copyLength == 0 || copyStart + copyLength != pos) {
+				flushCopy();
+				copyStart = pos;
+				copyCrc.reset();
+			}
+			copyLength += len;
+			copyCrc.update(block, 0, len);
+			nextOld = pos + len;
+			return true;
+		}
+
+		void writeData(byte[] block, int len) throws IOException {
+			flushCopy();
+			cos.writeTag(DATA_FIELD, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+			cos.writeRawVarint32(len);
+			cos.writeRawBytes(block, 0, len);
+			// changed block is often replaced by the block of the same size
+			nextOld += len;
+			stats.dataBytes += len;
+			stats.dataOperations++;
+		}
+
+		void flushCopy() throws IOException {
+			if (copyLength > 0) {
+				cos.writeSInt64(COPY_SHIFT_FIELD, copyStart - lastCopyEnd);
+				cos.writeUInt64(COPY_LENGTH_FIELD, copyLength);
+				cos.writeFixed32(COPY_CRC_FIELD, (int) copyCrc.getValue());
+				lastCopyEnd = copyStart + copyLength;
+				stats.copiedBytes += copyLength;
+				stats.copyOperations++;
+				copyLength = 0;
+			}
+		}
+
+		private boolean equalsOld(long pos, byte[] block, int len) throws IOException {
+			if (pos < 0 || pos + len > old.length) {
+				return false;
+			}
+			if (oldBlock.length < len) {
+				oldBlock = new byte[len];
+			}
+			old.readFully(pos, oldBlock, len);
+			for (int i = 0; i < len; i++) {
+				if (oldBlock[i] != block[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private static TLongObjectHashMap<Long> indexBlocks(BlockReader r) throws IOException {
+		TLongArrayList bounds = splitFile(r);
+		TLongArrayList partStarts = new TLongArrayList();
+		TIntArrayList partFields = new TIntArrayList();
+		readParts(r, partStarts, partFields);
+		TLongObjectHashMap<Long> blocks = new TLongObjectHashMap<Long>();
+		byte[] block = new byte[MAX_BLOCK + MIN_BLOCK];
+		CRC32 crc = new CRC32();
+		int part = 0;
+		for (int i = 0; i < bounds.size() - 1; i++) {
+			long start = bounds.get(i);
+			int len = (int) (bounds.get(i + 1) - start);
+			while (part + 1 < partStarts.size() && partStarts.get(part + 1) <= start) {
+				part++;
+			}
+			if (len < MIN_COPY) {
+				continue;
+			}
+			if (block.length < len) {
+				block = new byte[len];
+			}
+			r.readFully(start, block, len);
+			crc.reset();
+			crc.update(block, 0, len);
+			long key = getBlockKey(crc.getValue(), len, partFields.get(part));
+			if (!blocks.containsKey(key)) {
+				blocks.put(key, start);
+			}
+		}
+		return blocks;
+	}
+
+	private static long getBlockKey(long crc, int len, int part) {
+		return crc ^ ((long) (len * 64 + part) << 32);
+	}
+
+	private static String getPartName(int field) {
+		switch (field) {
+		case OsmAndStructure.MAPINDEX_FIELD_NUMBER:
+			return "Map";
+		case OsmAndStructure.ROUTINGINDEX_FIELD_NUMBER:
+			return "Routing";
+		case OsmAndStructure.POIINDEX_FIELD_NUMBER:
+			return "POI";
+		case OsmAndStructure.ADDRESSINDEX_FIELD_NUMBER:
+			return "Address";
+		case OsmAndStructure.TRANSPORTINDEX_FIELD_NUMBER:
+			return "Transport";
+		default:
+			return "Header";
+		}
+	}
+
+	// top level fields of the file
+	private static void readParts(BlockReader r, TLongArrayList starts, TIntArrayList fields) throws IOException {
+		starts.add(0);
+		fields.add(0);
+		long pos = 0;
+		while (pos < r.length) {
+			r.pos = pos;
+			long fieldEnd = readField(r, r.length);
+			if (fieldEnd < 0) {
+				return;
+			}
+			starts.add(pos);
+			fields.add(WireFormat.getTagFieldNumber(r.tag));
+			pos = fieldEnd;
+		}
+	}
+
+	/**
+	 * @return start positions of blocks and length of the file as the last element
+	 */
+	static TLongArrayList splitFile(BlockReader r) throws IOException {
+		TLongArrayList bounds = new TLongArrayList();
+		bounds.add(0);
+		split(r, 0, r.length, bounds);
+		addBound(bounds, r.length);
+		return bounds;
+	}
+
+	private static void split(BlockReader r, long start, long end, TLongArrayList bounds) throws IOException {
+		int size = bounds.size();
+		if (!splitMessage(r, start, end, bounds)) {
+			// not a message, split by fixed size
+			bounds.remove(size, bounds.size() - size);
+			for (long p = start; p < end; p += MAX_BLOCK) {
+				addBound(bounds, p);
+			}
+		}
+	}
+
+	private static boolean splitMessage(BlockReader r, long start, long end, TLongArrayList bounds) throws IOException {
+		long pos = start;
+		long groupStart = start;
+		while (pos < end) {
+			long fieldStart = pos;
+			r.pos = pos;
+			pos = readField(r, end);
+			if (pos < 0) {
+				return false;
+			}
+			if (r.payloadLength > MAX_BLOCK) {
+				// length of message is changed with its content, so header is a separate block
+				addBound(bounds, fieldStart);
+				addBound(bounds, r.payloadStart);
+				split(r, r.payloadStart, pos, bounds);
+				addBound(bounds, pos);
+				groupStart = pos;
+			} else if (pos - fieldStart >= MIN_BLOCK) {
+				addBound(bounds, fieldStart);
+				addBound(bounds, pos);
+				groupStart = pos;
+			} else if (pos - groupStart >= MAX_BLOCK || (r.hash(fieldStart, pos) & GROUP_MASK) == 0) {
+				addBound(bounds, pos);
+				groupStart = pos;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads field at reader position, sets tag and payload of length delimited field
+	 * @return end of the field or -1 if it isn't a valid field
+	 */
+	private static long readField(BlockReader r, long end) throws IOException {
+		long tag = r.readVarint();
+		if (tag <= 0 || tag > Integer.MAX_VALUE || WireFormat.getTagFieldNumber((int) tag) == 0) {
+			return -1;
+		}
+		r.tag = (int) tag;
+		r.payloadLength = -1;
+		switch (WireFormat.getTagWireType(r.tag)) {
+		case WireFormat.WIRETYPE_VARINT:
+			if (r.readVarint() == INVALID_VARINT) {
+				return -1;
+			}
+			break;
+		case WireFormat.WIRETYPE_FIXED64:
+			r.pos += 8;
+			break;
+		case WireFormat.WIRETYPE_FIXED32:
+			r.pos += 4;
+			break;
+		case WireFormat.WIRETYPE_LENGTH_DELIMITED:
+		case WireFormat.WIRETYPE_FIXED32_LENGTH_DELIMITED:
+			long length = WireFormat.getTagWireType(r.tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED ? r.readVarint()
+					: r.readInt();
+			if (length < 0) {
+				return -1;
+			}
+			r.payloadLength = length;
+			r.payloadStart = r.pos;
+			r.pos += length;
+			break;
+		default:
+			return -1;
+		}
+		return r.pos > end ? -1 : r.pos;
+	}
+
+	private static void addBound(TLongArrayList bounds, long pos) {
+		if (bounds.get(bounds.size() - 1) != pos) {
+			bounds.add(pos);
+		}
+	}
+
+	private static byte[] md5(File file) throws IOException {
+		MessageDigest md5 = getMessageDigest();
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				md5.update(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+		return md5.digest();
+	}
+
+	private static MessageDigest getMessageDigest() throws IOException {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e.getMessage());
+		}
+	}
+
+	static class BlockReader {
+		final RandomAccessFile raf;
+		final long length;
+		private final byte[] buffer = new byte[BUFFER_SIZE];
+		private long bufferStart;
+		private int bufferLength;
+		long pos;
+		// last read field
+		int tag;
+		long payloadStart;
+		long payloadLength;
+
+		BlockReader(RandomAccessFile raf) throws IOException {
+			this.raf = raf;
+			this.length = raf.length();
+		}
+
+		int read() throws IOException {
+			if (pos < bufferStart || pos >= bufferStart + bufferLength) {
+				if (pos >= length) {
+					return -1;
+				}
+				bufferStart = pos;
+				bufferLength = (int) Math.min(buffer.length, length - pos);
+				raf.seek(pos);
+				raf.readFully(buffer, 0, bufferLength);
+			}
+			return buffer[(int) (pos++ - bufferStart)] & 0xff;
+		}
+
+		long readVarint() throws IOException {
+			long result = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = read();
+				if (b < 0) {
+					return INVALID_VARINT;
+				}
+				result |= (long) (b & 0x7f) << shift;
+				if ((b & 0x80) == 0) {
+					return result;
+				}
+			}
+			return INVALID_VARINT;
+		}
+
+		// big endian as BinaryMapIndexReader.readInt
+		long readInt() throws IOException {
+			long result = 0;
+			for (int i = 0; i < 4; i++) {
+				int b = read();
+				if (b < 0) {
+					return INVALID_VARINT;
+				}
+				result = (result << 8) | b;
+			}
+			return result;
+		}
+
+		int hash(long start, long end) throws IOException {
+			pos = start;
+			int h = 0;
+			while (pos < end) {
+				h = h * 31 + read();
+			}
+			h ^= h >>> 16;
+			h *= 0x85ebca6b;
+			return h ^ (h >>> 13);
+		}
+
+		void readFully(long start, byte[] b, int len) throws IOException {
+			raf.seek(start);
+			raf.readFully(b, 0, len);
+		}
+	}
+}
@@ -1406,6 +1406,30 @@ public class BinaryMapIndexReader {
 		return req.getSearchResults();
 	}
 
+	/**
+	 * @return data boxes of poi index as (x, y, zoom, data offset) quadruples to read by {@link #readPoiBox}
+	 */
+	public TIntArrayList readPoiBoxes(PoiRegion poiIndex) throws IOException {
+		TIntArrayList boxes = new TIntArrayList();
+		codedIS.seek(poiIndex.filePointer);
+		int old = codedIS.pushLimit(poiIndex.length);
+		poiAdapter.readPoiBoxes(poiIndex, boxes);
+		codedIS.popLimit(old);
+		return boxes;
+	}
+
+	/**
+	 * Reads all amenities of poi data box accepted by type filter of request, bounds are not checked
+	 */
+	public List<Amenity> readPoiBox(PoiRegion poiIndex, int dataOffset, SearchRequest<Amenity> req) throws IOException {
+		poiAdapter.initCategories(poiIndex);
+		codedIS.seek(poiIndex.filePointer);
+		int old = codedIS.pushLimit(poiIndex.length);
+		poiAdapter.readPoiBox(poiIndex, dataOffset, req);
+		codedIS.popLimit(old);
+		return req.getSearchResults();
+	}
+
 	protected List<String> readStringTable() throws IOException {
 		List<String> list = new ArrayList<String>();
 		while (true) {
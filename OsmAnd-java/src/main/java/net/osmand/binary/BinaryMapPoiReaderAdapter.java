@@ -567,6 +567,83 @@ public class BinaryMapPoiReaderAdapter {
 		}
 	}
 
+	/**
+	 * Reads all data boxes of poi index as (x, y, zoom, data offset) quadruples, offsets are absolute in file
+	 */
+	protected void readPoiBoxes(PoiRegion region, TIntArrayList boxes) throws IOException {
+		int indexOffset = codedIS.getTotalBytesRead();
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return;
+			case OsmandOdb.OsmAndPoiIndex.BOXES_FIELD_NUMBER:
+				int length = readInt();
+				int oldLimit = codedIS.pushLimit(length);
+				readPoiBoxes(0, 0, 0, indexOffset, boxes);
+				codedIS.popLimit(oldLimit);
+				break;
+			case OsmandOdb.OsmAndPoiIndex.POIDATA_FIELD_NUMBER:
+				codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+				return;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
+	private void readPoiBoxes(int px, int py, int pzoom, int indexOffset, TIntArrayList boxes) throws IOException {
+		int zoom = pzoom;
+		int dy = py;
+		int dx = px;
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return;
+			case OsmandOdb.OsmAndPoiBox.ZOOM_FIELD_NUMBER:
+				zoom = codedIS.readUInt32() + pzoom;
+				break;
+			case OsmandOdb.OsmAndPoiBox.LEFT_FIELD_NUMBER:
+				dx = codedIS.readSInt32();
+				break;
+			case OsmandOdb.OsmAndPoiBox.TOP_FIELD_NUMBER:
+				dy = codedIS.readSInt32();
+				break;
+			case OsmandOdb.OsmAndPoiBox.SUBBOXES_FIELD_NUMBER: {
+				int length = readInt();
+				int oldLimit = codedIS.pushLimit(length);
+				readPoiBoxes(dx + (px << (zoom - pzoom)), dy + (py << (zoom - pzoom)), zoom, indexOffset, boxes);
+				codedIS.popLimit(oldLimit);
+			}
+			break;
+			case OsmandOdb.OsmAndPoiBox.SHIFTTODATA_FIELD_NUMBER:
+				boxes.add(dx + (px << (zoom - pzoom)));
+				boxes.add(dy + (py << (zoom - pzoom)));
+				boxes.add(zoom);
+				boxes.add(readInt() + indexOffset);
+				break;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Publishes all amenities of data box to request, bounds of request are not checked
+	 */
+	protected void readPoiBox(PoiRegion region, int offset, SearchRequest<Amenity> req) throws IOException {
+		codedIS.seek(offset);
+		int len = readInt();
+		int oldLim = codedIS.pushLimit(len);
+		readPoiData(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, req, region, null, 31);
+		codedIS.popLimit(oldLim);
+	}
+
 	private void readPoiData(CollatorStringMatcher matcher, SearchRequest<Amenity> req, PoiRegion region) throws IOException {
 		int x = 0;
 		int y = 0;
@@ -184,14 +184,38 @@ public class BinaryMapRouteReaderAdapter {
 			if (conditional()) {
 				Calendar i = Calendar.getInstance();
 				i.setTimeInMillis(time);
-				for (RouteTypeCondition c : conditions) {
-					if (c.hours != null && c.hours.isOpenedForTime(i)) {
-						return c.ruleid;
-					}
+				int c = getActiveCondition(i);
+				if (c >= 0) {
+					return conditions.get(c).ruleid;
 				}
 			}
 			return 0;
 		}
+
+		/**
+		 * @return index of the first condition active at the time or -1
+		 */
+		int getActiveCondition(Calendar cal) {
+			for (int i = 0; i < conditions.size(); i++) {
+				RouteTypeCondition c = conditions.get(i);
+				if (c.hours != null && c.hours.isOpenedForTime(cal)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		int getConditionsCount() {
+			return conditions == null ? 0 : conditions.size();
+		}
+
+		OpeningHoursParser.OpeningHours getConditionHours(int i) {
+			return conditions.get(i).hours;
+		}
+
+		int getConditionRuleId(int i) {
+			return conditions.get(i).ruleid;
+		}
 		
 		public float maxSpeed(){
 			if(type == MAXSPEED){
@@ -312,6 +336,7 @@ public class BinaryMapRouteReaderAdapter {
 		int destinationTypeRule = -1;
 		int destinationRefTypeRule = -1;
 		private RouteRegion referenceRouteRegion;
+		private volatile RouteConditionalCache conditionalCache;
 
 		public String getPartName() {
 			return "Routing";
@@ -349,8 +374,25 @@ public class BinaryMapRouteReaderAdapter {
 			return routeEncodingRules.get(id);
 		}
 
+		/**
+		 * Same as {@link RouteTypeRule#conditionalValue(long)} of the rule, but conditions are compiled once per day
+		 */
+		public int getConditionalValue(int ruleId, long time) {
+			RouteConditionalCache cache = conditionalCache;
+			if (cache == null) {
+				synchronized (this) {
+					if (conditionalCache == null) {
+						conditionalCache = new RouteConditionalCache(this);
+					}
+					cache = conditionalCache;
+				}
+			}
+			return cache.getConditionalValue(ruleId, time);
+		}
+
 		public void initRouteEncodingRule(int id, String tags, String val) {
 			decodingRules = null;
+			conditionalCache = null;
 			while (routeEncodingRules.size() <= id) {
 				routeEncodingRules.add(null);
 			}
@@ -23,36 +23,49 @@ import net.osmand.binary.OsmandIndex.TransportPart;
 
 import org.apache.commons.logging.Log;
 
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+/**
+ * Snapshot of OBF files structure (all index parts with offsets and bounds), so files could be opened
+ * without reading their headers. Snapshot is thread-safe, files could be opened in parallel with
+ * {@link #getReaders(List, Collection, int)}, stored files are kept sorted by name so written snapshot doesn't depend on
+ * order of initialization.
+ */
 public class CachedOsmandIndexes {
 
-	private OsmAndStoredIndex storedIndex;
-	private OsmAndStoredIndex.Builder storedIndexBuilder;
+	// file name -> stored index
+	private final Map<String, FileIndex> fileIndexes = new TreeMap<String, FileIndex>();
 	private Log log = PlatformUtil.getLog(CachedOsmandIndexes.class);
 	private boolean hasChanged = true;
 
 	public static final int VERSION = 2;
 
 	public void addToCache(BinaryMapIndexReader reader, File f) {
-		hasChanged = true;
-		if (storedIndexBuilder == null) {
-			storedIndexBuilder = OsmandIndex.OsmAndStoredIndex.newBuilder();
-			storedIndexBuilder.setVersion(VERSION);
-			storedIndexBuilder.setDateCreated(System.currentTimeMillis());
-			if (storedIndex != null) {
-				for (FileIndex ex : storedIndex.getFileIndexList()) {
-					if (!ex.getFileName().equals(f.getName())) {
-						storedIndexBuilder.addFileIndex(ex);
-					}
-				}
-			}
+		FileIndex fileIndex = createFileIndex(reader, f);
+		synchronized (this) {
+			fileIndexes.put(f.getName(), fileIndex);
+			hasChanged = true;
 		}
+	}
 
+	private FileIndex createFileIndex(BinaryMapIndexReader reader, File f) {
 		FileIndex.Builder fileIndex = OsmandIndex.FileIndex.newBuilder();
 		long d = reader.getDateCreated();
 		fileIndex.setDateModified(d == 0 ? f.lastModified() : d);
@@ -156,9 +169,7 @@ public class CachedOsmandIndexes {
 			}
 			fileIndex.addRoutingIndex(routing);
 		}
-
-		storedIndexBuilder.addFileIndex(fileIndex);
-
+		return fileIndex.build();
 	}
 
 	private void addRouteSubregion(RoutingPart.Builder routing, RouteSubregion sub, boolean base) {
@@ -175,32 +186,73 @@ public class CachedOsmandIndexes {
 	}
 
 	public BinaryMapIndexReader getReader(File f, boolean useStoredIndex) throws IOException {
-		RandomAccessFile mf = new RandomAccessFile(f.getPath(), "r");
 		FileIndex found = null;
-		if (storedIndex != null && useStoredIndex) {
-			for (int i = 0; i < storedIndex.getFileIndexCount(); i++) {
-				FileIndex fi = storedIndex.getFileIndex(i);
-				if (f.length() == fi.getSize() && f.getName().equals(fi.getFileName())) {
-					// f.lastModified() == fi.getDateModified()
+		if (useStoredIndex) {
+			synchronized (this) {
+				FileIndex fi = fileIndexes.get(f.getName());
+				// f.lastModified() == fi.getDateModified()
+				if (fi != null && f.length() == fi.getSize()) {
 					found = fi;
-					break;
 				}
 			}
 		}
+		RandomAccessFile mf = new RandomAccessFile(f.getPath(), "r");
 		BinaryMapIndexReader reader = null;
-		if (found == null) {
-			long val = System.currentTimeMillis();
-			reader = new BinaryMapIndexReader(mf, f);
-			addToCache(reader, f);
-			if (log.isDebugEnabled()) {
-				log.debug("Initializing db " + f.getAbsolutePath() + " " + (System.currentTimeMillis() - val) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		try {
+			if (found == null) {
+				long val = System.currentTimeMillis();
+				reader = new BinaryMapIndexReader(mf, f);
+				addToCache(reader, f);
+				if (log.isDebugEnabled()) {
+					log.debug("Initializing db " + f.getAbsolutePath() + " " + (System.currentTimeMillis() - val) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				}
+			} else {
+				reader = initFileIndex(found, mf, f);
+			}
+		} finally {
+			if (reader == null) {
+				mf.close();
 			}
-		} else {
-			reader = initFileIndex(found, mf, f);
 		}
 		return reader;
 	}
 
+	/**
+	 * Opens files with a pool of threads.
+	 * @return readers in the same order as files, null for files which couldn't be read
+	 */
+	public List<BinaryMapIndexReader> getReaders(List<File> files, Collection<File> filesToReindex, int threads) {
+		List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>(files.size());
+		final Set<File> reindex = new HashSet<File>(filesToReindex);
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		try {
+			List<Future<BinaryMapIndexReader>> futures = new ArrayList<Future<BinaryMapIndexReader>>(files.size());
+			for (final File f : files) {
+				futures.add(executor.submit(new Callable<BinaryMapIndexReader>() {
+					@Override
+					public BinaryMapIndexReader call() throws Exception {
+						return getReader(f, !reindex.contains(f));
+					}
+				}));
+			}
+			for (int i = 0; i < files.size(); i++) {
+				BinaryMapIndexReader reader = null;
+				try {
+					reader = futures.get(i).get();
+				} catch (ExecutionException e) {
+					log.error(String.format("File %s could not be read", files.get(i).getName()), e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					log.error(String.format("File %s could not be read", files.get(i).getName()), e);
+				}
+				readers.add(reader);
+			}
+		} finally {
+			executor.shutdown();
+		}
+		return readers;
+	}
+
 	private BinaryMapIndexReader initFileIndex(FileIndex found, RandomAccessFile mf, File f) throws IOException {
 		BinaryMapIndexReader reader = new BinaryMapIndexReader(mf, f, false);
 		reader.version = found.getVersion();
@@ -309,29 +361,42 @@ public class CachedOsmandIndexes {
 		return reader;
 	}
 
-	public void readFromFile(File f, int version) throws IOException {
+	public synchronized void readFromFile(File f, int version) throws IOException {
 		long time = System.currentTimeMillis();
-		FileInputStream is = new FileInputStream(f);
+		// read whole snapshot at once, it is parsed from memory
+		byte[] data = new byte[(int) f.length()];
+		DataInputStream is = new DataInputStream(new FileInputStream(f));
 		try {
-			storedIndex = OsmandIndex.OsmAndStoredIndex.newBuilder().mergeFrom(is).build();
-			hasChanged = false;
-			if (storedIndex.getVersion() != version) {
-				storedIndex = null;
-			}
+			is.readFully(data);
 		} finally {
 			is.close();
 		}
+		OsmAndStoredIndex storedIndex = OsmandIndex.OsmAndStoredIndex.parseFrom(data);
+		fileIndexes.clear();
+		if (storedIndex.getVersion() == version) {
+			for (FileIndex fi : storedIndex.getFileIndexList()) {
+				fileIndexes.put(fi.getFileName(), fi);
+			}
+			hasChanged = false;
+		}
 		log.info("Initialize cache " + (System.currentTimeMillis() - time));
 	}
 
-	public void writeToFile(File f) throws IOException {
+	public synchronized void writeToFile(File f) throws IOException {
 		if (hasChanged) {
+			OsmAndStoredIndex.Builder storedIndexBuilder = OsmandIndex.OsmAndStoredIndex.newBuilder();
+			storedIndexBuilder.setVersion(VERSION);
+			storedIndexBuilder.setDateCreated(System.currentTimeMillis());
+			for (FileIndex fi : fileIndexes.values()) {
+				storedIndexBuilder.addFileIndex(fi);
+			}
 			FileOutputStream outputStream = new FileOutputStream(f);
 			try {
 				storedIndexBuilder.build().writeTo(outputStream);
 			} finally {
 				outputStream.close();
 			}
+			hasChanged = false;
 		}
 	}
 
@@ -0,0 +1,318 @@
+package net.osmand.binary;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader.SearchPoiTypeFilter;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiRegion;
+import net.osmand.data.Amenity;
+import net.osmand.osm.MapPoiTypes;
+import net.osmand.osm.PoiCategory;
+import net.osmand.util.MapUtils;
+
+/**
+ * Bbox amenity search over several files with cache of decoded poi data boxes. Boxes are decoded without type
+ * filter once per (file, box offset) and filtered in memory, so searches of different types and growing radius
+ * read from file only boxes which are not cached yet. Boxes missing in cache are read sorted by offset under lock
+ * of the reader, so concurrent searches of the same area decode them once. Type and subtypes of multi-category
+ * amenity are filtered with categories of region category table, the same way as reader assigns them.
+ * <p>
+ * Amenities are shared between searches and shouldn't be modified.
+ */
+public class PoiQueryService {
+
+	// estimated memory of decoded amenity and of box entry
+	private static final int AMENITY_SIZE = 400;
+	private static final int BOX_SIZE = 100;
+
+	private final long maxCacheSize;
+	private final Map<BinaryMapIndexReader, ReaderBoxes> readers = new WeakHashMap<BinaryMapIndexReader, ReaderBoxes>();
+	private final LinkedHashMap<BoxKey, List<Amenity>> cache = new LinkedHashMap<BoxKey, List<Amenity>>(64, 0.75f, true);
+	private long cacheSize;
+	private int readBoxes;
+	private int cachedBoxes;
+
+	private static class ReaderBoxes {
+		// boxes of poi indexes of reader, see BinaryMapIndexReader.readPoiBoxes
+		TIntArrayList[] regions;
+		// category of decoded subtype per poi index
+		List<Map<String, PoiCategory>> subtypeCategories;
+	}
+
+	private static class BoxKey {
+		// instead of reader which is weak key of readers
+		final ReaderBoxes reader;
+		final int offset;
+
+		BoxKey(ReaderBoxes reader, int offset) {
+			this.reader = reader;
+			this.offset = offset;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(reader) * 31 + offset;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof BoxKey)) {
+				return false;
+			}
+			BoxKey o = (BoxKey) obj;
+			return reader == o.reader && offset == o.offset;
+		}
+	}
+
+	public PoiQueryService(long maxCacheSize) {
+		this.maxCacheSize = maxCacheSize;
+	}
+
+	/**
+	 * Publishes amenities of bbox accepted by filter (null - all) to matcher (null - all published).
+	 */
+	public List<Amenity> searchPoi(List<BinaryMapIndexReader> files, int left31, int right31, int top31,
+			int bottom31, SearchPoiTypeFilter filter, ResultMatcher<Amenity> matcher) throws IOException {
+		List<Amenity> result = new ArrayList<Amenity>();
+		for (BinaryMapIndexReader reader : files) {
+			searchPoi(reader, new int[] { left31, right31, top31, bottom31 }, null, filter, matcher, result);
+		}
+		return result;
+	}
+
+	public List<Amenity> searchPoi(BinaryMapIndexReader reader, int left31, int right31, int top31,
+			int bottom31, SearchPoiTypeFilter filter, ResultMatcher<Amenity> matcher) throws IOException {
+		List<Amenity> result = new ArrayList<Amenity>();
+		searchPoi(reader, new int[] { left31, right31, top31, bottom31 }, null, filter, matcher, result);
+		return result;
+	}
+
+	/**
+	 * Same as bbox search, but data boxes not accepted by box filter are not read
+	 */
+	public List<Amenity> searchPoi(BinaryMapIndexReader reader, int left31, int right31, int top31,
+			int bottom31, BoxFilter boxFilter, SearchPoiTypeFilter filter, ResultMatcher<Amenity> matcher)
+			throws IOException {
+		List<Amenity> result = new ArrayList<Amenity>();
+		searchPoi(reader, new int[] { left31, right31, top31, bottom31 }, boxFilter, filter, matcher, result);
+		return result;
+	}
+
+	public interface BoxFilter {
+
+		boolean accept(int left31, int right31, int top31, int bottom31);
+	}
+
+	public synchronized void clearCache() {
+		cache.clear();
+		cacheSize = 0;
+		readers.clear();
+	}
+
+	public synchronized long getCacheSize() {
+		return cacheSize;
+	}
+
+	/**
+	 * @return number of boxes read from files and number of boxes taken from cache
+	 */
+	public synchronized int[] getBoxStatistics() {
+		return new int[] { readBoxes, cachedBoxes };
+	}
+
+	private void searchPoi(BinaryMapIndexReader reader, int[] bbox, BoxFilter boxFilter,
+			SearchPoiTypeFilter filter, ResultMatcher<Amenity> matcher, List<Amenity> result) throws IOException {
+		List<PoiRegion> poiIndexes = reader.getPoiIndexes();
+		ReaderBoxes rb = getReaderBoxes(reader);
+		List<List<Amenity>> found = new ArrayList<List<Amenity>>();
+		List<Map<String, PoiCategory>> foundCategories = new ArrayList<Map<String, PoiCategory>>();
+		// region index << 32 | offset
+		TLongArrayList toRead = new TLongArrayList();
+		synchronized (this) {
+			for (int i = 0; i < poiIndexes.size(); i++) {
+				PoiRegion region = poiIndexes.get(i);
+				if (!intersects(bbox, region.left31, region.right31, region.top31, region.bottom31)) {
+					continue;
+				}
+				TIntArrayList boxes = rb.regions[i];
+				for (int j = 0; j < boxes.size(); j += 4) {
+					int zoom = boxes.get(j + 2);
+					int l = boxes.get(j) << (31 - zoom);
+					int t = boxes.get(j + 1) << (31 - zoom);
+					int r = ((boxes.get(j) + 1) << (31 - zoom)) - 1;
+					int b = ((boxes.get(j + 1) + 1) << (31 - zoom)) - 1;
+					if (!intersects(bbox, l, r, t, b) || (boxFilter != null && !boxFilter.accept(l, r, t, b))) {
+						continue;
+					}
+					List<Amenity> amenities = cache.get(new BoxKey(rb, boxes.get(j + 3)));
+					if (amenities != null) {
+						cachedBoxes++;
+						found.add(amenities);
+						foundCategories.add(rb.subtypeCategories.get(i));
+					} else {
+						toRead.add(((long) i << 32) | (boxes.get(j + 3) & 0xffffffffL));
+					}
+				}
+			}
+		}
+		if (!toRead.isEmpty()) {
+			toRead.sort();
+			synchronized (reader) {
+				for (int k = 0; k < toRead.size(); k++) {
+					int offset = (int) toRead.get(k);
+					int region = (int) (toRead.get(k) >> 32);
+					BoxKey key = new BoxKey(rb, offset);
+					List<Amenity> amenities;
+					synchronized (this) {
+						// could be read by concurrent search
+						amenities = cache.get(key);
+					}
+					if (amenities == null) {
+						SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(0, 0, 0, 0, -1, null, null);
+						amenities = reader.readPoiBox(poiIndexes.get(region), offset, req);
+						put(key, amenities);
+					}
+					found.add(amenities);
+					foundCategories.add(rb.subtypeCategories.get(region));
+					if (matcher != null && matcher.isCancelled()) {
+						break;
+					}
+				}
+			}
+		}
+		for (int k = 0; k < found.size(); k++) {
+			for (Amenity a : found.get(k)) {
+				if (matcher != null && matcher.isCancelled()) {
+					return;
+				}
+				int x = MapUtils.get31TileNumberX(a.getLocation().getLongitude());
+				int y = MapUtils.get31TileNumberY(a.getLocation().getLatitude());
+				if (!contains(bbox, x, x, y, y)) {
+					continue;
+				}
+				Amenity accepted = filter(a, foundCategories.get(k), filter);
+				if (accepted != null && (matcher == null || matcher.publish(accepted))) {
+					result.add(accepted);
+				}
+			}
+		}
+	}
+
+	private ReaderBoxes getReaderBoxes(BinaryMapIndexReader reader) throws IOException {
+		synchronized (this) {
+			ReaderBoxes rb = readers.get(reader);
+			if (rb != null) {
+				return rb;
+			}
+		}
+		List<PoiRegion> poiIndexes = reader.getPoiIndexes();
+		ReaderBoxes rb = new ReaderBoxes();
+		rb.regions = new TIntArrayList[poiIndexes.size()];
+		rb.subtypeCategories = new ArrayList<Map<String, PoiCategory>>();
+		MapPoiTypes poiTypes = MapPoiTypes.getDefault();
+		synchronized (reader) {
+			for (int i = 0; i < poiIndexes.size(); i++) {
+				PoiRegion region = poiIndexes.get(i);
+				rb.regions[i] = reader.readPoiBoxes(region);
+				reader.initCategories(region);
+				Map<String, PoiCategory> categories = new HashMap<String, PoiCategory>();
+				for (int c = 0; c < region.categoriesType.size(); c++) {
+					PoiCategory type = region.categoriesType.get(c);
+					for (String subtype : region.subcategories.get(c)) {
+						String key = poiTypes.replaceDeprecatedSubtype(type, subtype);
+						if (!categories.containsKey(key)) {
+							categories.put(key, type);
+						}
+					}
+				}
+				rb.subtypeCategories.add(categories);
+			}
+		}
+		synchronized (this) {
+			ReaderBoxes existing = readers.get(reader);
+			if (existing != null) {
+				return existing;
+			}
+			readers.put(reader, rb);
+			return rb;
+		}
+	}
+
+	private synchronized void put(BoxKey key, List<Amenity> amenities) {
+		readBoxes++;
+		if (cache.put(key, amenities) == null) {
+			cacheSize += size(amenities);
+		}
+		Iterator<List<Amenity>> it = cache.values().iterator();
+		while (cacheSize > maxCacheSize && it.hasNext()) {
+			List<Amenity> evicted = it.next();
+			if (evicted == amenities) {
+				break;
+			}
+			cacheSize -= size(evicted);
+			it.remove();
+		}
+	}
+
+	private static long size(List<Amenity> amenities) {
+		return BOX_SIZE + (long) amenities.size() * AMENITY_SIZE;
+	}
+
+	/**
+	 * @return amenity if all its subtypes are accepted, copy with accepted subtypes and category of the first one
+	 * if some of them are accepted (as reader assigns them with filter) or null
+	 */
+	private static Amenity filter(Amenity a, Map<String, PoiCategory> categories, SearchPoiTypeFilter filter) {
+		if (filter == null) {
+			return a;
+		}
+		String subType = a.getSubType();
+		if (subType == null || subType.indexOf(';') == -1) {
+			return filter.accept(a.getType(), subType) ? a : null;
+		}
+		PoiCategory type = null;
+		StringBuilder accepted = new StringBuilder();
+		boolean all = true;
+		for (String s : subType.split(";")) {
+			PoiCategory category = categories.get(s);
+			if (category == null) {
+				category = a.getType();
+			}
+			if (!filter.accept(category, s)) {
+				all = false;
+			} else if (type == null) {
+				type = category;
+				accepted.append(s);
+			} else {
+				accepted.append(';').append(s);
+			}
+		}
+		if (type == null) {
+			return null;
+		} else if (all) {
+			return a;
+		}
+		Amenity copy = a.copy();
+		copy.setType(type);
+		copy.setSubType(accepted.toString());
+		return copy;
+	}
+
+	private static boolean intersects(int[] bbox, int left, int right, int top, int bottom) {
+		return left <= bbox[1] && right >= bbox[0] && top <= bbox[3] && bottom >= bbox[2];
+	}
+
+	private static boolean contains(int[] bbox, int left, int right, int top, int bottom) {
+		return left >= bbox[0] && right <= bbox[1] && top >= bbox[2] && bottom <= bbox[3];
+	}
+}
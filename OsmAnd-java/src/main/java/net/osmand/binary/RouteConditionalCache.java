@@ -0,0 +1,147 @@
+package net.osmand.binary;
+
+import java.util.Arrays;
+import java.util.Calendar;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteTypeRule;
+import net.osmand.util.OpeningHoursParser.BasicOpeningHourRule;
+import net.osmand.util.OpeningHoursParser.OpeningHours;
+import net.osmand.util.OpeningHoursParser.OpeningHoursRule;
+
+/**
+ * Conditional rules of the route region compiled for a day into the table of active condition per minute.
+ * Opening hours are evaluated only at start and end times of their rules, value at any time of the compiled
+ * day is taken from the table.
+ */
+class RouteConditionalCache {
+
+	private static final int DAY_MINUTES = 24 * 60;
+	private static final long MINUTE = 60 * 1000;
+	private static final int MAX_CACHED_DAYS = 3;
+
+	private final RouteRegion region;
+	private final Calendar calendar = Calendar.getInstance();
+	private final TLongObjectHashMap<CachedDay> days = new TLongObjectHashMap<CachedDay>();
+	private CachedDay lastDay;
+
+	private static class CachedDay {
+		long start;
+		long end;
+		// day without daylight saving change
+		boolean regular;
+		// rule id -> active condition + 1 per minute (one element if it doesn't depend on time of the day)
+		final TIntObjectHashMap<byte[]> rules = new TIntObjectHashMap<byte[]>();
+	}
+
+	RouteConditionalCache(RouteRegion region) {
+		this.region = region;
+	}
+
+	public synchronized int getConditionalValue(int ruleId, long time) {
+		RouteTypeRule rule = region.quickGetEncodingRule(ruleId);
+		if (rule == null || !rule.conditional()) {
+			return 0;
+		}
+		CachedDay day = getDay(time);
+		byte[] table = day.rules.get(ruleId);
+		if (table == null) {
+			table = compile(rule, day);
+			day.rules.put(ruleId, table);
+		}
+		int condition = table.length == 1 ? table[0] : table[getMinute(day, time)];
+		return condition == 0 ? 0 : rule.getConditionRuleId(condition - 1);
+	}
+
+	private CachedDay getDay(long time) {
+		if (lastDay != null && time >= lastDay.start && time < lastDay.end) {
+			return lastDay;
+		}
+		calendar.setTimeInMillis(time);
+		calendar.set(Calendar.HOUR_OF_DAY, 0);
+		calendar.set(Calendar.MINUTE, 0);
+		calendar.set(Calendar.SECOND, 0);
+		calendar.set(Calendar.MILLISECOND, 0);
+		long start = calendar.getTimeInMillis();
+		CachedDay day = days.get(start);
+		if (day == null) {
+			if (days.size() >= MAX_CACHED_DAYS) {
+				days.clear();
+			}
+			day = new CachedDay();
+			day.start = start;
+			calendar.add(Calendar.DAY_OF_MONTH, 1);
+			day.end = calendar.getTimeInMillis();
+			day.regular = day.end - day.start == DAY_MINUTES * MINUTE;
+			days.put(start, day);
+		}
+		lastDay = day;
+		return day;
+	}
+
+	private int getMinute(CachedDay day, long time) {
+		if (day.regular) {
+			return (int) ((time - day.start) / MINUTE);
+		}
+		calendar.setTimeInMillis(time);
+		return calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE);
+	}
+
+	private byte[] compile(RouteTypeRule rule, CachedDay day) {
+		// active conditions could change only around start and end times of opening hours
+		TIntArrayList bounds = new TIntArrayList();
+		bounds.add(0);
+		boolean exact = true;
+		for (int c = 0; c < rule.getConditionsCount(); c++) {
+			OpeningHours hours = rule.getConditionHours(c);
+			if (hours == null) {
+				continue;
+			}
+			for (OpeningHoursRule r : hours.getRules()) {
+				if (r instanceof BasicOpeningHourRule) {
+					addBounds(bounds, ((BasicOpeningHourRule) r).getStartTimes());
+					addBounds(bounds, ((BasicOpeningHourRule) r).getEndTimes());
+				} else {
+					exact = false;
+				}
+			}
+		}
+		if (!exact) {
+			bounds.clear();
+			for (int m = 0; m < DAY_MINUTES; m++) {
+				bounds.add(m);
+			}
+		}
+		bounds.sort();
+		byte[] table = new byte[DAY_MINUTES];
+		int prev = -1;
+		boolean constant = true;
+		for (int i = 0; i < bounds.size(); i++) {
+			int from = bounds.get(i);
+			if (from == prev) {
+				continue;
+			}
+			prev = from;
+			calendar.setTimeInMillis(day.start);
+			calendar.set(Calendar.HOUR_OF_DAY, from / 60);
+			calendar.set(Calendar.MINUTE, from % 60);
+			byte condition = (byte) (rule.getActiveCondition(calendar) + 1);
+			constant &= from == 0 || condition == table[0];
+			Arrays.fill(table, from, DAY_MINUTES, condition);
+		}
+		return constant ? new byte[] { table[0] } : table;
+	}
+
+	private static void addBounds(TIntArrayList bounds, TIntArrayList times) {
+		for (int i = 0; i < times.size(); i++) {
+			// end minute is inclusive, so state changes at the next minute as well
+			for (int t = times.get(i); t <= times.get(i) + 1; t++) {
+				int m = t % DAY_MINUTES;
+				bounds.add(m < 0 ? m + DAY_MINUTES : m);
+			}
+		}
+	}
+}
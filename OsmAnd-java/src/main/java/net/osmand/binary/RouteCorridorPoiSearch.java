@@ -0,0 +1,266 @@
+package net.osmand.binary;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+import net.osmand.Location;
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader.SearchPoiTypeFilter;
+import net.osmand.data.Amenity;
+import net.osmand.util.FlatEarthDistance;
+import net.osmand.util.MapUtils;
+
+/**
+ * Search of amenities along the route. Segments of the route are indexed by grid cells of size about search
+ * radius, so only poi data boxes intersecting corridor cells are read (by {@link PoiQueryService}) and every
+ * amenity is checked only against segments of its cell. Results are ordered by distance along the route.
+ */
+public class RouteCorridorPoiSearch {
+
+	private static final int MIN_CELL_ZOOM = 6;
+	private static final int MAX_CELL_ZOOM = 16;
+	// don't check cells of big boxes one by one
+	private static final int MAX_BOX_CELLS = 4096;
+
+	private final PoiQueryService service;
+	private final double radius;
+	private final double[] lats;
+	private final double[] lons;
+	// distance from start of route to every point
+	private final double[] distances;
+	private final int cellShift;
+	// cell x << 32 | cell y -> segments (index of start point) within radius of cell
+	private final TLongObjectHashMap<TIntArrayList> cells = new TLongObjectHashMap<TIntArrayList>();
+	private int left31 = Integer.MAX_VALUE;
+	private int right31 = Integer.MIN_VALUE;
+	private int top31 = Integer.MAX_VALUE;
+	private int bottom31 = Integer.MIN_VALUE;
+
+	public static class RoutePoi {
+		private final Amenity amenity;
+		private final double distanceAlongRoute;
+		private final double deviation;
+		private final int segment;
+		private final boolean rightSide;
+
+		RoutePoi(Amenity amenity, double distanceAlongRoute, double deviation, int segment, boolean rightSide) {
+			this.amenity = amenity;
+			this.distanceAlongRoute = distanceAlongRoute;
+			this.deviation = deviation;
+			this.segment = segment;
+			this.rightSide = rightSide;
+		}
+
+		public Amenity getAmenity() {
+			return amenity;
+		}
+
+		/**
+		 * @return distance in meters from the start of route to projection of amenity on route
+		 */
+		public double getDistanceAlongRoute() {
+			return distanceAlongRoute;
+		}
+
+		/**
+		 * @return straight distance in meters from route to amenity
+		 */
+		public double getDeviation() {
+			return deviation;
+		}
+
+		/**
+		 * @return estimated extra distance to visit amenity and return to route (there and back by straight line)
+		 */
+		public double getDetour() {
+			return 2 * deviation;
+		}
+
+		/**
+		 * @return index of start point of the nearest route segment
+		 */
+		public int getSegment() {
+			return segment;
+		}
+
+		public boolean isRightSide() {
+			return rightSide;
+		}
+	}
+
+	/**
+	 * @param radius max distance from route in meters
+	 */
+	public RouteCorridorPoiSearch(PoiQueryService service, List<Location> route, double radius) {
+		this.service = service;
+		this.radius = radius;
+		int size = route.size();
+		lats = new double[size];
+		lons = new double[size];
+		double maxLat = 0;
+		for (int i = 0; i < size; i++) {
+			lats[i] = route.get(i).getLatitude();
+			lons[i] = route.get(i).getLongitude();
+			maxLat = Math.max(maxLat, Math.abs(lats[i]));
+		}
+		distances = new double[size];
+		FlatEarthDistance.getCumulativeDistances(lats, lons, size, distances);
+		// cell is not smaller than radius at the latitude nearest to equator
+		double worldWidth = 360 * FlatEarthDistance.getMetersPerDegreeLongitude(maxLat);
+		int zoom = (int) Math.floor(Math.log(worldWidth / Math.max(radius, 1)) / Math.log(2));
+		cellShift = 31 - Math.max(MIN_CELL_ZOOM, Math.min(MAX_CELL_ZOOM, zoom));
+		for (int i = 1; i < size; i++) {
+			indexSegment(i - 1);
+		}
+	}
+
+	private void indexSegment(int s) {
+		double length = distances[s + 1] - distances[s];
+		double lat = Math.max(Math.abs(lats[s]), Math.abs(lats[s + 1]));
+		double cellWidth = 360 * FlatEarthDistance.getMetersPerDegreeLongitude(lat) / (1L << (31 - cellShift));
+		int expand = (int) Math.ceil(radius / cellWidth);
+		// samples not farther than cell from each other
+		int samples = (int) Math.ceil(length / cellWidth) + 1;
+		for (int k = 0; k <= samples; k++) {
+			double c = (double) k / samples;
+			int x = MapUtils.get31TileNumberX(lons[s] + (lons[s + 1] - lons[s]) * c);
+			int y = MapUtils.get31TileNumberY(lats[s] + (lats[s + 1] - lats[s]) * c);
+			int cx = x >>> cellShift;
+			int cy = y >>> cellShift;
+			for (int i = cx - expand; i <= cx + expand; i++) {
+				for (int j = cy - expand; j <= cy + expand; j++) {
+					long key = ((long) i << 32) | (j & 0xffffffffL);
+					TIntArrayList segments = cells.get(key);
+					if (segments == null) {
+						segments = new TIntArrayList(4);
+						cells.put(key, segments);
+						left31 = Math.min(left31, Math.max(0, i) << cellShift);
+						top31 = Math.min(top31, Math.max(0, j) << cellShift);
+						right31 = Math.max(right31, (int) Math.min(Integer.MAX_VALUE, ((long) i + 1 << cellShift) - 1));
+						bottom31 = Math.max(bottom31, (int) Math.min(Integer.MAX_VALUE, ((long) j + 1 << cellShift) - 1));
+					}
+					if (segments.isEmpty() || segments.get(segments.size() - 1) != s) {
+						segments.add(s);
+					}
+				}
+			}
+		}
+	}
+
+	public double getRouteLength() {
+		return distances.length == 0 ? 0 : distances[distances.length - 1];
+	}
+
+	public int getCellsCount() {
+		return cells.size();
+	}
+
+	/**
+	 * @return amenities within radius from route ordered by distance along route, amenity found in several
+	 * files is returned once
+	 */
+	public List<RoutePoi> search(List<BinaryMapIndexReader> files, SearchPoiTypeFilter filter,
+			final ResultMatcher<Amenity> matcher) throws IOException {
+		final List<RoutePoi> result = new ArrayList<RoutePoi>();
+		if (cells.isEmpty()) {
+			return result;
+		}
+		final TLongHashSet ids = new TLongHashSet();
+		PoiQueryService.BoxFilter corridor = new PoiQueryService.BoxFilter() {
+			@Override
+			public boolean accept(int left31, int right31, int top31, int bottom31) {
+				return intersectsCorridor(left31, right31, top31, bottom31);
+			}
+		};
+		ResultMatcher<Amenity> routeMatcher = new ResultMatcher<Amenity>() {
+			@Override
+			public boolean publish(Amenity a) {
+				RoutePoi p = locate(a);
+				if (p == null || ids.contains(a.getId()) || (matcher != null && !matcher.publish(a))) {
+					return false;
+				}
+				ids.add(a.getId());
+				result.add(p);
+				return true;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return matcher != null && matcher.isCancelled();
+			}
+		};
+		for (BinaryMapIndexReader reader : files) {
+			service.searchPoi(reader, left31, right31, top31, bottom31, corridor, filter, routeMatcher);
+			if (routeMatcher.isCancelled()) {
+				break;
+			}
+		}
+		Collections.sort(result, new Comparator<RoutePoi>() {
+			@Override
+			public int compare(RoutePoi o1, RoutePoi o2) {
+				return Double.compare(o1.distanceAlongRoute, o2.distanceAlongRoute);
+			}
+		});
+		return result;
+	}
+
+	boolean intersectsCorridor(int left31, int right31, int top31, int bottom31) {
+		int cl = left31 >>> cellShift;
+		int cr = right31 >>> cellShift;
+		int ct = top31 >>> cellShift;
+		int cb = bottom31 >>> cellShift;
+		if ((long) (cr - cl + 1) * (cb - ct + 1) > MAX_BOX_CELLS) {
+			return true;
+		}
+		for (int i = cl; i <= cr; i++) {
+			for (int j = ct; j <= cb; j++) {
+				if (cells.containsKey(((long) i << 32) | (j & 0xffffffffL))) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return position of amenity on route or null if it is farther than radius
+	 */
+	RoutePoi locate(Amenity a) {
+		double lat = a.getLocation().getLatitude();
+		double lon = a.getLocation().getLongitude();
+		long key = ((long) (MapUtils.get31TileNumberX(lon) >>> cellShift) << 32)
+				| ((MapUtils.get31TileNumberY(lat) >>> cellShift) & 0xffffffffL);
+		TIntArrayList segments = cells.get(key);
+		if (segments == null) {
+			return null;
+		}
+		FlatEarthDistance.LocalScale scale = new FlatEarthDistance.LocalScale(lat, lon);
+		int nearest = -1;
+		double nearestCoeff = 0;
+		double min = radius * radius;
+		for (int k = 0; k < segments.size(); k++) {
+			int s = segments.get(k);
+			double c = scale.getProjectionCoeff(lats[s], lons[s], lats[s + 1], lons[s + 1]);
+			double d = scale.getSquareDistance(lats[s] + (lats[s + 1] - lats[s]) * c,
+					lons[s] + (lons[s + 1] - lons[s]) * c);
+			if (d <= min) {
+				min = d;
+				nearest = s;
+				nearestCoeff = c;
+			}
+		}
+		if (nearest < 0) {
+			return null;
+		}
+		double along = distances[nearest] + (distances[nearest + 1] - distances[nearest]) * nearestCoeff;
+		boolean right = MapUtils.rightSide(lat, lon, lats[nearest], lons[nearest], lats[nearest + 1],
+				lons[nearest + 1]);
+		return new RoutePoi(a, along, Math.sqrt(min), nearest, right);
+	}
+}
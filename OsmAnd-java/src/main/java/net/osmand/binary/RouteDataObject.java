@@ -547,7 +547,7 @@ public class RouteDataObject {
 		for (int i = 0; i < sz; i++) {
 			RouteTypeRule r = region.quickGetEncodingRule(types[i]);
 			if (r != null && r.conditional()) {
-				int vl = r.conditionalValue(conditionalTime);
+				int vl = region.getConditionalValue(types[i], conditionalTime);
 				if (vl != 0) {
 					RouteTypeRule rtr = region.quickGetEncodingRule(vl);
 					String nonCondTag = rtr.getTag();
@@ -577,7 +577,7 @@ public class RouteDataObject {
 						for (int j = 0; j < pSz; j++) {
 							RouteTypeRule r = region.quickGetEncodingRule(pTypes[j]);
 							if (r != null && r.conditional()) {
-								int vl = r.conditionalValue(conditionalTime);
+								int vl = region.getConditionalValue(pTypes[j], conditionalTime);
 								if (vl != 0) {
 									RouteTypeRule rtr = region.quickGetEncodingRule(vl);
 									String nonCondTag = rtr.getTag();
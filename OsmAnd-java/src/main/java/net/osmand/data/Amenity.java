@@ -64,6 +64,28 @@ public class Amenity extends MapObject {
 	public Amenity() {
 	}
 
+	/**
+	 * @return shallow copy, names, additional info and geometry are shared with this amenity
+	 */
+	public Amenity copy() {
+		Amenity a = new Amenity();
+		a.name = name;
+		a.enName = enName;
+		a.names = names;
+		a.location = location;
+		a.fileOffset = fileOffset;
+		a.id = id;
+		a.setReferenceFile(getReferenceFile());
+		a.subType = subType;
+		a.type = type;
+		a.openingHours = openingHours;
+		a.additionalInfo = additionalInfo;
+		a.routePoint = routePoint;
+		a.x = x;
+		a.y = y;
+		return a;
+	}
+
 	public static class AmenityRoutePoint {
 		public double deviateDistance;
 		public boolean deviationDirectionRight;
@@ -0,0 +1,430 @@
+package net.osmand.map;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Platform independent store for encoded tile payloads (images, vector tiles) kept out of java heap.
+ * Tiles are addressed by primitive keys packed from (zoom, x, y), see {@link #getTileKey(int, int, int)}.
+ * Store is split into segments with own lock, index and byte region (direct buffer or memory mapped file),
+ * each region works as a ring log, so when it is full the oldest tiles of the segment are evicted.
+ * Lookups with {@link #read(long, byte[], int)} don't allocate.
+ */
+public class OffHeapTilesStore {
+
+	public static final int MAX_ZOOM = 29;
+
+	private static final int RECORD_HEADER_SIZE = 12;
+	private static final long EMPTY_KEY = -1;
+
+	private final Segment[] segments;
+	private final int segmentMask;
+	private final long capacity;
+	private RandomAccessFile mappedFile;
+
+	private OffHeapTilesStore(ByteBuffer[] regions, RandomAccessFile mappedFile) {
+		this.segments = new Segment[regions.length];
+		long cap = 0;
+		for (int i = 0; i < regions.length; i++) {
+			segments[i] = new Segment(regions[i]);
+			cap += regions[i].capacity();
+		}
+		this.segmentMask = regions.length - 1;
+		this.capacity = cap;
+		this.mappedFile = mappedFile;
+	}
+
+	/**
+	 * Creates store in direct (native) memory.
+	 * @param segmentsCount number of lock stripes, rounded up to power of 2
+	 */
+	public static OffHeapTilesStore allocateDirect(long capacityBytes, int segmentsCount) {
+		int cnt = getSegmentsCount(capacityBytes, segmentsCount);
+		ByteBuffer[] regions = new ByteBuffer[cnt];
+		int segmentSize = (int) (capacityBytes / cnt);
+		for (int i = 0; i < cnt; i++) {
+			regions[i] = ByteBuffer.allocateDirect(segmentSize);
+		}
+		return new OffHeapTilesStore(regions, null);
+	}
+
+	/**
+	 * Creates store backed by memory mapped file, so OS could page out tiles instead of keeping them in RAM.
+	 * File content is not reused between sessions (index is kept in memory), file is truncated on creation.
+	 */
+	public static OffHeapTilesStore mapFile(File file, long capacityBytes, int segmentsCount) throws IOException {
+		int cnt = getSegmentsCount(capacityBytes, segmentsCount);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			int segmentSize = (int) (capacityBytes / cnt);
+			raf.setLength(0);
+			raf.setLength((long) segmentSize * cnt);
+			ByteBuffer[] regions = new ByteBuffer[cnt];
+			FileChannel channel = raf.getChannel();
+			for (int i = 0; i < cnt; i++) {
+				regions[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) segmentSize * i, segmentSize);
+			}
+			return new OffHeapTilesStore(regions, raf);
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	private static int getSegmentsCount(long capacityBytes, int segmentsCount) {
+		int cnt = 1;
+		while (cnt < segmentsCount) {
+			cnt <<= 1;
+		}
+		if (capacityBytes / cnt > Integer.MAX_VALUE || capacityBytes / cnt < RECORD_HEADER_SIZE) {
+			throw new IllegalArgumentException("Wrong capacity " + capacityBytes + " for " + cnt + " segments");
+		}
+		return cnt;
+	}
+
+	public static long getTileKey(int zoom, int x, int y) {
+		if (zoom < 0 || zoom > MAX_ZOOM) {
+			throw new IllegalArgumentException("Unsupported zoom " + zoom);
+		}
+		return (((long) zoom) << 58) | (((long) x) << 29) | y;
+	}
+
+	public static int getZoom(long key) {
+		return (int) (key >>> 58);
+	}
+
+	public static int getTileX(long key) {
+		return (int) ((key >>> 29) & ((1 << 29) - 1));
+	}
+
+	public static int getTileY(long key) {
+		return (int) (key & ((1 << 29) - 1));
+	}
+
+	private Segment getSegment(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return segments[(int) (h >>> 40) & segmentMask];
+	}
+
+	/**
+	 * @return false if payload is bigger than segment region
+	 */
+	public boolean put(long key, byte[] data, int offset, int length) {
+		return getSegment(key).put(key, data, offset, length);
+	}
+
+	public boolean put(long key, byte[] data) {
+		return put(key, data, 0, data.length);
+	}
+
+	/**
+	 * Copies payload to the buffer.
+	 * @return payload length, -1 if tile is absent, or -(length + 2) if buffer is too small
+	 */
+	public int read(long key, byte[] buffer, int offset) {
+		return getSegment(key).read(key, buffer, offset);
+	}
+
+	public byte[] get(long key) {
+		return getSegment(key).get(key);
+	}
+
+	public boolean contains(long key) {
+		return getSegment(key).getLength(key) >= 0;
+	}
+
+	/**
+	 * @return payload length or -1 if tile is absent
+	 */
+	public int getLength(long key) {
+		return getSegment(key).getLength(key);
+	}
+
+	public boolean remove(long key) {
+		return getSegment(key).remove(key);
+	}
+
+	public void clear() {
+		for (Segment s : segments) {
+			s.clear();
+		}
+	}
+
+	public long getCapacity() {
+		return capacity;
+	}
+
+	public int getSegmentsCount() {
+		return segments.length;
+	}
+
+	public int size() {
+		int sz = 0;
+		for (Segment s : segments) {
+			sz += s.getCount();
+		}
+		return sz;
+	}
+
+	public long getUsedBytes() {
+		long sz = 0;
+		for (Segment s : segments) {
+			sz += s.getUsedBytes();
+		}
+		return sz;
+	}
+
+	public long getHits() {
+		long cnt = 0;
+		for (Segment s : segments) {
+			cnt += s.hits;
+		}
+		return cnt;
+	}
+
+	public long getMisses() {
+		long cnt = 0;
+		for (Segment s : segments) {
+			cnt += s.misses;
+		}
+		return cnt;
+	}
+
+	public long getEvictions() {
+		long cnt = 0;
+		for (Segment s : segments) {
+			cnt += s.evictions;
+		}
+		return cnt;
+	}
+
+	public void close() throws IOException {
+		clear();
+		if (mappedFile != null) {
+			mappedFile.close();
+			mappedFile = null;
+		}
+	}
+
+	/**
+	 * Open addressing index (key -> record offset) over ring log of records [key, length, payload].
+	 */
+	private static class Segment {
+		private final ByteBuffer region;
+		private final int regionSize;
+
+		private long[] keys;
+		private int[] offsets;
+		private int count;
+
+		// data is [head, tail) or [head, limit) + [0, tail) if wrapped
+		private int head;
+		private int tail;
+		private int limit;
+		private boolean wrapped;
+		private int records;
+		private long usedBytes;
+
+		volatile long hits;
+		volatile long misses;
+		volatile long evictions;
+
+		Segment(ByteBuffer region) {
+			this.region = region;
+			this.regionSize = region.capacity();
+			initIndex(16);
+		}
+
+		private void initIndex(int size) {
+			keys = new long[size];
+			offsets = new int[size];
+			Arrays.fill(keys, EMPTY_KEY);
+		}
+
+		private int indexOf(long key) {
+			int mask = keys.length - 1;
+			int i = hash(key) & mask;
+			while (keys[i] != EMPTY_KEY) {
+				if (keys[i] == key) {
+					return i;
+				}
+				i = (i + 1) & mask;
+			}
+			return -1;
+		}
+
+		private static int hash(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32));
+		}
+
+		synchronized boolean put(long key, byte[] data, int offset, int length) {
+			int need = RECORD_HEADER_SIZE + length;
+			if (need > regionSize) {
+				return false;
+			}
+			removeFromIndex(key);
+			int pos = allocate(need);
+			region.putLong(pos, key);
+			region.putInt(pos + 8, length);
+			region.position(pos + RECORD_HEADER_SIZE);
+			region.put(data, offset, length);
+			records++;
+			usedBytes += need;
+			addToIndex(key, pos);
+			return true;
+		}
+
+		synchronized int read(long key, byte[] buffer, int offset) {
+			int ind = indexOf(key);
+			if (ind < 0) {
+				misses++;
+				return -1;
+			}
+			hits++;
+			int pos = offsets[ind];
+			int length = region.getInt(pos + 8);
+			if (buffer.length - offset < length) {
+				return -(length + 2);
+			}
+			region.position(pos + RECORD_HEADER_SIZE);
+			region.get(buffer, offset, length);
+			return length;
+		}
+
+		synchronized byte[] get(long key) {
+			int length = getLength(key);
+			if (length < 0) {
+				misses++;
+				return null;
+			}
+			byte[] res = new byte[length];
+			read(key, res, 0);
+			return res;
+		}
+
+		synchronized int getLength(long key) {
+			int ind = indexOf(key);
+			return ind < 0 ? -1 : region.getInt(offsets[ind] + 8);
+		}
+
+		synchronized boolean remove(long key) {
+			// space is reclaimed when ring log reaches the record
+			return removeFromIndex(key);
+		}
+
+		synchronized void clear() {
+			initIndex(16);
+			count = 0;
+			head = tail = limit = 0;
+			wrapped = false;
+			records = 0;
+			usedBytes = 0;
+		}
+
+		synchronized int getCount() {
+			return count;
+		}
+
+		synchronized long getUsedBytes() {
+			return usedBytes;
+		}
+
+		private int allocate(int need) {
+			while (true) {
+				if (records == 0) {
+					head = tail = 0;
+					wrapped = false;
+				}
+				if (!wrapped) {
+					if (tail + need <= regionSize) {
+						break;
+					}
+					limit = tail;
+					tail = 0;
+					wrapped = true;
+				}
+				if (tail + need <= head) {
+					break;
+				}
+				evictHead();
+			}
+			int pos = tail;
+			tail += need;
+			return pos;
+		}
+
+		private void evictHead() {
+			long key = region.getLong(head);
+			int size = RECORD_HEADER_SIZE + region.getInt(head + 8);
+			int ind = indexOf(key);
+			if (ind >= 0 && offsets[ind] == head) {
+				deleteAt(ind);
+				evictions++;
+			}
+			records--;
+			usedBytes -= size;
+			head += size;
+			if (wrapped && head >= limit) {
+				head = 0;
+				wrapped = false;
+			}
+		}
+
+		private void addToIndex(long key, int pos) {
+			if ((count + 1) * 4 > keys.length * 3) {
+				long[] oldKeys = keys;
+				int[] oldOffsets = offsets;
+				initIndex(keys.length * 2);
+				for (int i = 0; i < oldKeys.length; i++) {
+					if (oldKeys[i] != EMPTY_KEY) {
+						insert(oldKeys[i], oldOffsets[i]);
+					}
+				}
+			}
+			insert(key, pos);
+			count++;
+		}
+
+		private void insert(long key, int pos) {
+			int mask = keys.length - 1;
+			int i = hash(key) & mask;
+			while (keys[i] != EMPTY_KEY) {
+				i = (i + 1) & mask;
+			}
+			keys[i] = key;
+			offsets[i] = pos;
+		}
+
+		private boolean removeFromIndex(long key) {
+			int ind = indexOf(key);
+			if (ind < 0) {
+				return false;
+			}
+			deleteAt(ind);
+			return true;
+		}
+
+		private void deleteAt(int ind) {
+			// backward shift deletion keeps probe sequences without tombstones
+			int mask = keys.length - 1;
+			int gap = ind;
+			int i = (ind + 1) & mask;
+			while (keys[i] != EMPTY_KEY) {
+				int home = hash(keys[i]) & mask;
+				if (((i - home) & mask) >= ((i - gap) & mask)) {
+					keys[gap] = keys[i];
+					offsets[gap] = offsets[i];
+					gap = i;
+				}
+				i = (i + 1) & mask;
+			}
+			keys[gap] = EMPTY_KEY;
+			count--;
+		}
+	}
+}
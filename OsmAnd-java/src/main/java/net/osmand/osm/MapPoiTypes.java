@@ -4,11 +4,13 @@ import net.osmand.PlatformUtil;
 import net.osmand.StringMatcher;
 import net.osmand.data.Amenity;
 import net.osmand.util.Algorithms;
+import net.osmand.util.XmlSnapshot;
 
 import org.apache.commons.logging.Log;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -46,6 +48,7 @@ public class MapPoiTypes {
 
 	private PoiTranslator poiTranslator = null;
 	private boolean init;
+	private File snapshotFile;
 	Map<String, PoiType> poiTypesByTag = new LinkedHashMap<String, PoiType>();
 	Map<String, String> deprecatedTags = new LinkedHashMap<String, String>();
 	Map<String, String> poiAdditionalCategoryIconNames = new LinkedHashMap<String, String>();
@@ -333,18 +336,27 @@ public class MapPoiTypes {
 		init(null);
 	}
 
+	/**
+	 * Binary snapshot of poi types xml to skip xml parsing on next init, recreated when xml changes.
+	 */
+	public void setSnapshotFile(File snapshotFile) {
+		this.snapshotFile = snapshotFile;
+	}
+
 	public void init(String resourceName) {
 		if (resourceName != null) {
 			this.resourceName = resourceName;
 		}
 		try {
-			InputStream is;
 			if (this.resourceName == null) {
-				is = MapPoiTypes.class.getResourceAsStream("poi_types.xml"); //$NON-NLS-1$
+				InputStream is = MapPoiTypes.class.getResourceAsStream("poi_types.xml"); //$NON-NLS-1$
+				initFromXml(is, null, snapshotFile);
+			} else if (snapshotFile != null) {
+				// xml isn't read while snapshot is current
+				initFromXml(null, new File(this.resourceName), snapshotFile);
 			} else {
-				is = new FileInputStream(this.resourceName);
+				initFromXml(new FileInputStream(this.resourceName), null, null);
 			}
-			initFromInputStream(is);
 
 		} catch (IOException e) {
 			log.error("Unexpected error", e); //$NON-NLS-1$
@@ -358,6 +370,14 @@ public class MapPoiTypes {
 	}
 
 	public void initFromInputStream(InputStream is) {
+		initFromInputStream(is, null);
+	}
+
+	public void initFromInputStream(InputStream is, File snapshotFile) {
+		initFromXml(is, null, snapshotFile);
+	}
+
+	private void initFromXml(InputStream is, File xmlFile, File snapshotFile) {
 		long time = System.currentTimeMillis();
 		List<PoiType> referenceTypes = new ArrayList<PoiType>();
 		final Map<String, PoiType> allTypes = new LinkedHashMap<String, PoiType>();
@@ -370,9 +390,9 @@ public class MapPoiTypes {
 
 		List<PoiCategory> categoriesList = new ArrayList<>();
 		try {
-			XmlPullParser parser = PlatformUtil.newXMLPullParser();
+			XmlPullParser parser = is != null ? XmlSnapshot.newParser(is, snapshotFile)
+					: XmlSnapshot.newParser(xmlFile, snapshotFile);
 			int tok;
-			parser.setInput(is, "UTF-8");
 			PoiCategory lastCategory = null;
 			Set<String> lastCategoryPoiAdditionalsCategories = new TreeSet<String>();
 			PoiFilter lastFilter = null;
@@ -503,7 +523,9 @@ public class MapPoiTypes {
 				}
 			}
 
-			is.close();
+			if (is != null) {
+				is.close();
+			}
 		} catch (IOException e) {
 			log.error("Unexpected error", e); //$NON-NLS-1$
 			e.printStackTrace();
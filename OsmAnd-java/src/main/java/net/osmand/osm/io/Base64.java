@@ -101,4 +101,55 @@ public class Base64 {
 		return new String(out);
 	}
 
+	/**
+	 * Decodes string produced by {@link #encode(byte[])}, whitespaces are ignored.
+	 * @throws IllegalArgumentException if string contains characters out of alphabet
+	 */
+	public static byte[] decode(final String s) {
+		byte[] out = new byte[s.length() / 4 * 3 + 3];
+		int outIndex = 0;
+		int bits24 = 0;
+		int count = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '=') {
+				break;
+			}
+			if (Character.isWhitespace(c)) {
+				continue;
+			}
+			int bits6 = c < 128 ? DECODE_TABLE[c] : -1;
+			if (bits6 < 0) {
+				throw new IllegalArgumentException("Illegal base64 character " + c);
+			}
+			bits24 = (bits24 << 6) | bits6;
+			if (++count == 4) {
+				out[outIndex++] = (byte) (bits24 >> 16);
+				out[outIndex++] = (byte) (bits24 >> 8);
+				out[outIndex++] = (byte) bits24;
+				bits24 = 0;
+				count = 0;
+			}
+		}
+		if (count == 3) {
+			out[outIndex++] = (byte) (bits24 >> 10);
+			out[outIndex++] = (byte) (bits24 >> 2);
+		} else if (count == 2) {
+			out[outIndex++] = (byte) (bits24 >> 4);
+		}
+		byte[] res = new byte[outIndex];
+		System.arraycopy(out, 0, res, 0, outIndex);
+		return res;
+	}
+
+	private static final int[] DECODE_TABLE = new int[128];
+	static {
+		for (int i = 0; i < DECODE_TABLE.length; i++) {
+			DECODE_TABLE[i] = -1;
+		}
+		for (int i = 0; i < alphabet.length; i++) {
+			DECODE_TABLE[alphabet[i]] = i;
+		}
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,537 @@
+package net.osmand.osm.io;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+
+import net.osmand.PlatformUtil;
+import net.osmand.util.Algorithms;
+
+/**
+ * Downloads file by byte ranges in several connections into {@code <target>.part}. Completed chunks with their CRC32
+ * are saved to {@code <target>.part.state}, so download continues after restart if the file on the server is the same
+ * (length and ETag / Last-Modified). Chunk is completed only when it is fully read and matches expected checksum
+ * (if checksums are known), and stream returned by {@link #start()} gives completed bytes in order, so file could be
+ * unzipped while the rest is downloaded.
+ */
+public class ParallelDownloader {
+
+	private static final Log log = PlatformUtil.getLog(ParallelDownloader.class);
+
+	public static final String PART_EXT = ".part";
+	public static final String STATE_EXT = ".part.state";
+	public static final long DEFAULT_CHUNK_SIZE = 4 << 20;
+	private static final int STATE_VERSION = 1;
+	private static final int BUFFER_SIZE = 32256;
+	private static final int TIMEOUT = 30000;
+
+	private final URL url;
+	private final File partFile;
+	private final File stateFile;
+	private int threads = 4;
+	private long chunkSize = DEFAULT_CHUNK_SIZE;
+	private int triesPerChunk = 5;
+	private long timeoutBetweenTries = 8000;
+	private String userAgent = "OsmAnd";
+	private long[] expectedChecksums;
+
+	private long length = -1;
+	private String validator;
+	private boolean[] completed;
+	private boolean[] taken;
+	private long[] checksums;
+	private int completedPrefix;
+	private IOException error;
+	private volatile boolean cancelled;
+	private final AtomicLong downloadedBytes = new AtomicLong();
+	private RandomAccessFile file;
+	private FileChannel channel;
+
+	public ParallelDownloader(URL url, File targetFile) {
+		this.url = url;
+		this.partFile = new File(targetFile.getParentFile(), targetFile.getName() + PART_EXT);
+		this.stateFile = new File(targetFile.getParentFile(), targetFile.getName() + STATE_EXT);
+	}
+
+	public ParallelDownloader setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+		return this;
+	}
+
+	public ParallelDownloader setChunkSize(long chunkSize) {
+		this.chunkSize = chunkSize;
+		return this;
+	}
+
+	public ParallelDownloader setTries(int triesPerChunk, long timeoutBetweenTries) {
+		this.triesPerChunk = Math.max(1, triesPerChunk);
+		this.timeoutBetweenTries = timeoutBetweenTries;
+		return this;
+	}
+
+	public ParallelDownloader setUserAgent(String userAgent) {
+		this.userAgent = userAgent;
+		return this;
+	}
+
+	/**
+	 * @param crc32 CRC32 of every chunk of the given size (last chunk could be shorter)
+	 */
+	public ParallelDownloader setExpectedChecksums(long chunkSize, long[] crc32) {
+		this.chunkSize = chunkSize;
+		this.expectedChecksums = crc32;
+		return this;
+	}
+
+	public File getPartFile() {
+		return partFile;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @return bytes received from the network by this downloader (without bytes restored from previous run)
+	 */
+	public long getDownloadedBytes() {
+		return downloadedBytes.get();
+	}
+
+	public synchronized boolean isCompleted() {
+		return completed != null && completedPrefix == completed.length;
+	}
+
+	/**
+	 * Checks that server supports ranges and restores completed chunks of previous run.
+	 * @return false if file couldn't be downloaded by ranges
+	 */
+	public boolean prepare() throws IOException {
+		HttpURLConnection conn = openConnection(url);
+		conn.setRequestProperty("Range", "bytes=0-0"); //$NON-NLS-1$ //$NON-NLS-2$
+		try {
+			int code = conn.getResponseCode();
+			if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+				throw new IOException("File not found "); //$NON-NLS-1$
+			}
+			long total = parseTotalLength(conn.getHeaderField("Content-Range")); //$NON-NLS-1$
+			if (code != HttpURLConnection.HTTP_PARTIAL || total <= 0) {
+				log.info("Ranges are not supported " + code + " " + url);
+				return false;
+			}
+			length = total;
+			validator = getValidator(conn);
+		} finally {
+			conn.disconnect();
+		}
+		int chunks = (int) ((length + chunkSize - 1) / chunkSize);
+		if (expectedChecksums != null && expectedChecksums.length != chunks) {
+			throw new IOException("Checksums don't match file length"); //$NON-NLS-1$
+		}
+		completed = new boolean[chunks];
+		taken = new boolean[chunks];
+		checksums = new long[chunks];
+		if (!loadState()) {
+			stateFile.delete();
+			for (int i = 0; i < chunks; i++) {
+				completed[i] = false;
+			}
+		}
+		updatePrefix();
+		return true;
+	}
+
+	/**
+	 * Starts workers and returns stream of completed bytes. Stream blocks until next chunk is completed and throws
+	 * exception if download fails. Closing stream stops download, files of not completed download are kept
+	 * to be continued.
+	 */
+	public InputStream start() throws IOException {
+		if (completed == null) {
+			throw new IllegalStateException("Download is not prepared"); //$NON-NLS-1$
+		}
+		partFile.getParentFile().mkdirs();
+		file = new RandomAccessFile(partFile, "rw"); //$NON-NLS-1$
+		file.setLength(length);
+		channel = file.getChannel();
+		int pending = 0;
+		for (boolean c : completed) {
+			if (!c) {
+				pending++;
+			}
+		}
+		if (pending > 0) {
+			// workers are never interrupted, interrupted thread closes file channel for all workers
+			ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, pending));
+			for (int t = 0; t < Math.min(threads, pending); t++) {
+				executor.submit(new ChunkWorker());
+			}
+			executor.shutdown();
+		}
+		return new ChunkedInputStream();
+	}
+
+	public synchronized void cancel() {
+		cancelled = true;
+		notifyAll();
+	}
+
+	protected HttpURLConnection openConnection(URL url) throws IOException {
+		HttpURLConnection conn = NetworkUtils.getHttpURLConnection(url);
+		conn.setRequestProperty("User-Agent", userAgent); //$NON-NLS-1$
+		conn.setConnectTimeout(TIMEOUT);
+		conn.setReadTimeout(TIMEOUT);
+		return conn;
+	}
+
+	/**
+	 * Called before every chunk is read, for example to check that wifi is still connected
+	 */
+	protected boolean isConnectionAllowed() {
+		return true;
+	}
+
+	private static long parseTotalLength(String contentRange) {
+		// bytes 0-0/12345
+		if (contentRange == null) {
+			return -1;
+		}
+		int i = contentRange.lastIndexOf('/');
+		if (i < 0) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(contentRange.substring(i + 1).trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static String getValidator(HttpURLConnection conn) {
+		String etag = conn.getHeaderField("ETag"); //$NON-NLS-1$
+		if (!Algorithms.isEmpty(etag)) {
+			return etag;
+		}
+		String lastModified = conn.getHeaderField("Last-Modified"); //$NON-NLS-1$
+		return lastModified == null ? "" : lastModified;
+	}
+
+	private boolean loadState() {
+		if (!stateFile.exists() || partFile.length() != length) {
+			return false;
+		}
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new FileInputStream(stateFile));
+			if (in.readInt() != STATE_VERSION || !in.readUTF().equals(url.toString()) || in.readLong() != length
+					|| !in.readUTF().equals(validator) || in.readLong() != chunkSize
+					|| in.readInt() != completed.length) {
+				return false;
+			}
+			for (int i = 0; i < completed.length; i++) {
+				completed[i] = in.readBoolean();
+				checksums[i] = in.readInt() & 0xffffffffL;
+			}
+		} catch (IOException e) {
+			log.warn("Download state is not read " + stateFile.getName() + ": " + e.getMessage());
+			return false;
+		} finally {
+			Algorithms.closeStream(in);
+		}
+		// part file could be changed or not flushed when state was saved
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(partFile, "r"); //$NON-NLS-1$
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int restored = 0;
+			for (int i = 0; i < completed.length; i++) {
+				if (completed[i]) {
+					long crc = readChecksum(raf, i, buffer);
+					completed[i] = crc == checksums[i] && (expectedChecksums == null || crc == expectedChecksums[i]);
+					restored += completed[i] ? 1 : 0;
+				}
+			}
+			log.info("Continue download " + partFile.getName() + " with " + restored + "/" + completed.length + " chunks");
+		} catch (IOException e) {
+			log.warn("Download part is not read " + partFile.getName() + ": " + e.getMessage());
+			return false;
+		} finally {
+			Algorithms.closeStream(raf);
+		}
+		return true;
+	}
+
+	private long readChecksum(RandomAccessFile raf, int chunk, byte[] buffer) throws IOException {
+		long start = chunk * chunkSize;
+		long end = Math.min(length, start + chunkSize);
+		CRC32 crc = new CRC32();
+		raf.seek(start);
+		while (start < end) {
+			int read = raf.read(buffer, 0, (int) Math.min(buffer.length, end - start));
+			if (read < 0) {
+				throw new IOException("Unexpected end of file"); //$NON-NLS-1$
+			}
+			crc.update(buffer, 0, read);
+			start += read;
+		}
+		return crc.getValue();
+	}
+
+	private synchronized void saveState() {
+		File tmp = new File(stateFile.getParentFile(), stateFile.getName() + ".tmp"); //$NON-NLS-1$
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new FileOutputStream(tmp));
+			out.writeInt(STATE_VERSION);
+			out.writeUTF(url.toString());
+			out.writeLong(length);
+			out.writeUTF(validator);
+			out.writeLong(chunkSize);
+			out.writeInt(completed.length);
+			for (int i = 0; i < completed.length; i++) {
+				out.writeBoolean(completed[i]);
+				out.writeInt((int) checksums[i]);
+			}
+			out.close();
+			out = null;
+			stateFile.delete();
+			if (!tmp.renameTo(stateFile)) {
+				log.warn("Download state is not saved " + stateFile.getName());
+			}
+		} catch (IOException e) {
+			log.warn("Download state is not saved " + stateFile.getName() + ": " + e.getMessage());
+		} finally {
+			Algorithms.closeStream(out);
+		}
+	}
+
+	private void updatePrefix() {
+		while (completedPrefix < completed.length && completed[completedPrefix]) {
+			completedPrefix++;
+		}
+	}
+
+	private synchronized int takeChunk() {
+		if (cancelled || error != null) {
+			return -1;
+		}
+		for (int i = completedPrefix; i < completed.length; i++) {
+			if (!completed[i] && !taken[i]) {
+				taken[i] = true;
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private synchronized void chunkCompleted(int chunk, long crc) {
+		completed[chunk] = true;
+		checksums[chunk] = crc;
+		updatePrefix();
+		saveState();
+		notifyAll();
+	}
+
+	private synchronized void fail(IOException e) {
+		if (error == null) {
+			error = e;
+		}
+		notifyAll();
+	}
+
+	private synchronized long waitAvailable(long position) throws IOException {
+		while (true) {
+			long available = Math.min(length, completedPrefix * chunkSize);
+			if (available > position) {
+				return available;
+			}
+			if (cancelled) {
+				throw new IOException("Interrupted"); //$NON-NLS-1$
+			}
+			if (error != null) {
+				throw new IOException(error.getMessage(), error);
+			}
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				cancelled = true;
+				throw new IOException("Interrupted"); //$NON-NLS-1$
+			}
+		}
+	}
+
+	private void finish() {
+		cancel();
+		try {
+			file.close();
+		} catch (IOException e) {
+			log.warn(e.getMessage());
+		}
+		// zip stream doesn't read till the end, so completed download is removed even if it wasn't fully read
+		if (isCompleted()) {
+			partFile.delete();
+			stateFile.delete();
+		}
+	}
+
+	private void downloadChunk(int chunk, byte[] buffer) throws IOException {
+		long start = chunk * chunkSize;
+		long end = Math.min(length, start + chunkSize);
+		IOException last = null;
+		for (int t = 0; t < triesPerChunk; t++) {
+			if (t > 0 && timeoutBetweenTries > 0) {
+				try {
+					Thread.sleep(timeoutBetweenTries);
+				} catch (InterruptedException e) {
+					throw new IOException("Interrupted"); //$NON-NLS-1$
+				}
+			}
+			if (cancelled) {
+				throw new IOException("Interrupted"); //$NON-NLS-1$
+			}
+			try {
+				long crc = readRange(start, end, buffer);
+				if (expectedChecksums != null && crc != expectedChecksums[chunk]) {
+					throw new IOException("Checksum mismatch of chunk " + chunk); //$NON-NLS-1$
+				}
+				chunkCompleted(chunk, crc);
+				return;
+			} catch (IOException e) {
+				if (cancelled) {
+					throw new IOException("Interrupted"); //$NON-NLS-1$
+				}
+				log.warn("Chunk " + chunk + " of " + partFile.getName() + " failed: " + e.getMessage());
+				last = e;
+			}
+		}
+		throw last;
+	}
+
+	private long readRange(long start, long end, byte[] buffer) throws IOException {
+		if (!isConnectionAllowed()) {
+			throw new IOException("Connection is not allowed"); //$NON-NLS-1$
+		}
+		HttpURLConnection conn = openConnection(url);
+		conn.setRequestProperty("Range", "bytes=" + start + "-" + (end - 1)); //$NON-NLS-1$ //$NON-NLS-2$
+		try {
+			int code = conn.getResponseCode();
+			if (code != HttpURLConnection.HTTP_PARTIAL) {
+				throw new IOException("Unexpected response " + code + " " + conn.getResponseMessage()); //$NON-NLS-1$
+			}
+			String range = conn.getHeaderField("Content-Range"); //$NON-NLS-1$
+			if (range == null || !range.equals("bytes " + start + "-" + (end - 1) + "/" + length)) { //$NON-NLS-1$
+				throw new IOException("Unexpected range " + range); //$NON-NLS-1$
+			}
+			if (!getValidator(conn).equals(validator)) {
+				throw new IOException("File was changed on server"); //$NON-NLS-1$
+			}
+			CRC32 crc = new CRC32();
+			InputStream is = conn.getInputStream();
+			long pos = start;
+			int read;
+			while (pos < end && (read = is.read(buffer, 0, (int) Math.min(buffer.length, end - pos))) != -1) {
+				crc.update(buffer, 0, read);
+				ByteBuffer bb = ByteBuffer.wrap(buffer, 0, read);
+				while (bb.hasRemaining()) {
+					pos += channel.write(bb, pos);
+				}
+				downloadedBytes.addAndGet(read);
+				if (cancelled) {
+					throw new IOException("Interrupted"); //$NON-NLS-1$
+				}
+			}
+			is.close();
+			if (pos != end) {
+				throw new IOException("Chunk was not fully read"); //$NON-NLS-1$
+			}
+			return crc.getValue();
+		} finally {
+			conn.disconnect();
+		}
+	}
+
+	private class ChunkWorker implements Runnable {
+
+		@Override
+		public void run() {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int chunk;
+			while ((chunk = takeChunk()) >= 0) {
+				try {
+					downloadChunk(chunk, buffer);
+				} catch (IOException e) {
+					fail(e);
+					return;
+				} catch (RuntimeException e) {
+					log.error("Error downloading " + partFile.getName(), e);
+					fail(new IOException(e.getMessage()));
+					return;
+				}
+			}
+		}
+	}
+
+	private class ChunkedInputStream extends InputStream {
+
+		private final RandomAccessFile in;
+		private long position;
+		private boolean closed;
+
+		ChunkedInputStream() throws IOException {
+			// own file pointer, so reading thread could be interrupted without closing workers channel
+			in = new RandomAccessFile(partFile, "r"); //$NON-NLS-1$
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (position >= length) {
+				return -1;
+			}
+			long available = waitAvailable(position);
+			int read = in.read(b, off, (int) Math.min(len, available - position));
+			if (read > 0) {
+				position += read;
+			}
+			return read;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			int read = read(b, 0, 1);
+			return read <= 0 ? -1 : (b[0] & 0xff);
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int) Math.min(Integer.MAX_VALUE, length - position);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				in.close();
+				finish();
+			}
+		}
+	}
+}
@@ -2,6 +2,7 @@ package net.osmand.render;
 
 import gnu.trove.map.hash.TIntObjectHashMap;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -18,6 +19,7 @@ import java.util.Stack;
 
 import net.osmand.PlatformUtil;
 import net.osmand.util.Algorithms;
+import net.osmand.util.XmlSnapshot;
 
 import org.apache.commons.logging.Log;
 import org.xmlpull.v1.XmlPullParser;
@@ -100,9 +102,24 @@ public class RenderingRulesStorage {
 	
 	public void parseRulesFromXmlInputStream(InputStream is, RenderingRulesStorageResolver resolver) throws XmlPullParserException,
 			IOException {
-		XmlPullParser parser = PlatformUtil.newXMLPullParser();
+		parseRulesFromXmlInputStream(is, resolver, null);
+	}
+
+	/**
+	 * @param snapshotFile binary snapshot of style xml to skip xml parsing next time, recreated when xml changes
+	 */
+	public void parseRulesFromXmlInputStream(InputStream is, RenderingRulesStorageResolver resolver, File snapshotFile)
+			throws XmlPullParserException, IOException {
+		parseRulesFromXmlParser(XmlSnapshot.newParser(is, snapshotFile), resolver);
+	}
+
+	/**
+	 * @param parser parser with input set, e.g. replaying {@link XmlSnapshot}
+	 */
+	public void parseRulesFromXmlParser(XmlPullParser parser, RenderingRulesStorageResolver resolver)
+			throws XmlPullParserException, IOException {
 		RenderingRulesHandler handler = new RenderingRulesHandler(parser, resolver);
-		handler.parse(is);
+		handler.parse();
 		RenderingRulesStorage depends = handler.getDependsStorage();
 		if (depends != null) {
 			// merge results
@@ -227,10 +244,9 @@ public class RenderingRulesStorage {
 			this.resolver = resolver;
 		}
 		
-		public void parse(InputStream is) throws XmlPullParserException, IOException {
+		public void parse() throws XmlPullParserException, IOException {
 			XmlPullParser parser = this.parser;
 			Map<String, String> attrsMap = new LinkedHashMap<String, String>();
-			parser.setInput(is, "UTF-8");
 			int tok;
 			XmlTreeSequence currentSeqElement = null;
 			while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT) {
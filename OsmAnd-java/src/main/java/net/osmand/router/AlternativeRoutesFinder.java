@@ -0,0 +1,269 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+
+import gnu.trove.iterator.TLongIterator;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+import net.osmand.PlatformUtil;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.AlternativeSearchTrees;
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+/**
+ * Alternative routes by via-node method: every meeting point of forward and reverse search trees
+ * (collected by {@link BinaryRoutePlanner} when search continues after main route is found) defines a candidate.
+ * Candidates are evaluated in parallel (search trees are read only at this stage) by stretch, overlap with main route
+ * and local optimality around meeting point, then the cheapest not overlapping ones are prepared as main route.
+ */
+public class AlternativeRoutesFinder {
+
+	private static final Log log = PlatformUtil.getLog(AlternativeRoutesFinder.class);
+
+	// alternative could be more expensive than main route by
+	public static final float MAX_STRETCH = 0.25f;
+	// search continues after main route is found for this part of already visited segments
+	public static final float MAX_EXTRA_VISITED = 0.5f;
+	// part of alternative which could be shared with main route or another alternative
+	public static final float MAX_OVERLAP = 0.7f;
+	// part of main route cost around meeting point which should be locally optimal
+	public static final float LOCAL_OPTIMALITY = 0.2f;
+	// allowed difference with search trees costs (part of locally optimal cost)
+	public static final float LOCAL_OPTIMALITY_TOLERANCE = 0.1f;
+
+	private static final int MAX_CANDIDATES = 64;
+
+	private static class Candidate {
+		final FinalRouteSegment meetingPoint;
+		final TLongHashSet pieces = new TLongHashSet();
+		float length;
+		float mainOverlap;
+		boolean locallyOptimal;
+
+		Candidate(FinalRouteSegment meetingPoint) {
+			this.meetingPoint = meetingPoint;
+		}
+	}
+
+	/**
+	 * Prepares alternatives using search trees stored in context by last search and releases them.
+	 * @param mainRoute prepared main route
+	 */
+	List<List<RouteSegmentResult>> findAlternatives(RoutingContext ctx, List<RouteSegmentResult> mainRoute)
+			throws IOException, InterruptedException {
+		AlternativeSearchTrees trees = ctx.alternativeSearchTrees;
+		ctx.alternativeSearchTrees = null;
+		List<List<RouteSegmentResult>> result = new ArrayList<List<RouteSegmentResult>>();
+		if (trees == null || ctx.config.alternativeRoutes <= 0 || mainRoute.isEmpty()) {
+			return result;
+		}
+		List<FinalRouteSegment> accepted = selectAlternatives(trees, mainRoute, ctx.config.alternativeRoutes,
+				ctx.config.alternativeThreads);
+		// preparation loads roads and isn't thread safe
+		float routingTime = ctx.routingTime;
+		RouteResultPreparation preparation = new RouteResultPreparation();
+		for (FinalRouteSegment mp : accepted) {
+			result.add(preparation.prepareResult(ctx, mp));
+		}
+		ctx.routingTime = routingTime;
+		if (RoutingContext.SHOW_GC_SIZE || log.isDebugEnabled()) {
+			log.info("Alternative routes " + result.size() + " (meeting points " + trees.meetingPoints.size() + ")");
+		}
+		return result;
+	}
+
+	/**
+	 * @return meeting points of admissible alternatives, cheapest first
+	 */
+	List<FinalRouteSegment> selectAlternatives(AlternativeSearchTrees trees, List<RouteSegmentResult> mainRoute,
+			int maxCount, int threads) throws InterruptedException {
+		List<FinalRouteSegment> result = new ArrayList<FinalRouteSegment>();
+		float mainCost = trees.finalSegment.distanceFromStart;
+		TLongHashSet mainPieces = new TLongHashSet();
+		float mainLength = collectPieces(mainRoute, mainPieces);
+		// meeting points of both search directions are collected alternately
+		List<FinalRouteSegment> meetingPoints = new ArrayList<FinalRouteSegment>(trees.meetingPoints);
+		Collections.sort(meetingPoints, new Comparator<FinalRouteSegment>() {
+			@Override
+			public int compare(FinalRouteSegment o1, FinalRouteSegment o2) {
+				return Float.compare(o1.distanceFromStart, o2.distanceFromStart);
+			}
+		});
+		List<Candidate> candidates = new ArrayList<Candidate>();
+		for (FinalRouteSegment mp : meetingPoints) {
+			if (candidates.size() >= MAX_CANDIDATES || mp.distanceFromStart > mainCost * (1 + MAX_STRETCH)) {
+				break;
+			}
+			// meeting points on main route give main route again
+			int ind = Math.min(mp.getSegmentStart(), mp.getRoad().getPointsLength() - 2);
+			if (ind >= 0 && !mainPieces.contains(getPieceId(mp.getRoad(), ind))) {
+				candidates.add(new Candidate(mp));
+			}
+		}
+		if (candidates.isEmpty()) {
+			return result;
+		}
+		evaluateCandidates(threads, trees, candidates, mainPieces, mainCost);
+		List<Candidate> accepted = new ArrayList<Candidate>();
+		for (Candidate c : candidates) {
+			if (accepted.size() >= maxCount) {
+				break;
+			}
+			if (!c.locallyOptimal || c.mainOverlap > MAX_OVERLAP || c.length == 0
+					|| c.length > mainLength * (1 + 2 * MAX_STRETCH)) {
+				continue;
+			}
+			boolean overlaps = false;
+			for (Candidate a : accepted) {
+				if (getOverlap(c, a.pieces) > MAX_OVERLAP) {
+					overlaps = true;
+					break;
+				}
+			}
+			if (!overlaps) {
+				accepted.add(c);
+				result.add(c.meetingPoint);
+			}
+		}
+		return result;
+	}
+
+	private void evaluateCandidates(int threads, final AlternativeSearchTrees trees, List<Candidate> candidates,
+			final TLongHashSet mainPieces, final float mainCost) throws InterruptedException {
+		threads = Math.min(threads, candidates.size());
+		if (threads <= 1) {
+			for (Candidate c : candidates) {
+				evaluate(c, trees, mainPieces, mainCost);
+			}
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (final Candidate c : candidates) {
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						evaluate(c, trees, mainPieces, mainCost);
+					}
+				}));
+			}
+			for (Future<?> f : futures) {
+				f.get();
+			}
+		} catch (ExecutionException e) {
+			log.error("Error evaluating alternative routes", e.getCause());
+			for (Candidate c : candidates) {
+				c.locallyOptimal = false;
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void evaluate(Candidate c, AlternativeSearchTrees trees, TLongHashSet mainPieces, float mainCost) {
+		FinalRouteSegment mp = c.meetingPoint;
+		c.length = collectPieces(mp, mp.getSegmentStart(), c.pieces)
+				+ collectPieces(mp.opposite, mp.getSegmentStart(), c.pieces);
+		c.mainOverlap = getOverlap(c, mainPieces);
+		RouteSegment forward = mp.reverseWaySearch ? mp.opposite : mp.getParentRoute();
+		RouteSegment reverse = mp.reverseWaySearch ? mp.getParentRoute() : mp.opposite;
+		float window = LOCAL_OPTIMALITY * mainCost;
+		float tolerance = LOCAL_OPTIMALITY_TOLERANCE * window;
+		c.locallyOptimal = isShortestInTree(forward, mp.distanceFromStart, trees.visitedOppositeSegments, window, tolerance)
+				&& isShortestInTree(reverse, mp.distanceFromStart, trees.visitedDirectSegments, window, tolerance);
+	}
+
+	/**
+	 * Checks that opposite search tree doesn't reach points of the chain (within window from meeting point)
+	 * cheaper than candidate does, otherwise candidate makes a detour around meeting point.
+	 */
+	private static boolean isShortestInTree(RouteSegment chain, float totalCost,
+			TLongObjectHashMap<RouteSegment> oppositeTree, float window, float tolerance) {
+		if (chain == null) {
+			return true;
+		}
+		float meetingCost = chain.distanceFromStart;
+		RouteSegment s = chain;
+		while (s != null && meetingCost - s.distanceFromStart <= window) {
+			RouteDataObject road = s.getRoad();
+			int ind = s.isPositive() ? s.getSegmentStart() : s.getSegmentStart() - 1;
+			if (ind >= 0 && ind < road.getPointsLength() - 1) {
+				RouteSegment opp = oppositeTree.get(getPointId(road, ind, !s.isPositive()));
+				if (opp != null && opp.distanceFromStart + tolerance < totalCost - s.distanceFromStart) {
+					return false;
+				}
+			}
+			s = s.getParentRoute();
+		}
+		return true;
+	}
+
+	/**
+	 * @return part of candidate road pieces (segments between 2 points) contained in pieces
+	 */
+	private static float getOverlap(Candidate c, TLongHashSet pieces) {
+		if (c.pieces.isEmpty()) {
+			return 0;
+		}
+		int shared = 0;
+		TLongIterator it = c.pieces.iterator();
+		while (it.hasNext()) {
+			if (pieces.contains(it.next())) {
+				shared++;
+			}
+		}
+		return shared / (float) c.pieces.size();
+	}
+
+	private static float collectPieces(List<RouteSegmentResult> route, TLongHashSet pieces) {
+		float length = 0;
+		for (RouteSegmentResult r : route) {
+			length += collectPieces(r.getObject(), r.getStartPointIndex(), r.getEndPointIndex(), pieces);
+		}
+		return length;
+	}
+
+	private static float collectPieces(RouteSegment segment, int end, TLongHashSet pieces) {
+		float length = 0;
+		while (segment != null) {
+			length += collectPieces(segment.getRoad(), segment.getSegmentStart(), end, pieces);
+			end = segment.getParentSegmentEnd();
+			segment = segment.getParentRoute();
+		}
+		return length;
+	}
+
+	private static float collectPieces(RouteDataObject road, int start, int end, TLongHashSet pieces) {
+		float length = 0;
+		int to = Math.min(Math.max(start, end), road.getPointsLength() - 1);
+		for (int i = Math.min(start, end); i < to; i++) {
+			if (pieces.add(getPieceId(road, i))) {
+				length += BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(i), road.getPoint31YTile(i),
+						road.getPoint31XTile(i + 1), road.getPoint31YTile(i + 1));
+			}
+		}
+		return length;
+	}
+
+	// direction independent
+	private static long getPieceId(RouteDataObject road, int ind) {
+		return (road.getId() << BinaryRoutePlanner.ROUTE_POINTS) + (ind << 1);
+	}
+
+	// same as visited segments key of BinaryRoutePlanner
+	private static long getPointId(RouteDataObject road, int ind, boolean positive) {
+		return (road.getId() << BinaryRoutePlanner.ROUTE_POINTS) + (ind << 1) + (positive ? 1 : 0);
+	}
+}
@@ -1,18 +1,21 @@
 package net.osmand.router;
 
+import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.hash.TLongObjectHashMap;
 
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.PriorityQueue;
 
 import net.osmand.PlatformUtil;
 import net.osmand.binary.RouteDataObject;
 import net.osmand.data.LatLon;
 import net.osmand.osm.MapRenderingTypes;
+import net.osmand.util.IndexedHeap;
 import net.osmand.util.MapUtils;
 
 import org.apache.commons.logging.Log;
@@ -28,7 +31,7 @@ public class BinaryRoutePlanner {
 
 	protected static final Log log = PlatformUtil.getLog(BinaryRoutePlanner.class);
 
-	private static final int ROUTE_POINTS = 11;
+	static final int ROUTE_POINTS = 11;
 	private static final boolean TRACE_ROUTING = false;
 
 
@@ -38,19 +41,6 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private static class SegmentsComparator implements Comparator<RouteSegment> {
-		final RoutingContext ctx;
-
-		public SegmentsComparator(RoutingContext ctx) {
-			this.ctx = ctx;
-		}
-
-		@Override
-		public int compare(RouteSegment o1, RouteSegment o2) {
-			return ctx.roadPriorityComparator(o1.distanceFromStart, o1.distanceToEnd, o2.distanceFromStart, o2.distanceToEnd);
-		}
-	}
-
 	private static class NonHeuristicSegmentsComparator implements Comparator<RouteSegment> {
 		public NonHeuristicSegmentsComparator() {
 		}
@@ -72,26 +62,265 @@ public class BinaryRoutePlanner {
 
 		// Initializing priority queue to visit way segments 
 		Comparator<RouteSegment> nonHeuristicSegmentsComparator = new NonHeuristicSegmentsComparator();
-		PriorityQueue<RouteSegment> graphDirectSegments = new PriorityQueue<RouteSegment>(50, new SegmentsComparator(ctx));
-		PriorityQueue<RouteSegment> graphReverseSegments = new PriorityQueue<RouteSegment>(50, new SegmentsComparator(ctx));
+		// segments are keyed by route point id, so cheaper path updates queued segment instead of adding duplicate
+		if (ctx.directSearchQueue == null) {
+			ctx.directSearchQueue = new IndexedHeap<RouteSegment>();
+			ctx.reverseSearchQueue = new IndexedHeap<RouteSegment>();
+		}
+		IndexedHeap<RouteSegment> graphDirectSegments = ctx.directSearchQueue;
+		IndexedHeap<RouteSegment> graphReverseSegments = ctx.reverseSearchQueue;
+		graphDirectSegments.clear();
+		graphReverseSegments.clear();
 
 		// Set to not visit one segment twice (stores road.id << X + segmentStart)
 		TLongObjectHashMap<RouteSegment> visitedDirectSegments = new TLongObjectHashMap<RouteSegment>();
-		TLongObjectHashMap<RouteSegment> visitedOppositeSegments = new TLongObjectHashMap<RouteSegment>();
+		TLongObjectHashMap<RouteSegment> visitedOppositeSegments;
+		// incremental recalculation: only forward search till it joins reverse tree of previous calculation
+		boolean joinReverseTree = recalculationEnd == null && ctx.canJoinReverseSearchTree(end);
+		if (joinReverseTree) {
+			visitedOppositeSegments = ctx.reverseSearchTree.visitedSegments;
+		} else {
+			visitedOppositeSegments = new TLongObjectHashMap<RouteSegment>();
+		}
+
+		if (ctx.nativeLib == null && ctx.config.prefetchThreads > 0) {
+			ctx.prefetcher = new RoutingTilesPrefetcher(ctx, ctx.config.prefetchThreads);
+		}
+		// alternatives need both search trees
+		List<FinalRouteSegment> alternatives = null;
+		if (ctx.calculateAlternatives && !joinReverseTree && recalculationEnd == null
+				&& ctx.precalculatedRouteDirection == null && ctx.planRouteIn2Directions()) {
+			alternatives = new ArrayList<FinalRouteSegment>();
+		}
+		ctx.alternativeSearchTrees = null;
+		try {
+			FinalRouteSegment finalSegment = processSearchQueues(ctx, start, end, recalculationEnd, joinReverseTree,
+					nonHeuristicSegmentsComparator, graphDirectSegments, graphReverseSegments, visitedDirectSegments,
+					visitedOppositeSegments, alternatives);
+			if (finalSegment != null && alternatives != null) {
+				ctx.alternativeSearchTrees = new AlternativeSearchTrees(finalSegment, alternatives,
+						visitedDirectSegments, visitedOppositeSegments);
+			}
+			if (!ctx.keepReverseSearchTree) {
+				ctx.reverseSearchTree = null;
+			} else if (finalSegment != null && !joinReverseTree && recalculationEnd == null) {
+				ctx.reverseSearchTree = new ReverseSearchTree(visitedOppositeSegments, end);
+			}
+			return finalSegment;
+		} finally {
+			if (ctx.prefetcher != null) {
+				ctx.prefetcher.shutdown();
+				ctx.prefetcher = null;
+			}
+			// don't keep search segments till next search
+			graphDirectSegments.clear();
+			graphReverseSegments.clear();
+		}
+	}
+
+	/**
+	 * Calculates costs (time in seconds) from start to all targets by one forward search without heuristic,
+	 * search stops when all targets are reached. Search state is kept in {@link RouteSearchLabels} of context,
+	 * nodes are road points, so target is reached at the nearest point of its road segment.
+	 * @param targets null targets are skipped
+	 * @return cost for every target or -1 if target is not reached
+	 */
+	float[] searchRouteOneToMany(final RoutingContext ctx, RouteSegmentPoint start, List<RouteSegmentPoint> targets)
+			throws InterruptedException {
+		float[] costs = new float[targets.size()];
+		Arrays.fill(costs, -1);
+		// road id and point -> indexes of targets
+		TLongObjectHashMap<TIntArrayList> targetPoints = new TLongObjectHashMap<TIntArrayList>();
+		int notReached = 0;
+		for (int i = 0; i < targets.size(); i++) {
+			RouteSegmentPoint target = targets.get(i);
+			if (target != null) {
+				notReached++;
+				int end = Math.max(1, target.getSegmentStart());
+				addTargetPoint(targetPoints, calculateRoutePointId(target.getRoad(), end - 1, false), i);
+				addTargetPoint(targetPoints, calculateRoutePointId(target.getRoad(), end, false), i);
+			}
+		}
+		if (ctx.searchLabels == null) {
+			ctx.searchLabels = new RouteSearchLabels();
+			ctx.labelsQueue = new IndexedHeap<RouteDataObject>();
+		}
+		RouteSearchLabels labels = ctx.searchLabels;
+		IndexedHeap<RouteDataObject> queue = ctx.labelsQueue;
+		labels.clear();
+		queue.clear();
+		try {
+			int startPoint = Math.max(1, start.getSegmentStart());
+			int oneway = ctx.getRouter().isOneWay(start.getRoad());
+			if (oneway >= 0) {
+				relaxLabel(labels, queue, start.getRoad(), startPoint - 1, true, 0, RouteSearchLabels.NO_PARENT);
+			}
+			if (oneway <= 0) {
+				relaxLabel(labels, queue, start.getRoad(), startPoint, false, 0, RouteSearchLabels.NO_PARENT);
+			}
+			SpeedProfileCache speedProfiles = ctx.getSpeedProfileCache();
+			while (notReached > 0 && !queue.isEmpty()) {
+				int slot = (int) queue.peekKey();
+				queue.poll();
+				labels.settle(slot);
+				TIntArrayList reached = targetPoints.get(labels.getId(slot) & ~1L);
+				for (int k = 0; reached != null && k < reached.size(); k++) {
+					if (costs[reached.get(k)] < 0) {
+						costs[reached.get(k)] = labels.getCost(slot);
+						notReached--;
+					}
+				}
+				ctx.memoryOverhead = labels.size() * RouteSearchLabels.LABEL_SIZE
+						+ queue.size() * STANDARD_ROAD_IN_QUEUE_OVERHEAD;
+				if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95) {
+					// not reached targets stay -1
+					break;
+				}
+				if (ctx.calculationProgress != null) {
+					ctx.calculationProgress.visitedSegments++;
+				}
+				processLabel(ctx, labels, queue, slot, speedProfiles);
+				if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+					throw new InterruptedException("Route calculation interrupted");
+				}
+			}
+		} finally {
+			queue.clear();
+		}
+		return costs;
+	}
+
+	private static void addTargetPoint(TLongObjectHashMap<TIntArrayList> targetPoints, long id, int target) {
+		TIntArrayList indexes = targetPoints.get(id);
+		if (indexes == null) {
+			indexes = new TIntArrayList(1);
+			targetPoints.put(id, indexes);
+		}
+		if (!indexes.contains(target)) {
+			indexes.add(target);
+		}
+	}
+
+	// moves to the next point of the road and turns to other roads in the point
+	private void processLabel(RoutingContext ctx, RouteSearchLabels labels, IndexedHeap<RouteDataObject> queue,
+			int slot, SpeedProfileCache speedProfiles) {
+		RouteDataObject road = labels.getRoad(slot);
+		int point = labels.getPoint(slot);
+		boolean positive = labels.isPositive(slot);
+		float cost = labels.getCost(slot);
+		int parent = labels.getParent(slot);
+		int next = positive ? point + 1 : point - 1;
+		if (next >= 0 && next < road.getPointsLength()) {
+			double obstacle = ctx.getRouter().defineRoutingObstacle(road, next, positive);
+			double heightObstacle = obstacle < 0 ? 0 : ctx.getRouter().defineHeightObstacle(road, (short) point, (short) next);
+			if (obstacle >= 0 && heightObstacle >= 0) {
+				float dist = (float) squareRootDist(road.getPoint31XTile(point), road.getPoint31YTile(point),
+						road.getPoint31XTile(next), road.getPoint31YTile(next));
+				float time;
+				if (speedProfiles != null) {
+					RouteSegment segment = new RouteSegment(road, point);
+					segment.distanceFromStart = cost;
+					time = (float) (obstacle + heightObstacle)
+							+ calculateProfileTime(ctx, speedProfiles, segment, Math.min(point, next), positive, dist, 0);
+				} else {
+					time = calculateTimeWithObstacles(ctx, road, dist, (float) (obstacle + heightObstacle));
+				}
+				relaxLabel(labels, queue, road, next, positive, cost + time, slot);
+			}
+		}
+		if (parent == RouteSearchLabels.NO_PARENT || labels.getRoad(parent).getId() != road.getId()) {
+			// start point or the road is just entered by turn in this point
+			return;
+		}
+		int previous = labels.getPoint(parent);
+		RouteSegment inputNext = ctx.loadRouteSegment(road.getPoint31XTile(point), road.getPoint31YTile(point),
+				ctx.config.memoryLimitation - ctx.memoryOverhead);
+		// segment passed to the point with its parent road for restrictions and turn time
+		RouteSegment segment = new RouteSegment(road, previous);
+		int parentRoad = parent;
+		while (parentRoad != RouteSearchLabels.NO_PARENT && labels.getRoad(parentRoad).getId() == road.getId()) {
+			parentRoad = labels.getParent(parentRoad);
+		}
+		if (parentRoad != RouteSearchLabels.NO_PARENT) {
+			segment.setParentRoute(new RouteSegment(labels.getRoad(parentRoad), labels.getPoint(parentRoad)));
+		}
+		Iterator<RouteSegment> nextIterator = null;
+		if (proccessRestrictions(ctx, segment, inputNext, false)) {
+			nextIterator = ctx.segmentsToVisitPrescripted.iterator();
+		}
+		RouteSegment turn = nextIterator != null ? (nextIterator.hasNext() ? nextIterator.next() : null) : inputNext;
+		while (turn != null) {
+			RouteDataObject turnRoad = turn.getRoad();
+			if (turnRoad.getId() != road.getId()) {
+				int oneway = ctx.getRouter().isOneWay(turnRoad);
+				int turnPoint = turn.getSegmentStart();
+				if (oneway >= 0 && turnPoint < turnRoad.getPointsLength() - 1) {
+					float turnTime = (float) ctx.getRouter().calculateTurnTime(turn, turnRoad.getPointsLength() - 1,
+							segment, point);
+					relaxLabel(labels, queue, turnRoad, turnPoint, true, cost + turnTime, slot);
+				}
+				if (oneway <= 0 && turnPoint > 0) {
+					float turnTime = (float) ctx.getRouter().calculateTurnTime(turn, 0, segment, point);
+					relaxLabel(labels, queue, turnRoad, turnPoint, false, cost + turnTime, slot);
+				}
+			}
+			if (nextIterator != null) {
+				turn = nextIterator.hasNext() ? nextIterator.next() : null;
+			} else {
+				turn = turn.next;
+			}
+		}
+	}
+
+	private void relaxLabel(RouteSearchLabels labels, IndexedHeap<RouteDataObject> queue, RouteDataObject road,
+			int point, boolean positive, float cost, int parent) {
+		long id = calculateRoutePointId(road, point, positive);
+		int slot = labels.getSlot(id);
+		if (slot < 0) {
+			slot = labels.addNode(id, road, point);
+		} else if (labels.isSettled(slot) || labels.getCost(slot) <= cost) {
+			return;
+		}
+		labels.setLabel(slot, cost, parent);
+		queue.add(slot, cost, road);
+	}
 
-		initQueuesWithStartEnd(ctx, start, end, recalculationEnd, graphDirectSegments, graphReverseSegments, 
+	private FinalRouteSegment processSearchQueues(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
+			RouteSegment recalculationEnd, boolean joinReverseTree, Comparator<RouteSegment> nonHeuristicSegmentsComparator,
+			IndexedHeap<RouteSegment> graphDirectSegments, IndexedHeap<RouteSegment> graphReverseSegments,
+			TLongObjectHashMap<RouteSegment> visitedDirectSegments, TLongObjectHashMap<RouteSegment> visitedOppositeSegments,
+			List<FinalRouteSegment> alternatives) throws InterruptedException, IOException {
+		initQueuesWithStartEnd(ctx, start, end, recalculationEnd, joinReverseTree, graphDirectSegments, graphReverseSegments,
 				visitedDirectSegments, visitedOppositeSegments);
+		if (ctx.prefetcher != null) {
+			ctx.prefetcher.prefetchCorridor();
+		}
 
 		// Extract & analyze segment with min(f(x)) from queue while final segment is not found
 		boolean forwardSearch = true;
 
-		PriorityQueue<RouteSegment> graphSegments = graphDirectSegments;
+		IndexedHeap<RouteSegment> graphSegments = graphDirectSegments;
 
 		FinalRouteSegment finalSegment = null;
+		// search continues after route is found to collect meeting points of alternative routes
+		float alternativesCostLimit = 0;
+		int alternativesPollsLimit = 0;
+		int polls = 0;
 		boolean onlyBackward = ctx.getPlanRoadDirection() < 0;
 		boolean onlyForward = ctx.getPlanRoadDirection() > 0;
+		RoutingMetrics metrics = ctx.getMetrics();
 		while (!graphSegments.isEmpty()) {
+			long startPoll = metrics != null ? metrics.startTimer() : 0;
 			RouteSegment segment = graphSegments.poll();
+			if (metrics != null) {
+				metrics.stopTimer(RoutingMetrics.Phase.QUEUE_OPERATIONS, startPoll);
+				metrics.increment(RoutingMetrics.Counter.QUEUE_POLLS);
+			}
+			polls++;
+			if (finalSegment != null && (polls > alternativesPollsLimit || segment.distanceFromStart
+					+ ctx.config.heuristicCoefficient * segment.distanceToEnd > alternativesCostLimit)) {
+				break;
+			}
 			// use accumulative approach
 			ctx.memoryOverhead = (visitedDirectSegments.size() + visitedOppositeSegments.size()) * STANDARD_ROAD_VISITED_OVERHEAD +
 					(graphDirectSegments.size() +
@@ -103,6 +332,10 @@ public class BinaryRoutePlanner {
 //			if(segment.getParentRoute() != null)
 //			System.out.println(segment.getRoad().getId() + " - " + segment.getParentRoute().getRoad().getId());
 			if (segment instanceof FinalRouteSegment) {
+				if (finalSegment != null) {
+					alternatives.add((FinalRouteSegment) segment);
+					continue;
+				}
 				if (RoutingContext.SHOW_GC_SIZE) {
 					log.warn("Estimated overhead " + (ctx.memoryOverhead / (1 << 20)) + " mb");
 					printMemoryConsumption("Memory occupied after calculation : ");
@@ -111,17 +344,31 @@ public class BinaryRoutePlanner {
 				if (TRACE_ROUTING) {
 					println("Final segment found");
 				}
-				break;
+				if (alternatives == null) {
+					break;
+				}
+				alternativesCostLimit = finalSegment.distanceFromStart * (1 + AlternativeRoutesFinder.MAX_STRETCH);
+				alternativesPollsLimit = (int) (polls * (1 + AlternativeRoutesFinder.MAX_EXTRA_VISITED));
+				continue;
 			}
 			if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95 && RoutingContext.SHOW_GC_SIZE) {
 				printMemoryConsumption("Memory occupied before exception : ");
 			}
 			if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95) {
+				if (finalSegment != null) {
+					break;
+				}
 				throw new IllegalStateException("There is not enough memory " + ctx.config.memoryLimitation / (1 << 20) + " Mb");
 			}
 			if (ctx.calculationProgress != null) {
 				ctx.calculationProgress.visitedSegments++;
 			}
+			if (metrics != null) {
+				metrics.increment(RoutingMetrics.Counter.VISITED_SEGMENTS);
+			}
+			if (ctx.prefetcher != null) {
+				ctx.prefetcher.prefetchFrontier(segment, !forwardSearch);
+			}
 			if (forwardSearch) {
 				boolean doNotAddIntersections = onlyBackward;
 				processRouteSegment(ctx, false, graphDirectSegments, visitedDirectSegments,
@@ -132,12 +379,17 @@ public class BinaryRoutePlanner {
 						visitedDirectSegments, doNotAddIntersections);
 			}
 			updateCalculationProgress(ctx, graphDirectSegments, graphReverseSegments);
+			if (finalSegment != null && (graphDirectSegments.isEmpty() || graphReverseSegments.isEmpty())) {
+				break;
+			}
 
-			checkIfGraphIsEmpty(ctx, ctx.getPlanRoadDirection() <= 0, graphReverseSegments, end, visitedOppositeSegments,
-					"Route is not found to selected target point.");
-			checkIfGraphIsEmpty(ctx, ctx.getPlanRoadDirection() >= 0, graphDirectSegments, start, visitedDirectSegments,
-					"Route is not found from selected start point.");
-			if (ctx.planRouteIn2Directions()) {
+			checkIfGraphIsEmpty(ctx, ctx.getPlanRoadDirection() <= 0 && !joinReverseTree, graphReverseSegments, end,
+					visitedOppositeSegments, "Route is not found to selected target point.");
+			checkIfGraphIsEmpty(ctx, ctx.getPlanRoadDirection() >= 0 || joinReverseTree, graphDirectSegments, start,
+					visitedDirectSegments, "Route is not found from selected start point.");
+			if (joinReverseTree) {
+				forwardSearch = true;
+			} else if (ctx.planRouteIn2Directions()) {
 				forwardSearch = nonHeuristicSegmentsComparator.compare(graphDirectSegments.peek(), graphReverseSegments.peek()) <= 0;
 //				if (graphDirectSegments.size() * 2 > graphReverseSegments.size()) {
 //					forwardSearch = false;
@@ -177,7 +429,7 @@ public class BinaryRoutePlanner {
 	}
 
 	protected void checkIfGraphIsEmpty(final RoutingContext ctx, boolean allowDirection,
-			PriorityQueue<RouteSegment> graphSegments, RouteSegmentPoint pnt, TLongObjectHashMap<RouteSegment> visited,
+			IndexedHeap<RouteSegment> graphSegments, RouteSegmentPoint pnt, TLongObjectHashMap<RouteSegment> visited,
 			String msg) {
 		if (allowDirection && graphSegments.isEmpty()) {
 			if (pnt.others != null) {
@@ -199,11 +451,11 @@ public class BinaryRoutePlanner {
 						RouteSegment neg = next.initRouteSegment(false);
 						if (pos != null) {
 							pos.distanceToEnd = estimatedDistance;
-							graphSegments.add(pos);
+							addToQueue(ctx, graphSegments, pos);
 						}
 						if (neg != null) {
 							neg.distanceToEnd = estimatedDistance;
-							graphSegments.add(neg);
+							addToQueue(ctx, graphSegments, neg);
 						}
 						println("Reiterate point with new start/destination " + next.getRoad());
 						break;
@@ -247,7 +499,8 @@ public class BinaryRoutePlanner {
 
 
 	private void initQueuesWithStartEnd(final RoutingContext ctx, RouteSegment start, RouteSegment end,
-			RouteSegment recalculationEnd, PriorityQueue<RouteSegment> graphDirectSegments, PriorityQueue<RouteSegment> graphReverseSegments, 
+			RouteSegment recalculationEnd, boolean joinReverseTree, IndexedHeap<RouteSegment> graphDirectSegments,
+			IndexedHeap<RouteSegment> graphReverseSegments, 
 			TLongObjectHashMap<RouteSegment> visitedDirectSegments, TLongObjectHashMap<RouteSegment> visitedOppositeSegments) {
 		RouteSegment startPos = initRouteSegment(ctx, start, true);
 		RouteSegment startNeg = initRouteSegment(ctx, start, false);
@@ -275,22 +528,24 @@ public class BinaryRoutePlanner {
 		float estimatedDistance = (float) estimatedDistance(ctx, ctx.targetX, ctx.targetY, ctx.startX, ctx.startY);
 		if (startPos != null) {
 			startPos.distanceToEnd = estimatedDistance;
-			graphDirectSegments.add(startPos);
+			addToQueue(ctx, graphDirectSegments, startPos);
 		}
 		if (startNeg != null) {
 			startNeg.distanceToEnd = estimatedDistance;
-			graphDirectSegments.add(startNeg);
+			addToQueue(ctx, graphDirectSegments, startNeg);
 		}
-		if (recalculationEnd != null) {
-			graphReverseSegments.add(recalculationEnd);
+		if (joinReverseTree) {
+			// reverse search is already done, previous tree is stored in visitedOppositeSegments
+		} else if (recalculationEnd != null) {
+			graphReverseSegments.add(queuePriority(ctx, recalculationEnd), recalculationEnd);
 		} else {
 			if (endPos != null) {
 				endPos.distanceToEnd = estimatedDistance;
-				graphReverseSegments.add(endPos);
+				addToQueue(ctx, graphReverseSegments, endPos);
 			}
 			if (endNeg != null) {
 				endNeg.distanceToEnd = estimatedDistance;
-				graphReverseSegments.add(endNeg);
+				addToQueue(ctx, graphReverseSegments, endNeg);
 			}
 		}
 		if (TRACE_ROUTING) {
@@ -309,8 +564,8 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private void updateCalculationProgress(final RoutingContext ctx, PriorityQueue<RouteSegment> graphDirectSegments,
-			PriorityQueue<RouteSegment> graphReverseSegments) {
+	private void updateCalculationProgress(final RoutingContext ctx, IndexedHeap<RouteSegment> graphDirectSegments,
+			IndexedHeap<RouteSegment> graphReverseSegments) {
 		if (ctx.calculationProgress != null) {
 			ctx.calculationProgress.reverseSegmentQueueSize = graphReverseSegments.size();
 			ctx.calculationProgress.directSegmentQueueSize = graphDirectSegments.size();
@@ -388,6 +643,14 @@ public class BinaryRoutePlanner {
 			printInfo("Visited segments: " + ctx.getVisitedSegments() + ", relaxed roads " + p.relaxedSegments);
 			printInfo("Priority queues sizes : " + p.directQueueSize + "/" + p.oppositeQueueSize);
 			printInfo("Visited interval sizes: " + p.visitedDirectSegments + "/" + p.visitedOppositeSegments);
+			if (p.prefetchedTiles > 0) {
+				printInfo(String.format("Prefetched tiles %d: hits %d, waited %d (%.2f ms), missed %d, unused %d, hit rate %.2f",
+						p.prefetchedTiles, p.prefetchHits, p.prefetchWaits, p.timeToWaitPrefetch / 1e6, p.prefetchMisses,
+						p.prefetchUnused, p.getPrefetchHitRate()));
+			}
+			if (p.metrics != null) {
+				printInfo(p.metrics.getReport());
+			}
 		}
 
 	}
@@ -395,9 +658,10 @@ public class BinaryRoutePlanner {
 
 	@SuppressWarnings("unused")
 	private void processRouteSegment(final RoutingContext ctx, boolean reverseWaySearch,
-			PriorityQueue<RouteSegment> graphSegments, TLongObjectHashMap<RouteSegment> visitedSegments, 
+			IndexedHeap<RouteSegment> graphSegments, TLongObjectHashMap<RouteSegment> visitedSegments, 
             RouteSegment segment, TLongObjectHashMap<RouteSegment> oppositeSegments, boolean doNotAddIntersections) throws IOException {
 		final RouteDataObject road = segment.road;
+		final RoutingMetrics metrics = ctx.getMetrics();
 		boolean initDirectionAllowed = checkIfInitialMovementAllowedOnSegment(ctx, reverseWaySearch, visitedSegments, segment, road);
 		if (TEST_SPECIFIC && road.getId() >> 6 == TEST_ID) {
 			printRoad(" ! "  + segment.distanceFromStart + " ", segment, reverseWaySearch);
@@ -413,6 +677,9 @@ public class BinaryRoutePlanner {
 		// ! Actually there is small bug when there is restriction to move forward on the way (it doesn't take into account)
 		float obstaclesTime = 0;
 		float segmentDist = 0;
+		// time to pass segmentDist by speed profiles
+		final SpeedProfileCache speedProfiles = ctx.getSpeedProfileCache();
+		float profileTime = 0;
 		// +/- diff from middle point
 		short segmentPoint = segment.getSegmentStart();
 		boolean[] processFurther = new boolean[1];
@@ -443,22 +710,30 @@ public class BinaryRoutePlanner {
 
 			// 2. calculate point and try to load neighbor ways if they are not loaded
 			segmentDist += squareRootDist(x, y, prevx, prevy);
+			if (speedProfiles != null) {
+				profileTime += calculateProfileTime(ctx, speedProfiles, segment, Math.min(prevInd, segmentPoint),
+						dir != reverseWaySearch, (float) squareRootDist(x, y, prevx, prevy), profileTime);
+			}
 
 			// 2.1 calculate possible obstacle plus time
-			
+			long startCost = metrics != null ? metrics.startTimer() : 0;
 			double obstacle = ctx.getRouter().defineRoutingObstacle(road, segmentPoint, (dir && !reverseWaySearch));
+			double heightObstacle = obstacle < 0 ? 0 : ctx.getRouter().defineHeightObstacle(road,
+					!reverseWaySearch ? prevInd : segmentPoint, !reverseWaySearch ? segmentPoint : prevInd);
+			if (metrics != null) {
+				metrics.stopTimer(RoutingMetrics.Phase.COST_EVALUATION, startCost);
+				metrics.increment(RoutingMetrics.Counter.COST_EVALUATIONS);
+			}
 			if (obstacle < 0) {
 				directionAllowed = false;
 				continue;
 			}
-			double heightObstacle = ctx.getRouter().defineHeightObstacle(road, !reverseWaySearch ? prevInd : segmentPoint, 
-					!reverseWaySearch ? segmentPoint : prevInd);
 			if(heightObstacle < 0) {
 				directionAllowed = false;
 				continue;
 			}
 			boolean alreadyVisited = checkIfOppositeSegmentWasVisited(ctx, reverseWaySearch, graphSegments, segment, oppositeSegments,
-					segmentPoint, segmentDist, obstaclesTime);
+					segmentPoint, speedProfiles != null ? profileTime : -1, segmentDist, obstaclesTime);
 			obstaclesTime += obstacle;
 			obstaclesTime += heightObstacle;
 			if (alreadyVisited) {
@@ -480,7 +755,8 @@ public class BinaryRoutePlanner {
 			// could be expensive calculation
 			// 3. get intersected ways
 			final RouteSegment roadNext = ctx.loadRouteSegment(x, y, ctx.config.memoryLimitation - ctx.memoryOverhead);
-			float distStartObstacles = segment.distanceFromStart + calculateTimeWithObstacles(ctx, road, segmentDist, obstaclesTime);
+			float distStartObstacles = segment.distanceFromStart + (speedProfiles != null ? obstaclesTime + profileTime
+					: calculateTimeWithObstacles(ctx, road, segmentDist, obstaclesTime));
 			if (ctx.precalculatedRouteDirection != null && ctx.precalculatedRouteDirection.isFollowNext()) {
 				// reset to f
 //				distStartObstacles = 0;
@@ -559,8 +835,8 @@ public class BinaryRoutePlanner {
 	}
 
 	private boolean checkIfOppositeSegmentWasVisited(final RoutingContext ctx, boolean reverseWaySearch,
-			PriorityQueue<RouteSegment> graphSegments, RouteSegment segment, TLongObjectHashMap<RouteSegment> oppositeSegments,
-			int segmentPoint, float segmentDist, float obstaclesTime) {
+			IndexedHeap<RouteSegment> graphSegments, RouteSegment segment, TLongObjectHashMap<RouteSegment> oppositeSegments,
+			int segmentPoint, float profileTime, float segmentDist, float obstaclesTime) {
 		RouteDataObject road = segment.getRoad();
 		long opp = calculateRoutePointId(road, segment.isPositive() ? segmentPoint - 1 : segmentPoint, !segment.isPositive());
 		if (oppositeSegments.containsKey(opp)) {
@@ -569,15 +845,15 @@ public class BinaryRoutePlanner {
 			RouteSegment from = !reverseWaySearch ? getParentDiffId(segment) : getParentDiffId(opposite);
 			if (checkViaRestrictions(from, to)) {
 				FinalRouteSegment frs = new FinalRouteSegment(road, segmentPoint);
-				float distStartObstacles = segment.distanceFromStart
-						+ calculateTimeWithObstacles(ctx, road, segmentDist, obstaclesTime);
+				float distStartObstacles = segment.distanceFromStart + (profileTime >= 0 ? obstaclesTime + profileTime
+						: calculateTimeWithObstacles(ctx, road, segmentDist, obstaclesTime));
 				frs.setParentRoute(segment);
 				frs.setParentSegmentEnd(segmentPoint);
 				frs.reverseWaySearch = reverseWaySearch;
 				frs.distanceFromStart = opposite.distanceFromStart + distStartObstacles;
 				frs.distanceToEnd = 0;
 				frs.opposite = opposite;
-				graphSegments.add(frs);
+				addToQueue(ctx, graphSegments, frs);
 				if (TRACE_ROUTING) {
 					printRoad("  >> Final segment : ", frs, reverseWaySearch);
 				}
@@ -588,7 +864,27 @@ public class BinaryRoutePlanner {
 	}
 
 
+	private static double queuePriority(RoutingContext ctx, RouteSegment segment) {
+		// f(x) = g(x) + h(x) as in roadPriorityComparator
+		return segment.distanceFromStart + ctx.config.heuristicCoefficient * segment.distanceToEnd;
+	}
+
+	private void addToQueue(RoutingContext ctx, IndexedHeap<RouteSegment> graphSegments, RouteSegment segment) {
+		RoutingMetrics metrics = ctx.getMetrics();
+		long startAdd = metrics != null ? metrics.startTimer() : 0;
+		// final segments are never merged
+		long key = segment instanceof FinalRouteSegment ? -1 : calculateRoutePointId(segment, segment.isPositive());
+		boolean queued = metrics != null && key >= 0 && graphSegments.contains(key);
+		graphSegments.add(key, queuePriority(ctx, segment), segment);
+		if (metrics != null) {
+			metrics.stopTimer(RoutingMetrics.Phase.QUEUE_OPERATIONS, startAdd);
+			metrics.increment(queued ? RoutingMetrics.Counter.QUEUE_UPDATES : RoutingMetrics.Counter.QUEUE_PUSHES);
+		}
+	}
+
 	private float calculateTimeWithObstacles(RoutingContext ctx, RouteDataObject road, float distOnRoadToPass, float obstaclesTime) {
+		RoutingMetrics metrics = ctx.getMetrics();
+		long startCost = metrics != null ? metrics.startTimer() : 0;
 		float priority = ctx.getRouter().defineSpeedPriority(road);
 		float speed = (ctx.getRouter().defineRoutingSpeed(road) * priority);
 		if (speed == 0) {
@@ -598,9 +894,44 @@ public class BinaryRoutePlanner {
 		if (speed > ctx.getRouter().getMaxSpeed()) {
 			speed = ctx.getRouter().getMaxSpeed();
 		}
+		if (metrics != null) {
+			metrics.stopTimer(RoutingMetrics.Phase.COST_EVALUATION, startCost);
+			metrics.increment(RoutingMetrics.Counter.COST_EVALUATIONS);
+		}
 		return obstaclesTime + distOnRoadToPass / speed;
 	}
 
+	/**
+	 * Time to pass one segment of the road with profile speed at the time of arrival to it. Arrival time is
+	 * known only by forward search, so search with profiles is always forward (see
+	 * {@link RoutingContext#getPlanRoadDirection()}).
+	 */
+	private float calculateProfileTime(RoutingContext ctx, SpeedProfileCache speedProfiles, RouteSegment segment,
+			int segmentInd, boolean positive, float dist, float profileTime) {
+		RoutingMetrics metrics = ctx.getMetrics();
+		long startCost = metrics != null ? metrics.startTimer() : 0;
+		RouteDataObject road = segment.getRoad();
+		float time = segment.distanceFromStart + profileTime;
+		float priority = ctx.getRouter().defineSpeedPriority(road);
+		float speed = speedProfiles.getSpeed(road.getId(), segmentInd, positive, time);
+		if (speed == 0) {
+			speed = ctx.getRouter().defineRoutingSpeed(road);
+			if (speed == 0) {
+				speed = ctx.getRouter().getDefaultSpeed();
+			}
+		}
+		speed *= priority;
+		// speed can not exceed max default speed according to A*
+		if (speed > ctx.getRouter().getMaxSpeed()) {
+			speed = ctx.getRouter().getMaxSpeed();
+		}
+		if (metrics != null) {
+			metrics.stopTimer(RoutingMetrics.Phase.COST_EVALUATION, startCost);
+			metrics.increment(RoutingMetrics.Counter.COST_EVALUATIONS);
+		}
+		return dist / speed;
+	}
+
 	private long calculateRoutePointId(final RouteDataObject road, int intervalId, boolean positive) {
 		if (intervalId < 0) {
 			// should be assert
@@ -733,7 +1064,7 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private RouteSegment processIntersections(RoutingContext ctx, PriorityQueue<RouteSegment> graphSegments,
+	private RouteSegment processIntersections(RoutingContext ctx, IndexedHeap<RouteSegment> graphSegments,
 			TLongObjectHashMap<RouteSegment> visitedSegments,  float distFromStart, RouteSegment segment,
 			short segmentPoint, RouteSegment inputNext, boolean reverseWaySearch, boolean doNotAddIntersections, 
 			boolean[] processFurther) {
@@ -804,13 +1135,19 @@ public class BinaryRoutePlanner {
 
 
 	@SuppressWarnings("unused")
-	private void processOneRoadIntersection(RoutingContext ctx, PriorityQueue<RouteSegment> graphSegments,
+	private void processOneRoadIntersection(RoutingContext ctx, IndexedHeap<RouteSegment> graphSegments,
 			TLongObjectHashMap<RouteSegment> visitedSegments, float distFromStart, float distanceToEnd,  RouteSegment segment,
 			int segmentPoint, RouteSegment next) {
 		if (next != null) {
+			RoutingMetrics metrics = ctx.getMetrics();
+			long startCost = metrics != null ? metrics.startTimer() : 0;
 			float obstaclesTime = (float) ctx.getRouter().calculateTurnTime(next, 
 					next.isPositive() ? next.getRoad().getPointsLength() - 1 : 0,    
 					segment, segmentPoint);
+			if (metrics != null) {
+				metrics.stopTimer(RoutingMetrics.Phase.COST_EVALUATION, startCost);
+				metrics.increment(RoutingMetrics.Counter.COST_EVALUATIONS);
+			}
 			distFromStart += obstaclesTime;
 			if (TEST_SPECIFIC && next.road.getId() >> 6 == TEST_ID) {
 				printRoad(" !? distFromStart=" +distFromStart + " from " + segment.getRoad().getId() +
@@ -850,7 +1187,7 @@ public class BinaryRoutePlanner {
 				// put additional information to recover whole route after
 				next.setParentRoute(segment);
 				next.setParentSegmentEnd(segmentPoint);
-				graphSegments.add(next);
+				addToQueue(ctx, graphSegments, next);
 			}
 		}
 	}
@@ -1029,6 +1366,50 @@ public class BinaryRoutePlanner {
 		}
 	}
 
+	/**
+	 * Visited segments of reverse search (with costs to target) kept after calculation, so recalculation
+	 * to the same target only needs forward search from new start till it joins this tree.
+	 */
+	static class ReverseSearchTree {
+		final TLongObjectHashMap<RouteSegment> visitedSegments;
+		final long targetRoadId;
+		final int targetSegmentStart;
+		final int targetX;
+		final int targetY;
+
+		ReverseSearchTree(TLongObjectHashMap<RouteSegment> visitedSegments, RouteSegmentPoint end) {
+			this.visitedSegments = visitedSegments;
+			this.targetRoadId = end.getRoad().getId();
+			this.targetSegmentStart = end.getSegmentStart();
+			this.targetX = end.preciseX;
+			this.targetY = end.preciseY;
+		}
+
+		boolean isSameTarget(RouteSegmentPoint end) {
+			return end.getRoad().getId() == targetRoadId && end.getSegmentStart() == targetSegmentStart
+					&& end.preciseX == targetX && end.preciseY == targetY;
+		}
+	}
+
+	/**
+	 * Both search trees and meeting points found after the route (sorted by cost), see {@link AlternativeRoutesFinder}.
+	 */
+	static class AlternativeSearchTrees {
+		final FinalRouteSegment finalSegment;
+		final List<FinalRouteSegment> meetingPoints;
+		final TLongObjectHashMap<RouteSegment> visitedDirectSegments;
+		final TLongObjectHashMap<RouteSegment> visitedOppositeSegments;
+
+		AlternativeSearchTrees(FinalRouteSegment finalSegment, List<FinalRouteSegment> meetingPoints,
+				TLongObjectHashMap<RouteSegment> visitedDirectSegments,
+				TLongObjectHashMap<RouteSegment> visitedOppositeSegments) {
+			this.finalSegment = finalSegment;
+			this.meetingPoints = meetingPoints;
+			this.visitedDirectSegments = visitedDirectSegments;
+			this.visitedOppositeSegments = visitedOppositeSegments;
+		}
+	}
+
 	static class FinalRouteSegment extends RouteSegment {
 
 		boolean reverseWaySearch;
@@ -0,0 +1,288 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+
+/**
+ * Compacted route data of live updates (monthly and daily OBF diffs) of one region.
+ * Diffs are merged as they arrive: each road id of the whole diff extent resolves to the version of the newest diff
+ * (upsert) or tombstone (osmand_change=delete), so routing queries base file plus this index instead of all diff files.
+ * Versions of every diff are kept, so removing a diff makes versions of older diffs current again.
+ */
+public class LiveUpdatesRouteIndex {
+
+	private static final int CELL_ZOOM = 14;
+	// objects spanning more cells are checked on every query
+	private static final int MAX_CELLS_PER_OBJECT = 256;
+
+	private final String regionName;
+	private final Map<String, Diff> diffs = new TreeMap<String, Diff>();
+	// merged index: road id -> newest version
+	private final TLongObjectHashMap<LiveObject> objects = new TLongObjectHashMap<LiveObject>();
+	private final TLongObjectHashMap<List<LiveObject>> cells = new TLongObjectHashMap<List<LiveObject>>();
+	private final List<LiveObject> bigObjects = new ArrayList<LiveObject>();
+	private int tombstones;
+
+	private static class Diff {
+		final long dateCreated;
+		final TLongObjectHashMap<RouteDataObject> objects;
+
+		Diff(long dateCreated, TLongObjectHashMap<RouteDataObject> objects) {
+			this.dateCreated = dateCreated;
+			this.objects = objects;
+		}
+	}
+
+	private static class LiveObject {
+		RouteDataObject object;
+		Diff diff;
+		boolean deleted;
+		int left, top, right, bottom;
+	}
+
+	public LiveUpdatesRouteIndex(String regionName) {
+		this.regionName = regionName;
+	}
+
+	public String getRegionName() {
+		return regionName;
+	}
+
+	/**
+	 * Merges route data of the diff file, newer diffs override objects of older ones independently of order.
+	 * Data is read with own file handle, so reader could be used by other threads meanwhile.
+	 */
+	public void applyDiff(BinaryMapIndexReader diff, long dateCreated) throws IOException {
+		String diffName = diff.getFile().getName();
+		synchronized (this) {
+			Diff applied = diffs.get(diffName);
+			if (applied != null && applied.dateCreated == dateCreated) {
+				return;
+			}
+		}
+		TLongObjectHashMap<RouteDataObject> loaded = new TLongObjectHashMap<RouteDataObject>();
+		RandomAccessFile raf = new RandomAccessFile(diff.getFile(), "r");
+		try {
+			BinaryMapIndexReader reader = new BinaryMapIndexReader(raf, diff);
+			SearchRequest<RouteDataObject> request = BinaryMapIndexReader.buildSearchRouteRequest(0,
+					Integer.MAX_VALUE, 0, Integer.MAX_VALUE, null);
+			for (RouteRegion reg : reader.getRoutingIndexes()) {
+				List<RouteSubregion> roots = new ArrayList<RouteSubregion>();
+				for (RouteSubregion rs : reg.getSubregions()) {
+					roots.add(new RouteSubregion(rs));
+				}
+				for (RouteSubregion sub : reader.searchRouteIndexTree(request, roots)) {
+					for (RouteDataObject ro : reader.loadRouteIndexData(sub)) {
+						if (ro != null && ro.getId() > 0 && (ro.getPointsLength() > 0 || ro.isRoadDeleted())) {
+							loaded.put(ro.getId(), ro);
+						}
+					}
+				}
+			}
+		} finally {
+			raf.close();
+		}
+		synchronized (this) {
+			removeDiff(diffName);
+			Diff d = new Diff(dateCreated, loaded);
+			diffs.put(diffName, d);
+			for (RouteDataObject ro : loaded.valueCollection()) {
+				LiveObject existing = objects.get(ro.getId());
+				if (existing == null || existing.diff.dateCreated <= dateCreated) {
+					merge(ro, d);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes the diff (i.e. when base file became newer than diff), versions of older diffs become current.
+	 */
+	public synchronized void removeDiff(String diffName) {
+		Diff diff = diffs.remove(diffName);
+		if (diff == null) {
+			return;
+		}
+		for (long id : diff.objects.keys()) {
+			LiveObject o = objects.get(id);
+			if (o == null || o.diff != diff) {
+				continue;
+			}
+			Diff newest = null;
+			for (Diff d : diffs.values()) {
+				if (d.objects.containsKey(id) && (newest == null || d.dateCreated > newest.dateCreated)) {
+					newest = d;
+				}
+			}
+			if (newest != null) {
+				merge(newest.objects.get(id), newest);
+			} else {
+				remove(o);
+			}
+		}
+	}
+
+	private void merge(RouteDataObject ro, Diff diff) {
+		LiveObject existing = objects.get(ro.getId());
+		if (existing != null) {
+			remove(existing);
+		}
+		LiveObject o = new LiveObject();
+		o.object = ro;
+		o.diff = diff;
+		o.deleted = ro.isRoadDeleted();
+		objects.put(ro.getId(), o);
+		if (o.deleted) {
+			tombstones++;
+			return;
+		}
+		o.left = o.right = ro.getPoint31XTile(0);
+		o.top = o.bottom = ro.getPoint31YTile(0);
+		for (int i = 1; i < ro.getPointsLength(); i++) {
+			o.left = Math.min(o.left, ro.getPoint31XTile(i));
+			o.right = Math.max(o.right, ro.getPoint31XTile(i));
+			o.top = Math.min(o.top, ro.getPoint31YTile(i));
+			o.bottom = Math.max(o.bottom, ro.getPoint31YTile(i));
+		}
+		int shift = 31 - CELL_ZOOM;
+		int cl = o.left >> shift, cr = o.right >> shift, ct = o.top >> shift, cb = o.bottom >> shift;
+		if ((long) (cr - cl + 1) * (cb - ct + 1) > MAX_CELLS_PER_OBJECT) {
+			bigObjects.add(o);
+			return;
+		}
+		for (int x = cl; x <= cr; x++) {
+			for (int y = ct; y <= cb; y++) {
+				long cell = getCell(x, y);
+				List<LiveObject> lst = cells.get(cell);
+				if (lst == null) {
+					lst = new ArrayList<LiveObject>(4);
+					cells.put(cell, lst);
+				}
+				lst.add(o);
+			}
+		}
+	}
+
+	private void remove(LiveObject o) {
+		objects.remove(o.object.getId());
+		if (o.deleted) {
+			tombstones--;
+			return;
+		}
+		if (bigObjects.remove(o)) {
+			return;
+		}
+		int shift = 31 - CELL_ZOOM;
+		for (int x = o.left >> shift; x <= o.right >> shift; x++) {
+			for (int y = o.top >> shift; y <= o.bottom >> shift; y++) {
+				long cell = getCell(x, y);
+				List<LiveObject> lst = cells.get(cell);
+				if (lst != null) {
+					lst.remove(o);
+					if (lst.isEmpty()) {
+						cells.remove(cell);
+					}
+				}
+			}
+		}
+	}
+
+	private static long getCell(int cx, int cy) {
+		return (((long) cx) << 32) | cy;
+	}
+
+	/**
+	 * @return true if road is updated or deleted anywhere in diffs, so base version should be ignored
+	 * even if road was moved out of base subregion
+	 */
+	public synchronized boolean isUpdated(long id) {
+		return objects.containsKey(id);
+	}
+
+	public synchronized boolean isDeleted(long id) {
+		LiveObject o = objects.get(id);
+		return o != null && o.deleted;
+	}
+
+	/**
+	 * Collects copies of the newest versions of updated (not deleted) roads intersecting bbox, ids already in
+	 * added set are skipped (i.e. resolved by other index). Copies don't share arrays changed by
+	 * {@link RouteDataObject#processConditionalTags(long)}, so they could be modified by routing context.
+	 */
+	public synchronized List<RouteDataObject> getObjects(int left, int top, int right, int bottom,
+			TLongHashSet added, List<RouteDataObject> toFill) {
+		int shift = 31 - CELL_ZOOM;
+		int cl = left >> shift, cr = right >> shift, ct = top >> shift, cb = bottom >> shift;
+		if ((long) (cr - cl + 1) * (cb - ct + 1) < cells.size()) {
+			for (int x = cl; x <= cr; x++) {
+				for (int y = ct; y <= cb; y++) {
+					collect(cells.get(getCell(x, y)), left, top, right, bottom, added, toFill);
+				}
+			}
+		} else {
+			for (List<LiveObject> lst : cells.valueCollection()) {
+				collect(lst, left, top, right, bottom, added, toFill);
+			}
+		}
+		collect(bigObjects, left, top, right, bottom, added, toFill);
+		return toFill;
+	}
+
+	private void collect(List<LiveObject> lst, int left, int top, int right, int bottom, TLongHashSet added,
+			List<RouteDataObject> toFill) {
+		if (lst == null) {
+			return;
+		}
+		for (LiveObject o : lst) {
+			if (o.right >= left && o.left <= right && o.bottom >= top && o.top <= bottom
+					&& added.add(o.object.getId())) {
+				toFill.add(copy(o.object));
+			}
+		}
+	}
+
+	private static RouteDataObject copy(RouteDataObject ro) {
+		RouteDataObject c = new RouteDataObject(ro);
+		c.types = ro.types == null ? null : ro.types.clone();
+		if (ro.pointTypes != null) {
+			c.pointTypes = new int[ro.pointTypes.length][];
+			for (int i = 0; i < ro.pointTypes.length; i++) {
+				c.pointTypes[i] = ro.pointTypes[i] == null ? null : ro.pointTypes[i].clone();
+			}
+		}
+		return c;
+	}
+
+	public synchronized boolean containsDiff(String diffName) {
+		return diffs.containsKey(diffName);
+	}
+
+	public synchronized List<String> getDiffs() {
+		return Collections.unmodifiableList(new ArrayList<String>(diffs.keySet()));
+	}
+
+	public synchronized int getObjectsCount() {
+		return objects.size();
+	}
+
+	public synchronized int getTombstonesCount() {
+		return tombstones;
+	}
+
+	public synchronized boolean isEmpty() {
+		return diffs.isEmpty();
+	}
+}
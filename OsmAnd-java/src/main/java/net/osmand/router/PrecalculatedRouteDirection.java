@@ -248,6 +248,18 @@ public class PrecalculatedRouteDirection {
 		return ((long) x31) << 32l + ((long)y31);
 	}
 	
+	public int getPointsCount() {
+		return pointsX == null ? 0 : pointsX.length;
+	}
+
+	public int getPoint31X(int ind) {
+		return pointsX[ind];
+	}
+
+	public int getPoint31Y(int ind) {
+		return pointsY[ind];
+	}
+
 	public void setFollowNext(boolean followNext) {
 		this.followNext = followNext;
 	}
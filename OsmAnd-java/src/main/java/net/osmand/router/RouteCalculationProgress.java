@@ -34,7 +34,17 @@ public class RouteCalculationProgress {
 	public int loadedPrevUnloadedTiles = 0;
 	public int unloadedTiles = 0;
 	public int loadedTiles = 0;
+
+	public int prefetchedTiles = 0;
+	public int prefetchHits = 0;
+	public int prefetchWaits = 0;
+	public int prefetchMisses = 0;
+	public int prefetchUnused = 0;
+	public long timeToWaitPrefetch = 0;
 	
+	// detailed timings and counters, collected only if set
+	public RoutingMetrics metrics;
+
 	public boolean isCancelled;
 	public boolean requestPrivateAccessRouting;
 	
@@ -63,6 +73,11 @@ public class RouteCalculationProgress {
 		return Math.min(progress * 100f, 99);
 	}
 
+	public float getPrefetchHitRate() {
+		int requested = prefetchHits + prefetchWaits + prefetchMisses;
+		return requested == 0 ? 0 : ((float) prefetchHits) / requested;
+	}
+
 	public void nextIteration() {
 		iteration++;
 		totalEstimatedDistance = 0;
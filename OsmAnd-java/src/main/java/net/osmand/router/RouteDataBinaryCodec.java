@@ -0,0 +1,363 @@
+package net.osmand.router;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import net.osmand.Location;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteTypeRule;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.osm.io.Base64;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary form of route segments (as saved by {@link RouteExporter}) in protobuf wire format:
+ * varints, delta encoded locations and rule ids of the {@link RouteTypeRule} dictionary instead of
+ * comma separated strings of {@link net.osmand.binary.StringBundle}.
+ * Imported route is the same as after {@link RouteSegmentResult#writeToBundle}/{@link RouteSegmentResult#readFromBundle}.
+ * Data could be stored as sidecar file together with locations or embedded into gpx track segment as base64.
+ */
+public class RouteDataBinaryCodec {
+
+	public static final String FILE_EXT = ".osmroute";
+
+	private static final int VERSION = 1;
+	// same precision as written by GPXUtilities
+	private static final double COORDINATES_PRECISION = 1e7;
+	private static final double ELEVATION_PRECISION = 10;
+	private static final int LOCATION_ALTITUDE = 1;
+
+	// route data fields
+	private static final int VERSION_FIELD = 1;
+	private static final int LOCATIONS_FIELD = 2;
+	private static final int SEGMENT_FIELD = 3;
+	private static final int RULE_FIELD = 4;
+
+	// rule fields
+	private static final int RULE_TAG = 1;
+	private static final int RULE_VALUE = 2;
+
+	// segment fields
+	static final int LENGTH = 1;
+	static final int SEGMENT_TIME = 2;
+	static final int SPEED = 3;
+	static final int TURN_TYPE = 4;
+	static final int SKIP_TURN = 5;
+	static final int TURN_ANGLE = 6;
+	static final int TURN_LANES = 7;
+	static final int ID = 8;
+	static final int TYPES = 9;
+	static final int POINT_TYPES = 10;
+	static final int NAMES = 11;
+	static final int POINT_NAMES = 12;
+
+	// int[][] array fields
+	private static final int ARRAY_ROW = 1;
+
+	/**
+	 * @param writeLocations store locations (for sidecar file), otherwise they should be provided on reading
+	 */
+	public static void write(OutputStream os, List<RouteSegmentResult> route, List<Location> locations,
+	                         boolean writeLocations) throws IOException {
+		RouteDataResources resources = new RouteDataResources(locations);
+		for (RouteSegmentResult sr : route) {
+			sr.collectTypes(resources);
+		}
+		for (RouteSegmentResult sr : route) {
+			sr.collectNames(resources);
+		}
+		CodedOutputStream out = CodedOutputStream.newInstance(os);
+		out.writeUInt32(VERSION_FIELD, VERSION);
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		if (writeLocations && locations != null) {
+			CodedOutputStream lout = CodedOutputStream.newInstance(buf);
+			writeLocations(lout, locations);
+			lout.flush();
+			writeMessage(out, LOCATIONS_FIELD, buf);
+		}
+		for (RouteSegmentResult sr : route) {
+			CodedOutputStream sout = CodedOutputStream.newInstance(buf);
+			sr.writeToStream(sout, resources);
+			sout.flush();
+			writeMessage(out, SEGMENT_FIELD, buf);
+		}
+		// rules are written after segments as point names could add new rules
+		for (RouteTypeRule rule : resources.getRules().keySet()) {
+			CodedOutputStream rout = CodedOutputStream.newInstance(buf);
+			rout.writeString(RULE_TAG, rule.getTag());
+			if (rule.getValue() != null) {
+				rout.writeString(RULE_VALUE, rule.getValue());
+			}
+			rout.flush();
+			writeMessage(out, RULE_FIELD, buf);
+		}
+		out.flush();
+	}
+
+	/**
+	 * @param locations route locations (i.e. points of gpx track segment),
+	 *                  locations stored in data are added to the list
+	 */
+	public static List<RouteSegmentResult> read(InputStream is, List<Location> locations) throws IOException {
+		CodedInputStream in = CodedInputStream.newInstance(is);
+		in.setSizeLimit(Integer.MAX_VALUE);
+		RouteRegion region = new RouteRegion();
+		RouteDataResources resources = new RouteDataResources(locations);
+		List<RouteSegmentResult> route = new ArrayList<>();
+		int ruleId = 0;
+		while (!in.isAtEnd()) {
+			int tag = in.readTag();
+			switch (WireFormat.getTagFieldNumber(tag)) {
+			case VERSION_FIELD:
+				int version = in.readUInt32();
+				if (version > VERSION) {
+					throw new IOException("Unsupported route data version " + version);
+				}
+				break;
+			case LOCATIONS_FIELD: {
+				int old = in.pushLimit(in.readRawVarint32());
+				readLocations(in, locations);
+				in.popLimit(old);
+				break;
+			}
+			case SEGMENT_FIELD: {
+				int old = in.pushLimit(in.readRawVarint32());
+				RouteSegmentResult segment = new RouteSegmentResult(new RouteDataObject(region));
+				segment.readFromStream(in, resources);
+				route.add(segment);
+				in.popLimit(old);
+				break;
+			}
+			case RULE_FIELD: {
+				int old = in.pushLimit(in.readRawVarint32());
+				readRule(in, region, ruleId++);
+				in.popLimit(old);
+				break;
+			}
+			default:
+				in.skipField(tag);
+				break;
+			}
+		}
+		for (RouteSegmentResult segment : route) {
+			segment.fillNames(resources);
+		}
+		return route;
+	}
+
+	public static byte[] write(List<RouteSegmentResult> route, List<Location> locations, boolean writeLocations) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			write(out, route, locations, writeLocations);
+		} catch (IOException e) {
+			// not possible for byte array
+			throw new IllegalStateException(e);
+		}
+		return out.toByteArray();
+	}
+
+	public static List<RouteSegmentResult> read(byte[] data, List<Location> locations) throws IOException {
+		return read(new ByteArrayInputStream(data), locations);
+	}
+
+	/**
+	 * Route data without locations to embed into gpx track segment with the same points
+	 */
+	public static String writeBase64(List<RouteSegmentResult> route, List<Location> locations) {
+		return Base64.encode(write(route, locations, false));
+	}
+
+	public static List<RouteSegmentResult> readBase64(String data, List<Location> locations) throws IOException {
+		try {
+			return read(Base64.decode(data), locations);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(e.getMessage());
+		}
+	}
+
+	private static void writeMessage(CodedOutputStream out, int field, ByteArrayOutputStream buf) throws IOException {
+		out.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		out.writeRawVarint32(buf.size());
+		out.writeRawBytes(buf.toByteArray());
+		buf.reset();
+	}
+
+	private static void readRule(CodedInputStream in, RouteRegion region, int id) throws IOException {
+		String t = null;
+		String v = null;
+		while (!in.isAtEnd()) {
+			int tag = in.readTag();
+			switch (WireFormat.getTagFieldNumber(tag)) {
+			case RULE_TAG:
+				t = in.readString();
+				break;
+			case RULE_VALUE:
+				v = in.readString();
+				break;
+			default:
+				in.skipField(tag);
+				break;
+			}
+		}
+		region.initRouteEncodingRule(id, t, v);
+	}
+
+	private static void writeLocations(CodedOutputStream out, List<Location> locations) throws IOException {
+		long lat = 0;
+		long lon = 0;
+		long ele = 0;
+		out.writeRawVarint32(locations.size());
+		for (Location l : locations) {
+			long plat = Math.round(l.getLatitude() * COORDINATES_PRECISION);
+			long plon = Math.round(l.getLongitude() * COORDINATES_PRECISION);
+			out.writeRawVarint32(l.hasAltitude() ? LOCATION_ALTITUDE : 0);
+			out.writeSInt64NoTag(plat - lat);
+			out.writeSInt64NoTag(plon - lon);
+			if (l.hasAltitude()) {
+				long pele = Math.round(l.getAltitude() * ELEVATION_PRECISION);
+				out.writeSInt64NoTag(pele - ele);
+				ele = pele;
+			}
+			lat = plat;
+			lon = plon;
+		}
+	}
+
+	private static void readLocations(CodedInputStream in, List<Location> locations) throws IOException {
+		long lat = 0;
+		long lon = 0;
+		long ele = 0;
+		int size = in.readRawVarint32();
+		for (int i = 0; i < size; i++) {
+			int flags = in.readRawVarint32();
+			lat += in.readSInt64();
+			lon += in.readSInt64();
+			Location l = new Location("", lat / COORDINATES_PRECISION, lon / COORDINATES_PRECISION);
+			if ((flags & LOCATION_ALTITUDE) != 0) {
+				ele += in.readSInt64();
+				l.setAltitude(ele / ELEVATION_PRECISION);
+			}
+			locations.add(l);
+		}
+	}
+
+	/**
+	 * Float is rounded to 2 digits as {@link net.osmand.binary.StringBundle#putFloat(String, float, int)} does
+	 */
+	static void writeFloat(CodedOutputStream out, int field, float value) throws IOException {
+		if (!Float.isNaN(value) && !Float.isInfinite(value)) {
+			BigDecimal rounded = new BigDecimal(value).setScale(2, RoundingMode.HALF_EVEN);
+			out.writeSInt64(field, rounded.unscaledValue().longValue());
+		}
+	}
+
+	static float readFloat(CodedInputStream in) throws IOException {
+		long hundredths = in.readSInt64();
+		if (Math.abs(hundredths) < (1 << 22)) {
+			// both are exact floats, so result is the same as parsing of decimal string
+			return (float) hundredths / 100f;
+		}
+		return Float.parseFloat(BigDecimal.valueOf(hundredths, 2).toString());
+	}
+
+	static void writeArray(CodedOutputStream out, int field, int[] array) throws IOException {
+		// empty array is not restored from bundle as well
+		if (array != null && array.length > 0) {
+			out.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+			writePacked(out, array);
+		}
+	}
+
+	static int[] readArray(CodedInputStream in) throws IOException {
+		int old = in.pushLimit(in.readRawVarint32());
+		int[] res = readPacked(in);
+		in.popLimit(old);
+		return res;
+	}
+
+	/**
+	 * Rows are normalized as in bundle (split of string): empty rows are null, trailing empty rows are dropped,
+	 * but single empty row is kept.
+	 */
+	static void writeArray(CodedOutputStream out, int field, int[][] array) throws IOException {
+		if (array == null) {
+			return;
+		}
+		int rows = array.length <= 1 ? 1 : 0;
+		for (int i = 0; i < array.length; i++) {
+			if (array[i] != null && array[i].length > 0) {
+				rows = i + 1;
+			}
+		}
+		int size = 0;
+		for (int i = 0; i < rows; i++) {
+			int rowSize = i < array.length ? packedSize(array[i]) : 0;
+			size += CodedOutputStream.computeTagSize(ARRAY_ROW) + CodedOutputStream.computeRawVarint32Size(rowSize)
+					+ rowSize;
+		}
+		out.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		out.writeRawVarint32(size);
+		for (int i = 0; i < rows; i++) {
+			out.writeTag(ARRAY_ROW, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+			writePacked(out, i < array.length ? array[i] : null);
+		}
+	}
+
+	static int[][] readArrays(CodedInputStream in) throws IOException {
+		int old = in.pushLimit(in.readRawVarint32());
+		List<int[]> rows = new ArrayList<>();
+		while (!in.isAtEnd()) {
+			int tag = in.readTag();
+			if (WireFormat.getTagFieldNumber(tag) == ARRAY_ROW) {
+				int rowLimit = in.pushLimit(in.readRawVarint32());
+				int[] row = readPacked(in);
+				rows.add(row.length == 0 ? null : row);
+				in.popLimit(rowLimit);
+			} else {
+				in.skipField(tag);
+			}
+		}
+		in.popLimit(old);
+		return rows.toArray(new int[rows.size()][]);
+	}
+
+	private static int packedSize(int[] array) {
+		int size = 0;
+		if (array != null) {
+			for (int v : array) {
+				size += CodedOutputStream.computeRawVarint32Size(v);
+			}
+		}
+		return size;
+	}
+
+	private static void writePacked(CodedOutputStream out, int[] array) throws IOException {
+		out.writeRawVarint32(packedSize(array));
+		if (array != null) {
+			for (int v : array) {
+				out.writeRawVarint32(v);
+			}
+		}
+	}
+
+	private static int[] readPacked(CodedInputStream in) throws IOException {
+		int[] res = new int[in.getBytesUntilLimit()];
+		int size = 0;
+		while (!in.isAtEnd()) {
+			res[size++] = in.readRawVarint32();
+		}
+		int[] arr = new int[size];
+		System.arraycopy(res, 0, arr, 0, size);
+		return arr;
+	}
+}
@@ -1,5 +1,6 @@
 package net.osmand.router;
 
+import net.osmand.GPXUtilities;
 import net.osmand.GPXUtilities.GPXFile;
 import net.osmand.GPXUtilities.RouteSegment;
 import net.osmand.GPXUtilities.RouteType;
@@ -12,6 +13,8 @@ import net.osmand.binary.RouteDataBundle;
 import net.osmand.binary.StringBundle;
 import net.osmand.util.Algorithms;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +27,7 @@ public class RouteExporter {
 	private final List<RouteSegmentResult> route;
 	private final List<Location> locations;
 	private final List<WptPt> points;
+	private boolean binaryRouteData;
 
 	public RouteExporter(String name, List<RouteSegmentResult> route, List<Location> locations, List<WptPt> points) {
 		this.name = name;
@@ -32,6 +36,14 @@ public class RouteExporter {
 		this.points = points;
 	}
 
+	/**
+	 * Write route segments as compact binary extension of track segment instead of route/types extensions
+	 * (not readable by older versions).
+	 */
+	public void setBinaryRouteData(boolean binaryRouteData) {
+		this.binaryRouteData = binaryRouteData;
+	}
+
 	public GPXFile exportRoute() {
 		GPXFile gpx = new GPXFile(OSMAND_ROUTER_V2);
 		Track track = new Track();
@@ -61,6 +73,9 @@ public class RouteExporter {
 	}
 
 	public TrkSegment generateRouteSegment() {
+		if (binaryRouteData) {
+			return generateBinaryRouteSegment();
+		}
 		RouteDataResources resources = new RouteDataResources(locations);
 		List<StringBundle> routeItems = new ArrayList<>();
 		if (!Algorithms.isEmpty(route)) {
@@ -89,6 +104,44 @@ public class RouteExporter {
 		if (locations == null || locations.isEmpty()) {
 			return trkSegment;
 		}
+		addPoints(trkSegment);
+
+		List<RouteSegment> routeSegments = new ArrayList<>();
+		for (StringBundle item : routeItems) {
+			routeSegments.add(RouteSegment.fromStringBundle(item));
+		}
+		trkSegment.routeSegments = routeSegments;
+		List<RouteType> routeTypes = new ArrayList<>();
+		for (StringBundle item : typeList) {
+			routeTypes.add(RouteType.fromStringBundle(item));
+		}
+		trkSegment.routeTypes = routeTypes;
+		return trkSegment;
+	}
+
+	private TrkSegment generateBinaryRouteSegment() {
+		TrkSegment trkSegment = new TrkSegment();
+		if (locations == null || locations.isEmpty()) {
+			return trkSegment;
+		}
+		addPoints(trkSegment);
+		if (!Algorithms.isEmpty(route)) {
+			trkSegment.getExtensionsToWrite().put(GPXUtilities.ROUTE_DATA_EXTENSION,
+					RouteDataBinaryCodec.writeBase64(route, locations));
+		}
+		return trkSegment;
+	}
+
+	/**
+	 * Route segments with locations as sidecar file (see {@link RouteDataBinaryCodec#FILE_EXT})
+	 */
+	public void exportRouteData(OutputStream out) throws IOException {
+		List<RouteSegmentResult> segments = route != null ? route : new ArrayList<RouteSegmentResult>();
+		List<Location> locs = locations != null ? locations : new ArrayList<Location>();
+		RouteDataBinaryCodec.write(out, segments, locs, true);
+	}
+
+	private void addPoints(TrkSegment trkSegment) {
 		for (int i = 0; i < locations.size(); i++) {
 			Location loc = locations.get(i);
 			WptPt pt = new WptPt();
@@ -105,17 +158,5 @@ public class RouteExporter {
 			}
 			trkSegment.points.add(pt);
 		}
-
-		List<RouteSegment> routeSegments = new ArrayList<>();
-		for (StringBundle item : routeItems) {
-			routeSegments.add(RouteSegment.fromStringBundle(item));
-		}
-		trkSegment.routeSegments = routeSegments;
-		List<RouteType> routeTypes = new ArrayList<>();
-		for (StringBundle item : typeList) {
-			routeTypes.add(RouteType.fromStringBundle(item));
-		}
-		trkSegment.routeTypes = routeTypes;
-		return trkSegment;
 	}
 }
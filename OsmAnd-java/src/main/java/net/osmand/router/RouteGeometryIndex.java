@@ -0,0 +1,192 @@
+package net.osmand.router;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.util.MapUtils;
+
+/**
+ * Platform independent grid index over calculated route polyline with cumulative distances.
+ * Answers nearest route position consistent with movement bearing and previously matched position
+ * without scanning route points, so it could be used for route following on every location update.
+ */
+public class RouteGeometryIndex {
+
+	private static final int CELL_ZOOM = 17;
+	private static final int CELL_SHIFT = 31 - CELL_ZOOM;
+	// segments spanning more cells are checked on every query
+	private static final int MAX_CELLS_PER_SEGMENT = 64;
+	private static final double METERS_IN_DEGREE = MapUtils.getDistance(0, 0, 0, 1);
+
+	// movement bearing could differ from segment bearing on turns and with gps noise
+	public static final double MAX_BEARING_DIFF = 60;
+	public static final double BEARING_PENALTY = 50;
+	// gps jumps back are allowed only a bit, going back along the route is penalized per meter
+	public static final double BACKWARD_TOLERANCE = 20;
+	public static final double BACKWARD_PENALTY = 1;
+	// jumps forward further than expected advance are penalized per meter
+	public static final double FORWARD_JUMP_PENALTY = 0.1;
+
+	private final double[] lats;
+	private final double[] lons;
+	private final double[] distances;
+	private final TLongObjectHashMap<TIntArrayList> cells = new TLongObjectHashMap<TIntArrayList>();
+	private final TIntArrayList longSegments = new TIntArrayList();
+
+	public static class RoutePosition {
+		// position is on segment [segmentIndex, segmentIndex + 1]
+		public int segmentIndex = -1;
+		public double latitude;
+		public double longitude;
+		public double distanceFromStart;
+		public double distance;
+		public double score;
+	}
+
+	public RouteGeometryIndex(double[] lats, double[] lons) {
+		if (lats.length != lons.length) {
+			throw new IllegalArgumentException();
+		}
+		this.lats = lats;
+		this.lons = lons;
+		this.distances = new double[lats.length];
+		for (int i = 1; i < lats.length; i++) {
+			distances[i] = distances[i - 1] + MapUtils.getDistance(lats[i - 1], lons[i - 1], lats[i], lons[i]);
+		}
+		for (int i = 0; i < lats.length - 1; i++) {
+			indexSegment(i);
+		}
+	}
+
+	private void indexSegment(int i) {
+		int x1 = MapUtils.get31TileNumberX(lons[i]) >> CELL_SHIFT;
+		int y1 = MapUtils.get31TileNumberY(lats[i]) >> CELL_SHIFT;
+		int x2 = MapUtils.get31TileNumberX(lons[i + 1]) >> CELL_SHIFT;
+		int y2 = MapUtils.get31TileNumberY(lats[i + 1]) >> CELL_SHIFT;
+		int l = Math.min(x1, x2), r = Math.max(x1, x2), t = Math.min(y1, y2), b = Math.max(y1, y2);
+		if ((long) (r - l + 1) * (b - t + 1) > MAX_CELLS_PER_SEGMENT) {
+			longSegments.add(i);
+			return;
+		}
+		for (int x = l; x <= r; x++) {
+			for (int y = t; y <= b; y++) {
+				long cell = getCell(x, y);
+				TIntArrayList lst = cells.get(cell);
+				if (lst == null) {
+					lst = new TIntArrayList(4);
+					cells.put(cell, lst);
+				}
+				lst.add(i);
+			}
+		}
+	}
+
+	private static long getCell(int cx, int cy) {
+		return (((long) cx) << 32) | cy;
+	}
+
+	public int getPointsCount() {
+		return lats.length;
+	}
+
+	/**
+	 * @return distance from route start to the point
+	 */
+	public double getDistanceFromStart(int pointIndex) {
+		return distances[pointIndex];
+	}
+
+	public double getRouteDistance() {
+		return distances.length == 0 ? 0 : distances[distances.length - 1];
+	}
+
+	/**
+	 * Finds best route position within radius: orthogonal distance plus penalties for bearing mismatch
+	 * and for moving back or jumping ahead along the route from the last matched position.
+	 * @param bearing movement bearing in degrees or NaN if unknown
+	 * @param lastDistanceFromStart last matched position or negative if unknown
+	 * @param expectedAdvance distance which could be passed since last matched position
+	 * @return result or null if there is no route segment within radius
+	 */
+	public RoutePosition findPosition(double lat, double lon, double bearing, double lastDistanceFromStart,
+			double expectedAdvance, double radius, RoutePosition result) {
+		if (result == null) {
+			result = new RoutePosition();
+		}
+		result.segmentIndex = -1;
+		result.score = Double.POSITIVE_INFINITY;
+		double cosLat = Math.cos(Math.toRadians(lat));
+		double radius31 = radius / (METERS_IN_DEGREE * 360 * Math.max(cosLat, 0.01)) * (1L << 31);
+		int cellsRadius = (int) Math.ceil(radius31 / (1 << CELL_SHIFT));
+		int cx = MapUtils.get31TileNumberX(lon) >> CELL_SHIFT;
+		int cy = MapUtils.get31TileNumberY(lat) >> CELL_SHIFT;
+		if ((2L * cellsRadius + 1) * (2L * cellsRadius + 1) < cells.size()) {
+			for (int x = cx - cellsRadius; x <= cx + cellsRadius; x++) {
+				for (int y = cy - cellsRadius; y <= cy + cellsRadius; y++) {
+					TIntArrayList lst = cells.get(getCell(x, y));
+					if (lst != null) {
+						for (int k = 0; k < lst.size(); k++) {
+							checkSegment(lst.get(k), lat, lon, cosLat, bearing, lastDistanceFromStart, expectedAdvance,
+									radius, result);
+						}
+					}
+				}
+			}
+		} else {
+			for (TIntArrayList lst : cells.valueCollection()) {
+				for (int k = 0; k < lst.size(); k++) {
+					checkSegment(lst.get(k), lat, lon, cosLat, bearing, lastDistanceFromStart, expectedAdvance,
+							radius, result);
+				}
+			}
+		}
+		for (int k = 0; k < longSegments.size(); k++) {
+			checkSegment(longSegments.get(k), lat, lon, cosLat, bearing, lastDistanceFromStart, expectedAdvance,
+					radius, result);
+		}
+		return result.segmentIndex < 0 ? null : result;
+	}
+
+	private void checkSegment(int i, double lat, double lon, double cosLat, double bearing, double lastDistanceFromStart,
+			double expectedAdvance, double radius, RoutePosition result) {
+		// local plane in meters around the location
+		double ax = (lons[i] - lon) * cosLat * METERS_IN_DEGREE;
+		double ay = (lats[i] - lat) * METERS_IN_DEGREE;
+		double bx = (lons[i + 1] - lon) * cosLat * METERS_IN_DEGREE;
+		double by = (lats[i + 1] - lat) * METERS_IN_DEGREE;
+		double dx = bx - ax;
+		double dy = by - ay;
+		double len2 = dx * dx + dy * dy;
+		double t = len2 == 0 ? 0 : -(ax * dx + ay * dy) / len2;
+		t = Math.max(0, Math.min(1, t));
+		double px = ax + t * dx;
+		double py = ay + t * dy;
+		double dist = Math.sqrt(px * px + py * py);
+		if (dist > radius) {
+			return;
+		}
+		double distanceFromStart = distances[i] + t * (distances[i + 1] - distances[i]);
+		double score = dist;
+		if (!Double.isNaN(bearing) && len2 > 0) {
+			double segmentBearing = Math.toDegrees(Math.atan2(dx, dy));
+			if (Math.abs(MapUtils.degreesDiff(bearing, segmentBearing)) > MAX_BEARING_DIFF) {
+				score += BEARING_PENALTY;
+			}
+		}
+		if (lastDistanceFromStart >= 0) {
+			double delta = distanceFromStart - lastDistanceFromStart;
+			if (delta < -BACKWARD_TOLERANCE) {
+				score += (-delta - BACKWARD_TOLERANCE) * BACKWARD_PENALTY;
+			} else if (delta > expectedAdvance) {
+				score += (delta - expectedAdvance) * FORWARD_JUMP_PENALTY;
+			}
+		}
+		if (score < result.score || (score == result.score && i < result.segmentIndex)) {
+			result.segmentIndex = i;
+			result.score = score;
+			result.distance = dist;
+			result.distanceFromStart = distanceFromStart;
+			result.latitude = lat + py / METERS_IN_DEGREE;
+			result.longitude = lon + px / (cosLat * METERS_IN_DEGREE);
+		}
+	}
+}
@@ -15,6 +15,7 @@ import net.osmand.binary.StringBundle;
 
 import org.apache.commons.logging.Log;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -48,6 +49,8 @@ public class RouteImporter {
 	public List<RouteSegmentResult> importRoute() {
 		if (gpxFile != null || segment != null) {
 			parseRoute();
+		} else if (file != null && file.getName().endsWith(RouteDataBinaryCodec.FILE_EXT)) {
+			return importRouteData(file);
 		} else if (file != null) {
 			FileInputStream fis = null;
 			try {
@@ -72,6 +75,26 @@ public class RouteImporter {
 		return route;
 	}
 
+	private List<RouteSegmentResult> importRouteData(File file) {
+		FileInputStream fis = null;
+		try {
+			fis = new FileInputStream(file);
+			route.addAll(RouteDataBinaryCodec.read(new BufferedInputStream(fis), new ArrayList<Location>()));
+		} catch (IOException e) {
+			log.error("Error importing route " + file.getAbsolutePath(), e);
+			return null;
+		} finally {
+			try {
+				if (fis != null) {
+					fis.close();
+				}
+			} catch (IOException ignore) {
+				// ignore
+			}
+		}
+		return route;
+	}
+
 	private void parseRoute() {
 		if (segment != null) {
 			parseRoute(segment);
@@ -84,6 +107,17 @@ public class RouteImporter {
 	}
 
 	private void parseRoute(TrkSegment segment) {
+		String routeData = segment.getRouteData();
+		if (routeData != null) {
+			RouteDataResources resources = new RouteDataResources();
+			collectLocations(resources, segment);
+			try {
+				route.addAll(RouteDataBinaryCodec.readBase64(routeData, resources.getLocations()));
+			} catch (IOException e) {
+				log.error("Error importing route data", e);
+			}
+			return;
+		}
 		RouteRegion region = new RouteRegion();
 		RouteDataResources resources = new RouteDataResources();
 
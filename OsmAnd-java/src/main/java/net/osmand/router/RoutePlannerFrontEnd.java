@@ -13,6 +13,7 @@ import net.osmand.data.LatLon;
 import net.osmand.data.QuadPoint;
 import net.osmand.router.BinaryRoutePlanner.RouteSegment;
 import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RoutingMetrics.RoutingMetricsListener;
 import net.osmand.util.MapUtils;
 
 import org.apache.commons.logging.Log;
@@ -33,6 +34,8 @@ public class RoutePlannerFrontEnd {
 	// Check issue #8649
 	protected static final double GPS_POSSIBLE_ERROR = 7;
 	public boolean useSmartRouteRecalculation = true;
+	public boolean useIncrementalRecalculation = false;
+	private RoutingMetricsListener metricsListener;
 
 	
 	public RoutePlannerFrontEnd() {
@@ -230,6 +233,25 @@ public class RoutePlannerFrontEnd {
 		useSmartRouteRecalculation = use;
 	}
 
+	/**
+	 * Keeps reverse search tree and loaded tiles in routing context (java routing only),
+	 * so next search with the same context and target only joins new start to the previous search.
+	 */
+	public void setUseIncrementalRecalculation(boolean use) {
+		useIncrementalRecalculation = use;
+	}
+
+	/**
+	 * Enables metrics collection for every calculation and reports them to the listener after calculation.
+	 */
+	public void setMetricsListener(RoutingMetricsListener metricsListener) {
+		this.metricsListener = metricsListener;
+	}
+
+	public RoutingMetricsListener getMetricsListener() {
+		return metricsListener;
+	}
+
 	public GpxRouteApproximation searchGpxRoute(GpxRouteApproximation gctx, List<GpxPoint> gpxPoints, ResultMatcher<GpxRouteApproximation> resultMatcher) throws IOException, InterruptedException {
 		long timeToCalculate = System.nanoTime();
 		gctx.ctx.keepNativeRoutingContext = true;
@@ -667,10 +689,27 @@ public class RoutePlannerFrontEnd {
 
 	public List<RouteSegmentResult> searchRoute(final RoutingContext ctx, LatLon start, LatLon end, List<LatLon> intermediates,
 	                                            PrecalculatedRouteDirection routeDirection) throws IOException, InterruptedException {
-		long timeToCalculate = System.nanoTime();
 		if (ctx.calculationProgress == null) {
 			ctx.calculationProgress = new RouteCalculationProgress();
 		}
+		if (metricsListener != null && ctx.calculationProgress.metrics == null) {
+			ctx.calculationProgress.metrics = new RoutingMetrics();
+		}
+		RoutingMetrics metrics = ctx.calculationProgress.metrics;
+		long startTime = metrics != null ? metrics.startTimer() : 0;
+		List<RouteSegmentResult> res = searchRouteAndPrepare(ctx, start, end, intermediates, routeDirection);
+		if (metrics != null) {
+			metrics.stopTimer(RoutingMetrics.Phase.TOTAL, startTime);
+			if (metricsListener != null) {
+				metricsListener.onRouteCalculated(metrics);
+			}
+		}
+		return res;
+	}
+
+	private List<RouteSegmentResult> searchRouteAndPrepare(final RoutingContext ctx, LatLon start, LatLon end, List<LatLon> intermediates,
+	                                            PrecalculatedRouteDirection routeDirection) throws IOException, InterruptedException {
+		long timeToCalculate = System.nanoTime();
 		boolean intermediatesEmpty = intermediates == null || intermediates.isEmpty();
 		List<LatLon> targets = new ArrayList<>();
 		targets.add(end);
@@ -693,7 +732,7 @@ public class RoutePlannerFrontEnd {
 			ctx.calculationProgress.totalIterations++;
 			RoutingContext nctx = buildRoutingContext(ctx.config, ctx.nativeLib, ctx.getMaps(), RouteCalculationMode.BASE);
 			nctx.calculationProgress = ctx.calculationProgress;
-			List<RouteSegmentResult> ls = searchRoute(nctx, start, end, intermediates);
+			List<RouteSegmentResult> ls = searchRouteAndPrepare(nctx, start, end, intermediates, null);
 			if(ls == null) {
 				return null;
 			}
@@ -841,7 +880,11 @@ public class RoutePlannerFrontEnd {
 
 	private List<RouteSegmentResult> searchRouteInternalPrepare(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
 	                                                            PrecalculatedRouteDirection routeDirection) throws IOException, InterruptedException {
-		RouteSegment recalculationEnd = getRecalculationEnd(ctx);
+		if (routeDirection != null) {
+			ctx.clearReverseSearchTree();
+		}
+		// joining previous reverse search tree is more precise than reusing tail of previous route
+		RouteSegment recalculationEnd = ctx.canJoinReverseSearchTree(end) ? null : getRecalculationEnd(ctx);
 		if (recalculationEnd != null) {
 			ctx.initStartAndTargetPoints(start, recalculationEnd);
 		} else {
@@ -865,10 +908,77 @@ public class RoutePlannerFrontEnd {
 			// Split into 2 methods to let GC work in between
 			ctx.finalRouteSegment = new BinaryRoutePlanner().searchRouteInternal(ctx, start, end, recalculationEnd);
 			// 4. Route is found : collect all segments and prepare result
-			return new RouteResultPreparation().prepareResult(ctx, ctx.finalRouteSegment);
+			RoutingMetrics metrics = ctx.getMetrics();
+			long startPreparation = metrics != null ? metrics.startTimer() : 0;
+			List<RouteSegmentResult> res = new RouteResultPreparation().prepareResult(ctx, ctx.finalRouteSegment);
+			if (ctx.alternativeSearchTrees != null) {
+				ctx.alternativeRoutes = new AlternativeRoutesFinder().findAlternatives(ctx, res);
+			}
+			if (metrics != null) {
+				metrics.stopTimer(RoutingMetrics.Phase.RESULT_PREPARATION, startPreparation);
+				metrics.add(RoutingMetrics.Counter.RESULT_SEGMENTS, res.size());
+			}
+			return res;
 		}
 	}
 
+	/**
+	 * Travel times in seconds between all points by road (one search from every point to all others),
+	 * input for {@link TspSolver}. Pairs without route get straight line time with maximal speed of router.
+	 */
+	public double[][] calculateTravelTimeMatrix(final RoutingContext ctx, List<LatLon> points)
+			throws IOException, InterruptedException {
+		if (ctx.calculationProgress == null) {
+			ctx.calculationProgress = new RouteCalculationProgress();
+		}
+		int n = points.size();
+		List<RouteSegmentPoint> segments = new ArrayList<RouteSegmentPoint>();
+		for (LatLon l : points) {
+			segments.add(findRouteSegment(l.getLatitude(), l.getLongitude(), ctx, null));
+		}
+		float maxSpeed = ctx.getRouter().getMaxSpeed();
+		double[][] times = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			float[] costs = null;
+			if (segments.get(i) != null) {
+				// start and end points keep search state, so they are copied for every search
+				List<RouteSegmentPoint> targets = new ArrayList<RouteSegmentPoint>();
+				for (int j = 0; j < n; j++) {
+					targets.add(j == i || segments.get(j) == null ? null : copyPoint(segments.get(j)));
+				}
+				costs = new BinaryRoutePlanner().searchRouteOneToMany(ctx, copyPoint(segments.get(i)), targets);
+			}
+			for (int j = 0; j < n; j++) {
+				if (i != j) {
+					times[i][j] = costs != null && costs[j] >= 0 ? costs[j]
+							: MapUtils.getDistance(points.get(i), points.get(j)) / maxSpeed;
+				}
+			}
+		}
+		ctx.unloadAllData();
+		return times;
+	}
+
+	private static RouteSegmentPoint copyPoint(RouteSegmentPoint pnt) {
+		RouteSegmentPoint copy = new RouteSegmentPoint(pnt);
+		// candidates are removed by search when start or end isn't reachable
+		copy.others = pnt.others == null ? null : new ArrayList<RouteSegmentPoint>(pnt.others);
+		return copy;
+	}
+
+	/**
+	 * Orders intermediates by road travel times.
+	 * @return order of points as {@link TspSolver#solve()}: 0 is start, intermediates are 1..n and end is the last
+	 */
+	public int[] optimizeIntermediates(final RoutingContext ctx, LatLon start, LatLon end, List<LatLon> intermediates,
+			long timeBudgetMs) throws IOException, InterruptedException {
+		List<LatLon> points = new ArrayList<LatLon>();
+		points.add(start);
+		points.addAll(intermediates);
+		points.add(end);
+		return new TspSolver(calculateTravelTimeMatrix(ctx, points), true).setTimeBudget(timeBudgetMs).solve();
+	}
+
 	public RouteSegment getRecalculationEnd(final RoutingContext ctx) {
 		RouteSegment recalculationEnd = null;
 		boolean runRecalculation = ctx.previouslyCalculatedRoute != null && ctx.previouslyCalculatedRoute.size() > 0
@@ -936,7 +1046,14 @@ public class RoutePlannerFrontEnd {
 			}
 		}
 		ctx.routingTime += ctx.calculationProgress.routingCalculatedTime;
-		return new RouteResultPreparation().prepareResult(ctx, result, recalculationEnd != null);
+		RoutingMetrics metrics = ctx.getMetrics();
+		long startPreparation = metrics != null ? metrics.startTimer() : 0;
+		List<RouteSegmentResult> prepared = new RouteResultPreparation().prepareResult(ctx, result, recalculationEnd != null);
+		if (metrics != null) {
+			metrics.stopTimer(RoutingMetrics.Phase.RESULT_PREPARATION, startPreparation);
+			metrics.add(RoutingMetrics.Counter.RESULT_SEGMENTS, prepared.size());
+		}
+		return prepared;
 	}
 
 
@@ -947,13 +1064,25 @@ public class RoutePlannerFrontEnd {
 			if (!useSmartRouteRecalculation) {
 				ctx.previouslyCalculatedRoute = null;
 			}
+			ctx.keepReverseSearchTree = useIncrementalRecalculation && ctx.nativeLib == null;
+			ctx.calculateAlternatives = ctx.config.alternativeRoutes > 0 && ctx.nativeLib == null;
+			ctx.alternativeRoutes = null;
 			pringGC(ctx, true);
 			List<RouteSegmentResult> res = searchRouteInternalPrepare(ctx, points.get(0), points.get(1), routeDirection);
 			pringGC(ctx, false);
 			makeStartEndPointsPrecise(res, points.get(0).getPreciseLatLon(), points.get(1).getPreciseLatLon(), null);
+			if (ctx.alternativeRoutes != null) {
+				for (List<RouteSegmentResult> alt : ctx.alternativeRoutes) {
+					makeStartEndPointsPrecise(alt, points.get(0).getPreciseLatLon(), points.get(1).getPreciseLatLon(), null);
+				}
+			}
 			return res;
 		}
 
+		ctx.keepReverseSearchTree = false;
+		ctx.calculateAlternatives = false;
+		ctx.alternativeRoutes = null;
+		ctx.clearReverseSearchTree();
 		ArrayList<RouteSegmentResult> firstPartRecalculatedRoute = null;
 		ArrayList<RouteSegmentResult> restPartRecalculatedRoute = null;
 		if (ctx.previouslyCalculatedRoute != null) {
@@ -996,6 +1125,7 @@ public class RoutePlannerFrontEnd {
 			makeStartEndPointsPrecise(res, points.get(i).getPreciseLatLon(), points.get(i + 1).getPreciseLatLon(), null);
 			results.addAll(res);
 			ctx.routingTime += local.routingTime;
+			local.releaseSharedTiles();
 //			local.unloadAllData(ctx);
 			if (restPartRecalculatedRoute != null) {
 				results.addAll(restPartRecalculatedRoute);
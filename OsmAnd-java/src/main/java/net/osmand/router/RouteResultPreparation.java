@@ -14,6 +14,10 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
 import org.xmlpull.v1.XmlPullParser;
@@ -49,6 +53,11 @@ public class RouteResultPreparation {
 	public static final int SHIFT_ID = 6;
 	private Log log = PlatformUtil.getLog(RouteResultPreparation.class);
 	public static final String UNMATCHED_HIGHWAY_TYPE = "unmatched";
+	// parallel preparation is used only for long routes
+	private static final int MIN_SEGMENTS_TO_PREPARE_IN_PARALLEL = 512;
+	private static final int MIN_PARALLEL_CHUNK_SIZE = 128;
+	// route segments ahead of current one to decode tiles for attached roads
+	private static final int ATTACH_PREFETCH_WINDOW = 24;
 	/**
 	 * Helper method to prepare final result 
 	 */
@@ -175,7 +184,18 @@ public class RouteResultPreparation {
 		}
 		combineWayPointsForAreaRouting(ctx, result);
 		validateAllPointsConnected(result);
-		splitRoadsAndAttachRoadSegments(ctx, result, recalculation);
+		boolean prefetch = isParallelPreparation(ctx, result) && ctx.nativeLib == null && ctx.prefetcher == null;
+		if (prefetch) {
+			ctx.prefetcher = new RoutingTilesPrefetcher(ctx, ctx.config.resultPreparationThreads);
+		}
+		try {
+			splitRoadsAndAttachRoadSegments(ctx, result, recalculation);
+		} finally {
+			if (prefetch) {
+				ctx.prefetcher.shutdown();
+				ctx.prefetcher = null;
+			}
+		}
 		for (int i = 0; i < result.size(); i++) {
 			filterMinorStops(result.get(i));
 		}
@@ -220,10 +240,17 @@ public class RouteResultPreparation {
 		return seg;
 	}
 
+	private boolean isParallelPreparation(RoutingContext ctx, List<RouteSegmentResult> result) {
+		return ctx.config.resultPreparationThreads > 1 && result.size() >= MIN_SEGMENTS_TO_PREPARE_IN_PARALLEL;
+	}
+
 	public void prepareTurnResults(RoutingContext ctx, List<RouteSegmentResult> result) {
-		for (int i = 0; i < result.size(); i ++) {
-			TurnType turnType = getTurnInfo(result, i, ctx.leftSideNavigation);
-			result.get(i).setTurnType(turnType);
+		if (!isParallelPreparation(ctx, result) || !calculateTurnsInParallel(ctx, result)) {
+			for (int i = 0; i < result.size(); i++) {
+				TurnType turnType = getTurnInfo(result, i, ctx.leftSideNavigation,
+						i > 0 ? result.get(i - 1).getTurnType() : null);
+				result.get(i).setTurnType(turnType);
+			}
 		}
 		
 		determineTurnsToMerge(ctx.leftSideNavigation, result);
@@ -232,6 +259,58 @@ public class RouteResultPreparation {
 		addTurnInfoDescriptions(result);
 	}
 
+	/**
+	 * Calculates turns in independent chunks and then recalculates chunk beginnings which depend on
+	 * the turn of the previous segment (inherited lanes), so result is identical to sequential calculation.
+	 */
+	private boolean calculateTurnsInParallel(RoutingContext ctx, final List<RouteSegmentResult> result) {
+		final boolean leftSide = ctx.leftSideNavigation;
+		int threads = ctx.config.resultPreparationThreads;
+		final int chunkSize = Math.max(MIN_PARALLEL_CHUNK_SIZE, (result.size() + threads * 4 - 1) / (threads * 4));
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int from = 0; from < result.size(); from += chunkSize) {
+				final int start = from;
+				final int end = Math.min(result.size(), from + chunkSize);
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						// turn of the previous chunk is unknown yet
+						TurnType prevTurn = null;
+						for (int i = start; i < end; i++) {
+							prevTurn = getTurnInfo(result, i, leftSide, prevTurn);
+							result.get(i).setTurnType(prevTurn);
+						}
+					}
+				}));
+			}
+			for (Future<?> f : futures) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			log.error("Error calculating turns in parallel", e.getCause());
+			return false;
+		} finally {
+			executor.shutdownNow();
+		}
+		// stitch chunks: recalculate while turn could be inherited from previous segment
+		for (int from = chunkSize; from < result.size(); from += chunkSize) {
+			for (int i = from; i < result.size() && isTurnDependsOnPrevious(result, i); i++) {
+				result.get(i).setTurnType(getTurnInfo(result, i, leftSide, result.get(i - 1).getTurnType()));
+			}
+		}
+		return true;
+	}
+
+	private boolean isTurnDependsOnPrevious(List<RouteSegmentResult> result, int i) {
+		RouteSegmentResult prev = result.get(i - 1);
+		return getTurnLanesString(prev) == null && prev.getDistance() < 100;
+	}
+
 	protected void ignorePrecedingStraightsOnSameIntersection(boolean leftside, List<RouteSegmentResult> result) {
 		//Issue 2571: Ignore TurnType.C if immediately followed by another turn in non-motorway cases, as these likely belong to the very same intersection
 		RouteSegmentResult nextSegment = null;
@@ -285,6 +364,9 @@ public class RouteResultPreparation {
 	private void calculateTimeSpeed(RoutingContext ctx, List<RouteSegmentResult> result) throws IOException {
 		//for Naismith
 		boolean usePedestrianHeight = ((((GeneralRouter) ctx.getRouter()).getProfile() == GeneralRouterProfile.PEDESTRIAN) && ((GeneralRouter) ctx.getRouter()).getHeightObstacles());
+		// profile speeds are taken at arrival time to the segment, so time from departure is accumulated
+		SpeedProfileCache speedProfiles = ctx.getSpeedProfileCache();
+		float timeFromDeparture = 0;
 
 		for (int i = 0; i < result.size(); i++) {
 			RouteSegmentResult rr = result.get(i);
@@ -301,6 +383,8 @@ public class RouteResultPreparation {
 			boolean plus = rr.getStartPointIndex() < rr.getEndPointIndex();
 			int next;
 			double distance = 0;
+			double profileMoveTime = 0;
+			boolean profiled = false;
 
 			//for Naismith
 			float prevHeight = -99999.0f;
@@ -319,7 +403,17 @@ public class RouteResultPreparation {
 				if (obstacle < 0) {
 					obstacle = 0;
 				}
-				distOnRoadToPass += d / speed + obstacle;  //this is time in seconds
+				double segmentSpeed = speed;
+				if (speedProfiles != null) {
+					float profileSpeed = speedProfiles.getSpeed(road.getId(), Math.min(j, next), plus,
+							timeFromDeparture + (float) distOnRoadToPass);
+					if (profileSpeed > 0) {
+						segmentSpeed = profileSpeed;
+						profiled = true;
+					}
+					profileMoveTime += d / segmentSpeed;
+				}
+				distOnRoadToPass += d / segmentSpeed + obstacle;  //this is time in seconds
 
 				//for Naismith
 				if (usePedestrianHeight) {
@@ -340,6 +434,10 @@ public class RouteResultPreparation {
 
 			// last point turn time can be added
 			// if(i + 1 < result.size()) { distOnRoadToPass += ctx.getRouter().calculateTurnTime(); }
+			if (profiled && profileMoveTime > 0) {
+				speed = distance / profileMoveTime;
+			}
+			timeFromDeparture += (float) distOnRoadToPass;
 			rr.setSegmentTime((float) distOnRoadToPass);
 			rr.setSegmentSpeed((float) speed);
 			rr.setDistance((float) distance);
@@ -347,10 +445,17 @@ public class RouteResultPreparation {
 	}
 
 	private void splitRoadsAndAttachRoadSegments(RoutingContext ctx, List<RouteSegmentResult> result, boolean recalculation) throws IOException {
+		int prefetched = 0;
 		for (int i = 0; i < result.size(); i++) {
 			if (ctx.checkIfMemoryLimitCritical(ctx.config.memoryLimitation)) {
 				ctx.unloadUnusedTiles(ctx.config.memoryLimitation);
 			}
+			if (ctx.prefetcher != null) {
+				// decode tiles of next segments in background while current is attached
+				for (; prefetched < Math.min(result.size(), i + ATTACH_PREFETCH_WINDOW); prefetched++) {
+					ctx.prefetcher.prefetchRouteSegment(result.get(prefetched), prefetched - i);
+				}
+			}
 			RouteSegmentResult rr = result.get(i);
 			boolean plus = rr.getStartPointIndex() < rr.getEndPointIndex();
 			int next;
@@ -402,6 +507,7 @@ public class RouteResultPreparation {
 						rr.setEndPointIndex(next);
 						result.add(i + 1, split);
 						i++;
+						prefetched++;
 						// switch current segment to the splitted
 						rr = split;
 					}
@@ -1095,7 +1201,7 @@ public class RouteResultPreparation {
 	}
 
 
-	private TurnType getTurnInfo(List<RouteSegmentResult> result, int i, boolean leftSide) {
+	private TurnType getTurnInfo(List<RouteSegmentResult> result, int i, boolean leftSide, TurnType prevTurn) {
 		if (i == 0) {
 			return TurnType.valueOf(TurnType.C, false);
 		}
@@ -1130,7 +1236,7 @@ public class RouteResultPreparation {
 				} else {
 					t = TurnType.valueOf(TurnType.TU, leftSide);
 				}
-				int[] lanes = getTurnLanesInfo(prev, t.getValue());
+				int[] lanes = getTurnLanesInfo(prev, prevTurn, t.getValue());
 				t.setLanes(lanes);
 			} else if (mpi < -TURN_DEGREE_MIN) {
 				if (mpi > -TURN_DEGREE_MIN) {
@@ -1142,7 +1248,7 @@ public class RouteResultPreparation {
 				} else {
 					t = TurnType.valueOf(TurnType.TRU, leftSide);
 				}
-				int[] lanes = getTurnLanesInfo(prev, t.getValue());
+				int[] lanes = getTurnLanesInfo(prev, prevTurn, t.getValue());
 				t.setLanes(lanes);
 			} else {
 				t = attachKeepLeftInfoAndLanes(leftSide, prev, rr);
@@ -1154,13 +1260,13 @@ public class RouteResultPreparation {
 		return t;
 	}
 
-	private int[] getTurnLanesInfo(RouteSegmentResult prevSegm, int mainTurnType) {
+	private int[] getTurnLanesInfo(RouteSegmentResult prevSegm, TurnType prevTurn, int mainTurnType) {
 		String turnLanes = getTurnLanesString(prevSegm);
 		int[] lanesArray;
 		if (turnLanes == null) {
-			if(prevSegm.getTurnType() != null && prevSegm.getTurnType().getLanes() != null
+			if(prevTurn != null && prevTurn.getLanes() != null
 					&& prevSegm.getDistance() < 100) {
-				int[] lns = prevSegm.getTurnType().getLanes();
+				int[] lns = prevTurn.getLanes();
 				TIntArrayList lst = new TIntArrayList();
 				for(int i = 0; i < lns.length; i++) {
 					if(lns[i] % 2 == 1) {
@@ -0,0 +1,161 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+
+import net.osmand.binary.RouteDataObject;
+
+/**
+ * Labels of one search over shared road graph kept in primitive arrays. Node is point of the road with direction
+ * of movement (keyed by route point id), label is its cost from start and parent node. Open addressing table maps
+ * route point id to label slot, so loaded tiles are only read by search and labels are reused by next search
+ * after {@link #clear()}.
+ */
+final class RouteSearchLabels {
+
+	static final int NO_PARENT = -1;
+	// estimated bytes per label (arrays and table)
+	static final int LABEL_SIZE = 48;
+
+	private static final long EMPTY = -1;
+
+	private long[] ids;
+	private float[] costs;
+	private int[] parents;
+	private short[] points;
+	private boolean[] settled;
+	private RouteDataObject[] roads;
+	private int size;
+
+	private long[] tableKeys;
+	private int[] tableSlots;
+	private int tableMask;
+
+	RouteSearchLabels() {
+		this(256);
+	}
+
+	RouteSearchLabels(int capacity) {
+		capacity = Math.max(capacity, 16);
+		ids = new long[capacity];
+		costs = new float[capacity];
+		parents = new int[capacity];
+		points = new short[capacity];
+		settled = new boolean[capacity];
+		roads = new RouteDataObject[capacity];
+		initTable(Integer.highestOneBit(capacity) * 4);
+	}
+
+	private void initTable(int tableCapacity) {
+		tableKeys = new long[tableCapacity];
+		tableSlots = new int[tableCapacity];
+		Arrays.fill(tableKeys, EMPTY);
+		tableMask = tableCapacity - 1;
+	}
+
+	private static int hash(long id) {
+		long h = id * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * @return slot of the node or -1 if it isn't labeled yet
+	 */
+	int getSlot(long id) {
+		int i = hash(id) & tableMask;
+		while (tableKeys[i] != EMPTY) {
+			if (tableKeys[i] == id) {
+				return tableSlots[i];
+			}
+			i = (i + 1) & tableMask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Adds node (not labeled yet) with infinite cost.
+	 * @param id non negative route point id
+	 * @return slot of the node
+	 */
+	int addNode(long id, RouteDataObject road, int point) {
+		if (size == ids.length) {
+			int capacity = size * 2;
+			ids = Arrays.copyOf(ids, capacity);
+			costs = Arrays.copyOf(costs, capacity);
+			parents = Arrays.copyOf(parents, capacity);
+			points = Arrays.copyOf(points, capacity);
+			settled = Arrays.copyOf(settled, capacity);
+			roads = Arrays.copyOf(roads, capacity);
+		}
+		if ((size + 1) * 2 > tableKeys.length) {
+			initTable(tableKeys.length * 2);
+			for (int s = 0; s < size; s++) {
+				putSlot(ids[s], s);
+			}
+		}
+		int slot = size++;
+		ids[slot] = id;
+		costs[slot] = Float.POSITIVE_INFINITY;
+		parents[slot] = NO_PARENT;
+		points[slot] = (short) point;
+		settled[slot] = false;
+		roads[slot] = road;
+		putSlot(id, slot);
+		return slot;
+	}
+
+	private void putSlot(long id, int slot) {
+		int i = hash(id) & tableMask;
+		while (tableKeys[i] != EMPTY) {
+			i = (i + 1) & tableMask;
+		}
+		tableKeys[i] = id;
+		tableSlots[i] = slot;
+	}
+
+	void setLabel(int slot, float cost, int parent) {
+		costs[slot] = cost;
+		parents[slot] = parent;
+	}
+
+	long getId(int slot) {
+		return ids[slot];
+	}
+
+	float getCost(int slot) {
+		return costs[slot];
+	}
+
+	int getParent(int slot) {
+		return parents[slot];
+	}
+
+	RouteDataObject getRoad(int slot) {
+		return roads[slot];
+	}
+
+	int getPoint(int slot) {
+		return points[slot];
+	}
+
+	boolean isPositive(int slot) {
+		return (ids[slot] & 1) == 1;
+	}
+
+	boolean isSettled(int slot) {
+		return settled[slot];
+	}
+
+	void settle(int slot) {
+		settled[slot] = true;
+	}
+
+	int size() {
+		return size;
+	}
+
+	void clear() {
+		Arrays.fill(roads, 0, size, null);
+		Arrays.fill(tableKeys, EMPTY);
+		size = 0;
+	}
+}
@@ -11,12 +11,17 @@ import net.osmand.data.LatLon;
 import net.osmand.util.Algorithms;
 import net.osmand.util.MapUtils;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
 import gnu.trove.map.hash.TIntObjectHashMap;
 
 
@@ -255,7 +260,6 @@ public class RouteSegmentResult implements StringExternalizable<RouteDataBundle>
 	@Override
 	public void writeToBundle(RouteDataBundle bundle) {
 		Map<RouteTypeRule, Integer> rules = bundle.getResources().getRules();
-		boolean reversed = endPointIndex < startPointIndex;
 		bundle.putInt("length", Math.abs(endPointIndex - startPointIndex) + 1);
 		bundle.putFloat("segmentTime", segmentTime, 2);
 		bundle.putFloat("speed", speed, 2);
@@ -274,37 +278,140 @@ public class RouteSegmentResult implements StringExternalizable<RouteDataBundle>
 		}
 		bundle.putLong("id", object.id >> 6); // OsmAnd ID to OSM ID
 		bundle.putArray("types", convertTypes(object.types, rules));
+		bundle.putArray("pointTypes", convertSegmentPointTypes(rules));
+		if (object.nameIds != null) {
+			bundle.putArray("names", convertNameIds(object.nameIds, rules));
+		}
+		bundle.putArray("pointNames", convertSegmentPointNames(rules));
+	}
 
+	private int[][] convertSegmentPointTypes(Map<RouteTypeRule, Integer> rules) {
 		int start = Math.min(startPointIndex, endPointIndex);
 		int end = Math.max(startPointIndex, endPointIndex) + 1;
 		if (object.pointTypes != null && start < object.pointTypes.length) {
 			int[][] types = Arrays.copyOfRange(object.pointTypes, start, Math.min(end, object.pointTypes.length));
-			if (reversed) {
+			if (endPointIndex < startPointIndex) {
 				Algorithms.reverseArray(types);
 			}
-			bundle.putArray("pointTypes", convertTypes(types, rules));
-		}
-		if (object.nameIds != null) {
-			bundle.putArray("names", convertNameIds(object.nameIds, rules));
+			return convertTypes(types, rules);
 		}
+		return null;
+	}
+
+	private int[][] convertSegmentPointNames(Map<RouteTypeRule, Integer> rules) {
+		int start = Math.min(startPointIndex, endPointIndex);
+		int end = Math.max(startPointIndex, endPointIndex) + 1;
 		if (object.pointNameTypes != null && start < object.pointNameTypes.length && object.pointNames != null) {
 			int[][] types = Arrays.copyOfRange(object.pointNameTypes, start, Math.min(end, object.pointNameTypes.length));
 			String[][] names = Arrays.copyOfRange(object.pointNames, start, Math.min(end, object.pointNames.length));
-			if (reversed) {
+			if (endPointIndex < startPointIndex) {
 				Algorithms.reverseArray(types);
 				Algorithms.reverseArray(names);
 			}
-			bundle.putArray("pointNames", convertPointNames(types, names, rules));
+			return convertPointNames(types, names, rules);
 		}
+		return null;
+	}
+
+	/**
+	 * Binary analogue of {@link #writeToBundle(RouteDataBundle)}, fields are described in {@link RouteDataBinaryCodec}
+	 */
+	void writeToStream(CodedOutputStream out, RouteDataResources resources) throws IOException {
+		Map<RouteTypeRule, Integer> rules = resources.getRules();
+		out.writeSInt32(RouteDataBinaryCodec.LENGTH, Math.abs(endPointIndex - startPointIndex) + 1);
+		RouteDataBinaryCodec.writeFloat(out, RouteDataBinaryCodec.SEGMENT_TIME, segmentTime);
+		RouteDataBinaryCodec.writeFloat(out, RouteDataBinaryCodec.SPEED, speed);
+		if (turnType != null) {
+			out.writeString(RouteDataBinaryCodec.TURN_TYPE, turnType.toXmlString());
+			if (turnType.isSkipToSpeak()) {
+				out.writeBool(RouteDataBinaryCodec.SKIP_TURN, true);
+			}
+			if (turnType.getTurnAngle() != 0) {
+				RouteDataBinaryCodec.writeFloat(out, RouteDataBinaryCodec.TURN_ANGLE, turnType.getTurnAngle());
+			}
+			int[] turnLanes = turnType.getLanes();
+			if (turnLanes != null && turnLanes.length > 0) {
+				out.writeString(RouteDataBinaryCodec.TURN_LANES, TurnType.lanesToString(turnLanes));
+			}
+		}
+		out.writeSInt64(RouteDataBinaryCodec.ID, object.id >> 6);
+		RouteDataBinaryCodec.writeArray(out, RouteDataBinaryCodec.TYPES, convertTypes(object.types, rules));
+		RouteDataBinaryCodec.writeArray(out, RouteDataBinaryCodec.POINT_TYPES, convertSegmentPointTypes(rules));
+		if (object.nameIds != null) {
+			RouteDataBinaryCodec.writeArray(out, RouteDataBinaryCodec.NAMES, convertNameIds(object.nameIds, rules));
+		}
+		RouteDataBinaryCodec.writeArray(out, RouteDataBinaryCodec.POINT_NAMES, convertSegmentPointNames(rules));
+	}
+
+	/**
+	 * Binary analogue of {@link #readFromBundle(RouteDataBundle)}, reads till the end (limit) of the stream
+	 */
+	void readFromStream(CodedInputStream in, RouteDataResources resources) throws IOException {
+		int length = 0;
+		String turnTypeStr = null;
+		String turnLanes = null;
+		Boolean skipTurn = null;
+		Float turnAngle = null;
+		while (!in.isAtEnd()) {
+			int tag = in.readTag();
+			switch (WireFormat.getTagFieldNumber(tag)) {
+			case RouteDataBinaryCodec.LENGTH:
+				length = in.readSInt32();
+				break;
+			case RouteDataBinaryCodec.SEGMENT_TIME:
+				segmentTime = RouteDataBinaryCodec.readFloat(in);
+				break;
+			case RouteDataBinaryCodec.SPEED:
+				speed = RouteDataBinaryCodec.readFloat(in);
+				break;
+			case RouteDataBinaryCodec.TURN_TYPE:
+				turnTypeStr = in.readString();
+				break;
+			case RouteDataBinaryCodec.SKIP_TURN:
+				skipTurn = in.readBool();
+				break;
+			case RouteDataBinaryCodec.TURN_ANGLE:
+				turnAngle = RouteDataBinaryCodec.readFloat(in);
+				break;
+			case RouteDataBinaryCodec.TURN_LANES:
+				turnLanes = in.readString();
+				break;
+			case RouteDataBinaryCodec.ID:
+				object.id = in.readSInt64() << 6;
+				break;
+			case RouteDataBinaryCodec.TYPES:
+				object.types = RouteDataBinaryCodec.readArray(in);
+				break;
+			case RouteDataBinaryCodec.POINT_TYPES:
+				object.pointTypes = RouteDataBinaryCodec.readArrays(in);
+				break;
+			case RouteDataBinaryCodec.NAMES:
+				object.nameIds = RouteDataBinaryCodec.readArray(in);
+				break;
+			case RouteDataBinaryCodec.POINT_NAMES:
+				resources.getPointNamesMap().put(object, RouteDataBinaryCodec.readArrays(in));
+				break;
+			default:
+				in.skipField(tag);
+				break;
+			}
+		}
+		if (!Algorithms.isEmpty(turnTypeStr)) {
+			turnType = TurnType.fromString(turnTypeStr, false);
+			if (skipTurn != null) {
+				turnType.setSkipToSpeak(skipTurn);
+			}
+			if (turnAngle != null) {
+				turnType.setTurnAngle(turnAngle);
+			}
+			turnType.setLanes(TurnType.lanesFromString(turnLanes));
+		}
+		readPoints(resources, length);
 	}
 
 	@Override
 	public void readFromBundle(RouteDataBundle bundle) {
 		int length = bundle.getInt("length", 0);
-		boolean plus = length >= 0;
-		length = Math.abs(length);
-		startPointIndex = plus ? 0 : length - 1;
-		endPointIndex = plus ? length - 1 : 0;
 		segmentTime = bundle.getFloat("segmentTime", segmentTime);
 		speed = bundle.getFloat("speed", speed);
 		String turnTypeStr = bundle.getString("turnType", null);
@@ -324,7 +431,14 @@ public class RouteSegmentResult implements StringExternalizable<RouteDataBundle>
 			bundle.getResources().getPointNamesMap().put(object, pointNames);
 		}
 
-		RouteDataResources resources = bundle.getResources();
+		readPoints(bundle.getResources(), length);
+	}
+
+	private void readPoints(RouteDataResources resources, int length) {
+		boolean plus = length >= 0;
+		length = Math.abs(length);
+		startPointIndex = plus ? 0 : length - 1;
+		endPointIndex = plus ? length - 1 : 0;
 		object.pointsX = new int[length];
 		object.pointsY = new int[length];
 		object.heightDistanceArray = new float[length * 2];
@@ -48,6 +48,21 @@ public class RoutingConfiguration {
 	
 	// 1.6 Time to calculate all access restrictions based on conditions
 	public long routeCalculationTime = 0;
+
+	// 1.7 Threads to decode routing tiles in background (should not affect routing, 0 - disabled)
+	public int prefetchThreads = 0;
+
+	// 1.8 Threads to prepare long route results (turns, attached roads) in parallel (should not affect result, 0 - disabled)
+	public int resultPreparationThreads = 0;
+
+	// 1.9 Alternative routes calculated with 2 points route (java routing only, 0 - disabled)
+	// and threads to evaluate their candidates
+	public int alternativeRoutes = 0;
+	public int alternativeThreads = 0;
+
+	// 1.10 Historical speeds by time of the week, time of arrival to segment is propagated from
+	// routeCalculationTime (java routing only, null - static router speeds)
+	public SpeedProfileProvider speedProfiles;
 	
 	public static class Builder {
 		// Design time storage
@@ -106,6 +121,10 @@ public class RoutingConfiguration {
 				i.memoryLimitation = memoryLimitMB * (1l << 20);
 			}
 			i.planRoadDirection = parseSilentInt(getAttribute(i.router, "planRoadDirection"), i.planRoadDirection);
+			i.prefetchThreads = parseSilentInt(getAttribute(i.router, "prefetchThreads"), i.prefetchThreads);
+			i.resultPreparationThreads = parseSilentInt(getAttribute(i.router, "resultPreparationThreads"), i.resultPreparationThreads);
+			i.alternativeRoutes = parseSilentInt(getAttribute(i.router, "alternativeRoutes"), i.alternativeRoutes);
+			i.alternativeThreads = parseSilentInt(getAttribute(i.router, "alternativeThreads"), i.alternativeThreads);
 //			i.planRoadDirection = 1;
 			return i;
 		}
@@ -6,16 +6,19 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 
 import gnu.trove.iterator.TIntObjectIterator;
 import gnu.trove.iterator.TLongIterator;
+import gnu.trove.iterator.TLongObjectIterator;
 import gnu.trove.map.TLongObjectMap;
 import gnu.trove.map.hash.TLongObjectHashMap;
 import gnu.trove.set.hash.TLongHashSet;
@@ -30,8 +33,10 @@ import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
 import net.osmand.binary.RouteDataObject;
 import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
 import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
 import net.osmand.router.BinaryRoutePlanner.RouteSegmentVisitor;
 import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.util.IndexedHeap;
 
 
 public class RoutingContext {
@@ -75,6 +80,8 @@ public class RoutingContext {
 	
 	// 2. Routing memory cache (big objects)
 	TLongObjectHashMap<List<RoutingSubregionTile>> indexedSubregions = new TLongObjectHashMap<List<RoutingSubregionTile>>();
+	// loaded tiles of context this one is copied from
+	private final Set<RoutingSubregionTile> sharedTiles = new HashSet<RoutingSubregionTile>();
 	
 	// Needs to be a sorted array list . Another option to use hashmap but it will be more memory expensive
 	List<RoutingSubregionTile> subregionTiles = new ArrayList<RoutingSubregionTile>();
@@ -93,6 +100,32 @@ public class RoutingContext {
 	// callback of processing segments
 	RouteSegmentVisitor visitor = null;
 
+	// background tiles loading (non-native only)
+	RoutingTilesPrefetcher prefetcher = null;
+
+	// priority queues reused by searches of this context
+	IndexedHeap<RouteSegment> directSearchQueue = null;
+	IndexedHeap<RouteSegment> reverseSearchQueue = null;
+
+	// labels of one to many searches reused by searches of this context
+	RouteSearchLabels searchLabels = null;
+	IndexedHeap<RouteDataObject> labelsQueue = null;
+
+	// reverse search tree of last calculation for incremental recalculation (non-native only)
+	public boolean keepReverseSearchTree;
+	BinaryRoutePlanner.ReverseSearchTree reverseSearchTree = null;
+
+	// alternative routes of 2 points calculation (non-native only)
+	public boolean calculateAlternatives;
+	BinaryRoutePlanner.AlternativeSearchTrees alternativeSearchTrees = null;
+	List<List<RouteSegmentResult>> alternativeRoutes = null;
+
+	// compacted live updates replacing diff files (non-native only)
+	List<LiveUpdatesRouteIndex> liveUpdates = null;
+
+	// time dependent speeds of RoutingConfiguration.speedProfiles (non-native only)
+	SpeedProfileCache speedProfileCache = null;
+
 	// old planner
 	public FinalRouteSegment finalRouteSegment;
 
@@ -105,20 +138,21 @@ public class RoutingContext {
 		this.leftSideNavigation = cp.leftSideNavigation;
 		this.reverseMap.putAll(cp.reverseMap);
 		this.nativeLib = cp.nativeLib;
-		// copy local data and clear caches
-		for(RoutingSubregionTile tl : subregionTiles) {
-			if(tl.isLoaded()) {
+		this.liveUpdates = cp.liveUpdates;
+		// loaded road graph doesn't keep search state, so loaded tiles are shared read only until
+		// releaseSharedTiles: they are not unloaded by any context and not counted in copy size,
+		// other tiles are loaded by copy itself
+		for (RoutingSubregionTile tl : cp.subregionTiles) {
+			if (tl.share()) {
 				subregionTiles.add(tl);
-				for (RouteSegment rs : tl.routes.valueCollection()) {
-					RouteSegment s = rs;
-					while (s != null) {
-						s.parentRoute = null;
-						s.parentSegmentEnd = 0;
-						s.distanceFromStart = 0;
-						s.distanceToEnd = 0;
-						s = s.next;
-					}
-				}
+				sharedTiles.add(tl);
+			}
+		}
+		TLongObjectIterator<List<RoutingSubregionTile>> it = cp.indexedSubregions.iterator();
+		while (it.hasNext()) {
+			it.advance();
+			if (it.value() == null || sharedTiles.containsAll(it.value())) {
+				indexedSubregions.put(it.key(), it.value());
 			}
 		}
 	}
@@ -143,6 +177,83 @@ public class RoutingContext {
 	}
 	
 	
+	/**
+	 * Routes with compacted live updates instead of diff files, readers of diff files merged into indexes
+	 * are not used anymore. Works only for java routing, native library reads diff files itself.
+	 */
+	public void setLiveUpdates(List<LiveUpdatesRouteIndex> liveUpdates) {
+		if (nativeLib != null || calculationMode == RouteCalculationMode.BASE || liveUpdates == null
+				|| liveUpdates.isEmpty()) {
+			return;
+		}
+		Iterator<BinaryMapIndexReader> it = map.keySet().iterator();
+		while (it.hasNext()) {
+			BinaryMapIndexReader reader = it.next();
+			for (LiveUpdatesRouteIndex index : liveUpdates) {
+				if (reader.getFile() != null && index.containsDiff(reader.getFile().getName())) {
+					it.remove();
+					reverseMap.values().removeAll(Collections.singleton(reader));
+					break;
+				}
+			}
+		}
+		this.liveUpdates = liveUpdates;
+	}
+
+	/**
+	 * @return true if new search to the end could join reverse search tree of previous calculation
+	 */
+	public boolean canJoinReverseSearchTree(RouteSegmentPoint end) {
+		return reverseSearchTree != null && nativeLib == null && precalculatedRouteDirection == null
+				&& config.speedProfiles == null && end != null && reverseSearchTree.isSameTarget(end);
+	}
+
+	public boolean hasReverseSearchTree() {
+		return reverseSearchTree != null;
+	}
+
+	public void clearReverseSearchTree() {
+		reverseSearchTree = null;
+	}
+
+	/**
+	 * @return alternatives of last calculated route (prepared as main route) or null
+	 */
+	public List<List<RouteSegmentResult>> getAlternativeRoutes() {
+		return alternativeRoutes;
+	}
+
+	public List<LiveUpdatesRouteIndex> getLiveUpdates() {
+		return liveUpdates;
+	}
+
+	/**
+	 * Sets time of conditional restrictions and departure of speed profiles for the next calculation, i.e. when
+	 * context is reused for recalculation (already loaded roads keep conditional tags evaluated at their load time).
+	 */
+	public void setRouteCalculationTime(long routeCalculationTime) {
+		config.routeCalculationTime = routeCalculationTime;
+		speedProfileCache = null;
+	}
+
+	/**
+	 * @return speed profiles with departure at route calculation time or null if they are not used
+	 */
+	SpeedProfileCache getSpeedProfileCache() {
+		if (config.speedProfiles == null || nativeLib != null) {
+			return null;
+		}
+		if (speedProfileCache == null) {
+			long departure = config.routeCalculationTime != 0 ? config.routeCalculationTime : System.currentTimeMillis();
+			speedProfileCache = new SpeedProfileCache(config.speedProfiles, departure);
+		}
+		return speedProfileCache;
+	}
+
+	public RoutingMetrics getMetrics() {
+		return calculationProgress != null ? calculationProgress.metrics : null;
+	}
+
 	public RouteSegmentVisitor getVisitor() {
 		return visitor;
 	}
@@ -179,10 +290,14 @@ public class RoutingContext {
 	}
 
 	public boolean planRouteIn2Directions() {
-		return config.planRoadDirection == 0;
+		return getPlanRoadDirection() == 0;
 	}
 
 	public int getPlanRoadDirection() {
+		// only forward search knows arrival time at the segment to choose its profile speed
+		if (getSpeedProfileCache() != null) {
+			return 1;
+		}
 		return config.planRoadDirection;
 	}
 
@@ -213,11 +328,14 @@ public class RoutingContext {
 	
 	public void unloadAllData(RoutingContext except) {
 		for (RoutingSubregionTile tl : subregionTiles) {
-			if (tl.isLoaded()) {
+			if (tl.isLoaded() && !tl.isShared() && !sharedTiles.contains(tl)) {
 				if(except == null || except.searchSubregionTile(tl.subregion) < 0){
 					tl.unload();
 					if(calculationProgress != null) {
 						calculationProgress.unloadedTiles ++;
+						if (calculationProgress.metrics != null) {
+							calculationProgress.metrics.increment(RoutingMetrics.Counter.UNLOADED_TILES);
+						}
 					}
 					global.size -= tl.tileStatistics.size;
 				}
@@ -225,6 +343,17 @@ public class RoutingContext {
 		}
 		subregionTiles.clear();
 		indexedSubregions.clear();
+		releaseSharedTiles();
+	}
+
+	/**
+	 * Releases tiles shared by context this one is copied from, so they could be unloaded again.
+	 */
+	public void releaseSharedTiles() {
+		for (RoutingSubregionTile tl : sharedTiles) {
+			tl.release();
+		}
+		sharedTiles.clear();
 	}
 	
 	private int searchSubregionTile(RouteSubregion subregion){
@@ -268,14 +397,37 @@ public class RoutingContext {
 	}
 	
 	public void loadSubregionTile(final RoutingSubregionTile ts, boolean loadObjectsInMemory, List<RouteDataObject> toLoad, TLongHashSet excludeNotAllowed) {
+		// tile could be shared by several contexts, so it is loaded only once
+		synchronized (ts) {
+			if (!ts.isLoaded()) {
+				loadSubregionTileData(ts, loadObjectsInMemory, toLoad, excludeNotAllowed);
+			}
+		}
+	}
+
+	private void loadSubregionTileData(RoutingSubregionTile ts, boolean loadObjectsInMemory, List<RouteDataObject> toLoad, TLongHashSet excludeNotAllowed) {
 		boolean wasUnloaded = ts.isUnloaded();
 		int ucount = ts.getUnloadCont();
+		RoutingMetrics metrics = getMetrics();
+		long startLoading = metrics != null ? metrics.startTimer() : 0;
 		if (nativeLib == null) {
 			long now = System.nanoTime();
 			try {
 				BinaryMapIndexReader reader = reverseMap.get(ts.subregion.routeReg);
 				ts.setLoadedNonNative();
-				List<RouteDataObject> res = reader.loadRouteIndexData(ts.subregion);
+				List<RouteDataObject> res = prefetcher != null ? prefetcher.takePrefetched(ts.subregion) : null;
+				if (res == null) {
+					long startDecoding = metrics != null ? metrics.startTimer() : 0;
+					res = reader.loadRouteIndexData(ts.subregion);
+					if (metrics != null) {
+						metrics.stopTimer(RoutingMetrics.Phase.OBF_DECODING, startDecoding);
+					}
+				} else if (metrics != null) {
+					metrics.increment(RoutingMetrics.Counter.PREFETCH_HITS);
+				}
+				if (liveUpdates != null) {
+					res = applyLiveUpdates(ts.subregion, res);
+				}
 				
 				if(toLoad != null) {
 					toLoad.addAll(res);
@@ -300,6 +452,7 @@ public class RoutingContext {
 						}
 					}
 				}
+				ts.publishLoaded();
 			} catch (IOException e) {
 				throw new RuntimeException("Loading data exception", e);
 			}
@@ -310,6 +463,9 @@ public class RoutingContext {
 		} else {
 			long now = System.nanoTime();
 			NativeRouteSearchResult ns = nativeLib.loadRouteRegion(ts.subregion, loadObjectsInMemory);
+			if (metrics != null) {
+				metrics.addTime(RoutingMetrics.Phase.OBF_DECODING, System.nanoTime() - now);
+			}
 //			System.out.println(ts.subregion.shiftToData + " " + Arrays.toString(ns.objects));
 			ts.setLoadedNative(ns, this);
 			if (calculationProgress != null) {
@@ -336,6 +492,13 @@ public class RoutingContext {
 			}
 		}
 		global.size += ts.tileStatistics.size;
+		if (metrics != null) {
+			metrics.increment(RoutingMetrics.Counter.LOADED_TILES);
+			if (!wasUnloaded) {
+				metrics.increment(RoutingMetrics.Counter.DISTINCT_LOADED_TILES);
+			}
+			metrics.stopTimer(RoutingMetrics.Phase.TILE_LOADING, startLoading);
+		}
 	}
 
 	private List<RoutingSubregionTile> loadTileHeaders(final int x31, final int y31) {
@@ -356,6 +519,30 @@ public class RoutingContext {
 		}		
 	}
 	
+	// live objects go first and then base objects not updated by live updates, so they are loaded as objects of one file
+	private List<RouteDataObject> applyLiveUpdates(RouteSubregion subregion, List<RouteDataObject> res) {
+		List<RouteDataObject> merged = new ArrayList<RouteDataObject>(res.size());
+		TLongHashSet added = new TLongHashSet();
+		for (LiveUpdatesRouteIndex index : liveUpdates) {
+			index.getObjects(subregion.left, subregion.top, subregion.right, subregion.bottom, added, merged);
+		}
+		for (RouteDataObject ro : res) {
+			if (ro != null && !isUpdatedByLiveUpdates(ro.getId())) {
+				merged.add(ro);
+			}
+		}
+		return merged;
+	}
+
+	private boolean isUpdatedByLiveUpdates(long id) {
+		for (LiveUpdatesRouteIndex index : liveUpdates) {
+			if (index.isUpdated(id)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	public void checkOldRoutingFiles(int x31, int y31) {
 		for (Entry<BinaryMapIndexReader, List<RouteSubregion>> r : map.entrySet()) {
 			BinaryMapIndexReader reader = r.getKey();
@@ -409,6 +596,9 @@ public class RoutingContext {
 					}
 					if (calculationProgress != null) {
 						calculationProgress.timeToLoadHeaders += (System.nanoTime() - now);
+						if (calculationProgress.metrics != null) {
+							calculationProgress.metrics.addTime(RoutingMetrics.Phase.TILE_HEADERS, System.nanoTime() - now);
+						}
 					}
 				}
 			} catch (IOException e) {
@@ -483,11 +673,7 @@ public class RoutingContext {
 				log.warn("Used memory before " + us1 / mb + "after " + us1 / mb );
 			}
 		}
-		if (!indexedSubregions.containsKey(tileId)) {
-			List<RoutingSubregionTile> collection = loadTileHeaders(x31, y31);
-			indexedSubregions.put(tileId, collection);
-		}
-		List<RoutingSubregionTile> subregions = indexedSubregions.get(tileId);
+		List<RoutingSubregionTile> subregions = getTileHeaders(x31, y31);
 		if (subregions != null) {
 			boolean load = false;
 			for (RoutingSubregionTile ts : subregions) {
@@ -495,6 +681,10 @@ public class RoutingContext {
 					load = true;
 				}
 			}
+			RoutingMetrics metrics = getMetrics();
+			if (metrics != null) {
+				metrics.increment(load ? RoutingMetrics.Counter.TILE_CACHE_MISSES : RoutingMetrics.Counter.TILE_CACHE_HITS);
+			}
 			if (load) {
 				TLongHashSet excludeIds = new TLongHashSet();
 				for (RoutingSubregionTile ts : subregions) {
@@ -514,6 +704,17 @@ public class RoutingContext {
 
 	
 	
+	List<RoutingSubregionTile> getTileHeaders(int x31, int y31) {
+		long xloc = x31 >> (31 - config.ZOOM_TO_LOAD_TILES);
+		long yloc = y31 >> (31 - config.ZOOM_TO_LOAD_TILES);
+		long tileId = (xloc << config.ZOOM_TO_LOAD_TILES) + yloc;
+		if (!indexedSubregions.containsKey(tileId)) {
+			List<RoutingSubregionTile> collection = loadTileHeaders(x31, y31);
+			indexedSubregions.put(tileId, collection);
+		}
+		return indexedSubregions.get(tileId);
+	}
+
 	public boolean checkIfMemoryLimitCritical(long memoryLimit) {
 		return getCurrentEstimatedSize() > 0.9 * memoryLimit;
 	}
@@ -523,7 +724,7 @@ public class RoutingContext {
 		List<RoutingSubregionTile> list = new ArrayList<RoutingSubregionTile>(subregionTiles.size() / 2);
 		int loaded = 0;
 		for(RoutingSubregionTile t : subregionTiles) {
-			if(t.isLoaded()) {
+			if(t.isLoaded() && !t.isShared() && !sharedTiles.contains(t)) {
 				list.add(t);
 				loaded++;
 			}
@@ -554,13 +755,18 @@ public class RoutingContext {
 			unload.unload();
 			if(calculationProgress != null) {
 				calculationProgress.unloadedTiles ++;
+				if (calculationProgress.metrics != null) {
+					calculationProgress.metrics.increment(RoutingMetrics.Counter.UNLOADED_TILES);
+				}
 			}
 			global.size -= unload.tileStatistics.size;
 			// tile could be cleaned from routing tiles and deleted from whole list
 			
 		}
 		for(RoutingSubregionTile t : subregionTiles) {
-			t.access /= 3;
+			if (!t.isShared()) {
+				t.access /= 3;
+			}
 		}
 	}
 	
@@ -599,30 +805,83 @@ public class RoutingContext {
 	}
 
 
+	/**
+	 * Node of loaded road graph (all roads passing the point are chained by next).
+	 * It is not changed after tile is loaded, search state is kept in {@link RouteSegment} created for every search.
+	 */
+	public static final class RouteGraphSegment {
+		final RouteDataObject road;
+		final short segStart;
+		// assigned only while tile is loaded
+		RouteGraphSegment next;
+
+		RouteGraphSegment(RouteDataObject road, int segStart) {
+			this.road = road;
+			this.segStart = (short) segStart;
+		}
+
+		public RouteDataObject getRoad() {
+			return road;
+		}
+
+		public int getSegmentStart() {
+			return segStart;
+		}
+
+		public RouteGraphSegment getNext() {
+			return next;
+		}
+	}
+
 	public static class RoutingSubregionTile {
 		public final RouteSubregion subregion;
-		// make it without get/set for fast access
+		// make it without get/set for fast access, not changed while tile is shared
 		public int access;
 		public TileStatistics tileStatistics = new TileStatistics();
 		
 		private NativeRouteSearchResult searchResult = null;
-		private int isLoaded = 0;
-		private TLongObjectMap<RouteSegment> routes = null;
+		private volatile int isLoaded = 0;
+		// published when tile is completely loaded
+		private volatile TLongObjectMap<RouteGraphSegment> routes = null;
+		private TLongObjectMap<RouteGraphSegment> loadingRoutes = null;
 		private TLongHashSet excludedIds = null;
+		// number of contexts sharing loaded tile, shared tile is not unloaded
+		private volatile int shares = 0;
 
 		public RoutingSubregionTile(RouteSubregion subregion) {
 			this.subregion = subregion;
 		}
-		
-		public TLongObjectMap<RouteSegment> getRoutes() {
+
+		/**
+		 * @return graph of loaded tile (point -> roads passing it) or null if tile is not loaded,
+		 * it is not changed after loading
+		 */
+		public TLongObjectMap<RouteGraphSegment> getRoutes() {
 			return routes;
 		}
+
+		synchronized boolean share() {
+			if (!isLoaded()) {
+				return false;
+			}
+			shares++;
+			return true;
+		}
+
+		synchronized void release() {
+			shares--;
+		}
+
+		public boolean isShared() {
+			return shares > 0;
+		}
 		
 		public void loadAllObjects(final List<RouteDataObject> toFillIn, RoutingContext ctx, TLongObjectHashMap<RouteDataObject> excludeDuplications) {
+			TLongObjectMap<RouteGraphSegment> routes = this.routes;
 			if(routes != null) {
-				Iterator<RouteSegment> it = routes.valueCollection().iterator();
+				Iterator<RouteGraphSegment> it = routes.valueCollection().iterator();
 				while(it.hasNext()){
-					RouteSegment rs = it.next();
+					RouteGraphSegment rs = it.next();
 					while(rs != null){
 						RouteDataObject ro = rs.road;
 						if (!excludeDuplications.contains(ro.id)) {
@@ -647,17 +906,20 @@ public class RoutingContext {
 		
 		private RouteSegment loadRouteSegment(int x31, int y31, RoutingContext ctx,
 				TLongObjectHashMap<RouteDataObject> excludeDuplications, RouteSegment original, List<RoutingSubregionTile> subregions, int subregionIndex) {
-			access++;
+			if (shares == 0) {
+				access++;
+			}
+			TLongObjectMap<RouteGraphSegment> routes = this.routes;
 			if (routes != null) {
 				long l = (((long) x31) << 31) + (long) y31;
-				RouteSegment segment = routes.get(l);
+				RouteGraphSegment segment = routes.get(l);
 				while (segment != null) {
 					RouteDataObject ro = segment.road;
-					RouteDataObject toCmp = excludeDuplications.get(calcRouteId(ro, segment.getSegmentStart()));
+					RouteDataObject toCmp = excludeDuplications.get(calcRouteId(ro, segment.segStart));
 					if (!isExcluded(ro.id, subregions, subregionIndex)
 							&& (toCmp == null || toCmp.getPointsLength() < ro.getPointsLength())) {
-						excludeDuplications.put(calcRouteId(ro, segment.getSegmentStart()), ro);
-						RouteSegment s = new RouteSegment(ro, segment.getSegmentStart());
+						excludeDuplications.put(calcRouteId(ro, segment.segStart), ro);
+						RouteSegment s = new RouteSegment(ro, segment.segStart);
 						s.next = original;
 						original = s;
 					}
@@ -690,7 +952,10 @@ public class RoutingContext {
 			return isLoaded < 0;
 		}
 		
-		public void unload() {
+		public synchronized void unload() {
+			if (shares > 0) {
+				throw new IllegalStateException("Shared tile couldn't be unloaded");
+			}
 			if(isLoaded == 0) {
 				this.isLoaded = -1;	
 			} else {
@@ -701,14 +966,21 @@ public class RoutingContext {
 			}
 			searchResult = null;
 			routes = null;
+			loadingRoutes = null;
 			excludedIds = null;
 		}
 		
 		public void setLoadedNonNative(){
-			isLoaded = Math.abs(isLoaded) + 1;
-			routes = new TLongObjectHashMap<BinaryRoutePlanner.RouteSegment>();
+			loadingRoutes = new TLongObjectHashMap<RouteGraphSegment>();
 			tileStatistics = new TileStatistics();
 		}
+
+		// tile could be read by searches sharing it only after it is loaded
+		void publishLoaded() {
+			routes = loadingRoutes;
+			loadingRoutes = null;
+			isLoaded = Math.abs(isLoaded) + 1;
+		}
 		
 		public void add(RouteDataObject ro) {
 			tileStatistics.addObject(ro);
@@ -716,11 +988,11 @@ public class RoutingContext {
 				int x31 = ro.getPoint31XTile(i);
 				int y31 = ro.getPoint31YTile(i);
 				long l = (((long) x31) << 31) + (long) y31;
-				RouteSegment segment = new RouteSegment(ro, i);
-				if (!routes.containsKey(l)) {
-					routes.put(l, segment);
+				RouteGraphSegment segment = new RouteGraphSegment(ro, i);
+				if (!loadingRoutes.containsKey(l)) {
+					loadingRoutes.put(l, segment);
 				} else {
-					RouteSegment orig = routes.get(l);
+					RouteGraphSegment orig = loadingRoutes.get(l);
 					while (orig.next != null) {
 						orig = orig.next;
 					}
@@ -730,19 +1002,20 @@ public class RoutingContext {
 		}
 		
 		public void setLoadedNative(NativeRouteSearchResult r, RoutingContext ctx) {
-			isLoaded = Math.abs(isLoaded) + 1;
 			tileStatistics = new TileStatistics();
 			if (r.objects != null) {
 				searchResult = null;
-				routes = new TLongObjectHashMap<BinaryRoutePlanner.RouteSegment>();
+				loadingRoutes = new TLongObjectHashMap<RouteGraphSegment>();
 				for (RouteDataObject ro : r.objects) {
 					if (ro != null && ctx.config.router.acceptLine(ro)) {
 						add(ro);
 					}
 				}
+				publishLoaded();
 			} else {
 				searchResult = r;
 				tileStatistics.size += 100;
+				isLoaded = Math.abs(isLoaded) + 1;
 			}
 		}
 	}
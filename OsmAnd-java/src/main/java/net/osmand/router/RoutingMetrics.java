@@ -0,0 +1,114 @@
+package net.osmand.router;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Per route calculation timings and counters. Collected only when instance is set to
+ * {@link RouteCalculationProgress#metrics}, so disabled metrics cost nothing in hot loops.
+ * Report could be read after calculation or received with {@link RoutingMetricsListener}.
+ */
+public class RoutingMetrics {
+
+	public enum Phase {
+		TOTAL,
+		TILE_HEADERS,
+		TILE_LOADING,
+		OBF_DECODING,
+		COST_EVALUATION,
+		QUEUE_OPERATIONS,
+		RESULT_PREPARATION
+	}
+
+	public enum Counter {
+		VISITED_SEGMENTS,
+		QUEUE_PUSHES,
+		// segment was already queued and only its priority could be decreased
+		QUEUE_UPDATES,
+		QUEUE_POLLS,
+		COST_EVALUATIONS,
+		LOADED_TILES,
+		DISTINCT_LOADED_TILES,
+		UNLOADED_TILES,
+		TILE_CACHE_HITS,
+		TILE_CACHE_MISSES,
+		PREFETCH_HITS,
+		RESULT_SEGMENTS
+	}
+
+	public interface RoutingMetricsListener {
+
+		void onRouteCalculated(RoutingMetrics metrics);
+	}
+
+	private final long[] times = new long[Phase.values().length];
+	private final long[] counters = new long[Counter.values().length];
+
+	public long startTimer() {
+		return System.nanoTime();
+	}
+
+	public void stopTimer(Phase phase, long startTime) {
+		times[phase.ordinal()] += System.nanoTime() - startTime;
+	}
+
+	public void addTime(Phase phase, long nanos) {
+		times[phase.ordinal()] += nanos;
+	}
+
+	public void increment(Counter counter) {
+		counters[counter.ordinal()]++;
+	}
+
+	public void add(Counter counter, long value) {
+		counters[counter.ordinal()] += value;
+	}
+
+	public long getTimeNanos(Phase phase) {
+		return times[phase.ordinal()];
+	}
+
+	public long getCounter(Counter counter) {
+		return counters[counter.ordinal()];
+	}
+
+	public void reset() {
+		for (int i = 0; i < times.length; i++) {
+			times[i] = 0;
+		}
+		for (int i = 0; i < counters.length; i++) {
+			counters[i] = 0;
+		}
+	}
+
+	/**
+	 * Flat key-value representation (times in milliseconds) suitable for logging or export.
+	 */
+	public Map<String, Number> toMap() {
+		Map<String, Number> mp = new LinkedHashMap<String, Number>();
+		for (Phase p : Phase.values()) {
+			mp.put(p.name().toLowerCase(Locale.US) + "_ms", times[p.ordinal()] / 1e6);
+		}
+		for (Counter c : Counter.values()) {
+			mp.put(c.name().toLowerCase(Locale.US), counters[c.ordinal()]);
+		}
+		return mp;
+	}
+
+	public String getReport() {
+		StringBuilder sb = new StringBuilder("Routing metrics:");
+		for (Phase p : Phase.values()) {
+			sb.append(String.format(Locale.US, "\n  %s: %.2f ms", p.name().toLowerCase(Locale.US), times[p.ordinal()] / 1e6));
+		}
+		for (Counter c : Counter.values()) {
+			sb.append(String.format(Locale.US, "\n  %s: %d", c.name().toLowerCase(Locale.US), counters[c.ordinal()]));
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return getReport();
+	}
+}
@@ -0,0 +1,478 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+
+import gnu.trove.iterator.TLongObjectIterator;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.RoutingContext.RoutingSubregionTile;
+
+/**
+ * Decodes routing tiles on background threads before A* reaches them.
+ * Tiles are requested along the expected corridor (precalculated route or straight line) and
+ * around the current search frontier in direction of the target. Workers read tile headers (if search didn't read
+ * them yet) and decode data with their own file readers into private copies of subregions, decoded data is installed
+ * by the search thread, so it consumes ready tiles without I/O. Also used to decode tiles ahead while attaching roads
+ * to calculated route. Works only with java (non-native) routing.
+ */
+public class RoutingTilesPrefetcher {
+
+	private static final Log log = PlatformUtil.getLog(RoutingTilesPrefetcher.class);
+
+	private static final int MAX_PENDING_TILES = 64;
+	private static final int MAX_CORRIDOR_TILES = 32;
+	// prefetched data is not accounted in context size, so stop prefetching earlier
+	private static final float MEMORY_LIMIT_TO_PREFETCH = 0.7f;
+
+	private final RoutingContext ctx;
+	private final ThreadPoolExecutor executor;
+	private final AtomicLong sequence = new AtomicLong();
+	// accessed only from search thread
+	private final Map<SubregionKey, PrefetchTask> pending = new HashMap<SubregionKey, PrefetchTask>();
+	private final TLongObjectHashMap<PrefetchTask> pendingTiles = new TLongObjectHashMap<PrefetchTask>();
+	private final Map<SubregionKey, List<RouteDataObject>> ready = new LinkedHashMap<SubregionKey, List<RouteDataObject>>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<SubregionKey, List<RouteDataObject>> eldest) {
+			if (size() > MAX_PENDING_TILES) {
+				if (ctx.calculationProgress != null) {
+					ctx.calculationProgress.prefetchUnused++;
+				}
+				return true;
+			}
+			return false;
+		}
+	};
+	// route index roots of files, workers read headers into own copies of the trees
+	private final Map<BinaryMapIndexReader, List<RouteSubregion>> roots;
+	private final List<RandomAccessFile> openedFiles = Collections.synchronizedList(new ArrayList<RandomAccessFile>());
+	private final ThreadLocal<Map<BinaryMapIndexReader, BinaryMapIndexReader>> workerReaders =
+			new ThreadLocal<Map<BinaryMapIndexReader, BinaryMapIndexReader>>() {
+		@Override
+		protected Map<BinaryMapIndexReader, BinaryMapIndexReader> initialValue() {
+			return new HashMap<BinaryMapIndexReader, BinaryMapIndexReader>();
+		}
+	};
+	private final ThreadLocal<Map<RouteSubregion, RouteSubregion>> workerRoots =
+			new ThreadLocal<Map<RouteSubregion, RouteSubregion>>() {
+		@Override
+		protected Map<RouteSubregion, RouteSubregion> initialValue() {
+			return new IdentityHashMap<RouteSubregion, RouteSubregion>();
+		}
+	};
+	private long lastDirectTile = -1;
+	private long lastReverseTile = -1;
+
+	public RoutingTilesPrefetcher(RoutingContext ctx, int threads) {
+		this.ctx = ctx;
+		this.roots = new LinkedHashMap<BinaryMapIndexReader, List<RouteSubregion>>(ctx.map);
+		this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+				new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "RoutingTilesPrefetcher");
+						t.setDaemon(true);
+						t.setPriority(Thread.MIN_PRIORITY);
+						return t;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Schedules tiles along precalculated route direction or straight line between start and target.
+	 */
+	public void prefetchCorridor() {
+		int tileShift = 31 - ctx.config.ZOOM_TO_LOAD_TILES;
+		PrecalculatedRouteDirection dir = ctx.precalculatedRouteDirection;
+		List<Long> tiles = new ArrayList<Long>();
+		if (dir != null && dir.getPointsCount() > 0) {
+			for (int i = 0; i < dir.getPointsCount() && tiles.size() < MAX_CORRIDOR_TILES; i++) {
+				addTile(tiles, dir.getPoint31X(i) >> tileShift, dir.getPoint31Y(i) >> tileShift);
+			}
+		} else {
+			long sx = ctx.startX >> tileShift;
+			long sy = ctx.startY >> tileShift;
+			long tx = ctx.targetX >> tileShift;
+			long ty = ctx.targetY >> tileShift;
+			long steps = Math.max(Math.abs(tx - sx), Math.abs(ty - sy));
+			for (long i = 0; i <= steps && tiles.size() < MAX_CORRIDOR_TILES; i++) {
+				long x = steps == 0 ? sx : sx + (tx - sx) * i / steps;
+				long y = steps == 0 ? sy : sy + (ty - sy) * i / steps;
+				addTile(tiles, x, y);
+			}
+		}
+		for (int i = 0; i < tiles.size(); i++) {
+			long tileId = tiles.get(i);
+			prefetchTile((int) (tileId >> 32), (int) tileId, i);
+		}
+	}
+
+	private void addTile(List<Long> tiles, long x, long y) {
+		long tileId = (x << 32) + y;
+		if (tiles.isEmpty() || tiles.get(tiles.size() - 1) != tileId) {
+			tiles.add(tileId);
+		}
+	}
+
+	/**
+	 * Schedules neighbour tiles of polled segment which are located towards the target of search direction.
+	 */
+	public void prefetchFrontier(RouteSegment segment, boolean reverseWaySearch) {
+		int tileShift = 31 - ctx.config.ZOOM_TO_LOAD_TILES;
+		int x31 = segment.getRoad().getPoint31XTile(segment.getSegmentStart());
+		int y31 = segment.getRoad().getPoint31YTile(segment.getSegmentStart());
+		int tx = x31 >> tileShift;
+		int ty = y31 >> tileShift;
+		long tileId = (((long) tx) << 32) + ty;
+		if (tileId == (reverseWaySearch ? lastReverseTile : lastDirectTile)) {
+			return;
+		}
+		if (reverseWaySearch) {
+			lastReverseTile = tileId;
+		} else {
+			lastDirectTile = tileId;
+		}
+		long dx = (reverseWaySearch ? ctx.startX : ctx.targetX) - (long) x31;
+		long dy = (reverseWaySearch ? ctx.startY : ctx.targetY) - (long) y31;
+		for (int i = -1; i <= 1; i++) {
+			for (int j = -1; j <= 1; j++) {
+				if ((i != 0 || j != 0) && i * dx + j * dy >= 0) {
+					// tiles straight to the target go first
+					prefetchTile(tx + i, ty + j, (i * dx + j * dy) > 0 ? 0 : 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Schedules tiles under all points of calculated route segment, used to attach side roads to the route.
+	 */
+	public void prefetchRouteSegment(RouteSegmentResult segment, int priority) {
+		int tileShift = 31 - ctx.config.ZOOM_TO_LOAD_TILES;
+		RouteDataObject road = segment.getObject();
+		boolean plus = segment.getStartPointIndex() < segment.getEndPointIndex();
+		long lastTile = -1;
+		int j = segment.getStartPointIndex();
+		while (true) {
+			int tx = road.getPoint31XTile(j) >> tileShift;
+			int ty = road.getPoint31YTile(j) >> tileShift;
+			long tileId = (((long) tx) << 32) + ty;
+			if (tileId != lastTile) {
+				prefetchTile(tx, ty, priority);
+				lastTile = tileId;
+			}
+			if (j == segment.getEndPointIndex()) {
+				break;
+			}
+			j = plus ? j + 1 : j - 1;
+		}
+	}
+
+	private void prefetchTile(int tileX, int tileY, int priority) {
+		if (tileX < 0 || tileY < 0 || executor.isShutdown() || pending.size() + pendingTiles.size() >= MAX_PENDING_TILES
+				|| ctx.getCurrentEstimatedSize() > MEMORY_LIMIT_TO_PREFETCH * ctx.config.memoryLimitation) {
+			return;
+		}
+		long tileId = (((long) tileX) << ctx.config.ZOOM_TO_LOAD_TILES) + tileY;
+		if (pendingTiles.containsKey(tileId)) {
+			return;
+		}
+		if (!ctx.indexedSubregions.containsKey(tileId)) {
+			// headers are not read by search yet, worker reads them with own readers
+			PrefetchTask task = new PrefetchTask(new TileLoader(tileX, tileY), priority, sequence.incrementAndGet());
+			pendingTiles.put(tileId, task);
+			if (ctx.calculationProgress != null) {
+				ctx.calculationProgress.prefetchedTiles++;
+			}
+			executor.execute(task);
+			return;
+		}
+		List<RoutingSubregionTile> subregions = ctx.indexedSubregions.get(tileId);
+		if (subregions == null) {
+			return;
+		}
+		for (RoutingSubregionTile ts : subregions) {
+			SubregionKey key = new SubregionKey(ts.subregion);
+			if (!ts.isLoaded() && !pending.containsKey(key) && !ready.containsKey(key)) {
+				BinaryMapIndexReader reader = ctx.reverseMap.get(ts.subregion.routeReg);
+				if (reader != null) {
+					PrefetchTask task = new PrefetchTask(new SubregionLoader(reader, ts.subregion), priority,
+							sequence.incrementAndGet());
+					pending.put(key, task);
+					if (ctx.calculationProgress != null) {
+						ctx.calculationProgress.prefetchedTiles++;
+					}
+					executor.execute(task);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns decoded tile data if tile was scheduled for prefetch and null otherwise.
+	 * Waits only if tile is being decoded right now, not started tasks are cancelled and tile should be loaded by caller.
+	 */
+	public List<RouteDataObject> takePrefetched(RouteSubregion subregion) throws IOException {
+		RouteCalculationProgress progress = ctx.calculationProgress;
+		SubregionKey key = new SubregionKey(subregion);
+		installLoadedTiles();
+		List<RouteDataObject> res = ready.remove(key);
+		if (res != null) {
+			if (progress != null) {
+				progress.prefetchHits++;
+			}
+			return res;
+		}
+		PrefetchTask task = pending.remove(key);
+		if (task == null) {
+			return null;
+		}
+		if (!task.isDone() && executor.remove(task)) {
+			if (progress != null) {
+				progress.prefetchMisses++;
+			}
+			return null;
+		}
+		boolean done = task.isDone();
+		long now = System.nanoTime();
+		try {
+			res = task.get().get(key);
+			if (progress != null) {
+				if (done) {
+					progress.prefetchHits++;
+				} else {
+					progress.prefetchWaits++;
+					progress.timeToWaitPrefetch += System.nanoTime() - now;
+				}
+			}
+			return res;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	// installs data of tiles which headers were read by workers, running tiles are not awaited
+	private void installLoadedTiles() {
+		TLongObjectIterator<PrefetchTask> it = pendingTiles.iterator();
+		while (it.hasNext()) {
+			it.advance();
+			PrefetchTask task = it.value();
+			if (task.isDone()) {
+				it.remove();
+				try {
+					ready.putAll(task.get());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				} catch (ExecutionException e) {
+					// tile will be loaded by search thread
+					log.warn("Error prefetching tile " + e.getCause());
+				}
+			}
+		}
+	}
+
+	public void shutdown() {
+		installLoadedTiles();
+		if (ctx.calculationProgress != null) {
+			ctx.calculationProgress.prefetchUnused += ready.size();
+			for (PrefetchTask t : pending.values()) {
+				if (t.isDone()) {
+					ctx.calculationProgress.prefetchUnused++;
+				}
+			}
+		}
+		pending.clear();
+		pendingTiles.clear();
+		ready.clear();
+		executor.shutdownNow();
+		try {
+			// workers don't check interruption while reading, so files are closed only after they finish
+			while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+				log.warn("Waiting for routing tiles prefetch to finish");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (openedFiles) {
+			for (RandomAccessFile raf : openedFiles) {
+				try {
+					raf.close();
+				} catch (IOException e) {
+					log.warn("Error closing file " + e.getMessage());
+				}
+			}
+			openedFiles.clear();
+		}
+	}
+
+	private BinaryMapIndexReader getWorkerReader(BinaryMapIndexReader reader) throws IOException {
+		Map<BinaryMapIndexReader, BinaryMapIndexReader> readers = workerReaders.get();
+		BinaryMapIndexReader r = readers.get(reader);
+		if (r == null) {
+			RandomAccessFile raf = new RandomAccessFile(reader.getFile(), "r");
+			openedFiles.add(raf);
+			r = new BinaryMapIndexReader(raf, reader);
+			readers.put(reader, r);
+		}
+		return r;
+	}
+
+	private static RouteSubregion copySubregion(RouteSubregion subregion) {
+		RouteSubregion copy = new RouteSubregion(subregion);
+		copy.shiftToData = subregion.shiftToData;
+		return copy;
+	}
+
+	/**
+	 * Decodes data of subregion with known header into its private copy.
+	 */
+	private class SubregionLoader implements Callable<Map<SubregionKey, List<RouteDataObject>>> {
+		private final BinaryMapIndexReader reader;
+		private final RouteSubregion subregion;
+		private final SubregionKey key;
+
+		SubregionLoader(BinaryMapIndexReader reader, RouteSubregion subregion) {
+			this.reader = reader;
+			// copied on search thread, worker doesn't touch shared subregion
+			this.subregion = copySubregion(subregion);
+			this.key = new SubregionKey(subregion);
+		}
+
+		@Override
+		public Map<SubregionKey, List<RouteDataObject>> call() throws Exception {
+			return Collections.singletonMap(key, getWorkerReader(reader).loadRouteIndexData(subregion));
+		}
+	}
+
+	/**
+	 * Reads headers of tile into worker own copies of route trees and decodes all found subregions.
+	 */
+	private class TileLoader implements Callable<Map<SubregionKey, List<RouteDataObject>>> {
+		private final int tileX;
+		private final int tileY;
+
+		TileLoader(int tileX, int tileY) {
+			this.tileX = tileX;
+			this.tileY = tileY;
+		}
+
+		@Override
+		public Map<SubregionKey, List<RouteDataObject>> call() throws Exception {
+			int tileShift = 31 - ctx.config.ZOOM_TO_LOAD_TILES;
+			SearchRequest<RouteDataObject> request = BinaryMapIndexReader.buildSearchRouteRequest(tileX << tileShift,
+					(tileX + 1) << tileShift, tileY << tileShift, (tileY + 1) << tileShift, null);
+			Map<SubregionKey, List<RouteDataObject>> res = new HashMap<SubregionKey, List<RouteDataObject>>();
+			Map<RouteSubregion, RouteSubregion> copies = workerRoots.get();
+			for (Entry<BinaryMapIndexReader, List<RouteSubregion>> e : roots.entrySet()) {
+				List<RouteSubregion> fileRoots = new ArrayList<RouteSubregion>();
+				for (RouteSubregion root : e.getValue()) {
+					// encoding rules are read by search thread, regions without them are not used by search yet
+					if (root.routeReg.routeEncodingRules.isEmpty()
+							|| !request.intersects(root.left, root.top, root.right, root.bottom)) {
+						continue;
+					}
+					RouteSubregion copy = copies.get(root);
+					if (copy == null) {
+						copy = copySubregion(root);
+						copies.put(root, copy);
+					}
+					fileRoots.add(copy);
+				}
+				if (fileRoots.isEmpty()) {
+					continue;
+				}
+				BinaryMapIndexReader reader = getWorkerReader(e.getKey());
+				for (RouteSubregion sr : reader.searchRouteIndexTree(request, fileRoots)) {
+					if (Thread.currentThread().isInterrupted()) {
+						return res;
+					}
+					res.put(new SubregionKey(sr), reader.loadRouteIndexData(sr));
+				}
+			}
+			return res;
+		}
+	}
+
+	/**
+	 * Subregion of a file, copies of subregion have the same key.
+	 */
+	private static class SubregionKey {
+		private final RouteRegion routeReg;
+		private final int filePointer;
+
+		SubregionKey(RouteSubregion subregion) {
+			this.routeReg = subregion.routeReg;
+			this.filePointer = subregion.filePointer;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(routeReg) * 31 + filePointer;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof SubregionKey)) {
+				return false;
+			}
+			SubregionKey o = (SubregionKey) obj;
+			return routeReg == o.routeReg && filePointer == o.filePointer;
+		}
+	}
+
+	private class PrefetchTask extends FutureTask<Map<SubregionKey, List<RouteDataObject>>>
+			implements Comparable<PrefetchTask> {
+
+		private final int priority;
+		private final long order;
+
+		public PrefetchTask(Callable<Map<SubregionKey, List<RouteDataObject>>> loader, int priority, long order) {
+			super(loader);
+			this.priority = priority;
+			this.order = order;
+		}
+
+		@Override
+		public int compareTo(PrefetchTask o) {
+			if (priority != o.priority) {
+				return priority < o.priority ? -1 : 1;
+			}
+			// most recent frontier requests first
+			return order == o.order ? 0 : (order > o.order ? -1 : 1);
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package net.osmand.router;
+
+import java.util.Calendar;
+
+/**
+ * Speeds of {@link SpeedProfileProvider} by time from departure. Buckets are counted from the week time of
+ * departure (daylight saving change during the route is ignored) and recent lookups are kept in direct mapped
+ * cache, so neighbor segments of the search don't go to the provider again.
+ */
+class SpeedProfileCache {
+
+	private static final int CACHE_BITS = 12;
+	private static final int CACHE_SIZE = 1 << CACHE_BITS;
+	private static final float BUCKET_SECONDS = SpeedProfileProvider.BUCKET_MINUTES * 60;
+
+	private final SpeedProfileProvider provider;
+	// seconds from Monday 00:00
+	private final float departureWeekTime;
+
+	private final long[] roads = new long[CACHE_SIZE];
+	private final int[] keys = new int[CACHE_SIZE];
+	// bucket + 1, 0 - empty
+	private final int[] buckets = new int[CACHE_SIZE];
+	private final float[] speeds = new float[CACHE_SIZE];
+
+	SpeedProfileCache(SpeedProfileProvider provider, long departureTime) {
+		this.provider = provider;
+		Calendar cal = Calendar.getInstance();
+		cal.setTimeInMillis(departureTime);
+		int dayOfWeek = (cal.get(Calendar.DAY_OF_WEEK) - Calendar.MONDAY + 7) % 7;
+		departureWeekTime = ((dayOfWeek * 24 + cal.get(Calendar.HOUR_OF_DAY)) * 60 + cal.get(Calendar.MINUTE)) * 60
+				+ cal.get(Calendar.SECOND);
+	}
+
+	int getBucket(float secondsFromDeparture) {
+		return (int) ((departureWeekTime + Math.max(0, secondsFromDeparture)) / BUCKET_SECONDS)
+				% SpeedProfileProvider.BUCKETS;
+	}
+
+	/**
+	 * @return speed in m/s or 0 if there is no profile
+	 */
+	float getSpeed(long roadId, int segment, boolean positive, float secondsFromDeparture) {
+		int bucket = getBucket(secondsFromDeparture);
+		int key = positive ? segment << 1 : (segment << 1) | 1;
+		int h = ((int) (roadId ^ (roadId >>> 32)) * 31 + key) * 31 + bucket;
+		h = (h * 0x9E3779B9) >>> (32 - CACHE_BITS);
+		if (buckets[h] == bucket + 1 && roads[h] == roadId && keys[h] == key) {
+			return speeds[h];
+		}
+		float speed = provider.getSpeed(roadId, segment, positive, bucket);
+		roads[h] = roadId;
+		keys[h] = key;
+		buckets[h] = bucket + 1;
+		speeds[h] = speed;
+		return speed;
+	}
+}
@@ -0,0 +1,192 @@
+package net.osmand.router;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+
+/**
+ * Memory mapped speed profiles. File contains sorted index of road segments and shared profiles:
+ * <pre>
+ * header: magic, version, bucket minutes, buckets, entries count, profiles count (int)
+ * entry: road id (long), direction bit 30 | start segment (int), profile (int)
+ * profile: speed in km/h per bucket (unsigned byte, 0 - no data)
+ * </pre>
+ * Profile of entry is used for segments of the road in its direction from start segment to start segment
+ * of the next entry.
+ */
+public class SpeedProfileFile implements SpeedProfileProvider {
+
+	private static final int MAGIC = 0x4F535046;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 6 * 4;
+	private static final int ENTRY_SIZE = 8 + 4 + 4;
+	private static final int BACKWARD = 1 << 30;
+
+	private final ByteBuffer buffer;
+	private final int entries;
+	private final int profiles;
+	private final int profilesOffset;
+
+	private SpeedProfileFile(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			throw new IOException("Not a speed profile file");
+		}
+		if (buffer.getInt(8) != BUCKET_MINUTES || buffer.getInt(12) != BUCKETS) {
+			throw new IOException("Unsupported speed profile buckets " + buffer.getInt(8) + " min");
+		}
+		entries = buffer.getInt(16);
+		profiles = buffer.getInt(20);
+		profilesOffset = HEADER_SIZE + entries * ENTRY_SIZE;
+		if (entries < 0 || profiles < 0 || (long) profilesOffset + (long) profiles * BUCKETS != buffer.capacity()) {
+			throw new IOException("Broken speed profile file");
+		}
+	}
+
+	public static SpeedProfileFile open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			// mapping stays valid after channel is closed
+			return new SpeedProfileFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			raf.close();
+		}
+	}
+
+	public int getEntriesCount() {
+		return entries;
+	}
+
+	public int getProfilesCount() {
+		return profiles;
+	}
+
+	@Override
+	public float getSpeed(long roadId, int segment, boolean positive, int bucket) {
+		int key = positive ? segment : (segment | BACKWARD);
+		// last entry which is not greater than (road, key)
+		int lo = 0;
+		int hi = entries - 1;
+		int found = -1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int pos = HEADER_SIZE + mid * ENTRY_SIZE;
+			long id = buffer.getLong(pos);
+			if (id < roadId || (id == roadId && buffer.getInt(pos + 8) <= key)) {
+				found = mid;
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		if (found < 0) {
+			return 0;
+		}
+		int pos = HEADER_SIZE + found * ENTRY_SIZE;
+		if (buffer.getLong(pos) != roadId || (buffer.getInt(pos + 8) & BACKWARD) != (key & BACKWARD)) {
+			return 0;
+		}
+		int profile = buffer.getInt(pos + 12);
+		return (buffer.get(profilesOffset + profile * BUCKETS + bucket) & 0xff) / 3.6f;
+	}
+
+	/**
+	 * Creates profile file, equal profiles are stored once.
+	 */
+	public static class Writer {
+
+		private final TLongArrayList roads = new TLongArrayList();
+		private final TIntArrayList keys = new TIntArrayList();
+		private final TIntArrayList entryProfiles = new TIntArrayList();
+		private final List<byte[]> profiles = new ArrayList<byte[]>();
+		private final Map<ByteBuffer, Integer> profileIds = new HashMap<ByteBuffer, Integer>();
+
+		/**
+		 * @param speeds speed in m/s per bucket, 0 - no data
+		 */
+		public void addProfile(long roadId, int fromSegment, boolean positive, float[] speeds) {
+			if (speeds.length != BUCKETS || fromSegment < 0 || fromSegment >= BACKWARD) {
+				throw new IllegalArgumentException();
+			}
+			byte[] profile = new byte[BUCKETS];
+			for (int i = 0; i < BUCKETS; i++) {
+				int kmh = Math.round(speeds[i] * 3.6f);
+				profile[i] = (byte) (speeds[i] > 0 ? Math.max(1, Math.min(255, kmh)) : 0);
+			}
+			Integer id = profileIds.get(ByteBuffer.wrap(profile));
+			if (id == null) {
+				id = profiles.size();
+				profiles.add(profile);
+				profileIds.put(ByteBuffer.wrap(profile), id);
+			}
+			roads.add(roadId);
+			keys.add(positive ? fromSegment : (fromSegment | BACKWARD));
+			entryProfiles.add(id);
+		}
+
+		public void write(File file) throws IOException {
+			int size = roads.size();
+			Integer[] order = new Integer[size];
+			for (int i = 0; i < size; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					int c = Long.compare(roads.get(o1), roads.get(o2));
+					return c != 0 ? c : Integer.compare(keys.get(o1), keys.get(o2));
+				}
+			});
+			File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(BUCKET_MINUTES);
+				out.writeInt(BUCKETS);
+				out.writeInt(size);
+				out.writeInt(profiles.size());
+				for (int i = 0; i < size; i++) {
+					int e = order[i];
+					if (i > 0 && roads.get(order[i - 1]) == roads.get(e) && keys.get(order[i - 1]) == keys.get(e)) {
+						throw new IllegalArgumentException("Duplicate profile of road " + roads.get(e));
+					}
+					out.writeLong(roads.get(e));
+					out.writeInt(keys.get(e));
+					out.writeInt(entryProfiles.get(e));
+				}
+				for (byte[] p : profiles) {
+					out.write(p);
+				}
+				out.close();
+				out = null;
+				if (!tmp.renameTo(file)) {
+					file.delete();
+					if (!tmp.renameTo(file)) {
+						throw new IOException("Couldn't rename " + tmp);
+					}
+				}
+			} finally {
+				if (out != null) {
+					out.close();
+				}
+				tmp.delete();
+			}
+		}
+	}
+}
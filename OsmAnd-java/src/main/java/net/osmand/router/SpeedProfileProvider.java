@@ -0,0 +1,20 @@
+package net.osmand.router;
+
+/**
+ * Historical speeds of road segments by time of the week. Set to {@link RoutingConfiguration#speedProfiles}
+ * to be used instead of static router speeds for roads which have profile.
+ */
+public interface SpeedProfileProvider {
+
+	public static final int BUCKET_MINUTES = 15;
+	public static final int BUCKETS = 7 * 24 * 60 / BUCKET_MINUTES;
+
+	/**
+	 * @param roadId id of RouteDataObject
+	 * @param segment index of start point of segment (smaller index of its points)
+	 * @param positive direction of movement on segment from smaller point index to bigger
+	 * @param bucket 15 minutes interval of week from Monday 00:00 local time (0 to {@link #BUCKETS} - 1)
+	 * @return speed in m/s or 0 if there is no profile
+	 */
+	public float getSpeed(long roadId, int segment, boolean positive, int bucket);
+}
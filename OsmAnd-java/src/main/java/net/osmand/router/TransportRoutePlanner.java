@@ -6,7 +6,6 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
-import java.util.PriorityQueue;
 
 
 import gnu.trove.list.array.TIntArrayList;
@@ -20,6 +19,8 @@ import net.osmand.data.TransportStop;
 import net.osmand.data.TransportStopExit;
 import net.osmand.osm.edit.Node;
 import net.osmand.osm.edit.Way;
+import net.osmand.util.FlatEarthDistance.LocalScale;
+import net.osmand.util.IndexedHeap;
 import net.osmand.util.MapUtils;
 
 public class TransportRoutePlanner {
@@ -43,11 +44,12 @@ public class TransportRoutePlanner {
 		if(startStops.size() == 0) {
 			return Collections.emptyList();
 		}
-		PriorityQueue<TransportRouteSegment> queue = new PriorityQueue<TransportRouteSegment>(startStops.size(), new SegmentsComparator(ctx));
+		// segments are keyed by id, so only the earliest arrival to the segment stays in the queue
+		IndexedHeap<TransportRouteSegment> queue = new IndexedHeap<TransportRouteSegment>(startStops.size());
 		for(TransportRouteSegment r : startStops){
 			r.walkDist = (float) MapUtils.getDistance(r.getLocation(), start);
 			r.distFromStart = r.walkDist / ctx.cfg.walkSpeed;
-			queue.add(r);
+			queue.add(r.getId(), r.distFromStart, r);
 		}
 		
 		double finishTime = ctx.cfg.maxRouteTime;
@@ -138,10 +140,10 @@ public class TransportRoutePlanner {
 						int tm = (sgm.departureTime - ctx.cfg.scheduleTimeOfDay) * 10;
 						if(tm >= nextSegment.distFromStart) {
 							nextSegment.distFromStart = tm;
-							queue.add(nextSegment);
+							queue.add(nextSegment.getId(), nextSegment.distFromStart, nextSegment);
 						}
 					} else {
-						queue.add(nextSegment);
+						queue.add(nextSegment.getId(), nextSegment.distFromStart, nextSegment);
 					}
 				}
 				TransportRouteSegment finalSegment = endSegments.get(segmentId);
@@ -199,7 +201,7 @@ public class TransportRoutePlanner {
 		}
 	}
 
-	private void updateCalculationProgress(TransportRoutingContext ctx, PriorityQueue<TransportRouteSegment> queue) {
+	private void updateCalculationProgress(TransportRoutingContext ctx, IndexedHeap<TransportRouteSegment> queue) {
 		if (ctx.calculationProgress != null) {
 			ctx.calculationProgress.directSegmentQueueSize = queue.size();
 			if (queue.size() > 0) {
@@ -398,17 +400,22 @@ public class TransportRoutePlanner {
 			final LatLon endLoc = getEnd().getLocation();
 			SearchNodeInd startInd = new SearchNodeInd();
 			SearchNodeInd endInd = new SearchNodeInd();
+			// stops are matched within few hundred meters, flat distance is enough
+			LocalScale startScale = new LocalScale(startLoc.getLatitude(), startLoc.getLongitude());
+			LocalScale endScale = new LocalScale(endLoc.getLatitude(), endLoc.getLongitude());
 			for (int i = 0;  i < ways.size() ; i++) {
 				List<Node> nodes = ways.get(i).getNodes();
 				for (int j = 0; j < nodes.size(); j++) {
 					Node n = nodes.get(j);
-					if (MapUtils.getDistance(startLoc, n.getLatitude(), n.getLongitude()) < startInd.dist) {
-						startInd.dist = MapUtils.getDistance(startLoc, n.getLatitude(), n.getLongitude());
+					double startDist = startScale.getDistance(n.getLatitude(), n.getLongitude());
+					if (startDist < startInd.dist) {
+						startInd.dist = startDist;
 						startInd.ind = j;
 						startInd.way = ways.get(i);
 					}
-					if (MapUtils.getDistance(endLoc, n.getLatitude(), n.getLongitude()) < endInd.dist) {
-						endInd.dist = MapUtils.getDistance(endLoc, n.getLatitude(), n.getLongitude());
+					double endDist = endScale.getDistance(n.getLatitude(), n.getLongitude());
+					if (endDist < endInd.dist) {
+						endInd.dist = endDist;
 						endInd.ind = j;
 						endInd.way = ways.get(i);
 					} 
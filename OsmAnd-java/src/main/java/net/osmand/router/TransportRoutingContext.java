@@ -6,15 +6,13 @@ import net.osmand.data.LatLon;
 import net.osmand.data.TransportRoute;
 import net.osmand.data.TransportStop;
 import net.osmand.router.TransportRoutePlanner.TransportRouteSegment;
+import net.osmand.router.TransportStopsIndex.StopsTile;
 import net.osmand.util.MapUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 
 import gnu.trove.list.array.TIntArrayList;
@@ -33,7 +31,7 @@ public class TransportRoutingContext {
 	// Here we don't limit files by bbox, so it could be an issue while searching for multiple unused files
 	// Incomplete routes usually don't need more files than around Max-BBOX of start/end,
 	// so here an improvement could be introduced
-	final TransportStopsRouteReader transportStopsReader;
+	final TransportStopsIndex transportStopsIndex;
 	public int finishTimeSeconds;
 
 	// stats
@@ -49,12 +47,16 @@ public class TransportRoutingContext {
 	private final int walkChangeRadiusIn31;
 
 	public TransportRoutingContext(TransportRoutingConfiguration cfg, NativeLibrary library, BinaryMapIndexReader... readers) {
+		this(cfg, library, new TransportStopsIndex(readers));
+	}
+
+	public TransportRoutingContext(TransportRoutingConfiguration cfg, NativeLibrary library, TransportStopsIndex transportStopsIndex) {
 		this.cfg = cfg;
 		walkRadiusIn31 = (int) (cfg.walkRadius / MapUtils.getTileDistanceWidth(31));
 		walkChangeRadiusIn31 = (int) (cfg.walkChangeRadius / MapUtils.getTileDistanceWidth(31));
 		quadTree = new TLongObjectHashMap<List<TransportRouteSegment>>();
 		this.library = library;
-		transportStopsReader = new TransportStopsRouteReader(Arrays.asList(readers));
+		this.transportStopsIndex = transportStopsIndex;
 	}
 
 	public List<TransportRouteSegment> getTransportStops(LatLon loc) throws IOException {
@@ -101,48 +103,19 @@ public class TransportRoutingContext {
 	private List<TransportRouteSegment> loadTile(int x, int y) throws IOException {
 		long nanoTime = System.nanoTime();
 		List<TransportRouteSegment> lst = new ArrayList<TransportRouteSegment>();
-		int pz = (31 - cfg.ZOOM_TO_LOAD_TILES);
-		BinaryMapIndexReader.SearchRequest<TransportStop> sr = BinaryMapIndexReader.buildSearchTransportRequest(x << pz, (x + 1) << pz,
-				y << pz, (y + 1) << pz, -1, null);
-		Collection<TransportStop> stops = transportStopsReader.readMergedTransportStops(sr);
-		loadTransportSegments(stops, lst);
-		readTime += System.nanoTime() - nanoTime;
-		return lst;
-	}
-
-	private void loadTransportSegments(Collection<TransportStop> stops, List<TransportRouteSegment> lst) throws IOException {
-		for(TransportStop s : stops) {
-			if (s.isDeleted() || s.getRoutes() == null) {
-				continue;
-			}
-			for (TransportRoute route : s.getRoutes()) {
-				int stopIndex = -1;
-				double dist = TransportRoute.SAME_STOP;
-				for (int k = 0; k < route.getForwardStops().size(); k++) {
-					TransportStop st = route.getForwardStops().get(k);
-					if(st.getId().longValue() == s.getId().longValue() ) {
-						stopIndex = k;
-						break;
-					}
-					double d = MapUtils.getDistance(st.getLocation(), s.getLocation());
-					if (d < dist) {
-						stopIndex = k;
-						dist = d;
-					}
-				}
-				if (stopIndex != -1) {
-					if (cfg != null && cfg.useSchedule) {
-						loadScheduleRouteSegment(lst, route, stopIndex);
-					} else {
-						TransportRouteSegment segment = new TransportRouteSegment(route, stopIndex);
-						lst.add(segment);
-					}
-				} else {
-					System.err.println(String.format(Locale.US, "Routing error: missing stop '%s' in route '%s' id: %d",
-							s.toString(), route.getRef(), route.getId() / 2));
-				}
+		StopsTile tile = transportStopsIndex.getTile(cfg.ZOOM_TO_LOAD_TILES, x, y);
+		for (int i = 0; i < tile.size(); i++) {
+			TransportRoute route = tile.getRoute(i);
+			int stopIndex = tile.getStopIndex(i);
+			if (cfg != null && cfg.useSchedule) {
+				loadScheduleRouteSegment(lst, route, stopIndex);
+			} else {
+				TransportRouteSegment segment = new TransportRouteSegment(route, stopIndex);
+				lst.add(segment);
 			}
 		}
+		readTime += System.nanoTime() - nanoTime;
+		return lst;
 	}
 
 	private void loadScheduleRouteSegment(List<TransportRouteSegment> lst, TransportRoute route, int stopIndex) {
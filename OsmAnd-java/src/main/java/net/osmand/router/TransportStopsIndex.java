@@ -0,0 +1,257 @@
+package net.osmand.router;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import gnu.trove.list.array.TIntArrayList;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportStop;
+import net.osmand.util.MapUtils;
+
+/**
+ * Precompiled transport graph for a set of OBF files. Stops are read from the files once per tile,
+ * merged across files and converted into packed (route, stop index) arrays, so
+ * {@link TransportRoutingContext} doesn't need to re-read the OBF or scan route stops for every search.
+ * Index is thread-safe and could be shared between routing contexts as long as the files stay the same,
+ * least recently used tiles are evicted when there are more than {@link #MAX_TILES}.
+ * Routes read from the files are cached only while they are needed to load new tiles and are dropped
+ * together with stop indexes when there are more than {@link #MAX_ROUTES}, loaded tiles keep their own routes.
+ */
+public class TransportStopsIndex {
+
+	public static final int MAX_TILES = 512;
+	public static final int MAX_ROUTES = 8192;
+
+	private final List<BinaryMapIndexReader> files;
+	// guarded by itself, files are read by one search at a time
+	private final TransportStopsRouteReader transportStopsReader;
+	private final Map<Long, StopsTile> tiles = new LinkedHashMap<Long, StopsTile>(64, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, StopsTile> eldest) {
+			return size() > MAX_TILES;
+		}
+	};
+	// route -> (stop id -> index in forward stops), routes with same id could differ between files
+	private final Map<TransportRoute, RouteStopIndexes> routeStopIndexes = new IdentityHashMap<TransportRoute, RouteStopIndexes>();
+
+	// stats
+	private int loadedTiles;
+	private int reusedTiles;
+	private long readTime;
+
+	public TransportStopsIndex(BinaryMapIndexReader... readers) {
+		files = Arrays.asList(readers);
+		transportStopsReader = new TransportStopsRouteReader(files);
+	}
+
+	public boolean isSameFiles(BinaryMapIndexReader... readers) {
+		return files.equals(Arrays.asList(readers));
+	}
+
+	public StopsTile getTile(int zoom, int x, int y) throws IOException {
+		long tileId = getTileId(zoom, x, y);
+		synchronized (this) {
+			StopsTile tile = tiles.get(tileId);
+			if (tile != null) {
+				reusedTiles++;
+				return tile;
+			}
+		}
+		// files are read by one search at a time, searches with loaded tiles don't wait for it
+		synchronized (transportStopsReader) {
+			synchronized (this) {
+				StopsTile tile = tiles.get(tileId);
+				if (tile != null) {
+					reusedTiles++;
+					return tile;
+				}
+			}
+			StopsTile tile = loadTile(zoom, x, y);
+			if (transportStopsReader.getCachedRoutesCount() > MAX_ROUTES) {
+				transportStopsReader.clearCache();
+				synchronized (this) {
+					routeStopIndexes.clear();
+				}
+			}
+			synchronized (this) {
+				tiles.put(tileId, tile);
+				loadedTiles++;
+			}
+			return tile;
+		}
+	}
+
+	public synchronized int getStopIndex(TransportRoute route, TransportStop stop) {
+		RouteStopIndexes stopIndexes = routeStopIndexes.get(route);
+		if (stopIndexes == null) {
+			if (routeStopIndexes.size() >= MAX_ROUTES) {
+				routeStopIndexes.clear();
+			}
+			stopIndexes = new RouteStopIndexes(route.getForwardStops());
+			routeStopIndexes.put(route, stopIndexes);
+		}
+		long stopId = stop.getId();
+		int ind = stopIndexes.indexOf(stopId);
+		if (ind >= 0) {
+			return stopIndexes.stopIndexes[ind];
+		}
+		int stopIndex = findClosestStopIndex(route, stop);
+		// remember the result, so the distance scan is done once per stop
+		stopIndexes.insert(-ind - 1, stopId, stopIndex);
+		return stopIndex;
+	}
+
+	public synchronized int getLoadedTiles() {
+		return loadedTiles;
+	}
+
+	public synchronized int getReusedTiles() {
+		return reusedTiles;
+	}
+
+	public synchronized long getReadTime() {
+		return readTime;
+	}
+
+	public void clear() {
+		synchronized (transportStopsReader) {
+			transportStopsReader.clearCache();
+			synchronized (this) {
+				tiles.clear();
+				routeStopIndexes.clear();
+			}
+		}
+	}
+
+	private static long getTileId(int zoom, int x, int y) {
+		return (((long) zoom) << 58) + (((long) x) << (zoom + 1)) + y;
+	}
+
+	private int findClosestStopIndex(TransportRoute route, TransportStop s) {
+		int stopIndex = -1;
+		double dist = TransportRoute.SAME_STOP;
+		List<TransportStop> forwardStops = route.getForwardStops();
+		for (int k = 0; k < forwardStops.size(); k++) {
+			double d = MapUtils.getDistance(forwardStops.get(k).getLocation(), s.getLocation());
+			if (d < dist) {
+				stopIndex = k;
+				dist = d;
+			}
+		}
+		return stopIndex;
+	}
+
+	private StopsTile loadTile(int zoom, int x, int y) throws IOException {
+		long nanoTime = System.nanoTime();
+		int pz = (31 - zoom);
+		BinaryMapIndexReader.SearchRequest<TransportStop> sr = BinaryMapIndexReader.buildSearchTransportRequest(x << pz,
+				(x + 1) << pz, y << pz, (y + 1) << pz, -1, null);
+		Collection<TransportStop> stops = transportStopsReader.readMergedTransportStops(sr);
+		List<TransportRoute> routes = new ArrayList<TransportRoute>();
+		TIntArrayList stopIndexes = new TIntArrayList();
+		for (TransportStop s : stops) {
+			if (s.isDeleted() || s.getRoutes() == null) {
+				continue;
+			}
+			for (TransportRoute route : s.getRoutes()) {
+				int stopIndex = getStopIndex(route, s);
+				if (stopIndex != -1) {
+					routes.add(route);
+					stopIndexes.add(stopIndex);
+				} else {
+					System.err.println(String.format(Locale.US, "Routing error: missing stop '%s' in route '%s' id: %d",
+							s.toString(), route.getRef(), route.getId() / 2));
+				}
+			}
+		}
+		StopsTile tile = new StopsTile(routes.toArray(new TransportRoute[routes.size()]), stopIndexes.toArray());
+		synchronized (this) {
+			readTime += System.nanoTime() - nanoTime;
+		}
+		return tile;
+	}
+
+	/**
+	 * Stop id -> index in forward stops of a route, ids are sorted for binary search.
+	 */
+	private static class RouteStopIndexes {
+		long[] stopIds;
+		int[] stopIndexes;
+
+		RouteStopIndexes(List<TransportStop> forwardStops) {
+			long[] ids = new long[forwardStops.size()];
+			for (int k = 0; k < ids.length; k++) {
+				ids[k] = forwardStops.get(k).getId();
+			}
+			Arrays.sort(ids);
+			int size = 0;
+			for (int k = 0; k < ids.length; k++) {
+				if (size == 0 || ids[size - 1] != ids[k]) {
+					ids[size++] = ids[k];
+				}
+			}
+			stopIds = Arrays.copyOf(ids, size);
+			stopIndexes = new int[size];
+			Arrays.fill(stopIndexes, -1);
+			for (int k = 0; k < forwardStops.size(); k++) {
+				int ind = indexOf(forwardStops.get(k).getId());
+				// first occurrence wins as it was in linear scan
+				if (stopIndexes[ind] == -1) {
+					stopIndexes[ind] = k;
+				}
+			}
+		}
+
+		int indexOf(long stopId) {
+			return Arrays.binarySearch(stopIds, stopId);
+		}
+
+		void insert(int pos, long stopId, int stopIndex) {
+			long[] ids = new long[stopIds.length + 1];
+			int[] indexes = new int[stopIndexes.length + 1];
+			System.arraycopy(stopIds, 0, ids, 0, pos);
+			System.arraycopy(stopIndexes, 0, indexes, 0, pos);
+			ids[pos] = stopId;
+			indexes[pos] = stopIndex;
+			System.arraycopy(stopIds, pos, ids, pos + 1, stopIds.length - pos);
+			System.arraycopy(stopIndexes, pos, indexes, pos + 1, stopIndexes.length - pos);
+			stopIds = ids;
+			stopIndexes = indexes;
+		}
+	}
+
+	/**
+	 * Packed (route, stop index) pairs of a single tile.
+	 */
+	public static class StopsTile {
+		final TransportRoute[] routes;
+		final int[] stopIndexes;
+
+		StopsTile(TransportRoute[] routes, int[] stopIndexes) {
+			this.routes = routes;
+			this.stopIndexes = stopIndexes;
+		}
+
+		public int size() {
+			return routes.length;
+		}
+
+		public TransportRoute getRoute(int i) {
+			return routes[i];
+		}
+
+		public int getStopIndex(int i) {
+			return stopIndexes[i];
+		}
+	}
+}
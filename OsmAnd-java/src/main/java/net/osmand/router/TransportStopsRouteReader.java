@@ -37,6 +37,21 @@ public class TransportStopsRouteReader {
 		}
 	}
 	
+	public int getCachedRoutesCount() {
+		int cnt = combinedRoutesCache.size();
+		for (TIntObjectHashMap<TransportRoute> routes : routesFilesCache.values()) {
+			cnt += routes.size();
+		}
+		return cnt;
+	}
+
+	public void clearCache() {
+		combinedRoutesCache.clear();
+		for (TIntObjectHashMap<TransportRoute> routes : routesFilesCache.values()) {
+			routes.clear();
+		}
+	}
+
 	public Collection<TransportStop> readMergedTransportStops(SearchRequest<TransportStop> sr) throws IOException {
 		TLongObjectHashMap<TransportStop> loadedTransportStops = new TLongObjectHashMap<TransportStop>();
 
@@ -0,0 +1,407 @@
+package net.osmand.router;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+
+import net.osmand.PlatformUtil;
+import net.osmand.data.LatLon;
+import net.osmand.util.MapUtils;
+
+/**
+ * Orders points of open path starting at point 0 (and optionally finishing at last point) by arbitrary
+ * (asymmetric) cost matrix, for example road travel times from {@link RoutePlannerFrontEnd#calculateTravelTimeMatrix}.
+ * Workers on all cores build ant colony tours with shared trails and improve them by 2-opt and Or-opt
+ * until time budget is over. Time windows are supported when costs are times: waiting till window start is added
+ * to the cost and arriving after window end is heavily penalized.
+ */
+public class TspSolver {
+
+	private static final Log log = PlatformUtil.getLog(TspSolver.class);
+
+	// greedy preference
+	private static final double BETA = 5;
+	private static final double EVAPORATION = 0.9;
+	private static final double MIN_TRAIL = 0.01;
+	// seconds of cost per second of being late
+	public static final double LATE_PENALTY = 1000;
+	// worker stops if it doesn't improve best tour
+	private static final int MAX_ITERATIONS_WITHOUT_IMPROVEMENT = 200;
+
+	private final int n;
+	private final double[][] cost;
+	private final boolean keepEnd;
+	private final double[][] greedy;
+	private final double[][] trails;
+	private double[] windowStart;
+	private double[] windowEnd;
+	private double[] serviceTime;
+
+	private long timeBudgetMs = 1000;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private long seed = System.nanoTime();
+
+	private int[] bestTour;
+	private volatile double bestTourCost = Double.POSITIVE_INFINITY;
+
+	/**
+	 * @param cost cost[i][j] of going from i to j
+	 * @param keepEnd last point should stay the last one
+	 */
+	public TspSolver(double[][] cost, boolean keepEnd) {
+		this.n = cost.length;
+		this.cost = cost;
+		this.keepEnd = keepEnd && n > 1;
+		this.greedy = new double[n][n];
+		this.trails = new double[n][n];
+		double avg = 0;
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				avg += cost[i][j] / n / n;
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				greedy[i][j] = Math.pow(avg / (cost[i][j] + avg * 0.001 + 1e-9), BETA);
+				trails[i][j] = 1;
+			}
+		}
+	}
+
+	/**
+	 * Straight line distances, order of points and result is the same as {@link net.osmand.TspAnt#readGraph}
+	 */
+	public static TspSolver readGraph(List<LatLon> intermediates, LatLon start, LatLon end) {
+		List<LatLon> l = new ArrayList<LatLon>();
+		if (start != null) {
+			l.add(start);
+		}
+		l.addAll(intermediates);
+		if (end != null) {
+			l.add(end);
+		}
+		double[][] cost = new double[l.size()][l.size()];
+		for (int i = 0; i < l.size(); i++) {
+			for (int j = 0; j < l.size(); j++) {
+				cost[i][j] = MapUtils.getDistance(l.get(i), l.get(j));
+			}
+		}
+		return new TspSolver(cost, end != null);
+	}
+
+	/**
+	 * @param start earliest arrival time for every point (from the start, could be null)
+	 * @param end latest arrival time for every point (could be null)
+	 * @param service time spent in every point (could be null)
+	 */
+	public TspSolver setTimeWindows(double[] start, double[] end, double[] service) {
+		this.windowStart = start;
+		this.windowEnd = end;
+		this.serviceTime = service;
+		return this;
+	}
+
+	public TspSolver setTimeBudget(long timeBudgetMs) {
+		this.timeBudgetMs = timeBudgetMs;
+		return this;
+	}
+
+	public TspSolver setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+		return this;
+	}
+
+	public TspSolver setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	public double getBestTourCost() {
+		return bestTourCost;
+	}
+
+	/**
+	 * @return sum of lateness of best tour (0 if all time windows are satisfied)
+	 */
+	public double getBestTourLateness() {
+		return bestTour == null ? 0 : getLateness(bestTour);
+	}
+
+	/**
+	 * @return order of all points starting with 0 (and finishing with last point if it is kept)
+	 */
+	public int[] solve() {
+		bestTour = null;
+		bestTourCost = Double.POSITIVE_INFINITY;
+		if (n <= 3) {
+			int[] tour = new int[n];
+			for (int i = 0; i < n; i++) {
+				tour[i] = i;
+			}
+			if (n == 3 && !keepEnd) {
+				int[] other = new int[] { 0, 2, 1 };
+				if (evaluate(other) < evaluate(tour)) {
+					tour = other;
+				}
+			}
+			offer(tour, evaluate(tour));
+			return bestTour.clone();
+		}
+		long deadline = System.currentTimeMillis() + timeBudgetMs;
+		if (threads <= 1) {
+			new Worker(seed, deadline, true).run();
+		} else {
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			try {
+				List<Future<?>> futures = new ArrayList<Future<?>>();
+				for (int t = 0; t < threads; t++) {
+					futures.add(executor.submit(new Worker(seed + t, deadline, t == 0)));
+				}
+				for (Future<?> f : futures) {
+					f.get();
+				}
+			} catch (ExecutionException e) {
+				log.error("Error solving tsp", e.getCause());
+			} catch (InterruptedException e) {
+				// keep best tour found so far
+				Thread.currentThread().interrupt();
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+		if (bestTour == null) {
+			// workers failed
+			bestTour = new int[n];
+			for (int i = 0; i < n; i++) {
+				bestTour[i] = i;
+			}
+			bestTourCost = evaluate(bestTour);
+		}
+		return bestTour.clone();
+	}
+
+	private double evaluate(int[] tour) {
+		return evaluate(tour, false);
+	}
+
+	private double getLateness(int[] tour) {
+		return evaluate(tour, true);
+	}
+
+	private double evaluate(int[] tour, boolean lateness) {
+		double time = 0;
+		double late = 0;
+		for (int k = 1; k < n; k++) {
+			int p = tour[k];
+			time += cost[tour[k - 1]][p];
+			if (windowStart != null && time < windowStart[p]) {
+				time = windowStart[p];
+			}
+			if (windowEnd != null && time > windowEnd[p]) {
+				late += time - windowEnd[p];
+			}
+			if (serviceTime != null) {
+				time += serviceTime[p];
+			}
+		}
+		return lateness ? late : time + late * LATE_PENALTY;
+	}
+
+	private synchronized void offer(int[] tour, double tourCost) {
+		if (tourCost < bestTourCost) {
+			bestTourCost = tourCost;
+			bestTour = tour.clone();
+		}
+		// trails are updated by every tour relative to the best one and by the best one
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				trails[i][j] = Math.max(MIN_TRAIL, trails[i][j] * EVAPORATION);
+			}
+		}
+		double deposit = tourCost > 0 ? bestTourCost / tourCost : 1;
+		for (int k = 1; k < n; k++) {
+			trails[tour[k - 1]][tour[k]] += deposit;
+			trails[bestTour[k - 1]][bestTour[k]] += 1;
+		}
+	}
+
+	private synchronized void copyTrails(double[][] to) {
+		for (int i = 0; i < n; i++) {
+			System.arraycopy(trails[i], 0, to[i], 0, n);
+		}
+	}
+
+	private class Worker implements Runnable {
+		private final Random rand;
+		private final long deadline;
+		private final int[] tour = new int[n];
+		private final int[] candidate = new int[n];
+		private final boolean[] visited = new boolean[n];
+		private final double[] probs = new double[n];
+		// trails are changed by other workers, so tour is built by snapshot of them
+		private final double[][] trailsSnapshot = new double[n][n];
+		private boolean nearestNeighbour;
+
+		Worker(long seed, long deadline, boolean nearestNeighbour) {
+			this.rand = new Random(seed);
+			this.deadline = deadline;
+			this.nearestNeighbour = nearestNeighbour;
+		}
+
+		@Override
+		public void run() {
+			int withoutImprovement = 0;
+			while (System.currentTimeMillis() < deadline && !Thread.currentThread().isInterrupted()
+					&& withoutImprovement < MAX_ITERATIONS_WITHOUT_IMPROVEMENT) {
+				construct();
+				nearestNeighbour = false;
+				double tourCost = localSearch();
+				double best = bestTourCost;
+				offer(tour, tourCost);
+				withoutImprovement = tourCost < best ? 0 : withoutImprovement + 1;
+			}
+		}
+
+		private void construct() {
+			int last = keepEnd ? n - 2 : n - 1;
+			for (int i = 0; i < n; i++) {
+				visited[i] = false;
+			}
+			tour[0] = 0;
+			visited[0] = true;
+			if (keepEnd) {
+				tour[n - 1] = n - 1;
+				visited[n - 1] = true;
+			}
+			if (!nearestNeighbour) {
+				copyTrails(trailsSnapshot);
+			}
+			for (int k = 1; k <= last; k++) {
+				int from = tour[k - 1];
+				int next = -1;
+				if (nearestNeighbour) {
+					for (int j = 0; j < n; j++) {
+						if (!visited[j] && (next < 0 || cost[from][j] < cost[from][next])) {
+							next = j;
+						}
+					}
+				} else {
+					double sum = 0;
+					for (int j = 0; j < n; j++) {
+						probs[j] = visited[j] ? 0 : trailsSnapshot[from][j] * greedy[from][j];
+						sum += probs[j];
+					}
+					double r = rand.nextDouble() * sum;
+					for (int j = 0; j < n; j++) {
+						if (!visited[j]) {
+							next = j;
+							r -= probs[j];
+							if (r <= 0) {
+								break;
+							}
+						}
+					}
+				}
+				tour[k] = next;
+				visited[next] = true;
+			}
+		}
+
+		private double localSearch() {
+			double tourCost = evaluate(tour);
+			boolean improved = true;
+			while (improved && System.currentTimeMillis() < deadline) {
+				improved = false;
+				double c = twoOpt(tourCost);
+				if (c < tourCost) {
+					tourCost = c;
+					improved = true;
+				}
+				c = orOpt(tourCost);
+				if (c < tourCost) {
+					tourCost = c;
+					improved = true;
+				}
+			}
+			return tourCost;
+		}
+
+		// reverse part of the tour (costs could be asymmetric, so the whole tour is evaluated)
+		private double twoOpt(double tourCost) {
+			int last = keepEnd ? n - 2 : n - 1;
+			for (int i = 1; i < last; i++) {
+				for (int k = i + 1; k <= last; k++) {
+					reverse(tour, i, k);
+					double c = evaluate(tour);
+					if (c < tourCost - 1e-9) {
+						tourCost = c;
+					} else {
+						reverse(tour, i, k);
+					}
+				}
+				if (System.currentTimeMillis() > deadline) {
+					break;
+				}
+			}
+			return tourCost;
+		}
+
+		// move part of 1-3 points to another position
+		private double orOpt(double tourCost) {
+			int last = keepEnd ? n - 2 : n - 1;
+			for (int len = 1; len <= 3; len++) {
+				for (int i = 1; i + len - 1 <= last; i++) {
+					// position in the tour without moved part
+					int maxPos = last - len + 1;
+					for (int p = 1; p <= maxPos; p++) {
+						if (p == i) {
+							continue;
+						}
+						move(i, len, p);
+						double c = evaluate(candidate);
+						if (c < tourCost - 1e-9) {
+							tourCost = c;
+							System.arraycopy(candidate, 0, tour, 0, n);
+						}
+					}
+					if (System.currentTimeMillis() > deadline) {
+						return tourCost;
+					}
+				}
+			}
+			return tourCost;
+		}
+
+		private void move(int i, int len, int p) {
+			int m = 0;
+			for (int k = 0; k < n; k++) {
+				if (m == p) {
+					System.arraycopy(tour, i, candidate, m, len);
+					m += len;
+				}
+				if (k < i || k >= i + len) {
+					candidate[m++] = tour[k];
+				}
+			}
+			if (m == p) {
+				System.arraycopy(tour, i, candidate, m, len);
+			}
+		}
+	}
+
+	private static void reverse(int[] tour, int i, int k) {
+		while (i < k) {
+			int t = tour[i];
+			tour[i] = tour[k];
+			tour[k] = t;
+			i++;
+			k--;
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package net.osmand.search;
 
+import gnu.trove.map.hash.TLongObjectHashMap;
+
 import net.osmand.Collator;
 import net.osmand.PlatformUtil;
 import net.osmand.ResultMatcher;
@@ -37,10 +39,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -62,7 +67,7 @@ public class SearchUICore {
 	private Runnable onSearchStart = null;
 	private Runnable onResultsComplete = null;
 	private AtomicInteger requestNumber = new AtomicInteger();
-	private int totalLimit = -1; // -1 unlimited - not used
+	private int totalLimit = -1; // -1 unlimited
 
 	List<SearchCoreAPI> apis = new ArrayList<>();
 	private SearchSettings searchSettings;
@@ -94,15 +99,27 @@ public class SearchUICore {
 	public static class SearchResultCollection {
 		private List<SearchResult> searchResults;
 		private SearchPhrase phrase;
-		private static final int DEPTH_TO_CHECK_SAME_SEARCH_RESULTS = 20;
+		private int maxResults = -1;
+		// duplicates of results with big similarity radius (natural objects, route points) are searched by name only
+		private static final double SAME_SEARCH_RESULT_WIDE_RADIUS = 50000;
+		// cell should be bigger than max common similarity radius (100 m) up to high latitudes
+		private static final int SAME_SEARCH_RESULT_CELL_ZOOM = 15;
 
 		public SearchResultCollection(SearchPhrase phrase) {
 			searchResults = new ArrayList<>();
 			this.phrase = phrase;
 		}
 
+		/**
+		 * @param maxResults keep only the best results (-1 unlimited) when results are resorted
+		 */
+		public SearchResultCollection(SearchPhrase phrase, int maxResults) {
+			this(phrase);
+			this.maxResults = maxResults;
+		}
+
 		public SearchResultCollection combineWithCollection(SearchResultCollection collection, boolean resort, boolean removeDuplicates) {
-			SearchResultCollection src = new SearchResultCollection(phrase);
+			SearchResultCollection src = new SearchResultCollection(phrase, maxResults);
 			src.addSearchResults(searchResults, false, false);
 			src.addSearchResults(collection.searchResults, resort, removeDuplicates);
 			return src;
@@ -113,11 +130,11 @@ public class SearchUICore {
 				LOG.info("Add search results resortAll=" + (resortAll ? "true" : "false") + " removeDuplicates=" + (removeDuplicates ? "true" : "false") + " Results=" + sr.size() + " Current results=" + this.searchResults.size());
 			}
 			if (resortAll) {
-				this.searchResults.addAll(sr);
-				sortSearchResults();
-				if (removeDuplicates) {
-					filterSearchDuplicateResults();
-				}
+				SearchResultsCollector collector = new SearchResultsCollector(new SearchResultComparator(phrase),
+						maxResults, removeDuplicates);
+				collector.addAll(searchResults);
+				collector.addAll(sr);
+				this.searchResults = collector.getSortedResults();
 			} else {
 				if (!removeDuplicates) {
 					this.searchResults.addAll(sr);
@@ -125,39 +142,33 @@ public class SearchUICore {
 					ArrayList<SearchResult> addedResults = new ArrayList<>(sr);
 					SearchResultComparator cmp = new SearchResultComparator(phrase);
 					Collections.sort(addedResults, cmp);
-					filterSearchDuplicateResults(addedResults);
+					DuplicatesIndex duplicates = new DuplicatesIndex();
+					for (SearchResult r : searchResults) {
+						duplicates.add(r);
+					}
 					int i = 0;
 					int j = 0;
 					while (j < addedResults.size()) {
 						SearchResult addedResult = addedResults.get(j);
-						if (i >= searchResults.size()) {
-							int k = 0;
-							boolean same = false;
-							while (searchResults.size() > k && k < DEPTH_TO_CHECK_SAME_SEARCH_RESULTS) {
-								if (sameSearchResult(addedResult, searchResults.get(searchResults.size() - k - 1))) {
-									same = true;
-									break;
-								}
-								k++;
-							}
-							if (!same) {
-								searchResults.add(addedResult);
-							}
+						if (duplicates.findSame(addedResult) != null) {
 							j++;
 							continue;
 						}
-						SearchResult existingResult = searchResults.get(i);
-						if (sameSearchResult(addedResult, existingResult)) {
+						if (i >= searchResults.size()) {
+							searchResults.add(addedResult);
+							duplicates.add(addedResult);
 							j++;
 							continue;
 						}
+						SearchResult existingResult = searchResults.get(i);
 						int compare = cmp.compare(existingResult, addedResult);
 						if (compare == 0) {
 							// existingResult == addedResult
 							j++;
 						} else if (compare > 0) {
 							// existingResult > addedResult
-							this.searchResults.add(addedResults.get(j));
+							this.searchResults.add(addedResult);
+							duplicates.add(addedResult);
 							j++;
 						} else {
 							// existingResult < addedResult
@@ -180,6 +191,10 @@ public class SearchUICore {
 			return phrase;
 		}
 
+		public int getMaxResults() {
+			return maxResults;
+		}
+
 		public void sortSearchResults() {
 			if (debugMode) {
 				LOG.info("Sorting search results <" + phrase + "> Results=" + searchResults.size());
@@ -201,26 +216,244 @@ public class SearchUICore {
 		}
 
 		private void filterSearchDuplicateResults(List<SearchResult> lst) {
+			DuplicatesIndex duplicates = new DuplicatesIndex();
 			ListIterator<SearchResult> it = lst.listIterator();
-			LinkedList<SearchResult> lstUnique = new LinkedList<SearchResult>();
 			while (it.hasNext()) {
 				SearchResult r = it.next();
-				boolean same = false;
-				for (SearchResult rs : lstUnique) {
-					same = sameSearchResult(rs, r);
-					if (same) {
-						break;
+				if (duplicates.findSame(r) != null) {
+					it.remove();
+				} else {
+					duplicates.add(r);
+				}
+			}
+		}
+
+		private static boolean isWideSimilarityRadius(SearchResult r) {
+			if (r.object instanceof Amenity) {
+				Amenity a = (Amenity) r.object;
+				String subType = a.getSubType();
+				return "natural".equals(a.getType().getKeyName()) || (subType != null && (subType.contains("cn_ref")
+						|| subType.contains("wn_ref") || (subType.startsWith("route_hiking_") && subType.endsWith("n_poi"))));
+			}
+			return false;
+		}
+
+		private static long getCell(LatLon l) {
+			int shift = 31 - SAME_SEARCH_RESULT_CELL_ZOOM;
+			long x = MapUtils.get31TileNumberX(l.getLongitude()) >> shift;
+			long y = MapUtils.get31TileNumberY(l.getLatitude()) >> shift;
+			return (x << 32) | y;
+		}
+
+		/**
+		 * Hash index of results to find result same as given ({@link #sameSearchResult(SearchResult, SearchResult)})
+		 * without scanning all results. Candidates are looked up by name and location cell (with neighbour cells),
+		 * by name only for results with {@link #SAME_SEARCH_RESULT_WIDE_RADIUS}, by amenity id, by street location
+		 * and by object, then they are checked with sameSearchResult.
+		 */
+		private class DuplicatesIndex {
+			private final Map<String, TLongObjectHashMap<List<SearchResult>>> byNameAndCell = new HashMap<>();
+			private final Map<String, List<SearchResult>> wideByName = new HashMap<>();
+			private final TLongObjectHashMap<List<SearchResult>> amenitiesById = new TLongObjectHashMap<>();
+			private final TLongObjectHashMap<List<SearchResult>> streetsByCell = new TLongObjectHashMap<>();
+			private final Map<Object, List<SearchResult>> byObject = new IdentityHashMap<>();
+
+			public void add(SearchResult r) {
+				if (r.object != null) {
+					put(byObject, r.object, r);
+				}
+				if (!isLocationResult(r)) {
+					return;
+				}
+				TLongObjectHashMap<List<SearchResult>> cells = byNameAndCell.get(r.localeName);
+				if (cells == null) {
+					cells = new TLongObjectHashMap<>();
+					byNameAndCell.put(r.localeName, cells);
+				}
+				put(cells, getCell(r.location), r);
+				if (isWideSimilarityRadius(r)) {
+					put(wideByName, r.localeName, r);
+				}
+				if (r.object instanceof Amenity && ((Amenity) r.object).getId() != null) {
+					put(amenitiesById, ((Amenity) r.object).getId(), r);
+				}
+				if (r.objectType == ObjectType.STREET) {
+					put(streetsByCell, getCell(((Street) r.object).getLocation()), r);
+				}
+			}
+
+			public void remove(SearchResult r) {
+				if (r.object != null) {
+					remove(byObject.get(r.object), r);
+				}
+				if (!isLocationResult(r)) {
+					return;
+				}
+				TLongObjectHashMap<List<SearchResult>> cells = byNameAndCell.get(r.localeName);
+				if (cells != null) {
+					remove(cells.get(getCell(r.location)), r);
+				}
+				if (isWideSimilarityRadius(r)) {
+					remove(wideByName.get(r.localeName), r);
+				}
+				if (r.object instanceof Amenity && ((Amenity) r.object).getId() != null) {
+					remove(amenitiesById.get(((Amenity) r.object).getId()), r);
+				}
+				if (r.objectType == ObjectType.STREET) {
+					remove(streetsByCell.get(getCell(((Street) r.object).getLocation())), r);
+				}
+			}
+
+			public SearchResult findSame(SearchResult r) {
+				SearchResult same = null;
+				if (r.object != null) {
+					same = findSame(byObject.get(r.object), r);
+				}
+				if (same != null || !isLocationResult(r)) {
+					return same;
+				}
+				TLongObjectHashMap<List<SearchResult>> cells = byNameAndCell.get(r.localeName);
+				if (cells != null) {
+					long cell = getCell(r.location);
+					for (int dx = -1; dx <= 1 && same == null; dx++) {
+						for (int dy = -1; dy <= 1 && same == null; dy++) {
+							same = findSame(cells.get(cell + ((long) dx << 32) + dy), r);
+						}
 					}
 				}
-				if (same) {
-					it.remove();
+				if (same == null && isWideSimilarityRadius(r)) {
+					same = findSame(wideByName.get(r.localeName), r);
+				}
+				if (same == null && r.object instanceof Amenity && ((Amenity) r.object).getId() != null) {
+					same = findSame(amenitiesById.get(((Amenity) r.object).getId()), r);
+				}
+				if (same == null && r.objectType == ObjectType.STREET) {
+					long cell = getCell(((Street) r.object).getLocation());
+					for (int dx = -1; dx <= 1 && same == null; dx++) {
+						for (int dy = -1; dy <= 1 && same == null; dy++) {
+							same = findSame(streetsByCell.get(cell + ((long) dx << 32) + dy), r);
+						}
+					}
+				}
+				return same;
+			}
+
+			private boolean isLocationResult(SearchResult r) {
+				return r.location != null && !ObjectType.isTopVisible(r.objectType);
+			}
+
+			private SearchResult findSame(List<SearchResult> candidates, SearchResult r) {
+				if (candidates != null) {
+					for (SearchResult c : candidates) {
+						if (c != r && sameSearchResult(c, r)) {
+							return c;
+						}
+					}
+				}
+				return null;
+			}
+
+			private <K> void put(Map<K, List<SearchResult>> map, K key, SearchResult r) {
+				List<SearchResult> lst = map.get(key);
+				if (lst == null) {
+					lst = new ArrayList<>(2);
+					map.put(key, lst);
+				}
+				lst.add(r);
+			}
+
+			private void put(TLongObjectHashMap<List<SearchResult>> map, long key, SearchResult r) {
+				List<SearchResult> lst = map.get(key);
+				if (lst == null) {
+					lst = new ArrayList<>(2);
+					map.put(key, lst);
+				}
+				lst.add(r);
+			}
+
+			private void remove(List<SearchResult> lst, SearchResult r) {
+				if (lst != null) {
+					for (int i = 0; i < lst.size(); i++) {
+						if (lst.get(i) == r) {
+							lst.remove(i);
+							break;
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Collects results in streaming way: without limit results are sorted once and filtered from duplicates,
+		 * with limit only k best results are kept in bounded heap (n log k) and result replaces worse same result.
+		 */
+		private class SearchResultsCollector {
+			private final SearchResultComparator cmp;
+			private final int limit;
+			private final DuplicatesIndex duplicates;
+			private final List<SearchResult> results = new ArrayList<>();
+			private final PriorityQueue<SearchResult> worstFirst;
+
+			public SearchResultsCollector(final SearchResultComparator cmp, int limit, boolean removeDuplicates) {
+				this.cmp = cmp;
+				this.limit = limit;
+				this.duplicates = removeDuplicates ? new DuplicatesIndex() : null;
+				if (limit > 0) {
+					worstFirst = new PriorityQueue<>(limit + 1, new Comparator<SearchResult>() {
+						@Override
+						public int compare(SearchResult o1, SearchResult o2) {
+							return cmp.compare(o2, o1);
+						}
+					});
 				} else {
-					lstUnique.add(r);
-					if (lstUnique.size() > DEPTH_TO_CHECK_SAME_SEARCH_RESULTS) {
-						lstUnique.remove(0);
+					worstFirst = null;
+				}
+			}
+
+			public void addAll(List<SearchResult> lst) {
+				for (SearchResult r : lst) {
+					add(r);
+				}
+			}
+
+			public void add(SearchResult r) {
+				if (worstFirst == null) {
+					results.add(r);
+					return;
+				}
+				if (worstFirst.size() >= limit && cmp.compare(r, worstFirst.peek()) >= 0) {
+					return;
+				}
+				if (duplicates != null) {
+					SearchResult same = duplicates.findSame(r);
+					if (same != null) {
+						if (cmp.compare(r, same) >= 0) {
+							return;
+						}
+						worstFirst.remove(same);
+						duplicates.remove(same);
+					}
+					duplicates.add(r);
+				}
+				worstFirst.add(r);
+				if (worstFirst.size() > limit) {
+					SearchResult worst = worstFirst.poll();
+					if (duplicates != null) {
+						duplicates.remove(worst);
 					}
 				}
 			}
+
+			public List<SearchResult> getSortedResults() {
+				if (worstFirst != null) {
+					results.addAll(worstFirst);
+				}
+				Collections.sort(results, cmp);
+				if (worstFirst == null && duplicates != null) {
+					filterSearchDuplicateResults(results);
+				}
+				return results;
+			}
 		}
 
 		public boolean sameSearchResult(SearchResult r1, SearchResult r2) {
@@ -292,6 +525,12 @@ public class SearchUICore {
 		this.totalLimit = totalLimit;
 	}
 
+	// limit of phrase settings (e.g. set by external api) or of the core
+	private int getResultsLimit(SearchPhrase phrase) {
+		int limit = phrase.getSettings().getTotalLimit();
+		return limit > 0 ? limit : totalLimit;
+	}
+
 	@SuppressWarnings("unchecked")
 	public <T> T getApiByClass(Class<T> cl) {
 		for (SearchCoreAPI a : apis) {
@@ -322,7 +561,7 @@ public class SearchUICore {
 			api.search(sphrase, rm);
 
 			SearchResultCollection collection = new SearchResultCollection(
-					sphrase);
+					sphrase, getResultsLimit(sphrase));
 			collection.addSearchResults(rm.getRequestResults(), resortAll, removeDuplicates);
 			if (debugMode) {
 				LOG.info("Finish shallow search <" + sphrase + "> Results=" + rm.getRequestResults().size());
@@ -516,7 +755,7 @@ public class SearchUICore {
 					searchInternal(phrase, rm);
 					if (!rm.isCancelled()) {
 						SearchResultCollection collection = new SearchResultCollection(
-								phrase);
+								phrase, getResultsLimit(phrase));
 						if (debugMode) {
 							LOG.info("Processing search results <" + phrase + ">");
 						}
@@ -9,6 +9,7 @@ import net.osmand.binary.BinaryMapIndexReader;
 import net.osmand.binary.BinaryMapIndexReader.SearchPoiTypeFilter;
 import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
 import net.osmand.binary.CommonWords;
+import net.osmand.binary.PoiQueryService;
 import net.osmand.data.Amenity;
 import net.osmand.data.Building;
 import net.osmand.data.City;
@@ -925,7 +926,9 @@ public class SearchCoreFactory {
 	public static class SearchAmenityByTypeAPI extends SearchBaseAPI {
 		private static final int BBOX_RADIUS = 10000;
 		private static final int BBOX_RADIUS_NEAREST = 1000;
+		private static final long POI_CACHE_SIZE = 8 << 20;
 		private SearchAmenityTypesAPI searchAmenityTypesAPI;
+		private final PoiQueryService poiQueryService = new PoiQueryService(POI_CACHE_SIZE);
 		private MapPoiTypes types;
 		private AbstractPoiType unselectedPoiType;
 		private String nameFilter;
@@ -1025,9 +1028,9 @@ public class SearchCoreFactory {
 					if (poiTypeFilter instanceof CustomSearchPoiFilter) {
 						rm = ((CustomSearchPoiFilter) poiTypeFilter).wrapResultMatcher(rm);
 					}
-					SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.left,
-							(int) bbox.right, (int) bbox.top, (int) bbox.bottom, -1, poiTypeFilter, rm);
-					r.searchPoi(req);
+					// boxes of smaller radius are decoded from cache
+					poiQueryService.searchPoi(r, (int) bbox.left, (int) bbox.right, (int) bbox.top, (int) bbox.bottom,
+							poiTypeFilter, rm);
 					resultMatcher.apiSearchRegionFinished(this, r, phrase);
 				}
 			}
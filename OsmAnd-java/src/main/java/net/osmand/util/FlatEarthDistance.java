@@ -0,0 +1,191 @@
+package net.osmand.util;
+
+/**
+ * Equirectangular (flat earth) distances for hot loops on the same sphere as {@link MapUtils#getDistance}.
+ * Longitude scale is precomputed for latitude bands of {@link #BAND} degrees and interpolated, so there is
+ * no trigonometry per call.
+ * <p>
+ * Error relative to {@link MapUtils#getDistance} (and {@link net.osmand.Location#distanceBetween} which returns
+ * the same distance), checked in FlatEarthDistanceTest:
+ * <ul>
+ * <li>distances up to 10 km at latitudes within ±70°: less than 0.001% (1 cm per km)</li>
+ * <li>distances up to 100 km at latitudes within ±70°: less than 0.01%</li>
+ * <li>distances up to 10 km at latitudes within ±85°: less than 0.01%</li>
+ * </ul>
+ * Error grows with distance and latitude (meridians convergence), so for long distances or polar regions
+ * use {@link MapUtils#getDistance}.
+ */
+public class FlatEarthDistance {
+
+	public static final double BAND = 0.25;
+	// radius of MapUtils.getDistance
+	private static final double METERS_PER_DEGREE = 6372800 * Math.PI / 180;
+	private static final int BANDS = (int) (180 / BAND) + 2;
+	private static final double[] METERS_PER_DEGREE_LON = new double[BANDS];
+
+	static {
+		for (int i = 0; i < BANDS; i++) {
+			METERS_PER_DEGREE_LON[i] = Math.max(0, METERS_PER_DEGREE * Math.cos(Math.toRadians(-90 + i * BAND)));
+		}
+	}
+
+	public static double getMetersPerDegreeLatitude(double lat) {
+		return METERS_PER_DEGREE;
+	}
+
+	public static double getMetersPerDegreeLongitude(double lat) {
+		double p = (Math.max(-90, Math.min(90, lat)) + 90) / BAND;
+		int i = (int) p;
+		return METERS_PER_DEGREE_LON[i] + (METERS_PER_DEGREE_LON[i + 1] - METERS_PER_DEGREE_LON[i]) * (p - i);
+	}
+
+	private static double deltaLon(double lon1, double lon2) {
+		double d = lon2 - lon1;
+		if (d > 180) {
+			d -= 360;
+		} else if (d < -180) {
+			d += 360;
+		}
+		return d;
+	}
+
+	public static double getSquareDistance(double lat1, double lon1, double lat2, double lon2) {
+		double lat = (lat1 + lat2) / 2;
+		double dx = deltaLon(lon1, lon2) * getMetersPerDegreeLongitude(lat);
+		double dy = (lat2 - lat1) * getMetersPerDegreeLatitude(lat);
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * Gets distance in meters
+	 */
+	public static double getDistance(double lat1, double lon1, double lat2, double lon2) {
+		return Math.sqrt(getSquareDistance(lat1, lon1, lat2, lon2));
+	}
+
+	/**
+	 * @return length of polyline between points from and to (inclusive)
+	 */
+	public static double getPathLength(double[] lats, double[] lons, int from, int to) {
+		double res = 0;
+		for (int i = from + 1; i <= to; i++) {
+			res += getDistance(lats[i - 1], lons[i - 1], lats[i], lons[i]);
+		}
+		return res;
+	}
+
+	/**
+	 * @param res distance from the first point to every point along polyline
+	 */
+	public static void getCumulativeDistances(double[] lats, double[] lons, int count, double[] res) {
+		if (count > 0) {
+			res[0] = 0;
+		}
+		for (int i = 1; i < count; i++) {
+			res[i] = res[i - 1] + getDistance(lats[i - 1], lons[i - 1], lats[i], lons[i]);
+		}
+	}
+
+	/**
+	 * @param res distances from the point to every point of arrays
+	 */
+	public static void getDistances(double lat, double lon, double[] lats, double[] lons, int count, double[] res) {
+		LocalScale s = new LocalScale(lat, lon);
+		for (int i = 0; i < count; i++) {
+			res[i] = s.getDistance(lats[i], lons[i]);
+		}
+	}
+
+	/**
+	 * Scale of the point is used for all points, so points should be in several km around.
+	 * @return index of the nearest point or -1 if count is 0
+	 */
+	public static int getNearestIndex(double lat, double lon, double[] lats, double[] lons, int count) {
+		LocalScale s = new LocalScale(lat, lon);
+		int nearest = -1;
+		double min = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < count; i++) {
+			double d = s.getSquareDistance(lats[i], lons[i]);
+			if (d < min) {
+				min = d;
+				nearest = i;
+			}
+		}
+		return nearest;
+	}
+
+	/**
+	 * Unlike {@link MapUtils#getProjectionCoeff} longitude is scaled, so projection is orthogonal in meters.
+	 * @return position of projection of the point on the segment from 0 to 1
+	 */
+	public static double getProjectionCoeff(double lat, double lon, double fromLat, double fromLon, double toLat,
+			double toLon) {
+		return new LocalScale(lat, lon).getProjectionCoeff(fromLat, fromLon, toLat, toLon);
+	}
+
+	/**
+	 * @param res coefficient of projection on the nearest segment and distance to it in meters
+	 * @return index of the start point of the nearest segment or -1 if there are less than 2 points
+	 */
+	public static int getNearestSegment(double lat, double lon, double[] lats, double[] lons, int count,
+			double[] res) {
+		LocalScale s = new LocalScale(lat, lon);
+		int nearest = -1;
+		double min = Double.POSITIVE_INFINITY;
+		for (int i = 1; i < count; i++) {
+			double c = s.getProjectionCoeff(lats[i - 1], lons[i - 1], lats[i], lons[i]);
+			double d = s.getSquareDistance(lats[i - 1] + (lats[i] - lats[i - 1]) * c,
+					lons[i - 1] + deltaLon(lons[i - 1], lons[i]) * c);
+			if (d < min) {
+				min = d;
+				nearest = i - 1;
+				res[0] = c;
+			}
+		}
+		if (nearest >= 0) {
+			res[1] = Math.sqrt(min);
+		}
+		return nearest;
+	}
+
+	/**
+	 * Scale factors at the reference point for many distances from it. Scale isn't taken in the middle of
+	 * points, so error is bigger: tan(lat) * latitude difference in radians / 2, ~0.02% per km at 70°.
+	 */
+	public static class LocalScale {
+		private final double lat;
+		private final double lon;
+		private final double metersPerDegreeLat;
+		private final double metersPerDegreeLon;
+
+		public LocalScale(double lat, double lon) {
+			this.lat = lat;
+			this.lon = lon;
+			this.metersPerDegreeLat = getMetersPerDegreeLatitude(lat);
+			this.metersPerDegreeLon = getMetersPerDegreeLongitude(lat);
+		}
+
+		public double getSquareDistance(double lat, double lon) {
+			double dx = deltaLon(this.lon, lon) * metersPerDegreeLon;
+			double dy = (lat - this.lat) * metersPerDegreeLat;
+			return dx * dx + dy * dy;
+		}
+
+		public double getDistance(double lat, double lon) {
+			return Math.sqrt(getSquareDistance(lat, lon));
+		}
+
+		public double getProjectionCoeff(double fromLat, double fromLon, double toLat, double toLon) {
+			double ax = deltaLon(fromLon, lon) * metersPerDegreeLon;
+			double ay = (lat - fromLat) * metersPerDegreeLat;
+			double bx = deltaLon(fromLon, toLon) * metersPerDegreeLon;
+			double by = (toLat - fromLat) * metersPerDegreeLat;
+			double len = bx * bx + by * by;
+			if (len == 0) {
+				return 0;
+			}
+			double c = (ax * bx + ay * by) / len;
+			return c < 0 ? 0 : (c > 1 ? 1 : c);
+		}
+	}
+}
@@ -0,0 +1,282 @@
+package net.osmand.util;
+
+import java.util.Arrays;
+
+/**
+ * Min 4-ary heap with primitive double priorities and optional long keys. Value added with the key
+ * already present in the heap replaces it only if its priority is lower (decrease-key), so heap doesn't
+ * grow with outdated entries. Entries added with negative key are never merged.
+ * Heap could be cleared and reused for next search without reallocation of arrays.
+ */
+public class IndexedHeap<T> {
+
+	private static final int D = 4;
+	private static final long NO_KEY = -1;
+
+	private double[] priorities;
+	private long[] keys;
+	private Object[] values;
+	private int size;
+
+	// open addressing key -> position in heap
+	private long[] tableKeys;
+	private int[] tablePositions;
+	private int tableSize;
+	private int tableMask;
+
+	public IndexedHeap() {
+		this(64);
+	}
+
+	public IndexedHeap(int capacity) {
+		capacity = Math.max(capacity, D);
+		priorities = new double[capacity];
+		keys = new long[capacity];
+		values = new Object[capacity];
+		initTable(tableCapacity(capacity));
+	}
+
+	/**
+	 * @param key non negative key or negative to add entry without merging
+	 * @return false if entry with the same key and lower or equal priority is already in the heap
+	 */
+	public boolean add(long key, double priority, T value) {
+		if (key >= 0) {
+			int pos = getPosition(key);
+			if (pos >= 0) {
+				if (priority >= priorities[pos]) {
+					return false;
+				}
+				priorities[pos] = priority;
+				values[pos] = value;
+				siftUp(pos);
+				return true;
+			}
+		} else {
+			key = NO_KEY;
+		}
+		if (size == priorities.length) {
+			int capacity = size * 2;
+			priorities = Arrays.copyOf(priorities, capacity);
+			keys = Arrays.copyOf(keys, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		int pos = size++;
+		priorities[pos] = priority;
+		keys[pos] = key;
+		values[pos] = value;
+		if (key != NO_KEY) {
+			putPosition(key, pos);
+		}
+		siftUp(pos);
+		return true;
+	}
+
+	public void add(double priority, T value) {
+		add(NO_KEY, priority, value);
+	}
+
+	@SuppressWarnings("unchecked")
+	public T peek() {
+		return size == 0 ? null : (T) values[0];
+	}
+
+	/**
+	 * @return key of the first entry or -1 if it is added without key (or heap is empty)
+	 */
+	public long peekKey() {
+		return size == 0 ? NO_KEY : keys[0];
+	}
+
+	public double peekPriority() {
+		return size == 0 ? Double.POSITIVE_INFINITY : priorities[0];
+	}
+
+	@SuppressWarnings("unchecked")
+	public T poll() {
+		if (size == 0) {
+			return null;
+		}
+		T res = (T) values[0];
+		if (keys[0] != NO_KEY) {
+			removePosition(keys[0]);
+		}
+		size--;
+		if (size > 0) {
+			priorities[0] = priorities[size];
+			keys[0] = keys[size];
+			values[0] = values[size];
+			siftDown(0);
+		}
+		values[size] = null;
+		return res;
+	}
+
+	public boolean contains(long key) {
+		return getPosition(key) >= 0;
+	}
+
+	/**
+	 * @return priority of entry with the key or NaN if there is no such entry
+	 */
+	public double getPriority(long key) {
+		int pos = getPosition(key);
+		return pos < 0 ? Double.NaN : priorities[pos];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		Arrays.fill(values, 0, size, null);
+		size = 0;
+		if (tableSize > 0) {
+			Arrays.fill(tableKeys, NO_KEY);
+			tableSize = 0;
+		}
+	}
+
+	private void siftUp(int pos) {
+		double p = priorities[pos];
+		long k = keys[pos];
+		Object v = values[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) / D;
+			if (priorities[parent] <= p) {
+				break;
+			}
+			move(parent, pos);
+			pos = parent;
+		}
+		set(pos, p, k, v);
+	}
+
+	private void siftDown(int pos) {
+		double p = priorities[pos];
+		long k = keys[pos];
+		Object v = values[pos];
+		while (true) {
+			int first = pos * D + 1;
+			if (first >= size) {
+				break;
+			}
+			int min = first;
+			int last = Math.min(first + D, size);
+			for (int c = first + 1; c < last; c++) {
+				if (priorities[c] < priorities[min]) {
+					min = c;
+				}
+			}
+			if (priorities[min] >= p) {
+				break;
+			}
+			move(min, pos);
+			pos = min;
+		}
+		set(pos, p, k, v);
+	}
+
+	private void move(int from, int to) {
+		set(to, priorities[from], keys[from], values[from]);
+	}
+
+	private void set(int pos, double p, long k, Object v) {
+		priorities[pos] = p;
+		keys[pos] = k;
+		values[pos] = v;
+		if (k != NO_KEY) {
+			putPosition(k, pos);
+		}
+	}
+
+	private static int tableCapacity(int capacity) {
+		int c = D;
+		while (c < capacity * 2) {
+			c <<= 1;
+		}
+		return c;
+	}
+
+	private void initTable(int capacity) {
+		tableKeys = new long[capacity];
+		tablePositions = new int[capacity];
+		Arrays.fill(tableKeys, NO_KEY);
+		tableMask = capacity - 1;
+		tableSize = 0;
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & tableMask;
+	}
+
+	private int getPosition(long key) {
+		int i = slot(key);
+		while (tableKeys[i] != NO_KEY) {
+			if (tableKeys[i] == key) {
+				return tablePositions[i];
+			}
+			i = (i + 1) & tableMask;
+		}
+		return -1;
+	}
+
+	private void putPosition(long key, int pos) {
+		int i = slot(key);
+		while (tableKeys[i] != NO_KEY) {
+			if (tableKeys[i] == key) {
+				tablePositions[i] = pos;
+				return;
+			}
+			i = (i + 1) & tableMask;
+		}
+		tableKeys[i] = key;
+		tablePositions[i] = pos;
+		if (++tableSize * 2 > tableKeys.length) {
+			rehash();
+		}
+	}
+
+	private void removePosition(long key) {
+		int i = slot(key);
+		while (tableKeys[i] != key) {
+			if (tableKeys[i] == NO_KEY) {
+				return;
+			}
+			i = (i + 1) & tableMask;
+		}
+		tableSize--;
+		// shift following entries of the same cluster back to keep lookups without tombstones
+		int j = i;
+		while (true) {
+			j = (j + 1) & tableMask;
+			if (tableKeys[j] == NO_KEY) {
+				break;
+			}
+			int s = slot(tableKeys[j]);
+			boolean between = i <= j ? (i < s && s <= j) : (i < s || s <= j);
+			if (!between) {
+				tableKeys[i] = tableKeys[j];
+				tablePositions[i] = tablePositions[j];
+				i = j;
+			}
+		}
+		tableKeys[i] = NO_KEY;
+	}
+
+	private void rehash() {
+		long[] oldKeys = tableKeys;
+		int[] oldPositions = tablePositions;
+		initTable(oldKeys.length * 2);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != NO_KEY) {
+				putPosition(oldKeys[i], oldPositions[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package net.osmand.util;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Levels of detail of polyline in 31 tile coordinates. Douglas-Peucker significance of every point
+ * is calculated once, so simplification for any zoom or tolerance doesn't need to run Douglas-Peucker again.
+ */
+public class PolylineLevels {
+
+	private final int[] x31;
+	private final int[] y31;
+	// distance in 31 tile units which could be simplified without the point (nested for all tolerances)
+	private final double[] significance;
+
+	public PolylineLevels(int[] x31, int[] y31) {
+		if (x31.length != y31.length) {
+			throw new IllegalArgumentException();
+		}
+		this.x31 = x31;
+		this.y31 = y31;
+		this.significance = new double[x31.length];
+		calculateSignificance();
+	}
+
+	public static PolylineLevels fromLatLon(double[] lats, double[] lons) {
+		int[] x31 = new int[lats.length];
+		int[] y31 = new int[lats.length];
+		for (int i = 0; i < lats.length; i++) {
+			x31[i] = MapUtils.get31TileNumberX(lons[i]);
+			y31[i] = MapUtils.get31TileNumberY(lats[i]);
+		}
+		return new PolylineLevels(x31, y31);
+	}
+
+	public int getPointsCount() {
+		return x31.length;
+	}
+
+	public int getX31(int i) {
+		return x31[i];
+	}
+
+	public int getY31(int i) {
+		return y31[i];
+	}
+
+	private void calculateSignificance() {
+		int n = x31.length;
+		if (n == 0) {
+			return;
+		}
+		significance[0] = significance[n - 1] = Double.POSITIVE_INFINITY;
+		// iterative Douglas-Peucker with zero epsilon: point is significant while tolerance is less than its distance
+		// and significance of the parent range (so that levels are nested)
+		TIntArrayList stack = new TIntArrayList();
+		if (n > 2) {
+			stack.add(0);
+			stack.add(n - 1);
+		}
+		while (!stack.isEmpty()) {
+			int end = stack.removeAt(stack.size() - 1);
+			int start = stack.removeAt(stack.size() - 1);
+			double parent = Math.min(significance[start], significance[end]);
+			double dmax = -1;
+			int index = -1;
+			for (int i = start + 1; i < end; i++) {
+				double d = orthogonalDistance31(i, start, end);
+				if (d > dmax) {
+					dmax = d;
+					index = i;
+				}
+			}
+			significance[index] = Math.min(dmax, parent);
+			if (index - start > 1) {
+				stack.add(start);
+				stack.add(index);
+			}
+			if (end - index > 1) {
+				stack.add(index);
+				stack.add(end);
+			}
+		}
+	}
+
+	private double orthogonalDistance31(int i, int start, int end) {
+		double ax = x31[start], ay = y31[start];
+		double dx = (double) x31[end] - ax;
+		double dy = (double) y31[end] - ay;
+		double px = x31[i] - ax;
+		double py = y31[i] - ay;
+		double len2 = dx * dx + dy * dy;
+		if (len2 == 0) {
+			return Math.sqrt(px * px + py * py);
+		}
+		double t = (px * dx + py * dy) / len2;
+		t = Math.max(0, Math.min(1, t));
+		px -= t * dx;
+		py -= t * dy;
+		return Math.sqrt(px * px + py * py);
+	}
+
+	/**
+	 * @param tolerance31 distance in 31 tile units which could be simplified, i.e. pixel size for zoom and density
+	 * @return true if point is kept with tolerance, kept points of bigger tolerance are kept for smaller one
+	 */
+	public boolean isKept(int i, double tolerance31) {
+		return significance[i] > tolerance31;
+	}
+}
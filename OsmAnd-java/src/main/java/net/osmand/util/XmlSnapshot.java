@@ -0,0 +1,488 @@
+package net.osmand.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import gnu.trove.list.array.TIntArrayList;
+import net.osmand.PlatformUtil;
+
+/**
+ * Versioned binary snapshot of xml document: start/end tags with attributes, strings are stored once in dictionary.
+ * Snapshot is loaded with one bulk read and replayed with {@link XmlPullParser} interface,
+ * so xml consumers (poi types, rendering styles) keep their parsing code and get the same result without
+ * xml tokenizing. Snapshot of xml file is validated by size and modification time of the file, so xml isn't read
+ * while snapshot is current, snapshot of xml stream is validated by checksum of its content.
+ * Text content and comments are not stored.
+ */
+public class XmlSnapshot {
+
+	private static final Log log = PlatformUtil.getLog(XmlSnapshot.class);
+
+	public static final int VERSION = 2;
+	private static final int MAGIC = 0x4F584D53;
+
+	// checksum of xml content or key of xml file
+	private final long checksum;
+	private final String[] strings;
+	// START_TAG, name, attributes count, (namespace, name, value) * count | END_TAG, name
+	private final int[] events;
+
+	private XmlSnapshot(long checksum, String[] strings, int[] events) {
+		this.checksum = checksum;
+		this.strings = strings;
+		this.events = events;
+	}
+
+	/**
+	 * Returns parser with input set. If snapshot file is specified, parser replays snapshot,
+	 * which is (re)created when it is missing or doesn't match xml.
+	 */
+	public static XmlPullParser newParser(InputStream xml, File snapshotFile) throws XmlPullParserException, IOException {
+		if (snapshotFile == null) {
+			XmlPullParser parser = PlatformUtil.newXMLPullParser();
+			parser.setInput(xml, "UTF-8");
+			return parser;
+		}
+		return load(xml, snapshotFile).newParser();
+	}
+
+	/**
+	 * Same as {@link #newParser(InputStream, File)}, but xml file is read only when snapshot is missing or
+	 * file size or modification time changed.
+	 */
+	public static XmlPullParser newParser(File xml, File snapshotFile) throws XmlPullParserException, IOException {
+		if (snapshotFile == null) {
+			XmlPullParser parser = PlatformUtil.newXMLPullParser();
+			parser.setInput(new ByteArrayInputStream(readFile(xml)), "UTF-8");
+			return parser;
+		}
+		return load(xml, snapshotFile).newParser();
+	}
+
+	public static XmlSnapshot load(InputStream xml, File snapshotFile) throws XmlPullParserException, IOException {
+		ByteArrayOutputStream bous = new ByteArrayOutputStream();
+		Algorithms.streamCopy(xml, bous);
+		byte[] data = bous.toByteArray();
+		long checksum = getChecksum(data);
+		XmlSnapshot snapshot = readSnapshot(snapshotFile, checksum);
+		if (snapshot == null) {
+			snapshot = fromXml(data, checksum);
+			writeSnapshot(snapshot, snapshotFile);
+		}
+		return snapshot;
+	}
+
+	public static XmlSnapshot load(File xml, File snapshotFile) throws XmlPullParserException, IOException {
+		long key = getFileKey(xml);
+		XmlSnapshot snapshot = readSnapshot(snapshotFile, key);
+		if (snapshot == null) {
+			snapshot = fromXml(readFile(xml), key);
+			writeSnapshot(snapshot, snapshotFile);
+		}
+		return snapshot;
+	}
+
+	private static XmlSnapshot readSnapshot(File snapshotFile, long checksum) {
+		if (snapshotFile.exists()) {
+			try {
+				return readFromFile(snapshotFile, checksum);
+			} catch (IOException e) {
+				log.warn("Snapshot " + snapshotFile.getName() + " could not be read: " + e.getMessage());
+			}
+		}
+		return null;
+	}
+
+	private static void writeSnapshot(XmlSnapshot snapshot, File snapshotFile) {
+		try {
+			snapshot.writeToFile(snapshotFile);
+		} catch (IOException e) {
+			log.warn("Snapshot " + snapshotFile.getName() + " could not be written: " + e.getMessage());
+		}
+	}
+
+	public static long getFileKey(File f) {
+		return (f.length() << 32) ^ f.lastModified();
+	}
+
+	public static long getChecksum(byte[] data) {
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		return (((long) data.length) << 32) ^ crc.getValue();
+	}
+
+	public static XmlSnapshot fromXml(byte[] data) throws XmlPullParserException, IOException {
+		return fromXml(data, getChecksum(data));
+	}
+
+	private static XmlSnapshot fromXml(byte[] data, long checksum) throws XmlPullParserException, IOException {
+		XmlPullParser parser = PlatformUtil.newXMLPullParser();
+		parser.setInput(new ByteArrayInputStream(data), "UTF-8");
+		List<String> strings = new ArrayList<String>();
+		Map<String, Integer> stringIds = new HashMap<String, Integer>();
+		TIntArrayList events = new TIntArrayList();
+		int tok;
+		while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT) {
+			if (tok == XmlPullParser.START_TAG) {
+				events.add(XmlPullParser.START_TAG);
+				events.add(getStringId(parser.getName(), strings, stringIds));
+				events.add(parser.getAttributeCount());
+				for (int i = 0; i < parser.getAttributeCount(); i++) {
+					events.add(getStringId(parser.getAttributeNamespace(i), strings, stringIds));
+					events.add(getStringId(parser.getAttributeName(i), strings, stringIds));
+					events.add(getStringId(parser.getAttributeValue(i), strings, stringIds));
+				}
+			} else if (tok == XmlPullParser.END_TAG) {
+				events.add(XmlPullParser.END_TAG);
+				events.add(getStringId(parser.getName(), strings, stringIds));
+			}
+		}
+		return new XmlSnapshot(checksum, strings.toArray(new String[strings.size()]), events.toArray());
+	}
+
+	private static int getStringId(String s, List<String> strings, Map<String, Integer> stringIds) {
+		if (s == null) {
+			return -1;
+		}
+		Integer id = stringIds.get(s);
+		if (id == null) {
+			id = strings.size();
+			strings.add(s);
+			stringIds.put(s, id);
+		}
+		return id;
+	}
+
+	/**
+	 * @return null if snapshot has different version or checksum
+	 */
+	public static XmlSnapshot readFromFile(File f, long checksum) throws IOException {
+		byte[] data = readFile(f);
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		if (data.length < 16 || in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != checksum) {
+			return null;
+		}
+		String[] strings = new String[in.readInt()];
+		for (int i = 0; i < strings.length; i++) {
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			strings[i] = new String(bytes, "UTF-8");
+		}
+		int[] events = new int[in.readInt()];
+		for (int i = 0; i < events.length; i++) {
+			events[i] = in.readInt();
+		}
+		return new XmlSnapshot(checksum, strings, events);
+	}
+
+	private static byte[] readFile(File f) throws IOException {
+		byte[] data = new byte[(int) f.length()];
+		DataInputStream is = new DataInputStream(new FileInputStream(f));
+		try {
+			is.readFully(data);
+		} finally {
+			is.close();
+		}
+		return data;
+	}
+
+	public void writeToFile(File f) throws IOException {
+		ByteArrayOutputStream bous = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bous);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(checksum);
+		out.writeInt(strings.length);
+		for (String s : strings) {
+			byte[] bytes = s.getBytes("UTF-8");
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+		out.writeInt(events.length);
+		for (int e : events) {
+			out.writeInt(e);
+		}
+		out.flush();
+		// write to temporary file first, so broken snapshot is never read
+		File tmp = new File(f.getParentFile(), f.getName() + ".tmp");
+		FileOutputStream fous = new FileOutputStream(tmp);
+		try {
+			bous.writeTo(fous);
+		} finally {
+			fous.close();
+		}
+		if (!tmp.renameTo(f)) {
+			f.delete();
+			if (!tmp.renameTo(f)) {
+				tmp.delete();
+				throw new IOException("Can't rename " + tmp.getName());
+			}
+		}
+	}
+
+	public long getChecksum() {
+		return checksum;
+	}
+
+	public XmlPullParser newParser() {
+		return new SnapshotParser();
+	}
+
+	private class SnapshotParser implements XmlPullParser {
+
+		private int pos = 0;
+		private int eventStart = -1;
+		private int eventType = START_DOCUMENT;
+		private int depth = 0;
+
+		@Override
+		public int next() throws XmlPullParserException {
+			if (eventType == END_TAG) {
+				depth--;
+			}
+			if (pos >= events.length) {
+				eventType = END_DOCUMENT;
+				eventStart = -1;
+				return eventType;
+			}
+			eventStart = pos;
+			eventType = events[pos];
+			if (eventType == START_TAG) {
+				depth++;
+				pos += 3 + 3 * events[pos + 2];
+			} else {
+				pos += 2;
+			}
+			return eventType;
+		}
+
+		@Override
+		public int nextToken() throws XmlPullParserException {
+			return next();
+		}
+
+		@Override
+		public int nextTag() throws XmlPullParserException {
+			next();
+			if (eventType != START_TAG && eventType != END_TAG) {
+				throw new XmlPullParserException("Expected start or end tag", this, null);
+			}
+			return eventType;
+		}
+
+		@Override
+		public String nextText() throws XmlPullParserException {
+			throw new XmlPullParserException("Text is not stored in snapshot", this, null);
+		}
+
+		@Override
+		public int getEventType() {
+			return eventType;
+		}
+
+		@Override
+		public int getDepth() {
+			return depth;
+		}
+
+		@Override
+		public String getName() {
+			return eventStart >= 0 ? strings[events[eventStart + 1]] : null;
+		}
+
+		@Override
+		public int getAttributeCount() {
+			return eventType == START_TAG ? events[eventStart + 2] : -1;
+		}
+
+		private int getAttributeIndex(int index) {
+			if (eventType != START_TAG || index < 0 || index >= events[eventStart + 2]) {
+				throw new IndexOutOfBoundsException("Attribute " + index);
+			}
+			return eventStart + 3 + 3 * index;
+		}
+
+		private String getString(int id) {
+			return id < 0 ? null : strings[id];
+		}
+
+		@Override
+		public String getAttributeNamespace(int index) {
+			String ns = getString(events[getAttributeIndex(index)]);
+			return ns == null ? "" : ns;
+		}
+
+		@Override
+		public String getAttributeName(int index) {
+			return getString(events[getAttributeIndex(index) + 1]);
+		}
+
+		@Override
+		public String getAttributeValue(int index) {
+			return getString(events[getAttributeIndex(index) + 2]);
+		}
+
+		@Override
+		public String getAttributeValue(String namespace, String name) {
+			if (eventType != START_TAG) {
+				throw new IndexOutOfBoundsException("Not a start tag");
+			}
+			int cnt = events[eventStart + 2];
+			for (int i = 0; i < cnt; i++) {
+				int ind = eventStart + 3 + 3 * i;
+				if (name.equals(getString(events[ind + 1]))) {
+					String ns = getString(events[ind]);
+					if (namespace == null || namespace.equals(ns == null ? "" : ns)) {
+						return getString(events[ind + 2]);
+					}
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public String getAttributePrefix(int index) {
+			getAttributeIndex(index);
+			return null;
+		}
+
+		@Override
+		public String getAttributeType(int index) {
+			getAttributeIndex(index);
+			return "CDATA";
+		}
+
+		@Override
+		public boolean isAttributeDefault(int index) {
+			getAttributeIndex(index);
+			return false;
+		}
+
+		@Override
+		public String getNamespace() {
+			return eventType == START_TAG || eventType == END_TAG ? "" : null;
+		}
+
+		@Override
+		public String getNamespace(String prefix) {
+			return null;
+		}
+
+		@Override
+		public int getNamespaceCount(int depth) {
+			return 0;
+		}
+
+		@Override
+		public String getNamespacePrefix(int pos) {
+			throw new IndexOutOfBoundsException("No namespaces in snapshot");
+		}
+
+		@Override
+		public String getNamespaceUri(int pos) {
+			throw new IndexOutOfBoundsException("No namespaces in snapshot");
+		}
+
+		@Override
+		public String getPrefix() {
+			return null;
+		}
+
+		@Override
+		public boolean isEmptyElementTag() {
+			return false;
+		}
+
+		@Override
+		public String getText() {
+			return null;
+		}
+
+		@Override
+		public char[] getTextCharacters(int[] holderForStartAndLength) {
+			return null;
+		}
+
+		@Override
+		public boolean isWhitespace() throws XmlPullParserException {
+			throw new XmlPullParserException("Text is not stored in snapshot", this, null);
+		}
+
+		@Override
+		public void require(int type, String namespace, String name) throws XmlPullParserException {
+			if (type != eventType || (namespace != null && !namespace.equals(getNamespace()))
+					|| (name != null && !name.equals(getName()))) {
+				throw new XmlPullParserException("Expected " + TYPES[type] + " " + name, this, null);
+			}
+		}
+
+		@Override
+		public String getPositionDescription() {
+			return TYPES[eventType] + " " + getName() + " @" + eventStart;
+		}
+
+		@Override
+		public int getLineNumber() {
+			return -1;
+		}
+
+		@Override
+		public int getColumnNumber() {
+			return -1;
+		}
+
+		@Override
+		public String getInputEncoding() {
+			return "UTF-8";
+		}
+
+		@Override
+		public void setInput(Reader in) throws XmlPullParserException {
+			throw new XmlPullParserException("Input of snapshot parser can't be changed");
+		}
+
+		@Override
+		public void setInput(InputStream inputStream, String inputEncoding) throws XmlPullParserException {
+			throw new XmlPullParserException("Input of snapshot parser can't be changed");
+		}
+
+		@Override
+		public void defineEntityReplacementText(String entityName, String replacementText) {
+		}
+
+		@Override
+		public void setFeature(String name, boolean state) {
+		}
+
+		@Override
+		public boolean getFeature(String name) {
+			return FEATURE_PROCESS_NAMESPACES.equals(name);
+		}
+
+		@Override
+		public void setProperty(String name, Object value) {
+		}
+
+		@Override
+		public Object getProperty(String name) {
+			return null;
+		}
+	}
+}
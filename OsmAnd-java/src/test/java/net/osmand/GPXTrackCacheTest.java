@@ -0,0 +1,123 @@
+package net.osmand;
+
+import net.osmand.GPXTrackCache.CachedGpx;
+import net.osmand.GPXTrackCache.CachedSegment;
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.GPXTrackAnalysis;
+import net.osmand.GPXUtilities.Track;
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.GPXUtilities.WptPt;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+public class GPXTrackCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static GPXFile createGpx() {
+		GPXFile gpx = new GPXFile("test");
+		Track track = new Track();
+		track.name = "track";
+		track.getExtensionsToWrite().put("color", "#ff0000");
+		for (int s = 0; s < 2; s++) {
+			TrkSegment segment = new TrkSegment();
+			for (int i = 0; i < 100; i++) {
+				WptPt p = new WptPt(52.1234567 + i * 0.0001 + s, 4.7654321 - i * 0.0002, 1600000000000L + i * 1000,
+						i % 10 == 0 ? Double.NaN : 10 + i * 0.5, i, Double.NaN);
+				if (i == 50) {
+					p.name = "middle";
+					p.hdop = 3.5;
+				}
+				segment.points.add(p);
+			}
+			track.segments.add(segment);
+		}
+		gpx.tracks.add(track);
+		WptPt wpt = new WptPt(52.5, 4.5, 0, Double.NaN, 0, Double.NaN);
+		wpt.name = "waypoint";
+		wpt.category = "cat";
+		gpx.addPoint(wpt);
+		return gpx;
+	}
+
+	@Test
+	public void testWriteRead() throws Exception {
+		File gpxFile = folder.newFile("test.gpx");
+		Assert.assertNull(GPXUtilities.writeGpxFile(gpxFile, createGpx()));
+		GPXFile parsed = GPXUtilities.loadGPXFile(gpxFile);
+		GPXTrackCache cache = new GPXTrackCache(folder.newFolder("cache"));
+		Assert.assertNull(cache.read(gpxFile));
+		Assert.assertTrue(cache.write(gpxFile, parsed));
+
+		CachedGpx cached = cache.read(gpxFile);
+		Assert.assertNotNull(cached);
+		GPXTrackAnalysis expected = parsed.getAnalysis(gpxFile.lastModified());
+		Assert.assertEquals(expected.totalDistance, cached.getAnalysis().totalDistance, 0);
+		Assert.assertEquals(expected.diffElevationUp, cached.getAnalysis().diffElevationUp, 0);
+		Assert.assertEquals(expected.wptCategoryNames, cached.getAnalysis().wptCategoryNames);
+		CachedSegment segment = cached.getTracks().get(0).getSegments().get(1);
+		Assert.assertEquals(100, segment.getPointsCount());
+		Assert.assertEquals(53.1234567, segment.getAnalysis().bottom, 1e-9);
+
+		GPXFile restored = cached.toGPXFile(gpxFile);
+		Assert.assertNotNull(restored);
+		Assert.assertEquals(1, restored.getPointsSize());
+		Assert.assertEquals("cat", restored.getPoints().get(0).category);
+		List<TrkSegment> expectedSegments = parsed.getNonEmptyTrkSegments(false);
+		List<TrkSegment> restoredSegments = restored.getNonEmptyTrkSegments(false);
+		Assert.assertEquals(expectedSegments.size(), restoredSegments.size());
+		Assert.assertEquals("#ff0000", restored.tracks.get(restored.tracks.size() - 1).getExtensionsToRead().get("color"));
+		for (int s = 0; s < expectedSegments.size(); s++) {
+			List<WptPt> ep = expectedSegments.get(s).points;
+			List<WptPt> rp = restoredSegments.get(s).points;
+			Assert.assertEquals(ep.size(), rp.size());
+			for (int i = 0; i < ep.size(); i++) {
+				Assert.assertEquals(ep.get(i).lat, rp.get(i).lat, 1e-9);
+				Assert.assertEquals(ep.get(i).lon, rp.get(i).lon, 1e-9);
+				Assert.assertEquals(ep.get(i).time, rp.get(i).time);
+				Assert.assertEquals(ep.get(i).ele, rp.get(i).ele, 1e-9);
+				Assert.assertEquals(ep.get(i).speed, rp.get(i).speed, 1e-9);
+				Assert.assertEquals(ep.get(i).hdop, rp.get(i).hdop, 1e-6);
+				Assert.assertEquals(ep.get(i).name, rp.get(i).name);
+				Assert.assertEquals(ep.get(i).getExtensionsToRead(), rp.get(i).getExtensionsToRead());
+			}
+		}
+		Assert.assertEquals(parsed.getAnalysis(0).totalDistance, restored.getAnalysis(0).totalDistance, 0);
+
+		// modified file is not read from cache
+		Assert.assertTrue(gpxFile.setLastModified(gpxFile.lastModified() - 10000));
+		Assert.assertNull(cache.read(gpxFile));
+	}
+
+	@Test
+	public void testPrune() throws Exception {
+		GPXTrackCache cache = new GPXTrackCache(folder.newFolder("cache"));
+		File[] gpxFiles = new File[3];
+		for (int i = 0; i < gpxFiles.length; i++) {
+			gpxFiles[i] = folder.newFile("test" + i + ".gpx");
+			Assert.assertNull(GPXUtilities.writeGpxFile(gpxFiles[i], createGpx()));
+			Assert.assertNotNull(cache.getAnalysis(gpxFiles[i]));
+			Assert.assertTrue(cache.getCacheFile(gpxFiles[i]).setLastModified(1000000000000L + i * 1000));
+		}
+		long size = cache.getCacheFile(gpxFiles[0]).length();
+
+		// cache of deleted track is removed
+		Assert.assertTrue(gpxFiles[2].delete());
+		cache.prune(Long.MAX_VALUE);
+		Assert.assertFalse(cache.getCacheFile(gpxFiles[2]).exists());
+		Assert.assertTrue(cache.getCacheFile(gpxFiles[1]).exists());
+
+		// least recently read file is removed first
+		Assert.assertNotNull(cache.read(gpxFiles[0]));
+		cache.prune(size);
+		Assert.assertTrue(cache.getCacheFile(gpxFiles[0]).exists());
+		Assert.assertFalse(cache.getCacheFile(gpxFiles[1]).exists());
+	}
+}
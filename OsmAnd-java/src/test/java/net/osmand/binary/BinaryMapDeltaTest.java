@@ -0,0 +1,120 @@
+package net.osmand.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import net.osmand.binary.OsmandOdb.OsmAndStructure;
+
+public class BinaryMapDeltaTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	// structure of obf: parts with boxes of objects, changedBox is modified and extra box is added to poi part
+	private File createObf(String name, int changedBox, boolean extraBox) throws IOException {
+		ByteArrayOutputStream file = new ByteArrayOutputStream();
+		CodedOutputStream cos = CodedOutputStream.newInstance(file);
+		cos.writeUInt32(OsmAndStructure.VERSION_FIELD_NUMBER, 2);
+		cos.writeInt64(OsmAndStructure.DATECREATED_FIELD_NUMBER, changedBox);
+		writePart(cos, OsmAndStructure.MAPINDEX_FIELD_NUMBER, 1, changedBox, -1);
+		writePart(cos, OsmAndStructure.POIINDEX_FIELD_NUMBER, 2, -1, extraBox ? 30 : -1);
+		cos.writeUInt32(OsmAndStructure.VERSIONCONFIRM_FIELD_NUMBER, 2);
+		cos.flush();
+		File f = new File(folder.getRoot(), name);
+		FileOutputStream out = new FileOutputStream(f);
+		out.write(file.toByteArray());
+		out.close();
+		return f;
+	}
+
+	private void writePart(CodedOutputStream cos, int field, long seed, int changedBox, int extraBox) throws IOException {
+		ByteArrayOutputStream part = new ByteArrayOutputStream();
+		CodedOutputStream pcos = CodedOutputStream.newInstance(part);
+		pcos.writeString(1, "Region");
+		for (int i = 0; i < 60; i++) {
+			if (i == extraBox) {
+				writeBox(pcos, new Random(-1), false);
+			}
+			writeBox(pcos, new Random(seed * 1000 + i), i == changedBox);
+		}
+		pcos.flush();
+		writeFixed32Message(cos, field, part.toByteArray());
+	}
+
+	private void writeBox(CodedOutputStream cos, Random rnd, boolean changed) throws IOException {
+		ByteArrayOutputStream box = new ByteArrayOutputStream();
+		CodedOutputStream bcos = CodedOutputStream.newInstance(box);
+		for (int i = 0; i < 40; i++) {
+			byte[] object = new byte[50 + rnd.nextInt(500)];
+			rnd.nextBytes(object);
+			if (changed && i == 20) {
+				object = new byte[object.length + 10];
+			}
+			bcos.writeUInt32(1, i);
+			bcos.writeBytes(2, ByteString.copyFrom(object));
+		}
+		bcos.flush();
+		writeFixed32Message(cos, 3, box.toByteArray());
+	}
+
+	private static void writeFixed32Message(CodedOutputStream cos, int field, byte[] data) throws IOException {
+		cos.writeTag(field, WireFormat.WIRETYPE_FIXED32_LENGTH_DELIMITED);
+		cos.writeRawBytes(new byte[] { (byte) (data.length >>> 24), (byte) (data.length >>> 16),
+				(byte) (data.length >>> 8), (byte) data.length });
+		cos.writeRawBytes(data);
+	}
+
+	private static byte[] readFile(File f) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(f, "r");
+		byte[] data = new byte[(int) raf.length()];
+		raf.readFully(data);
+		raf.close();
+		return data;
+	}
+
+	@Test
+	public void testDelta() throws IOException {
+		File oldFile = createObf("old.obf", -1, false);
+		File newFile = createObf("new.obf", 40, true);
+		ByteArrayOutputStream delta = new ByteArrayOutputStream();
+		BinaryMapDelta.DeltaStats stats = BinaryMapDelta.createDelta(oldFile, newFile, delta);
+		Assert.assertEquals(newFile.length(), stats.copiedBytes + stats.dataBytes);
+		// changed object and added box with their headers
+		Assert.assertTrue(stats.toString(), delta.size() < newFile.length() / 20);
+		Assert.assertTrue(stats.partDataBytes.containsKey("Map"));
+		Assert.assertTrue(stats.partDataBytes.containsKey("POI"));
+
+		File result = new File(folder.getRoot(), "result.obf");
+		BinaryMapDelta.applyDelta(oldFile, new ByteArrayInputStream(delta.toByteArray()), result);
+		Assert.assertArrayEquals(readFile(newFile), readFile(result));
+
+		// copied bytes of old file are changed
+		RandomAccessFile raf = new RandomAccessFile(oldFile, "rw");
+		raf.seek(oldFile.length() / 2);
+		int b = raf.read();
+		raf.seek(oldFile.length() / 2);
+		raf.write(b ^ 1);
+		raf.close();
+		result.delete();
+		try {
+			BinaryMapDelta.applyDelta(oldFile, new ByteArrayInputStream(delta.toByteArray()), result);
+			Assert.fail();
+		} catch (IOException e) {
+			Assert.assertFalse(result.exists());
+		}
+	}
+}
@@ -0,0 +1,387 @@
+package net.osmand.binary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import net.osmand.Location;
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader.SearchPoiTypeFilter;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.OsmandOdb.OsmAndCategoryTable;
+import net.osmand.binary.OsmandOdb.OsmAndPoiBox;
+import net.osmand.binary.OsmandOdb.OsmAndPoiBoxData;
+import net.osmand.binary.OsmandOdb.OsmAndPoiBoxDataAtom;
+import net.osmand.binary.OsmandOdb.OsmAndPoiIndex;
+import net.osmand.binary.OsmandOdb.OsmAndStructure;
+import net.osmand.binary.OsmandOdb.OsmAndTileBox;
+import net.osmand.data.Amenity;
+import net.osmand.osm.MapPoiTypes;
+import net.osmand.osm.PoiCategory;
+import net.osmand.util.MapUtils;
+
+public class PoiQueryServiceTest {
+
+	// 4 x 4 data boxes of zoom 14 inside of tile of zoom 12
+	private static final int ROOT_ZOOM = 12;
+	private static final int BOX_ZOOM = 14;
+	private static final int ROOT_X = 2200;
+	private static final int ROOT_Y = 1340;
+	private static final int BOX_SIDE = 1 << (31 - BOX_ZOOM);
+	private static final int BOX_POIS = 25;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private RandomAccessFile raf;
+	private BinaryMapIndexReader reader;
+
+	@Before
+	public void setUp() throws IOException {
+		// poi types aren't needed to decode categories of file
+		MapPoiTypes.getDefaultNoInit();
+		File f = new File(folder.getRoot(), "poi.obf");
+		FileOutputStream out = new FileOutputStream(f);
+		out.write(createObf());
+		out.close();
+		raf = new RandomAccessFile(f, "r");
+		reader = new BinaryMapIndexReader(raf, f);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		raf.close();
+	}
+
+	private static byte[] createObf() throws IOException {
+		ByteArrayOutputStream index = new ByteArrayOutputStream();
+		CodedOutputStream cos = CodedOutputStream.newInstance(index);
+		cos.writeString(OsmAndPoiIndex.NAME_FIELD_NUMBER, "Test");
+		ByteArrayOutputStream bounds = new ByteArrayOutputStream();
+		CodedOutputStream bcos = CodedOutputStream.newInstance(bounds);
+		bcos.writeUInt32(OsmAndTileBox.LEFT_FIELD_NUMBER, ROOT_X << (31 - ROOT_ZOOM));
+		bcos.writeUInt32(OsmAndTileBox.RIGHT_FIELD_NUMBER, ((ROOT_X + 1) << (31 - ROOT_ZOOM)) - 1);
+		bcos.writeUInt32(OsmAndTileBox.TOP_FIELD_NUMBER, ROOT_Y << (31 - ROOT_ZOOM));
+		bcos.writeUInt32(OsmAndTileBox.BOTTOM_FIELD_NUMBER, ((ROOT_Y + 1) << (31 - ROOT_ZOOM)) - 1);
+		bcos.flush();
+		writeMessage(cos, OsmAndPoiIndex.BOUNDARIES_FIELD_NUMBER, bounds.toByteArray());
+		ByteArrayOutputStream categories = new ByteArrayOutputStream();
+		CodedOutputStream ccos = CodedOutputStream.newInstance(categories);
+		ccos.writeString(OsmAndCategoryTable.CATEGORY_FIELD_NUMBER, "shop");
+		ccos.writeString(OsmAndCategoryTable.SUBCATEGORIES_FIELD_NUMBER, "bakery");
+		ccos.writeString(OsmAndCategoryTable.SUBCATEGORIES_FIELD_NUMBER, "kiosk");
+		ccos.flush();
+		writeMessage(cos, OsmAndPoiIndex.CATEGORIESTABLE_FIELD_NUMBER, categories.toByteArray());
+		categories = new ByteArrayOutputStream();
+		ccos = CodedOutputStream.newInstance(categories);
+		ccos.writeString(OsmAndCategoryTable.CATEGORY_FIELD_NUMBER, "amenity");
+		ccos.writeString(OsmAndCategoryTable.SUBCATEGORIES_FIELD_NUMBER, "cafe");
+		ccos.flush();
+		writeMessage(cos, OsmAndPoiIndex.CATEGORIESTABLE_FIELD_NUMBER, categories.toByteArray());
+
+		List<byte[]> data = new ArrayList<byte[]>();
+		Random rnd = new Random(7);
+		for (int i = 0; i < 16; i++) {
+			data.add(createBoxData(i, rnd));
+		}
+		// size of boxes doesn't depend on data offsets
+		cos.flush();
+		int boxesStart = index.size();
+		int boxesLength = createBoxes(new int[16]).length + 5;
+		int[] offsets = new int[16];
+		int offset = boxesStart + boxesLength;
+		for (int i = 0; i < 16; i++) {
+			// shift points to length after tag
+			offsets[i] = offset + 1;
+			offset += data.get(i).length + 5;
+		}
+		writeFixed32Message(cos, OsmAndPoiIndex.BOXES_FIELD_NUMBER, createBoxes(offsets));
+		for (byte[] d : data) {
+			writeFixed32Message(cos, OsmAndPoiIndex.POIDATA_FIELD_NUMBER, d);
+		}
+		cos.flush();
+
+		ByteArrayOutputStream file = new ByteArrayOutputStream();
+		CodedOutputStream fcos = CodedOutputStream.newInstance(file);
+		fcos.writeUInt32(OsmAndStructure.VERSION_FIELD_NUMBER, 2);
+		fcos.writeInt64(OsmAndStructure.DATECREATED_FIELD_NUMBER, 1);
+		writeFixed32Message(fcos, OsmAndStructure.POIINDEX_FIELD_NUMBER, index.toByteArray());
+		fcos.writeUInt32(OsmAndStructure.VERSIONCONFIRM_FIELD_NUMBER, 2);
+		fcos.flush();
+		return file.toByteArray();
+	}
+
+	private static byte[] createBoxes(int[] offsets) throws IOException {
+		ByteArrayOutputStream root = new ByteArrayOutputStream();
+		CodedOutputStream cos = CodedOutputStream.newInstance(root);
+		cos.writeUInt32(OsmAndPoiBox.ZOOM_FIELD_NUMBER, ROOT_ZOOM);
+		cos.writeSInt32(OsmAndPoiBox.LEFT_FIELD_NUMBER, ROOT_X);
+		cos.writeSInt32(OsmAndPoiBox.TOP_FIELD_NUMBER, ROOT_Y);
+		for (int i = 0; i < 16; i++) {
+			ByteArrayOutputStream box = new ByteArrayOutputStream();
+			CodedOutputStream bcos = CodedOutputStream.newInstance(box);
+			bcos.writeUInt32(OsmAndPoiBox.ZOOM_FIELD_NUMBER, BOX_ZOOM - ROOT_ZOOM);
+			bcos.writeSInt32(OsmAndPoiBox.LEFT_FIELD_NUMBER, i % 4);
+			bcos.writeSInt32(OsmAndPoiBox.TOP_FIELD_NUMBER, i / 4);
+			bcos.writeTag(OsmAndPoiBox.SHIFTTODATA_FIELD_NUMBER, WireFormat.WIRETYPE_FIXED32);
+			bcos.writeRawBytes(int32(offsets[i]));
+			bcos.flush();
+			writeFixed32Message(cos, OsmAndPoiBox.SUBBOXES_FIELD_NUMBER, box.toByteArray());
+		}
+		cos.flush();
+		return root.toByteArray();
+	}
+
+	private static byte[] createBoxData(int box, Random rnd) throws IOException {
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		CodedOutputStream cos = CodedOutputStream.newInstance(data);
+		cos.writeUInt32(OsmAndPoiBoxData.ZOOM_FIELD_NUMBER, BOX_ZOOM);
+		cos.writeUInt32(OsmAndPoiBoxData.X_FIELD_NUMBER, boxX(box));
+		cos.writeUInt32(OsmAndPoiBoxData.Y_FIELD_NUMBER, boxY(box));
+		for (int i = 0; i < BOX_POIS; i++) {
+			ByteArrayOutputStream atom = new ByteArrayOutputStream();
+			CodedOutputStream acos = CodedOutputStream.newInstance(atom);
+			acos.writeSInt32(OsmAndPoiBoxDataAtom.DX_FIELD_NUMBER, rnd.nextInt(1 << (24 - BOX_ZOOM)));
+			acos.writeSInt32(OsmAndPoiBoxDataAtom.DY_FIELD_NUMBER, rnd.nextInt(1 << (24 - BOX_ZOOM)));
+			acos.writeUInt32(OsmAndPoiBoxDataAtom.CATEGORIES_FIELD_NUMBER,
+					(i % 2) << BinaryMapPoiReaderAdapter.SHIFT_BITS_CATEGORY);
+			if (i % 3 == 0) {
+				// shop and cafe
+				acos.writeUInt32(OsmAndPoiBoxDataAtom.CATEGORIES_FIELD_NUMBER, 1);
+			}
+			acos.writeString(OsmAndPoiBoxDataAtom.NAME_FIELD_NUMBER, "Poi " + box + " " + i);
+			acos.writeUInt64(OsmAndPoiBoxDataAtom.ID_FIELD_NUMBER, box * 1000 + i);
+			acos.flush();
+			writeMessage(cos, OsmAndPoiBoxData.POIDATA_FIELD_NUMBER, atom.toByteArray());
+		}
+		cos.flush();
+		return data.toByteArray();
+	}
+
+	private static int boxX(int box) {
+		return (ROOT_X << (BOX_ZOOM - ROOT_ZOOM)) + box % 4;
+	}
+
+	private static int boxY(int box) {
+		return (ROOT_Y << (BOX_ZOOM - ROOT_ZOOM)) + box / 4;
+	}
+
+	private static byte[] int32(int v) {
+		return new byte[] { (byte) (v >>> 24), (byte) (v >>> 16), (byte) (v >>> 8), (byte) v };
+	}
+
+	private static void writeMessage(CodedOutputStream cos, int field, byte[] data) throws IOException {
+		cos.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		cos.writeRawVarint32(data.length);
+		cos.writeRawBytes(data);
+	}
+
+	private static void writeFixed32Message(CodedOutputStream cos, int field, byte[] data) throws IOException {
+		cos.writeTag(field, WireFormat.WIRETYPE_FIXED32_LENGTH_DELIMITED);
+		cos.writeRawBytes(int32(data.length));
+		cos.writeRawBytes(data);
+	}
+
+	private static List<Long> ids(List<Amenity> amenities) {
+		List<Long> ids = new ArrayList<Long>();
+		for (Amenity a : amenities) {
+			ids.add(a.getId());
+		}
+		Collections.sort(ids);
+		return ids;
+	}
+
+	// id, category and subtypes
+	private static List<String> types(List<Amenity> amenities) {
+		List<String> types = new ArrayList<String>();
+		for (Amenity a : amenities) {
+			types.add(a.getId() + " " + a.getType().getKeyName() + " " + a.getSubType());
+		}
+		Collections.sort(types);
+		return types;
+	}
+
+	private static SearchPoiTypeFilter subtypeFilter(final String subtype) {
+		return new SearchPoiTypeFilter() {
+			@Override
+			public boolean accept(PoiCategory type, String subcategory) {
+				return subtype.equals(subcategory);
+			}
+
+			@Override
+			public boolean isEmpty() {
+				return false;
+			}
+		};
+	}
+
+	private List<Long> searchPoi(int left, int right, int top, int bottom, SearchPoiTypeFilter filter)
+			throws IOException {
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(left, right, top, bottom, -1, filter,
+				null);
+		return ids(reader.searchPoi(req));
+	}
+
+	@Test
+	public void testSameAsReader() throws IOException {
+		PoiQueryService service = new PoiQueryService(1 << 20);
+		int left = (boxX(0) << (31 - BOX_ZOOM)) + BOX_SIDE / 3;
+		int top = (boxY(0) << (31 - BOX_ZOOM)) + BOX_SIDE / 2;
+		int right = left + 2 * BOX_SIDE;
+		int bottom = top + BOX_SIDE;
+		List<Long> all = searchPoi(left, right, top, bottom, null);
+		Assert.assertFalse(all.isEmpty());
+		Assert.assertEquals(all, ids(service.searchPoi(reader, left, right, top, bottom, null, null)));
+		// 3 x 2 boxes are read once
+		Assert.assertEquals(6, service.getBoxStatistics()[0]);
+
+		SearchPoiTypeFilter bakery = new SearchPoiTypeFilter() {
+			@Override
+			public boolean accept(PoiCategory type, String subcategory) {
+				return "bakery".equals(subcategory);
+			}
+
+			@Override
+			public boolean isEmpty() {
+				return false;
+			}
+		};
+		List<Long> bakeries = searchPoi(left, right, top, bottom, bakery);
+		Assert.assertTrue(bakeries.size() < all.size());
+		Assert.assertEquals(bakeries, ids(service.searchPoi(reader, left, right, top, bottom, bakery, null)));
+		Assert.assertEquals(6, service.getBoxStatistics()[0]);
+		Assert.assertEquals(6, service.getBoxStatistics()[1]);
+	}
+
+	@Test
+	public void testMultiCategory() throws IOException {
+		PoiQueryService service = new PoiQueryService(1 << 20);
+		int left = boxX(0) << (31 - BOX_ZOOM);
+		int top = boxY(0) << (31 - BOX_ZOOM);
+		int right = left + BOX_SIDE - 1;
+		int bottom = top + BOX_SIDE - 1;
+		for (SearchPoiTypeFilter filter : new SearchPoiTypeFilter[] { null, subtypeFilter("bakery"),
+				subtypeFilter("cafe") }) {
+			SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(left, right, top, bottom, -1,
+					filter, null);
+			List<String> expected = types(reader.searchPoi(req));
+			Assert.assertFalse(expected.isEmpty());
+			Assert.assertEquals(expected, types(service.searchPoi(reader, left, right, top, bottom, filter, null)));
+		}
+		// cached amenities aren't changed by filter
+		Assert.assertEquals(1, service.getBoxStatistics()[0]);
+		List<String> cafes = types(service.searchPoi(reader, left, right, top, bottom, subtypeFilter("cafe"), null));
+		Assert.assertEquals("0 amenity cafe", cafes.get(0));
+		List<String> all = types(service.searchPoi(reader, left, right, top, bottom, null, null));
+		Assert.assertEquals("0 shop bakery;cafe", all.get(0));
+	}
+
+	@Test
+	public void testRouteCorridor() throws IOException {
+		PoiQueryService service = new PoiQueryService(1 << 20);
+		int y = (boxY(4) << (31 - BOX_ZOOM)) + BOX_SIDE / 2;
+		List<Location> route = new ArrayList<Location>();
+		route.add(location((boxX(4) << (31 - BOX_ZOOM)) + BOX_SIDE / 4, y));
+		route.add(location((boxX(6) << (31 - BOX_ZOOM)) + BOX_SIDE / 2, y - BOX_SIDE / 8));
+		route.add(location((boxX(7) << (31 - BOX_ZOOM)) + BOX_SIDE / 2, y + BOX_SIDE / 8));
+		double radius = 300;
+		RouteCorridorPoiSearch search = new RouteCorridorPoiSearch(service, route, radius);
+		List<RouteCorridorPoiSearch.RoutePoi> found = search.search(Collections.singletonList(reader), null, null);
+		// only boxes of the route row are read
+		Assert.assertEquals(4, service.getBoxStatistics()[0]);
+
+		List<Long> expected = new ArrayList<Long>();
+		int left = ROOT_X << (31 - ROOT_ZOOM);
+		int top = ROOT_Y << (31 - ROOT_ZOOM);
+		int right = ((ROOT_X + 1) << (31 - ROOT_ZOOM)) - 1;
+		int bottom = ((ROOT_Y + 1) << (31 - ROOT_ZOOM)) - 1;
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(left, right, top, bottom, -1, null,
+				null);
+		for (Amenity a : reader.searchPoi(req)) {
+			if (deviation(route, a) <= radius) {
+				expected.add(a.getId());
+			}
+		}
+		Assert.assertFalse(expected.isEmpty());
+		List<Amenity> amenities = new ArrayList<Amenity>();
+		double along = 0;
+		for (RouteCorridorPoiSearch.RoutePoi p : found) {
+			amenities.add(p.getAmenity());
+			Assert.assertTrue(p.getDistanceAlongRoute() >= along);
+			Assert.assertTrue(p.getDistanceAlongRoute() <= search.getRouteLength());
+			Assert.assertEquals(deviation(route, p.getAmenity()), p.getDeviation(), 1);
+			along = p.getDistanceAlongRoute();
+		}
+		// flat earth distance differs from spherical by less than a meter
+		List<Long> ids = ids(amenities);
+		for (Amenity a : reader.searchPoi(req)) {
+			double d = deviation(route, a);
+			if (d < radius - 1 || d > radius + 1) {
+				Assert.assertEquals(expected.contains(a.getId()), ids.contains(a.getId()));
+			}
+		}
+
+		// amenity of several files is published once, with subtypes accepted by filter
+		final List<Amenity> published = new ArrayList<Amenity>();
+		ResultMatcher<Amenity> matcher = new ResultMatcher<Amenity>() {
+			@Override
+			public boolean publish(Amenity a) {
+				published.add(a);
+				return true;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		};
+		found = search.search(Arrays.asList(reader, reader), subtypeFilter("cafe"), matcher);
+		Assert.assertFalse(found.isEmpty());
+		Assert.assertEquals(found.size(), published.size());
+		Assert.assertEquals(new ArrayList<Long>(new TreeSet<Long>(ids(published))), ids(published));
+		for (Amenity a : published) {
+			Assert.assertEquals("amenity", a.getType().getKeyName());
+			Assert.assertEquals("cafe", a.getSubType());
+		}
+	}
+
+	private static Location location(int x31, int y31) {
+		return new Location("", MapUtils.get31LatitudeY(y31), MapUtils.get31LongitudeX(x31));
+	}
+
+	// distance to nearest of route points sampled every meter
+	private static double deviation(List<Location> route, Amenity a) {
+		double lat = a.getLocation().getLatitude();
+		double lon = a.getLocation().getLongitude();
+		double min = Double.MAX_VALUE;
+		for (int i = 1; i < route.size(); i++) {
+			Location s = route.get(i - 1);
+			Location e = route.get(i);
+			int samples = (int) s.distanceTo(e);
+			for (int k = 0; k <= samples; k++) {
+				double c = (double) k / samples;
+				min = Math.min(min, MapUtils.getDistance(lat, lon, s.getLatitude() + (e.getLatitude() - s.getLatitude()) * c,
+						s.getLongitude() + (e.getLongitude() - s.getLongitude()) * c));
+			}
+		}
+		return min;
+	}
+}
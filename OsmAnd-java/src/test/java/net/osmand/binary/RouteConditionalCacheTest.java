@@ -0,0 +1,40 @@
+package net.osmand.binary;
+
+import java.util.Calendar;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteTypeRule;
+
+public class RouteConditionalCacheTest {
+
+	private static final String[] CONDITIONS = {
+			"30 @ (Mo-Fr 07:00-09:00); 50 @ (22:00-06:00)",
+			"no @ (Sa,Su)",
+			"delivery @ (Mo-Sa 06:30-11:00,16:00-18:30)",
+			"30 @ (sunrise-sunset)"
+	};
+
+	@Test
+	public void testSameAsRule() {
+		RouteRegion region = new RouteRegion();
+		region.initRouteEncodingRule(0, "highway", "primary");
+		for (int i = 0; i < CONDITIONS.length; i++) {
+			region.initRouteEncodingRule(i + 1, "maxspeed:conditional", CONDITIONS[i]);
+		}
+		region.completeRouteEncodingRules();
+
+		Calendar cal = Calendar.getInstance();
+		cal.set(2026, Calendar.MARCH, 23, 0, 0, 0);
+		long start = cal.getTimeInMillis();
+		long end = start + 8 * 24 * 60 * 60 * 1000L;
+		for (int i = 0; i <= CONDITIONS.length; i++) {
+			RouteTypeRule rule = region.quickGetEncodingRule(i);
+			for (long t = start; t < end; t += 7 * 60 * 1000 + 13 * 1000) {
+				Assert.assertEquals(rule.conditionalValue(t), region.getConditionalValue(i, t));
+			}
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package net.osmand.map;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OffHeapTilesStoreTest {
+
+	@Test
+	public void testTileKey() {
+		long key = OffHeapTilesStore.getTileKey(17, 70406, 42987);
+		Assert.assertEquals(17, OffHeapTilesStore.getZoom(key));
+		Assert.assertEquals(70406, OffHeapTilesStore.getTileX(key));
+		Assert.assertEquals(42987, OffHeapTilesStore.getTileY(key));
+		Assert.assertNotEquals(key, OffHeapTilesStore.getTileKey(16, 70406, 42987));
+	}
+
+	@Test
+	public void testPutReadRemove() {
+		OffHeapTilesStore store = OffHeapTilesStore.allocateDirect(64 * 1024, 4);
+		Random r = new Random(1);
+		byte[][] payloads = new byte[100][];
+		for (int i = 0; i < payloads.length; i++) {
+			payloads[i] = new byte[r.nextInt(200)];
+			r.nextBytes(payloads[i]);
+			Assert.assertTrue(store.put(OffHeapTilesStore.getTileKey(15, i, i * 2), payloads[i]));
+		}
+		Assert.assertEquals(payloads.length, store.size());
+		byte[] buf = new byte[256];
+		for (int i = 0; i < payloads.length; i++) {
+			long key = OffHeapTilesStore.getTileKey(15, i, i * 2);
+			int len = store.read(key, buf, 0);
+			Assert.assertEquals(payloads[i].length, len);
+			Assert.assertArrayEquals(payloads[i], Arrays.copyOf(buf, len));
+		}
+		long key = OffHeapTilesStore.getTileKey(15, 5, 10);
+		Assert.assertTrue(store.remove(key));
+		Assert.assertFalse(store.contains(key));
+		Assert.assertEquals(-1, store.read(key, buf, 0));
+		// replace keeps only the last payload
+		long key2 = OffHeapTilesStore.getTileKey(15, 6, 12);
+		store.put(key2, new byte[] {1, 2, 3});
+		Assert.assertArrayEquals(new byte[] {1, 2, 3}, store.get(key2));
+		Assert.assertEquals(payloads.length - 1, store.size());
+	}
+
+	@Test
+	public void testEvictionBySize() {
+		OffHeapTilesStore store = OffHeapTilesStore.allocateDirect(4096, 1);
+		byte[] payload = new byte[500];
+		int total = 100;
+		for (int i = 0; i < total; i++) {
+			Arrays.fill(payload, (byte) i);
+			Assert.assertTrue(store.put(OffHeapTilesStore.getTileKey(10, i, 0), payload));
+			Assert.assertTrue(store.getUsedBytes() <= store.getCapacity());
+		}
+		Assert.assertTrue(store.size() < total);
+		Assert.assertEquals(total - store.size(), store.getEvictions());
+		// newest tiles survive
+		byte[] last = store.get(OffHeapTilesStore.getTileKey(10, total - 1, 0));
+		Assert.assertNotNull(last);
+		Assert.assertEquals((byte) (total - 1), last[0]);
+		Assert.assertNull(store.get(OffHeapTilesStore.getTileKey(10, 0, 0)));
+		Assert.assertFalse(store.put(OffHeapTilesStore.getTileKey(10, 0, 0), new byte[5000]));
+	}
+}
@@ -0,0 +1,170 @@
+package net.osmand.osm.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import net.osmand.util.Algorithms;
+
+public class ParallelDownloaderTest {
+
+	private static final int CHUNK = 16 * 1024;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private HttpServer server;
+	private byte[] data;
+	private byte[] content;
+	// chunks which fail once (bad bytes or broken connection) and from which server always fails
+	private int corruptChunk = -1;
+	private int brokenChunk = -1;
+	private int failFromChunk = Integer.MAX_VALUE;
+
+	@Before
+	public void setUp() throws IOException {
+		Random rnd = new Random(1);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			sb.append(rnd.nextInt(1000)).append(' ');
+		}
+		content = sb.toString().getBytes("UTF-8");
+		ByteArrayOutputStream bous = new ByteArrayOutputStream();
+		GZIPOutputStream gz = new GZIPOutputStream(bous);
+		gz.write(content);
+		gz.close();
+		data = bous.toByteArray();
+
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/map.obf.gz", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				serve(exchange);
+			}
+		});
+		server.start();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	private synchronized void serve(HttpExchange exchange) throws IOException {
+		String range = exchange.getRequestHeaders().getFirst("Range");
+		exchange.getResponseHeaders().add("ETag", "\"v1\"");
+		OutputStream out = exchange.getResponseBody();
+		if (range == null) {
+			exchange.sendResponseHeaders(200, data.length);
+			out.write(data);
+			out.close();
+			return;
+		}
+		String[] r = range.substring("bytes=".length()).split("-");
+		int start = Integer.parseInt(r[0]);
+		int end = Integer.parseInt(r[1]) + 1;
+		int chunk = start / CHUNK;
+		if (start > 0 && chunk >= failFromChunk) {
+			exchange.sendResponseHeaders(503, -1);
+			exchange.close();
+			return;
+		}
+		exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + data.length);
+		exchange.sendResponseHeaders(206, end - start);
+		byte[] part = new byte[end - start];
+		System.arraycopy(data, start, part, 0, part.length);
+		if (chunk == corruptChunk) {
+			corruptChunk = -1;
+			part[10] ^= 1;
+		}
+		if (chunk == brokenChunk) {
+			brokenChunk = -1;
+			out.write(part, 0, part.length / 2);
+			exchange.close();
+			return;
+		}
+		out.write(part);
+		out.close();
+	}
+
+	private ParallelDownloader create(File target) throws IOException {
+		URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/map.obf.gz");
+		return new ParallelDownloader(url, target).setChunkSize(CHUNK).setTries(3, 0);
+	}
+
+	private long[] checksums() {
+		long[] res = new long[(data.length + CHUNK - 1) / CHUNK];
+		for (int i = 0; i < res.length; i++) {
+			CRC32 crc = new CRC32();
+			crc.update(data, i * CHUNK, Math.min(CHUNK, data.length - i * CHUNK));
+			res[i] = crc.getValue();
+		}
+		return res;
+	}
+
+	@Test
+	public void testParallelUnzip() throws IOException {
+		Assert.assertTrue(data.length > 8 * CHUNK);
+		corruptChunk = 3;
+		brokenChunk = 5;
+		File target = new File(folder.getRoot(), "map.obf");
+		ParallelDownloader downloader = create(target).setThreads(4).setExpectedChecksums(CHUNK, checksums());
+		Assert.assertTrue(downloader.prepare());
+		Assert.assertEquals(data.length, downloader.getLength());
+		InputStream is = new GZIPInputStream(downloader.start());
+		ByteArrayOutputStream res = new ByteArrayOutputStream();
+		Algorithms.streamCopy(is, res);
+		is.close();
+		Assert.assertArrayEquals(content, res.toByteArray());
+		Assert.assertTrue(downloader.isCompleted());
+		Assert.assertFalse(downloader.getPartFile().exists());
+	}
+
+	@Test
+	public void testResume() throws IOException {
+		failFromChunk = 6;
+		File target = new File(folder.getRoot(), "map.obf");
+		ParallelDownloader downloader = create(target).setThreads(1);
+		Assert.assertTrue(downloader.prepare());
+		InputStream is = downloader.start();
+		ByteArrayOutputStream res = new ByteArrayOutputStream();
+		try {
+			Algorithms.streamCopy(is, res);
+			Assert.fail();
+		} catch (IOException e) {
+			// server is not available
+		}
+		is.close();
+		Assert.assertEquals(6 * CHUNK, res.size());
+		Assert.assertTrue(downloader.getPartFile().exists());
+
+		failFromChunk = Integer.MAX_VALUE;
+		downloader = create(target).setThreads(3);
+		Assert.assertTrue(downloader.prepare());
+		is = downloader.start();
+		res.reset();
+		Algorithms.streamCopy(is, res);
+		is.close();
+		Assert.assertArrayEquals(data, res.toByteArray());
+		Assert.assertEquals(data.length - 6 * CHUNK, downloader.getDownloadedBytes());
+	}
+}
@@ -0,0 +1,98 @@
+package net.osmand.router;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.AlternativeSearchTrees;
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+public class AlternativeRoutesFinderTest {
+
+	private static final int X = 1 << 30;
+	private static final int Y = 1 << 30;
+	private static final int STEP = 50000;
+
+	private final TLongObjectHashMap<RouteSegment> visitedDirect = new TLongObjectHashMap<RouteSegment>();
+	private final TLongObjectHashMap<RouteSegment> visitedOpposite = new TLongObjectHashMap<RouteSegment>();
+
+	// 3 point road from start to end with middle point shifted by dy, cost is equal to length
+	private static RouteDataObject road(long id, int dy) {
+		RouteDataObject road = new RouteDataObject(new RouteRegion());
+		road.id = id;
+		road.types = new int[0];
+		road.pointsX = new int[] { X, X + STEP, X + 2 * STEP };
+		road.pointsY = new int[] { Y, Y + dy, Y };
+		return road;
+	}
+
+	private static float cost(RouteDataObject road, int from) {
+		return (float) BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(from), road.getPoint31YTile(from),
+				road.getPoint31XTile(from + 1), road.getPoint31YTile(from + 1));
+	}
+
+	// forward and reverse searches meet in the middle point of road
+	private FinalRouteSegment meetingPoint(RouteDataObject road) {
+		RouteSegment forward = new RouteSegment(road, 0).initRouteSegment(true);
+		RouteSegment reverse = new RouteSegment(road, 2).initRouteSegment(false);
+		reverse.distanceFromStart = cost(road, 1);
+		RouteSegment visited = new RouteSegment(road, 0).initRouteSegment(true);
+		visited.distanceFromStart = cost(road, 0);
+		visitedDirect.put((road.getId() << BinaryRoutePlanner.ROUTE_POINTS) + (1 << 1) + 1, visited);
+		FinalRouteSegment mp = new FinalRouteSegment(road, 1);
+		mp.setParentRoute(forward);
+		mp.setParentSegmentEnd(1);
+		mp.reverseWaySearch = false;
+		mp.opposite = reverse;
+		mp.distanceFromStart = cost(road, 0) + cost(road, 1);
+		return mp;
+	}
+
+	@Test
+	public void testAdmissibleAlternative() throws InterruptedException {
+		RouteDataObject main = road(1, 0);
+		// ~8% longer than main
+		RouteDataObject alternative = road(2, 2 * STEP / 5);
+		// ~55% longer than main
+		RouteDataObject detour = road(3, 6 * STEP / 5);
+		FinalRouteSegment finalSegment = meetingPoint(main);
+		FinalRouteSegment alternativeMp = meetingPoint(alternative);
+		List<FinalRouteSegment> meetingPoints = new ArrayList<FinalRouteSegment>();
+		// expensive meeting point of one direction is collected before cheaper one of other direction
+		meetingPoints.add(meetingPoint(detour));
+		meetingPoints.add(alternativeMp);
+		meetingPoints.add(meetingPoint(main));
+		AlternativeSearchTrees trees = new AlternativeSearchTrees(finalSegment, meetingPoints, visitedDirect,
+				visitedOpposite);
+		List<RouteSegmentResult> mainRoute = Collections.singletonList(new RouteSegmentResult(main, 0, 2));
+
+		List<FinalRouteSegment> alternatives = new AlternativeRoutesFinder().selectAlternatives(trees, mainRoute, 3, 1);
+		Assert.assertEquals(Collections.singletonList(alternativeMp), alternatives);
+		Assert.assertTrue(alternativeMp.distanceFromStart <= finalSegment.distanceFromStart
+				* (1 + AlternativeRoutesFinder.MAX_STRETCH));
+		Assert.assertEquals(alternatives, new AlternativeRoutesFinder().selectAlternatives(trees, mainRoute, 3, 2));
+	}
+
+	@Test
+	public void testDetourIsNotLocallyOptimal() throws InterruptedException {
+		RouteDataObject main = road(1, 0);
+		RouteDataObject alternative = road(2, 2 * STEP / 5);
+		FinalRouteSegment finalSegment = meetingPoint(main);
+		FinalRouteSegment alternativeMp = meetingPoint(alternative);
+		// forward search reached the middle point of alternative much cheaper than through its start
+		RouteSegment shortcut = new RouteSegment(alternative, 0).initRouteSegment(true);
+		shortcut.distanceFromStart = cost(alternative, 0) / 3;
+		visitedDirect.put((alternative.getId() << BinaryRoutePlanner.ROUTE_POINTS) + (1 << 1) + 1, shortcut);
+		AlternativeSearchTrees trees = new AlternativeSearchTrees(finalSegment,
+				Collections.singletonList(alternativeMp), visitedDirect, visitedOpposite);
+		List<RouteSegmentResult> mainRoute = Collections.singletonList(new RouteSegmentResult(main, 0, 2));
+		Assert.assertTrue(new AlternativeRoutesFinder().selectAlternatives(trees, mainRoute, 3, 1).isEmpty());
+	}
+}
@@ -0,0 +1,181 @@
+package net.osmand.router;
+
+import net.osmand.Location;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteTypeRule;
+import net.osmand.binary.RouteDataBundle;
+import net.osmand.binary.RouteDataObject;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+public class RouteDataBinaryCodecTest {
+
+	private static List<RouteSegmentResult> createRoute() {
+		RouteRegion region = new RouteRegion();
+		region.initRouteEncodingRule(0, "highway", "primary");
+		region.initRouteEncodingRule(1, "name", "");
+		region.initRouteEncodingRule(2, "ref", "");
+		region.initRouteEncodingRule(3, "highway", "traffic_signals");
+		region.initRouteEncodingRule(4, "osmand_ele_start", "100");
+		RouteDataObject obj = new RouteDataObject(region);
+		obj.id = 12345L << 6;
+		obj.types = new int[] { 0, 4 };
+		obj.pointsX = new int[5];
+		obj.pointsY = new int[5];
+		obj.pointTypes = new int[][] { null, { 3 }, null, null, null };
+		obj.nameIds = new int[] { 1, 2 };
+		obj.names = new TIntObjectHashMap<>();
+		obj.names.put(1, "Main street");
+		obj.names.put(2, "A1");
+		obj.pointNameTypes = new int[][] { null, null, { 1 }, null, null };
+		obj.pointNames = new String[][] { null, null, { "Stop" }, null, null };
+
+		RouteSegmentResult first = new RouteSegmentResult(obj, 0, 3);
+		first.setSegmentTime(7.125f);
+		first.setSegmentSpeed(13.337f);
+		TurnType turn = TurnType.valueOf(TurnType.TL, false);
+		turn.setTurnAngle(-87.456f);
+		turn.setSkipToSpeak(true);
+		turn.setLanes(new int[] { TurnType.TL << 1 | 1, TurnType.C << 1 });
+		first.setTurnType(turn);
+		RouteSegmentResult second = new RouteSegmentResult(obj, 4, 3);
+		second.setSegmentTime(1);
+		second.setSegmentSpeed(20);
+		return Arrays.asList(first, second);
+	}
+
+	private static List<Location> createLocations() {
+		List<Location> locations = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			// coordinates with gpx precision
+			Location l = new Location("", (521234567 + i * 1000) / 1e7, (47654321 - i * 2000) / 1e7);
+			if (i != 2) {
+				l.setAltitude(10.5 + i);
+			}
+			locations.add(l);
+		}
+		return locations;
+	}
+
+	// the same as RouteExporter and RouteImporter do with bundles
+	private static List<RouteSegmentResult> bundleRoundTrip(List<RouteSegmentResult> route, List<Location> locations) {
+		RouteDataResources resources = new RouteDataResources(locations);
+		for (RouteSegmentResult sr : route) {
+			sr.collectTypes(resources);
+		}
+		for (RouteSegmentResult sr : route) {
+			sr.collectNames(resources);
+		}
+		List<RouteDataBundle> bundles = new ArrayList<>();
+		for (RouteSegmentResult sr : route) {
+			RouteDataBundle bundle = new RouteDataBundle(resources);
+			sr.writeToBundle(bundle);
+			bundles.add(bundle);
+		}
+		RouteRegion region = new RouteRegion();
+		RouteDataResources readResources = new RouteDataResources(locations);
+		List<RouteSegmentResult> res = new ArrayList<>();
+		for (RouteDataBundle bundle : bundles) {
+			RouteSegmentResult sr = new RouteSegmentResult(new RouteDataObject(region));
+			sr.readFromBundle(new RouteDataBundle(readResources, bundle));
+			res.add(sr);
+		}
+		int id = 0;
+		for (RouteTypeRule rule : resources.getRules().keySet()) {
+			region.initRouteEncodingRule(id++, rule.getTag(), rule.getValue());
+		}
+		for (RouteSegmentResult sr : res) {
+			sr.fillNames(readResources);
+		}
+		return res;
+	}
+
+	private static void assertSameRoute(List<RouteSegmentResult> expected, List<RouteSegmentResult> actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			RouteSegmentResult e = expected.get(i);
+			RouteSegmentResult a = actual.get(i);
+			Assert.assertEquals(e.getStartPointIndex(), a.getStartPointIndex());
+			Assert.assertEquals(e.getEndPointIndex(), a.getEndPointIndex());
+			Assert.assertEquals(e.getSegmentTime(), a.getSegmentTime(), 0);
+			Assert.assertEquals(e.getSegmentSpeed(), a.getSegmentSpeed(), 0);
+			Assert.assertEquals(e.getDistance(), a.getDistance(), 0);
+			if (e.getTurnType() == null) {
+				Assert.assertNull(a.getTurnType());
+			} else {
+				Assert.assertEquals(e.getTurnType().toXmlString(), a.getTurnType().toXmlString());
+				Assert.assertEquals(e.getTurnType().getTurnAngle(), a.getTurnType().getTurnAngle(), 0);
+				Assert.assertEquals(e.getTurnType().isSkipToSpeak(), a.getTurnType().isSkipToSpeak());
+				Assert.assertArrayEquals(e.getTurnType().getLanes(), a.getTurnType().getLanes());
+			}
+			RouteDataObject eo = e.getObject();
+			RouteDataObject ao = a.getObject();
+			Assert.assertEquals(eo.id, ao.id);
+			Assert.assertArrayEquals(eo.pointsX, ao.pointsX);
+			Assert.assertArrayEquals(eo.pointsY, ao.pointsY);
+			Assert.assertArrayEquals(eo.heightDistanceArray, ao.heightDistanceArray, 0);
+			Assert.assertArrayEquals(eo.nameIds, ao.nameIds);
+			Assert.assertEquals(eo.names, ao.names);
+			Assert.assertArrayEquals(eo.pointNameTypes, ao.pointNameTypes);
+			Assert.assertArrayEquals(eo.pointNames, ao.pointNames);
+			Assert.assertEquals(rules(eo, eo.types), rules(ao, ao.types));
+			int points = eo.pointTypes == null ? 0 : eo.pointTypes.length;
+			Assert.assertEquals(points, ao.pointTypes == null ? 0 : ao.pointTypes.length);
+			for (int k = 0; k < points; k++) {
+				Assert.assertEquals(rules(eo, eo.pointTypes[k]), rules(ao, ao.pointTypes[k]));
+			}
+		}
+	}
+
+	private static List<String> rules(RouteDataObject o, int[] types) {
+		List<String> res = new ArrayList<>();
+		if (types != null) {
+			for (int t : types) {
+				res.add(o.region.quickGetEncodingRule(t).toString());
+			}
+		}
+		return res;
+	}
+
+	@Test
+	public void testEmbeddedRouteData() throws Exception {
+		List<Location> locations = createLocations();
+		List<RouteSegmentResult> expected = bundleRoundTrip(createRoute(), locations);
+		String data = RouteDataBinaryCodec.writeBase64(createRoute(), locations);
+		List<RouteSegmentResult> actual = RouteDataBinaryCodec.readBase64(data, locations);
+		assertSameRoute(expected, actual);
+		Assert.assertEquals("TL", actual.get(0).getTurnType().toXmlString());
+		Assert.assertEquals(13.34f, actual.get(0).getSegmentSpeed(), 0);
+		Assert.assertEquals(7.12f, actual.get(0).getSegmentTime(), 0);
+		Assert.assertEquals("Main street", actual.get(1).getObject().getName());
+		// imported route is saved again in the same way
+		assertSameRoute(bundleRoundTrip(actual, locations), RouteDataBinaryCodec.readBase64(
+				RouteDataBinaryCodec.writeBase64(actual, locations), locations));
+	}
+
+	@Test
+	public void testSidecarRouteData() throws Exception {
+		List<Location> locations = createLocations();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new RouteExporter("test", createRoute(), locations, null).exportRouteData(out);
+		List<Location> readLocations = new ArrayList<>();
+		List<RouteSegmentResult> actual = RouteDataBinaryCodec.read(new ByteArrayInputStream(out.toByteArray()),
+				readLocations);
+		Assert.assertEquals(locations.size(), readLocations.size());
+		for (int i = 0; i < locations.size(); i++) {
+			Assert.assertEquals(locations.get(i).getLatitude(), readLocations.get(i).getLatitude(), 0);
+			Assert.assertEquals(locations.get(i).getLongitude(), readLocations.get(i).getLongitude(), 0);
+			Assert.assertEquals(locations.get(i).hasAltitude(), readLocations.get(i).hasAltitude());
+		}
+		assertSameRoute(bundleRoundTrip(createRoute(), locations), actual);
+	}
+}
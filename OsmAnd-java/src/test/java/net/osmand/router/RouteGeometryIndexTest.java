@@ -0,0 +1,74 @@
+package net.osmand.router;
+
+import net.osmand.router.RouteGeometryIndex.RoutePosition;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RouteGeometryIndexTest {
+
+	private static final double LAT = 52.0;
+	private static final double LON = 4.0;
+	private static final double STEP = 0.001;
+
+	// goes north along lon and returns south along lon + 0.0001 (~7 m apart)
+	private static RouteGeometryIndex buildOutAndBack(int n) {
+		double[] lats = new double[2 * n];
+		double[] lons = new double[2 * n];
+		for (int i = 0; i < n; i++) {
+			lats[i] = LAT + i * STEP;
+			lons[i] = LON;
+			lats[2 * n - 1 - i] = LAT + i * STEP;
+			lons[2 * n - 1 - i] = LON + 0.0001;
+		}
+		return new RouteGeometryIndex(lats, lons);
+	}
+
+	@Test
+	public void testNearestSegment() {
+		RouteGeometryIndex index = buildOutAndBack(50);
+		RoutePosition pos = index.findPosition(LAT + 10.5 * STEP, LON - 0.00002, Double.NaN, -1, 0, 50, null);
+		Assert.assertNotNull(pos);
+		Assert.assertEquals(10, pos.segmentIndex);
+		Assert.assertEquals(LON, pos.longitude, 1e-7);
+		Assert.assertEquals(LAT + 10.5 * STEP, pos.latitude, 1e-7);
+		Assert.assertEquals(index.getDistanceFromStart(10) + MapUtils.getDistance(LAT + 10 * STEP, LON,
+				LAT + 10.5 * STEP, LON), pos.distanceFromStart, 1);
+		Assert.assertNull(index.findPosition(LAT + 10.5 * STEP, LON + 0.01, Double.NaN, -1, 0, 50, null));
+	}
+
+	@Test
+	public void testBearingAndContinuity() {
+		int n = 50;
+		RouteGeometryIndex index = buildOutAndBack(n);
+		// slightly closer to the way back, but moving north
+		double lat = LAT + 20.5 * STEP;
+		double lon = LON + 0.00006;
+		RoutePosition pos = index.findPosition(lat, lon, 0, -1, 0, 50, null);
+		Assert.assertEquals(20, pos.segmentIndex);
+		pos = index.findPosition(lat, lon, 180, -1, 0, 50, null);
+		Assert.assertEquals(2 * n - 1 - 21, pos.segmentIndex);
+		// unknown bearing, but last position was on the way north
+		double last = index.getDistanceFromStart(19);
+		pos = index.findPosition(lat, lon, Double.NaN, last, 300, 50, null);
+		Assert.assertEquals(20, pos.segmentIndex);
+		// last position was on the way back
+		last = index.getDistanceFromStart(2 * n - 1 - 22);
+		pos = index.findPosition(lat, lon, Double.NaN, last, 300, 50, null);
+		Assert.assertEquals(2 * n - 1 - 21, pos.segmentIndex);
+	}
+
+	@Test
+	public void testLongSegments() {
+		double[] lats = new double[] { LAT, LAT + 1, LAT + 1 };
+		double[] lons = new double[] { LON, LON, LON + 1 };
+		RouteGeometryIndex index = new RouteGeometryIndex(lats, lons);
+		RoutePosition pos = index.findPosition(LAT + 0.5, LON + 0.0001, Double.NaN, -1, 0, 50, null);
+		Assert.assertNotNull(pos);
+		Assert.assertEquals(0, pos.segmentIndex);
+		pos = index.findPosition(LAT + 1, LON + 0.5, Double.NaN, -1, 0, 50, pos);
+		Assert.assertEquals(1, pos.segmentIndex);
+		Assert.assertEquals(index.getRouteDistance(), index.getDistanceFromStart(2), 0);
+	}
+}
@@ -0,0 +1,37 @@
+package net.osmand.router;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+
+public class RouteSearchLabelsTest {
+
+	@Test
+	public void testLabels() {
+		RouteDataObject road = new RouteDataObject(new RouteRegion());
+		road.id = 7;
+		RouteSearchLabels labels = new RouteSearchLabels(4);
+		int n = 10000;
+		for (int i = 0; i < n; i++) {
+			long id = ((long) i << BinaryRoutePlanner.ROUTE_POINTS) + (i % 2);
+			Assert.assertEquals(-1, labels.getSlot(id));
+			int slot = labels.addNode(id, road, i % 1000);
+			Assert.assertEquals(Float.POSITIVE_INFINITY, labels.getCost(slot), 0);
+			labels.setLabel(slot, i, slot - 1);
+		}
+		Assert.assertEquals(n, labels.size());
+		for (int i = 0; i < n; i++) {
+			int slot = labels.getSlot(((long) i << BinaryRoutePlanner.ROUTE_POINTS) + (i % 2));
+			Assert.assertEquals(i, labels.getCost(slot), 0);
+			Assert.assertEquals(slot - 1, labels.getParent(slot));
+			Assert.assertEquals(i % 1000, labels.getPoint(slot));
+			Assert.assertEquals(i % 2 == 1, labels.isPositive(slot));
+			Assert.assertSame(road, labels.getRoad(slot));
+		}
+		labels.clear();
+		Assert.assertEquals(0, labels.size());
+		Assert.assertEquals(-1, labels.getSlot(1L << BinaryRoutePlanner.ROUTE_POINTS));
+	}
+}
@@ -0,0 +1,46 @@
+package net.osmand.router;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingContext.RouteGraphSegment;
+import net.osmand.router.RoutingContext.RoutingSubregionTile;
+
+public class RoutingSubregionTileTest {
+
+	@Test
+	public void testSharedTileIsNotUnloaded() {
+		RouteRegion region = new RouteRegion();
+		RouteDataObject road = new RouteDataObject(region);
+		road.id = 1;
+		road.types = new int[0];
+		road.pointsX = new int[] { 1 << 30, (1 << 30) + 1000 };
+		road.pointsY = new int[] { 1 << 30, 1 << 30 };
+		RoutingSubregionTile tile = new RoutingSubregionTile(new RouteSubregion(region));
+		tile.setLoadedNonNative();
+		tile.add(road);
+		tile.publishLoaded();
+
+		RoutingContext parent = new RoutingContext(new RoutingConfiguration(), null, new BinaryMapIndexReader[0],
+				RouteCalculationMode.NORMAL);
+		parent.subregionTiles.add(tile);
+		RoutingContext child = new RoutingContext(parent);
+		Assert.assertTrue(tile.isShared());
+		parent.unloadUnusedTiles(0);
+		Assert.assertTrue(tile.isLoaded());
+		RouteGraphSegment s = tile.getRoutes().get(((long) road.getPoint31XTile(1) << 31) + road.getPoint31YTile(1));
+		Assert.assertSame(road, s.getRoad());
+		Assert.assertEquals(1, s.getSegmentStart());
+
+		child.releaseSharedTiles();
+		Assert.assertFalse(tile.isShared());
+		parent.unloadAllData();
+		Assert.assertTrue(tile.isUnloaded());
+		Assert.assertNull(tile.getRoutes());
+	}
+}
@@ -0,0 +1,73 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Calendar;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SpeedProfileFileTest {
+
+	private static final float DELTA = 0.2f;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static float[] profile(float kmh, int jamBucket, float jamKmh) {
+		float[] speeds = new float[SpeedProfileProvider.BUCKETS];
+		Arrays.fill(speeds, kmh / 3.6f);
+		if (jamBucket >= 0) {
+			speeds[jamBucket] = jamKmh / 3.6f;
+		}
+		return speeds;
+	}
+
+	@Test
+	public void testLookup() throws IOException {
+		SpeedProfileFile.Writer writer = new SpeedProfileFile.Writer();
+		writer.addProfile(200, 0, true, profile(50, 35, 10));
+		writer.addProfile(200, 5, true, profile(80, -1, 0));
+		writer.addProfile(200, 0, false, profile(50, 35, 10));
+		writer.addProfile(100, 3, true, profile(30, -1, 0));
+		File file = new File(folder.getRoot(), "speeds.bin");
+		writer.write(file);
+
+		SpeedProfileFile profiles = SpeedProfileFile.open(file);
+		Assert.assertEquals(4, profiles.getEntriesCount());
+		Assert.assertEquals(3, profiles.getProfilesCount());
+		Assert.assertEquals(50, profiles.getSpeed(200, 4, true, 0) * 3.6f, DELTA);
+		Assert.assertEquals(10, profiles.getSpeed(200, 4, true, 35) * 3.6f, DELTA);
+		Assert.assertEquals(80, profiles.getSpeed(200, 5, true, 35) * 3.6f, DELTA);
+		Assert.assertEquals(10, profiles.getSpeed(200, 7, false, 35) * 3.6f, DELTA);
+		Assert.assertEquals(30, profiles.getSpeed(100, 3, true, 0) * 3.6f, DELTA);
+		// no profile before first segment, in other direction and for other roads
+		Assert.assertEquals(0, profiles.getSpeed(100, 2, true, 0), 0);
+		Assert.assertEquals(0, profiles.getSpeed(100, 3, false, 0), 0);
+		Assert.assertEquals(0, profiles.getSpeed(150, 0, true, 0), 0);
+		Assert.assertEquals(0, profiles.getSpeed(300, 0, true, 0), 0);
+	}
+
+	@Test
+	public void testArrivalBucket() {
+		Calendar cal = Calendar.getInstance();
+		cal.set(2026, Calendar.OCTOBER, 20, 8, 50, 0);
+		SpeedProfileCache cache = new SpeedProfileCache(new SpeedProfileProvider() {
+			@Override
+			public float getSpeed(long roadId, int segment, boolean positive, int bucket) {
+				return bucket;
+			}
+		}, cal.getTimeInMillis());
+		// Tuesday 08:45
+		int bucket = (24 + 8) * 4 + 3;
+		Assert.assertEquals(bucket, cache.getSpeed(1, 0, true, 0), 0);
+		Assert.assertEquals(bucket, cache.getSpeed(1, 0, true, 4 * 60), 0);
+		Assert.assertEquals(bucket + 1, cache.getSpeed(1, 0, true, 10 * 60), 0);
+		Assert.assertEquals(bucket + 4, cache.getSpeed(1, 0, true, 3600), 0);
+		// next week
+		Assert.assertEquals(bucket, cache.getSpeed(1, 0, true, 7 * 24 * 3600), 0);
+	}
+}
@@ -0,0 +1,158 @@
+package net.osmand.router;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingContext.RoutingSubregionTile;
+
+public class SpeedProfileRoutingTest {
+
+	// all roads are inside of one tile of routing context
+	private static final int X = 1 << 30;
+	private static final int Y = 1 << 30;
+
+	private static final long START = 1;
+	private static final long MAIN = 2;
+	private static final long DETOUR = 3;
+	private static final long END = 4;
+
+	// Monday 8:00 - 9:00 is peak of main road
+	private static final int PEAK_START = 8 * 60 / SpeedProfileProvider.BUCKET_MINUTES;
+	private static final int PEAK_END = 9 * 60 / SpeedProfileProvider.BUCKET_MINUTES;
+
+	private static final SpeedProfileProvider PROFILES = new SpeedProfileProvider() {
+		@Override
+		public float getSpeed(long roadId, int segment, boolean positive, int bucket) {
+			if (roadId == MAIN) {
+				return bucket >= PEAK_START && bucket < PEAK_END ? 1 : 10;
+			}
+			// detour is 25% longer than main road
+			return roadId == DETOUR ? 8 : 10;
+		}
+	};
+
+	private static RouteDataObject road(RouteRegion region, long id, int[] x, int[] y) {
+		RouteDataObject road = new RouteDataObject(region);
+		road.id = id;
+		road.types = new int[0];
+		road.pointsX = x;
+		road.pointsY = y;
+		return road;
+	}
+
+	private static long mondayTime(int hour) {
+		Calendar cal = Calendar.getInstance();
+		cal.set(2024, Calendar.JANUARY, 1, hour, 0, 0);
+		return cal.getTimeInMillis();
+	}
+
+	private static RoutingContext createContext(long departure, int planRoadDirection) {
+		RouteRegion region = new RouteRegion();
+		RouteDataObject start = road(region, START, new int[] { X, X + 1000 }, new int[] { Y, Y });
+		RouteDataObject main = road(region, MAIN, new int[] { X + 1000, X + 5000, X + 9000 }, new int[] { Y, Y, Y });
+		RouteDataObject detour = road(region, DETOUR, new int[] { X + 1000, X + 5000, X + 9000 },
+				new int[] { Y, Y + 3000, Y });
+		RouteDataObject end = road(region, END, new int[] { X + 9000, X + 10000 }, new int[] { Y, Y });
+
+		RoutingConfiguration config = new RoutingConfiguration();
+		config.memoryLimitation = 100 << 20;
+		config.planRoadDirection = planRoadDirection;
+		config.speedProfiles = PROFILES;
+		config.routeCalculationTime = departure;
+		RoutingContext ctx = new RoutingContext(config, null, new BinaryMapIndexReader[0],
+				RouteCalculationMode.NORMAL);
+		RoutingSubregionTile tile = new RoutingSubregionTile(new RouteSubregion(region));
+		tile.setLoadedNonNative();
+		tile.add(start);
+		tile.add(main);
+		tile.add(detour);
+		tile.add(end);
+		tile.publishLoaded();
+		int zoomShift = 31 - config.ZOOM_TO_LOAD_TILES;
+		long tileId = ((long) (X >> zoomShift) << config.ZOOM_TO_LOAD_TILES) + (Y >> zoomShift);
+		ctx.indexedSubregions.put(tileId, new ArrayList<RoutingSubregionTile>(Collections.singletonList(tile)));
+		return ctx;
+	}
+
+	private static RouteSegmentPoint point(RoutingContext ctx, int x31, int y31, long roadId) {
+		RouteSegment s = ctx.loadRouteSegment(x31, y31, 0);
+		while (s.getRoad().getId() != roadId) {
+			s = s.getNext();
+		}
+		return new RouteSegmentPoint(s.getRoad(), s.getSegmentStart(), 0);
+	}
+
+	private static FinalRouteSegment searchRoute(RoutingContext ctx) throws Exception {
+		RouteSegmentPoint startPoint = point(ctx, X + 1000, Y, START);
+		RouteSegmentPoint endPoint = point(ctx, X + 10000, Y, END);
+		ctx.initStartAndTargetPoints(startPoint, endPoint);
+		FinalRouteSegment finalSegment = new BinaryRoutePlanner().searchRouteInternal(ctx, startPoint, endPoint,
+				null);
+		Assert.assertNotNull(finalSegment);
+		return finalSegment;
+	}
+
+	private static Set<Long> calculateRoute(RoutingContext ctx) throws Exception {
+		FinalRouteSegment finalSegment = searchRoute(ctx);
+		Set<Long> roads = new HashSet<Long>();
+		for (RouteSegment s = finalSegment; s != null; s = s.getParentRoute()) {
+			roads.add(s.getRoad().getId());
+		}
+		for (RouteSegment s = finalSegment.opposite; s != null; s = s.getParentRoute()) {
+			roads.add(s.getRoad().getId());
+		}
+		return roads;
+	}
+
+	@Test
+	public void testRouteDependsOnDeparture() throws Exception {
+		// reverse and bidirectional searches are replaced by forward one
+		for (int planRoadDirection = -1; planRoadDirection <= 1; planRoadDirection++) {
+			Assert.assertEquals(1, createContext(0, planRoadDirection).getPlanRoadDirection());
+			Set<Long> offPeak = calculateRoute(createContext(mondayTime(3), planRoadDirection));
+			Assert.assertTrue(offPeak.contains(MAIN));
+			Assert.assertFalse(offPeak.contains(DETOUR));
+			Set<Long> peak = calculateRoute(createContext(mondayTime(8), planRoadDirection));
+			Assert.assertTrue(peak.contains(DETOUR));
+			Assert.assertFalse(peak.contains(MAIN));
+		}
+	}
+
+	@Test
+	public void testResultTimeUsesProfiles() throws Exception {
+		RoutingContext ctx = createContext(mondayTime(3), 0);
+		List<RouteSegmentResult> result = new RouteResultPreparation().prepareResult(ctx, searchRoute(ctx));
+		float distance = 0;
+		float time = 0;
+		for (RouteSegmentResult r : result) {
+			distance += r.getDistance();
+			time += r.getSegmentTime();
+		}
+		// all roads of the route have profile speed 10 m/s at night instead of default router speed
+		Assert.assertTrue(distance > 0);
+		Assert.assertEquals(distance / 10, time, distance / 1000);
+	}
+
+	@Test
+	public void testReusedContextDeparture() throws Exception {
+		RoutingContext ctx = createContext(mondayTime(3), 0);
+		Assert.assertTrue(calculateRoute(ctx).contains(MAIN));
+		ctx.setRouteCalculationTime(mondayTime(8));
+		Assert.assertTrue(calculateRoute(ctx).contains(DETOUR));
+	}
+}
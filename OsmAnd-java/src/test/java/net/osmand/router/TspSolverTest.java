@@ -0,0 +1,81 @@
+package net.osmand.router;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TspSolverTest {
+
+	// points on a line in shuffled order, point 0 is at the beginning
+	private static double[][] shuffledLine(int n, int[] position) {
+		Random rnd = new Random(7);
+		for (int i = 0; i < n; i++) {
+			position[i] = i;
+		}
+		for (int i = n - 1; i > 1; i--) {
+			int k = 1 + rnd.nextInt(i);
+			int t = position[i];
+			position[i] = position[k];
+			position[k] = t;
+		}
+		double[][] cost = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				cost[i][j] = Math.abs(position[i] - position[j]) * 10;
+			}
+		}
+		return cost;
+	}
+
+	@Test
+	public void testLine() {
+		int n = 60;
+		int[] position = new int[n];
+		TspSolver solver = new TspSolver(shuffledLine(n, position), false).setThreads(4).setTimeBudget(5000).setSeed(1);
+		int[] tour = solver.solve();
+		Assert.assertEquals(n, tour.length);
+		Assert.assertEquals(0, tour[0]);
+		for (int k = 0; k < n; k++) {
+			Assert.assertEquals(k, position[tour[k]]);
+		}
+		Assert.assertEquals((n - 1) * 10, solver.getBestTourCost(), 1e-6);
+	}
+
+	@Test
+	public void testKeepEndAndTimeWindows() {
+		int n = 8;
+		int[] position = new int[n];
+		double[][] cost = shuffledLine(n, position);
+		TspSolver solver = new TspSolver(cost, true).setThreads(1).setSeed(1);
+		int[] tour = solver.solve();
+		Assert.assertEquals(0, tour[0]);
+		Assert.assertEquals(n - 1, tour[n - 1]);
+
+		// the farthest point should be visited first
+		int far = 0;
+		for (int i = 1; i < n - 1; i++) {
+			if (position[i] > position[far]) {
+				far = i;
+			}
+		}
+		double[] start = new double[n];
+		double[] end = new double[n];
+		// points on the way are free without service time
+		double[] service = new double[n];
+		for (int i = 0; i < n; i++) {
+			end[i] = 100000;
+			service[i] = 1;
+		}
+		end[far] = cost[0][far];
+		solver = new TspSolver(cost, true).setThreads(2).setSeed(1).setTimeWindows(start, end, service);
+		tour = solver.solve();
+		Assert.assertEquals(far, tour[1]);
+		Assert.assertEquals(0, solver.getBestTourLateness(), 0);
+
+		// only earliest arrival times
+		solver = new TspSolver(cost, true).setThreads(1).setSeed(1).setTimeWindows(start, null, service);
+		Assert.assertEquals(n, solver.solve().length);
+		Assert.assertEquals(0, solver.getBestTourLateness(), 0);
+	}
+}
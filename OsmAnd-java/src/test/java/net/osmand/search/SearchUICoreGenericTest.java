@@ -97,6 +97,27 @@ public class SearchUICoreGenericTest {
 		Assert.assertSame(b2, cll.getCurrentSearchResults().get(2));
 	}
 
+	@Test
+	public void testTopResults() throws IOException {
+		SearchSettings ss = new SearchSettings((SearchSettings)null);
+		ss = ss.setOriginalLocation(new LatLon(0, 0));
+		SearchPhrase phrase = SearchPhrase.emptyPhrase(ss);
+		SearchResultCollection cll = new SearchUICore.SearchResultCollection(phrase, 3);
+		List<SearchResult> rs = new ArrayList<>();
+		SearchResult c5 = searchResult(rs, phrase, "c", 500);
+		searchResult(rs, phrase, "d", 400);
+		SearchResult a2 = searchResult(rs, phrase, "a", 120);
+		searchResult(rs, phrase, "e", 600);
+		SearchResult a1 = searchResult(rs, phrase, "a", 100);
+		SearchResult b2 = searchResult(rs, phrase, "b", 200);
+		cll.addSearchResults(rs, true, true);
+		Assert.assertEquals(3, cll.getCurrentSearchResults().size());
+		Assert.assertSame(a1, cll.getCurrentSearchResults().get(0));
+		Assert.assertSame(b2, cll.getCurrentSearchResults().get(1));
+		Assert.assertNotSame(a2, cll.getCurrentSearchResults().get(2));
+		Assert.assertSame(c5, cll.getCurrentSearchResults().get(2));
+	}
+
 	private SearchResult searchResult(List<SearchResult> rs, SearchPhrase phrase, String text, int dist) {
 		SearchResult res = new SearchResult(phrase);
 		res.localeName = text;
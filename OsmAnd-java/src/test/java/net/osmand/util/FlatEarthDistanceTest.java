@@ -0,0 +1,64 @@
+package net.osmand.util;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FlatEarthDistanceTest {
+
+	// max relative error for random pairs of points up to maxDist meters at latitudes within maxLat
+	private static double maxError(double maxDist, double maxLat) {
+		Random rnd = new Random(1);
+		double max = 0;
+		for (int i = 0; i < 100000; i++) {
+			double lat = (rnd.nextDouble() * 2 - 1) * maxLat;
+			double lon = (rnd.nextDouble() * 2 - 1) * 180;
+			double d = rnd.nextDouble() * maxDist;
+			double bearing = rnd.nextDouble() * 2 * Math.PI;
+			double lat2 = lat + d * Math.cos(bearing) / 111000;
+			double lon2 = lon + d * Math.sin(bearing) / (111000 * Math.cos(Math.toRadians(lat)));
+			double exact = MapUtils.getDistance(lat, lon, lat2, MapUtils.checkLongitude(lon2));
+			if (Math.abs(lat2) > maxLat || exact < 1) {
+				continue;
+			}
+			double flat = FlatEarthDistance.getDistance(lat, lon, lat2, MapUtils.checkLongitude(lon2));
+			max = Math.max(max, Math.abs(flat - exact) / exact);
+		}
+		return max;
+	}
+
+	@Test
+	public void testErrorBounds() {
+		Assert.assertTrue(maxError(10000, 70) < 0.00001);
+		Assert.assertTrue(maxError(100000, 70) < 0.0001);
+		Assert.assertTrue(maxError(10000, 85) < 0.0001);
+	}
+
+	@Test
+	public void testBatch() {
+		// line to the east with 100 m steps
+		int n = 11;
+		double[] lats = new double[n];
+		double[] lons = new double[n];
+		for (int i = 0; i < n; i++) {
+			lats[i] = 52;
+			lons[i] = 179.995 + i * 100 / FlatEarthDistance.getMetersPerDegreeLongitude(52);
+			if (lons[i] > 180) {
+				lons[i] -= 360;
+			}
+		}
+		Assert.assertEquals(1000, FlatEarthDistance.getPathLength(lats, lons, 0, n - 1), 1e-6);
+		double[] res = new double[n];
+		FlatEarthDistance.getCumulativeDistances(lats, lons, n, res);
+		Assert.assertEquals(500, res[5], 1e-6);
+		Assert.assertEquals(3, FlatEarthDistance.getNearestIndex(lats[3] + 0.0001, lons[3], lats, lons, n));
+
+		double lat = 52 + 50 / FlatEarthDistance.getMetersPerDegreeLatitude(52);
+		double[] proj = new double[2];
+		Assert.assertEquals(6, FlatEarthDistance.getNearestSegment(lat, (lons[6] + lons[7]) / 2, lats, lons, n, proj));
+		Assert.assertEquals(0.5, proj[0], 1e-3);
+		Assert.assertEquals(50, proj[1], 0.01);
+		Assert.assertEquals(0, FlatEarthDistance.getProjectionCoeff(lat, lons[0] - 1, lats[0], lons[0], lats[1], lons[1]), 0);
+	}
+}
@@ -0,0 +1,167 @@
+package net.osmand.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IndexedHeapTest {
+
+	@Test
+	public void testDecreaseKey() {
+		IndexedHeap<String> heap = new IndexedHeap<String>();
+		Assert.assertTrue(heap.add(1, 10, "a"));
+		Assert.assertTrue(heap.add(2, 5, "b"));
+		Assert.assertFalse(heap.add(1, 12, "a2"));
+		Assert.assertTrue(heap.add(1, 3, "a3"));
+		heap.add(4, "unkeyed");
+		heap.add(4, "unkeyed2");
+		Assert.assertEquals(4, heap.size());
+		Assert.assertEquals(3, heap.getPriority(1), 0);
+		Assert.assertEquals("a3", heap.poll());
+		Assert.assertFalse(heap.contains(1));
+		Assert.assertTrue(heap.poll().startsWith("unkeyed"));
+		Assert.assertTrue(heap.poll().startsWith("unkeyed"));
+		Assert.assertEquals("b", heap.poll());
+		Assert.assertTrue(heap.isEmpty());
+		Assert.assertNull(heap.poll());
+	}
+
+	@Test
+	public void testRandomOperations() {
+		Random rnd = new Random(3);
+		IndexedHeap<Long> heap = new IndexedHeap<Long>(4);
+		for (int round = 0; round < 3; round++) {
+			// reused after clear
+			heap.clear();
+			Map<Long, Double> expected = new HashMap<Long, Double>();
+			for (int i = 0; i < 20000; i++) {
+				if (rnd.nextInt(3) == 0 && !heap.isEmpty()) {
+					double min = heap.peekPriority();
+					long key = heap.poll();
+					Assert.assertEquals(expected.remove(key), min, 0);
+					for (double p : expected.values()) {
+						Assert.assertTrue(p >= min);
+					}
+				} else {
+					long key = rnd.nextInt(2000) * 1000003L;
+					double p = rnd.nextInt(100000);
+					Double old = expected.get(key);
+					Assert.assertEquals(old == null || p < old, heap.add(key, p, key));
+					if (old == null || p < old) {
+						expected.put(key, p);
+					}
+				}
+				Assert.assertEquals(expected.size(), heap.size());
+			}
+			double prev = Double.NEGATIVE_INFINITY;
+			while (!heap.isEmpty()) {
+				double p = heap.peekPriority();
+				Assert.assertTrue(p >= prev);
+				Assert.assertEquals(expected.remove(heap.poll()), p, 0);
+				prev = p;
+			}
+			Assert.assertTrue(expected.isEmpty());
+		}
+	}
+
+	// grid graph with random edge weights, every node is connected with 8 neighbours
+	private static final int GRID = 150;
+
+	private static double[][] createGrid() {
+		Random rnd = new Random(7);
+		double[][] weights = new double[GRID * GRID][8];
+		for (double[] w : weights) {
+			for (int k = 0; k < w.length; k++) {
+				w[k] = 1 + rnd.nextInt(100);
+			}
+		}
+		return weights;
+	}
+
+	private static final int[] DX = { -1, 0, 1, -1, 1, -1, 0, 1 };
+	private static final int[] DY = { -1, -1, -1, 0, 0, 1, 1, 1 };
+
+	private static int neighbour(int node, int k) {
+		int x = node % GRID + DX[k];
+		int y = node / GRID + DY[k];
+		return x < 0 || y < 0 || x >= GRID || y >= GRID ? -1 : y * GRID + x;
+	}
+
+	@Test
+	public void testQueueSizeComparedToPriorityQueue() {
+		double[][] weights = createGrid();
+		int n = GRID * GRID;
+
+		// previous search queue: duplicate entries are added and stale ones are skipped when polled
+		double[] pqDist = new double[n];
+		Arrays.fill(pqDist, Double.POSITIVE_INFINITY);
+		boolean[] settled = new boolean[n];
+		PriorityQueue<double[]> pq = new PriorityQueue<double[]>(50, new Comparator<double[]>() {
+			@Override
+			public int compare(double[] o1, double[] o2) {
+				return Double.compare(o1[1], o2[1]);
+			}
+		});
+		int pqAdded = 0, pqMax = 0, pqStale = 0;
+		pqDist[0] = 0;
+		pq.add(new double[] { 0, 0 });
+		pqAdded++;
+		while (!pq.isEmpty()) {
+			double[] e = pq.poll();
+			int node = (int) e[0];
+			if (settled[node]) {
+				pqStale++;
+				continue;
+			}
+			settled[node] = true;
+			for (int k = 0; k < 8; k++) {
+				int nb = neighbour(node, k);
+				if (nb >= 0 && !settled[nb] && e[1] + weights[node][k] < pqDist[nb]) {
+					pqDist[nb] = e[1] + weights[node][k];
+					pq.add(new double[] { nb, pqDist[nb] });
+					pqAdded++;
+				}
+			}
+			pqMax = Math.max(pqMax, pq.size());
+		}
+
+		double[] dist = new double[n];
+		Arrays.fill(dist, Double.POSITIVE_INFINITY);
+		Arrays.fill(settled, false);
+		IndexedHeap<Integer> heap = new IndexedHeap<Integer>();
+		int heapAdded = 0, heapMax = 0;
+		dist[0] = 0;
+		heap.add(0, 0, 0);
+		heapAdded++;
+		while (!heap.isEmpty()) {
+			double d = heap.peekPriority();
+			int node = heap.poll();
+			Assert.assertFalse(settled[node]);
+			settled[node] = true;
+			for (int k = 0; k < 8; k++) {
+				int nb = neighbour(node, k);
+				if (nb >= 0 && !settled[nb] && d + weights[node][k] < dist[nb]) {
+					dist[nb] = d + weights[node][k];
+					Assert.assertTrue(heap.add(nb, dist[nb], nb));
+					heapAdded++;
+				}
+			}
+			heapMax = Math.max(heapMax, heap.size());
+		}
+		System.out.println(String.format("Queue entries: PriorityQueue max %d, added %d, stale %d; IndexedHeap max %d, updates %d",
+				pqMax, pqAdded, pqStale, heapMax, heapAdded));
+
+		Assert.assertTrue(Arrays.equals(pqDist, dist));
+		// order of equal priorities differs, so only stale entries are compared with settled nodes
+		Assert.assertEquals(n, pqAdded - pqStale);
+		Assert.assertTrue(pqStale > 0);
+		// every update of queued node adds entry to PriorityQueue
+		Assert.assertTrue(heapMax < pqMax);
+	}
+}
@@ -0,0 +1,43 @@
+package net.osmand.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gnu.trove.list.array.TIntArrayList;
+
+public class PolylineLevelsTest {
+
+	private static final int STEP = 1 << 16;
+
+	// straight line along x with a spike of given height in the middle
+	private static PolylineLevels buildSpike(int n, int spike) {
+		int[] x = new int[n];
+		int[] y = new int[n];
+		for (int i = 0; i < n; i++) {
+			x[i] = (1 << 30) + i * STEP;
+			y[i] = (1 << 30) + (i == n / 2 ? spike : 0);
+		}
+		return new PolylineLevels(x, y);
+	}
+
+	private static int[] getKept(PolylineLevels levels, double tolerance31) {
+		TIntArrayList points = new TIntArrayList();
+		for (int i = 0; i < levels.getPointsCount(); i++) {
+			if (levels.isKept(i, tolerance31)) {
+				points.add(i);
+			}
+		}
+		return points.toArray();
+	}
+
+	@Test
+	public void testTolerance() {
+		int n = 101;
+		PolylineLevels levels = buildSpike(n, 1 << 13);
+		Assert.assertArrayEquals(new int[] { 0, n - 1 }, getKept(levels, 1 << 13));
+		// neighbours of the spike are as far from the line between end points
+		Assert.assertArrayEquals(new int[] { 0, n / 2 - 1, n / 2, n / 2 + 1, n - 1 }, getKept(levels, 1 << 12));
+		// points on straight line are not kept with any tolerance
+		Assert.assertArrayEquals(new int[] { 0, n / 2 - 1, n / 2, n / 2 + 1, n - 1 }, getKept(levels, 1));
+	}
+}
@@ -109,6 +109,7 @@ public class AppInitializer implements IProgress {
 
 	private static final String VECTOR_INDEXES_CHECK = "VECTOR_INDEXES_CHECK"; //$NON-NLS-1$
 	private static final String EXCEPTION_FILE_SIZE = "EXCEPTION_FS"; //$NON-NLS-1$
+	private static final String POI_TYPES_SNAPSHOT = "poi_types.snapshot";
 
 	public static final String LATEST_CHANGES_URL = "https://osmand.net/blog/osmand-3-9-released";
 //	public static final String LATEST_CHANGES_URL = null; // not enough to read
@@ -310,6 +311,7 @@ public class AppInitializer implements IProgress {
 
 	private void initPoiTypes() {
 		app.poiTypes.setForbiddenTypes(app.osmandSettings.getForbiddenTypes());
+		app.poiTypes.setSnapshotFile(new File(app.getCacheDir(), POI_TYPES_SNAPSHOT));
 		if (app.getAppPath(IndexConstants.SETTINGS_DIR + "poi_types.xml").exists()) {
 			app.poiTypes.init(app.getAppPath(IndexConstants.SETTINGS_DIR + "poi_types.xml").getAbsolutePath());
 		} else {
@@ -6,8 +6,7 @@ import android.os.AsyncTask;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import net.osmand.GPXUtilities;
-import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXTrackCache;
 import net.osmand.GPXUtilities.GPXTrackAnalysis;
 import net.osmand.plus.GPXDatabase.GpxDataItem;
 import net.osmand.plus.api.SQLiteAPI.SQLiteConnection;
@@ -23,9 +22,12 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 public class GpxDbHelper {
 
 	private static final int MAX_ITEMS_CACHE_SIZE = 5000;
+	private static final String TRACKS_CACHE_DIR = "tracks_cache";
+	private static final long MAX_TRACKS_CACHE_SIZE = 200 << 20;
 
 	private OsmandApplication app;
 	private GPXDatabase db;
+	private GPXTrackCache tracksCache;
 	private Map<File, GpxDataItem> itemsCache = new ConcurrentHashMap<>();
 
 	private ConcurrentLinkedQueue<File> readingItems = new ConcurrentLinkedQueue<>();
@@ -43,6 +45,14 @@ public class GpxDbHelper {
 	GpxDbHelper(OsmandApplication app) {
 		this.app = app;
 		db = new GPXDatabase(app);
+		tracksCache = new GPXTrackCache(new File(app.getCacheDir(), TRACKS_CACHE_DIR));
+	}
+
+	/**
+	 * Binary cache of tracks to open big gpx files without parsing
+	 */
+	public GPXTrackCache getTracksCache() {
+		return tracksCache;
 	}
 
 	void loadGpxItems() {
@@ -50,6 +60,7 @@ public class GpxDbHelper {
 		for (GpxDataItem item : items) {
 			putToCache(item);
 		}
+		tracksCache.prune(MAX_TRACKS_CACHE_SIZE);
 	}
 
 	private void updateItemsCacheSize() {
@@ -69,6 +80,7 @@ public class GpxDbHelper {
 
 	public boolean rename(File currentFile, File newFile) {
 		GpxDataItem item = itemsCache.get(currentFile);
+		tracksCache.remove(currentFile);
 		return db.rename(item, currentFile, newFile);
 	}
 
@@ -129,12 +141,14 @@ public class GpxDbHelper {
 	public boolean remove(File file) {
 		boolean res = db.remove(file);
 		itemsCache.remove(file);
+		tracksCache.remove(file);
 		return res;
 	}
 
 	public boolean remove(GpxDataItem item) {
 		boolean res = db.remove(item);
 		itemsCache.remove(item.getFile());
+		tracksCache.remove(item.getFile());
 		return res;
 	}
 
@@ -242,8 +256,7 @@ public class GpxDbHelper {
 							item = db.getItem(gpxFile, conn);
 						}
 						if (isAnalyseNeeded(gpxFile, item)) {
-							GPXFile f = GPXUtilities.loadGPXFile(gpxFile);
-							GPXTrackAnalysis analysis = f.getAnalysis(gpxFile.lastModified());
+							GPXTrackAnalysis analysis = tracksCache.getAnalysis(gpxFile);
 							if (item == null || item.getFile() == null) {
 								item = new GpxDataItem(gpxFile, analysis);
 								db.insert(item, conn);
@@ -23,13 +23,13 @@ import android.widget.TextView;
 import androidx.appcompat.app.AlertDialog;
 
 import net.osmand.Location;
-import net.osmand.TspAnt;
 import net.osmand.data.LatLon;
 import net.osmand.plus.OsmAndFormatter;
 import net.osmand.plus.OsmandApplication;
 import net.osmand.plus.R;
 import net.osmand.plus.TargetPointsHelper;
 import net.osmand.plus.TargetPointsHelper.TargetPoint;
+import net.osmand.router.TspSolver;
 import net.osmand.util.MapUtils;
 
 import java.util.ArrayList;
@@ -163,7 +163,15 @@ public class IntermediatePointsDialog {
 								for(TargetPoint p : lt){
 									al.add(p.point);
 								}
-								return new TspAnt().readGraph(al, start.point, end.point).solve();
+								try {
+									int[] order = app.getRoutingHelper().optimizeIntermediates(start.point, end.point, al);
+									if (order != null) {
+										return order;
+									}
+								} catch (Exception e) {
+									// straight line distances are used
+								}
+								return TspSolver.readGraph(al, start.point, end.point).solve();
 							};
 
 							protected void onPostExecute(int[] result) {
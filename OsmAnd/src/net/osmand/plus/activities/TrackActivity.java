@@ -20,7 +20,6 @@ import androidx.fragment.app.Fragment;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 
 import net.osmand.AndroidUtils;
-import net.osmand.GPXUtilities;
 import net.osmand.GPXUtilities.GPXFile;
 import net.osmand.GPXUtilities.WptPt;
 import net.osmand.IndexConstants;
@@ -429,7 +428,7 @@ public class TrackActivity extends TabActivity {
 				if (selectedGpxFile != null && selectedGpxFile.getGpxFile() != null && selectedGpxFile.getGpxFile().modifiedTime == file.lastModified()) {
 					result = selectedGpxFile.getGpxFile();
 				} else {
-					result = GPXUtilities.loadGPXFile(file);
+					result = app.getGpxDbHelper().getTracksCache().loadGPXFile(file);
 				}
 			}
 			if (result != null) {
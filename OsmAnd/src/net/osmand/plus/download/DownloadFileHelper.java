@@ -4,6 +4,7 @@ import net.osmand.IProgress;
 import net.osmand.IndexConstants;
 import net.osmand.PlatformUtil;
 import net.osmand.osm.io.NetworkUtils;
+import net.osmand.osm.io.ParallelDownloader;
 import net.osmand.plus.OsmandApplication;
 import net.osmand.plus.R;
 import net.osmand.plus.Version;
@@ -30,8 +31,12 @@ public class DownloadFileHelper {
 	private static final int BUFFER_SIZE = 32256;
 	protected static final int TRIES_TO_DOWNLOAD = 15;
 	protected static final long TIMEOUT_BETWEEN_DOWNLOADS = 8000;
+	// smaller files are downloaded by one connection
+	protected static final double PARALLEL_DOWNLOAD_MIN_MB = 16;
+	protected static final int PARALLEL_DOWNLOAD_THREADS = 4;
 	private final OsmandApplication ctx;
 	private boolean interruptDownloading = false;
+	private ParallelDownloader parallelDownloader;
 	
 	
 	public DownloadFileHelper(OsmandApplication ctx){
@@ -199,6 +204,35 @@ public class DownloadFileHelper {
 	public boolean isWifiConnected(){
 		return ctx.getSettings().isWifiConnected();
 	}
+
+	/**
+	 * @return stream of file downloaded by ranges (continued if it was interrupted) or null if server doesn't support ranges
+	 */
+	private InputStream getParallelInputStream(URL url, File targetFile, final boolean forceWifi) {
+		ParallelDownloader downloader = new ParallelDownloader(url, targetFile) {
+			@Override
+			protected boolean isConnectionAllowed() {
+				return !forceWifi || isWifiConnected();
+			}
+		};
+		downloader.setThreads(PARALLEL_DOWNLOAD_THREADS).setUserAgent(Version.getFullVersion(ctx))
+				.setTries(TRIES_TO_DOWNLOAD / 3, TIMEOUT_BETWEEN_DOWNLOADS);
+		try {
+			if (!downloader.prepare()) {
+				return null;
+			}
+			synchronized (this) {
+				parallelDownloader = downloader;
+				if (interruptDownloading) {
+					downloader.cancel();
+				}
+			}
+			return downloader.start();
+		} catch (IOException e) {
+			log.warn("Download by ranges is not started: " + e.getMessage()); //$NON-NLS-1$
+			return null;
+		}
+	}
 	
 	public boolean downloadFile(IndexItem.DownloadEntry de, IProgress progress, 
 			List<File> toReIndex, DownloadFileShowWarning showWarningCallback, boolean forceWifi) throws InterruptedException {
@@ -206,12 +240,27 @@ public class DownloadFileHelper {
 			final List<InputStream> downloadInputStreams = new ArrayList<InputStream>();
 			URL url = new URL(de.urlToDownload); //$NON-NLS-1$
 			log.info("Url downloading " + de.urlToDownload);
-			downloadInputStreams.add(getInputStreamToDownload(url, forceWifi));
+			InputStream is = null;
+			if (de.sizeMB >= PARALLEL_DOWNLOAD_MIN_MB) {
+				is = getParallelInputStream(url, de.targetFile, forceWifi);
+			}
+			if (is == null) {
+				is = getInputStreamToDownload(url, forceWifi);
+			}
+			downloadInputStreams.add(is);
 			de.fileToDownload = de.targetFile;
 			if(!de.unzipFolder) {
 				de.fileToDownload = new File(de.targetFile.getParentFile(), de.targetFile.getName() +".download");
 			}
-			unzipFile(de, progress, downloadInputStreams);
+			try {
+				unzipFile(de, progress, downloadInputStreams);
+			} finally {
+				// keeps downloaded chunks if stream is not fully read
+				is.close();
+				synchronized (this) {
+					parallelDownloader = null;
+				}
+			}
 			if(!de.targetFile.getAbsolutePath().equals(de.fileToDownload.getAbsolutePath())){
 				boolean successfull = Algorithms.removeAllFiles(de.targetFile);
 				if (successfull) {
@@ -334,8 +383,11 @@ public class DownloadFileHelper {
 	}
 	
 	
-	public void setInterruptDownloading(boolean interruptDownloading) {
+	public synchronized void setInterruptDownloading(boolean interruptDownloading) {
 		this.interruptDownloading = interruptDownloading;
+		if (interruptDownloading && parallelDownloader != null) {
+			parallelDownloader.cancel();
+		}
 	}
 	
 	public boolean isInterruptDownloading() {
@@ -14,7 +14,6 @@ import androidx.annotation.Nullable;
 
 import net.osmand.AndroidUtils;
 import net.osmand.Location;
-import net.osmand.TspAnt;
 import net.osmand.data.FavouritePoint;
 import net.osmand.data.LatLon;
 import net.osmand.data.LocationPoint;
@@ -35,6 +34,7 @@ import net.osmand.plus.helpers.WaypointHelper.LocationPointWrapper;
 import net.osmand.plus.routepreparationmenu.AddPointBottomSheetDialog;
 import net.osmand.plus.routepreparationmenu.MapRouteInfoMenu;
 import net.osmand.plus.views.controls.StableArrayAdapter;
+import net.osmand.router.TspSolver;
 import net.osmand.util.Algorithms;
 import net.osmand.util.MapUtils;
 
@@ -398,7 +398,8 @@ public class WaypointDialogHelper {
 					al.add(p.point);
 				}
 				try {
-					return new TspAnt().readGraph(al, start.point, end.point).solve();
+					int[] order = app.getRoutingHelper().optimizeIntermediates(start.point, end.point, al);
+					return order != null ? order : TspSolver.readGraph(al, start.point, end.point).solve();
 				} catch (Exception e) {
 					return null;
 				}
@@ -35,7 +35,6 @@ import net.osmand.AndroidUtils;
 import net.osmand.GPXUtilities.TrkSegment;
 import net.osmand.GPXUtilities.WptPt;
 import net.osmand.Location;
-import net.osmand.TspAnt;
 import net.osmand.data.LatLon;
 import net.osmand.data.PointDescription;
 import net.osmand.data.RotatedTileBox;
@@ -60,6 +59,7 @@ import net.osmand.plus.views.OsmandMapTileView;
 import net.osmand.plus.views.layers.MapMarkersLayer;
 import net.osmand.plus.views.mapwidgets.MapInfoWidgetsFactory;
 import net.osmand.plus.views.mapwidgets.MapInfoWidgetsFactory.TopToolbarController;
+import net.osmand.router.TspSolver;
 import net.osmand.util.MapUtils;
 
 import java.util.ArrayList;
@@ -911,7 +911,7 @@ public class PlanRouteFragment extends BaseOsmAndFragment implements OsmAndLocat
 
 				LatLon start = startFromLoc ? new LatLon(myLoc.getLatitude(), myLoc.getLongitude()) : selectedLatLon.remove(0);
 
-				int[] sequence = new TspAnt().readGraph(selectedLatLon, start, null).solve();
+				int[] sequence = TspSolver.readGraph(selectedLatLon, start, null).solve();
 
 				List<MapMarker> res = new ArrayList<>();
 				for (int i = 0; i < sequence.length; i++) {
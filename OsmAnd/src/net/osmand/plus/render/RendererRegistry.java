@@ -14,6 +14,7 @@ import net.osmand.render.RenderingRuleProperty;
 import net.osmand.render.RenderingRulesStorage;
 import net.osmand.render.RenderingRulesStorage.RenderingRulesStorageResolver;
 import net.osmand.util.Algorithms;
+import net.osmand.util.XmlSnapshot;
 
 import org.apache.commons.logging.Log;
 import org.xmlpull.v1.XmlPullParser;
@@ -134,58 +135,61 @@ public class RendererRegistry {
 //			log.info("INIT rendering from class");
 //			return rrs;
 //		}
-		InputStream is = getInputStream(name);
-		if(is == null) {
-			return null;
+		File snapshotFile = getSnapshotFile(name);
+		File styleFile = getStyleFile(resolveStyleName(name));
+		XmlSnapshot snapshot;
+		if (styleFile != null) {
+			// style xml isn't read while snapshot is current
+			snapshot = XmlSnapshot.load(styleFile, snapshotFile);
+		} else {
+			InputStream is = getInputStream(name);
+			if (is == null) {
+				return null;
+			}
+			try {
+				snapshot = XmlSnapshot.load(is, snapshotFile);
+			} finally {
+				is.close();
+			}
 		}
-		try {
-			XmlPullParser parser = PlatformUtil.newXMLPullParser();
-			parser.setInput(is, "UTF-8");
-			int tok;
-			while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT) {
-				if (tok == XmlPullParser.START_TAG) {
-					String tagName = parser.getName();
-					if (tagName.equals("renderingConstant")) {
-						if (!renderingConstants.containsKey(parser.getAttributeValue("", "name"))) {
-							renderingConstants.put(parser.getAttributeValue("", "name"), 
-									parser.getAttributeValue("", "value"));
-						}
+		XmlPullParser parser = snapshot.newParser();
+		int tok;
+		while ((tok = parser.next()) != XmlPullParser.END_DOCUMENT) {
+			if (tok == XmlPullParser.START_TAG) {
+				String tagName = parser.getName();
+				if (tagName.equals("renderingConstant")) {
+					if (!renderingConstants.containsKey(parser.getAttributeValue("", "name"))) {
+						renderingConstants.put(parser.getAttributeValue("", "name"), 
+								parser.getAttributeValue("", "value"));
 					}
 				}
 			}
-		} finally {
-			is.close();
 		}
 
 		// parse content
-		is = getInputStream(name);
 		final RenderingRulesStorage main = new RenderingRulesStorage(name, renderingConstants);
 		
 		loadedRenderers.put(name, main);
-		try {
-			main.parseRulesFromXmlInputStream(is, new RenderingRulesStorageResolver() {
+		main.parseRulesFromXmlParser(snapshot.newParser(), new RenderingRulesStorageResolver() {
 
-				@Override
-				public RenderingRulesStorage resolve(String name, RenderingRulesStorageResolver ref) throws XmlPullParserException {
-					// reload every time to propogate rendering constants
-					if (loadedRenderers.containsKey(name)) {
-						log.warn("Circular dependencies found " + name); //$NON-NLS-1$
-					}
-					RenderingRulesStorage dep = null;
-					try {
-						dep = loadRenderer(name, loadedRenderers, renderingConstants);
-					} catch (IOException e) {
-						log.warn("Dependent renderer not found : " + e.getMessage(), e); //$NON-NLS-1$
-					}
-					if (dep == null) {
-						log.warn("Dependent renderer not found : " + name); //$NON-NLS-1$
-					}
-					return dep;
+			@Override
+			public RenderingRulesStorage resolve(String name, RenderingRulesStorageResolver ref) throws XmlPullParserException {
+				// reload every time to propogate rendering constants
+				if (loadedRenderers.containsKey(name)) {
+					log.warn("Circular dependencies found " + name); //$NON-NLS-1$
 				}
-			});
-		} finally {
-			is.close();
-		}
+				RenderingRulesStorage dep = null;
+				try {
+					dep = loadRenderer(name, loadedRenderers, renderingConstants);
+				} catch (IOException e) {
+					log.warn("Dependent renderer not found : " + e.getMessage(), e); //$NON-NLS-1$
+				}
+				if (dep == null) {
+					log.warn("Dependent renderer not found : " + name); //$NON-NLS-1$
+				}
+				return dep;
+			}
+		});
 
         if (rendererLoadedEventListener != null)
             rendererLoadedEventListener.onRendererLoaded(name, main, getInputStream(name));
@@ -193,27 +197,44 @@ public class RendererRegistry {
 		return main;
 	}
 
-	public InputStream getInputStream(String name) throws FileNotFoundException {
-		InputStream is;
-		if("default".equalsIgnoreCase(name)) {
+	private String resolveStyleName(String name) {
+		if ("default".equalsIgnoreCase(name)) {
 			name = DEFAULT_RENDER;
-		} 
-		if(externalRenderers.containsKey(name)){
-			is = new FileInputStream(externalRenderers.get(name));
-		} else {
-			if (getInternalRender(name) == null) {
-				log.error("Rendering style not found: " + name);
-				name = DEFAULT_RENDER;
-			}
-			File fl = getFileForInternalStyle(name);
-			if (fl.exists()) {
-				is = new FileInputStream(fl);
-			} else {
-				copyFileForInternalStyle(name);
-				is = RenderingRulesStorage.class.getResourceAsStream(getInternalRender(name));
-			}
 		}
-		return is;
+		if (!externalRenderers.containsKey(name) && getInternalRender(name) == null) {
+			log.error("Rendering style not found: " + name);
+			name = DEFAULT_RENDER;
+		}
+		return name;
+	}
+
+	/**
+	 * Returns file of resolved style, internal style is copied to renderers folder if it is missing there.
+	 * Null means that file couldn't be written and style should be read from resources.
+	 */
+	@Nullable
+	private File getStyleFile(String resolvedName) {
+		if (externalRenderers.containsKey(resolvedName)) {
+			return externalRenderers.get(resolvedName);
+		}
+		File fl = getFileForInternalStyle(resolvedName);
+		if (!fl.exists()) {
+			copyFileForInternalStyle(resolvedName);
+		}
+		return fl.exists() ? fl : null;
+	}
+
+	private File getSnapshotFile(String name) {
+		return new File(app.getCacheDir(), "rendering_" + name.replaceAll("[^\\w.-]", "_") + ".snapshot");
+	}
+
+	public InputStream getInputStream(String name) throws FileNotFoundException {
+		name = resolveStyleName(name);
+		File fl = getStyleFile(name);
+		if (fl != null) {
+			return new FileInputStream(fl);
+		}
+		return RenderingRulesStorage.class.getResourceAsStream(getInternalRender(name));
 	}
 
 	public void copyFileForInternalStyle(String name) {
@@ -33,11 +33,13 @@ public class AmenityIndexRepositoryBinary implements AmenityIndexRepository {
 
 	private final static Log log = PlatformUtil.getLog(AmenityIndexRepositoryBinary.class);
 	private BinaryMapReaderResource resource;
+	private OsmandApplication app;
 	private MapPoiTypes poiTypes;
 	private Map<String, List<String>> deltaPoiCategories = new HashMap<>();
 
 	public AmenityIndexRepositoryBinary(BinaryMapReaderResource resource, OsmandApplication app) {
 		this.resource = resource;
+		this.app = app;
 		poiTypes = app.getPoiTypes();
 		checkCachedCategories(app.getPoiFilters());
 	}
@@ -163,12 +165,16 @@ public class AmenityIndexRepositoryBinary implements AmenityIndexRepository {
 	public synchronized List<Amenity> searchAmenities(int stop, int sleft, int sbottom, int sright, int zoom,
 													  final SearchPoiTypeFilter filter, ResultMatcher<Amenity> matcher) {
 		long now = System.currentTimeMillis();
-		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(sleft, sright, stop, sbottom, zoom,
-				filter, matcher);
 		List<Amenity> result = null;
 		try {
 			BinaryMapIndexReader reader = getOpenFile();
-			if (reader != null) {
+			if (reader != null && zoom < 0) {
+				// growing search radius reads boxes of smaller radius from cache
+				result = app.getResourceManager().getPoiQueryService().searchPoi(reader, sleft, sright, stop, sbottom,
+						filter, matcher);
+			} else if (reader != null) {
+				SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(sleft, sright, stop, sbottom,
+						zoom, filter, matcher);
 				result = reader.searchPoi(req);
 			}
 		} catch (IOException e) {
@@ -7,6 +7,7 @@ import net.osmand.PlatformUtil;
 import net.osmand.binary.BinaryMapIndexReader;
 import net.osmand.osm.io.NetworkUtils;
 import net.osmand.plus.R;
+import net.osmand.router.LiveUpdatesRouteIndex;
 import net.osmand.util.Algorithms;
 
 import org.apache.commons.logging.Log;
@@ -33,6 +34,7 @@ public class IncrementalChangesManager {
 	private static final org.apache.commons.logging.Log log = PlatformUtil.getLog(IncrementalChangesManager.class);
 	private ResourceManager resourceManager;
 	private final Map<String, RegionUpdateFiles> regions = new ConcurrentHashMap<String, IncrementalChangesManager.RegionUpdateFiles>();
+	private final Map<String, LiveUpdatesRouteIndex> liveRouteIndexes = new ConcurrentHashMap<String, LiveUpdatesRouteIndex>();
 	
 	
 	public IncrementalChangesManager(ResourceManager resourceManager) {
@@ -84,6 +86,7 @@ public class IncrementalChangesManager {
 				if (ru.obfCreated <= dateCreated) {
 					log.info("Delete overlapping month update " + ru.file.getName());
 					resourceManager.closeFile(ru.file.getName());
+					removeLiveRouteDiff(nm, ru.file);
 					regionUpdateFiles.monthUpdates.remove(month);
 					ru.file.delete();
 					log.info("Delete overlapping month update " + ru.file.getName());
@@ -105,6 +108,7 @@ public class IncrementalChangesManager {
 							(monthRu != null && ru.obfCreated < monthRu.obfCreated)) {
 						log.info("Delete overlapping day update " + ru.file.getName());
 						resourceManager.closeFile(ru.file.getName());
+						removeLiveRouteDiff(nm, ru.file);
 						it.remove();
 						ru.file.delete();
 						log.info("Delete overlapping day update " + ru.file.getName());
@@ -130,6 +134,42 @@ public class IncrementalChangesManager {
 		return regionUpdateFiles.addUpdate(date, f, dateCreated);
 	}
 	
+	/**
+	 * Merges route data of the diff into compacted live updates index of its region.
+	 */
+	public void indexRouteData(File f, long dateCreated, BinaryMapIndexReader mapReader) {
+		String index = Algorithms.getFileNameWithoutExtension(f).toLowerCase();
+		if (index.length() <= 9 || index.charAt(index.length() - 9) != '_') {
+			return;
+		}
+		String nm = index.substring(0, index.length() - 9);
+		LiveUpdatesRouteIndex routeIndex;
+		synchronized (this) {
+			routeIndex = liveRouteIndexes.get(nm);
+			if (routeIndex == null) {
+				routeIndex = new LiveUpdatesRouteIndex(nm);
+				liveRouteIndexes.put(nm, routeIndex);
+			}
+		}
+		try {
+			routeIndex.applyDiff(mapReader, dateCreated);
+		} catch (IOException e) {
+			log.error("Error merging live updates " + f.getName(), e);
+			routeIndex.removeDiff(f.getName());
+		}
+	}
+
+	private void removeLiveRouteDiff(String nm, File f) {
+		LiveUpdatesRouteIndex routeIndex = liveRouteIndexes.get(nm);
+		if (routeIndex != null) {
+			routeIndex.removeDiff(f.getName());
+		}
+	}
+
+	public List<LiveUpdatesRouteIndex> getLiveRouteIndexes() {
+		return new ArrayList<LiveUpdatesRouteIndex>(liveRouteIndexes.values());
+	}
+
 	protected static String formatSize(long vl) {
 		return (vl * 1000 / (1 << 20l)) / 1000.0f + "";
 	}
@@ -22,6 +22,7 @@ import net.osmand.ResultMatcher;
 import net.osmand.binary.BinaryMapIndexReader;
 import net.osmand.binary.BinaryMapIndexReader.SearchPoiTypeFilter;
 import net.osmand.binary.CachedOsmandIndexes;
+import net.osmand.binary.PoiQueryService;
 import net.osmand.data.Amenity;
 import net.osmand.data.RotatedTileBox;
 import net.osmand.data.TransportRoute;
@@ -88,6 +89,8 @@ public class ResourceManager {
 
 	public static final String VECTOR_MAP = "#vector_map"; //$NON-NLS-1$
 	private static final String INDEXES_CACHE = "ind.cache";
+	private static final int MAX_INDEXING_THREADS = 4;
+	private static final long POI_CACHE_SIZE = 8 << 20;
 	public static final String DEFAULT_WIKIVOYAGE_TRAVEL_OBF = "Default_wikivoyage.travel.obf";
 
 	private static final Log log = PlatformUtil.getLog(ResourceManager.class);
@@ -216,6 +219,9 @@ public class ResourceManager {
 	
 	
 	protected final IncrementalChangesManager changesManager = new IncrementalChangesManager(this);
+
+	// decoded poi boxes of amenity repositories
+	protected final PoiQueryService poiQueryService = new PoiQueryService(POI_CACHE_SIZE);
 	
 	protected final MapRenderRepositories renderer;
 
@@ -690,17 +696,16 @@ public class ResourceManager {
 		}
 
 		java.text.DateFormat dateFormat = getDateFormat();
-		for (File f : files) {
+		// file headers are read in parallel, resources are initialized in the files order
+		int threads = Math.min(Runtime.getRuntime().availableProcessors(), MAX_INDEXING_THREADS);
+		List<BinaryMapIndexReader> mapReaders = cachedOsmandIndexes.getReaders(files, filesToReindex, threads);
+		for (int i = 0; i < files.size(); i++) {
+			File f = files.get(i);
 			progress.startTask(context.getString(R.string.indexing_map) + " " + f.getName(), -1); //$NON-NLS-1$
 			try {
-				BinaryMapIndexReader mapReader = null;
-				try {
-					mapReader = cachedOsmandIndexes.getReader(f, !filesToReindex.contains(f));
-					if (mapReader.getVersion() != IndexConstants.BINARY_MAP_VERSION) {
-						mapReader = null;
-					}
-				} catch (IOException e) {
-					log.error(String.format("File %s could not be read", f.getName()), e);
+				BinaryMapIndexReader mapReader = mapReaders.get(i);
+				if (mapReader != null && mapReader.getVersion() != IndexConstants.BINARY_MAP_VERSION) {
+					mapReader = null;
 				}
 				boolean wikiMap = (f.getName().contains("_wiki") || f.getName().contains(IndexConstants.BINARY_WIKI_MAP_INDEX_EXT));
 				boolean srtmMap = f.getName().contains(IndexConstants.BINARY_SRTM_MAP_INDEX_EXT);
@@ -749,6 +754,9 @@ public class ResourceManager {
 					if (mapReader.containsRouteData() && (!f.getParentFile().equals(liveDir) || 
 							context.getSettings().USE_OSM_LIVE_FOR_ROUTING.get())) {
 						resource.setUseForRouting(true);
+						if (f.getParentFile().equals(liveDir)) {
+							changesManager.indexRouteData(f, dateCreated, mapReader);
+						}
 					}
 					if (mapReader.hasTransportData() && (!f.getParentFile().equals(liveDir) ||
 							context.getSettings().USE_OSM_LIVE_FOR_PUBLIC_TRANSPORT.get())) {
@@ -1130,6 +1138,7 @@ public class ResourceManager {
 		travelRepositories.clear();
 		addressMap.clear();
 		amenityRepositories.clear();
+		poiQueryService.clearCache();
 		for(BinaryMapReaderResource res : fileReaders.values()) {
 			res.close();
 		}
@@ -1232,6 +1241,7 @@ public class ResourceManager {
 		for (RegionAddressRepository r : addressMap.values()) {
 			r.clearCache();
 		}
+		poiQueryService.clearCache();
 		renderer.clearCache();
 		
 		System.gc();
@@ -1255,4 +1265,8 @@ public class ResourceManager {
 	public IncrementalChangesManager getChangesManager() {
 		return changesManager;
 	}
+
+	public PoiQueryService getPoiQueryService() {
+		return poiQueryService;
+	}
 }
@@ -17,6 +17,7 @@ import net.osmand.plus.R;
 import net.osmand.plus.routing.AlarmInfo.AlarmInfoType;
 import net.osmand.plus.settings.backend.ApplicationMode;
 import net.osmand.router.ExitInfo;
+import net.osmand.router.RouteGeometryIndex;
 import net.osmand.router.RouteSegmentResult;
 import net.osmand.router.RoutingContext;
 import net.osmand.router.TurnType;
@@ -59,6 +60,8 @@ public class RouteCalculationResult {
 	protected int cacheCurrentTextDirectionInfo = -1;
 	protected List<RouteDirectionInfo> cacheAgreggatedDirections;
 	protected List<LocationPoint> locationPoints = new ArrayList<LocationPoint>();
+	private RouteGeometryIndex geometryIndex;
+	private List<RouteCalculationResult> alternativeRoutes = Collections.emptyList();
 
 	// params
 	protected final ApplicationMode appMode;
@@ -195,6 +198,17 @@ public class RouteCalculationResult {
 		return alarmInfo;
 	}
 
+	/**
+	 * @return alternative routes found by the same search (routing config alternativeRoutes > 0), cheapest first
+	 */
+	public List<RouteCalculationResult> getAlternativeRoutes() {
+		return alternativeRoutes;
+	}
+
+	void setAlternativeRoutes(List<RouteCalculationResult> alternativeRoutes) {
+		this.alternativeRoutes = alternativeRoutes;
+	}
+
 	private static void calculateIntermediateIndexes(Context ctx, List<Location> locations,
 			List<LatLon> intermediates, List<RouteDirectionInfo> localDirections, int[] intermediatePoints) {
 		if(intermediates != null && localDirections != null) {
@@ -895,6 +909,22 @@ public class RouteCalculationResult {
 	public List<Location> getImmutableAllLocations() {
 		return locations;
 	}
+
+	/**
+	 * @return spatial index of route locations built on first use
+	 */
+	public synchronized RouteGeometryIndex getGeometryIndex() {
+		if (geometryIndex == null) {
+			double[] lats = new double[locations.size()];
+			double[] lons = new double[locations.size()];
+			for (int i = 0; i < locations.size(); i++) {
+				lats[i] = locations.get(i).getLatitude();
+				lons[i] = locations.get(i).getLongitude();
+			}
+			geometryIndex = new RouteGeometryIndex(lats, lons);
+		}
+		return geometryIndex;
+	}
 	
 	public List<RouteDirectionInfo> getImmutableAllDirections() {
 		return directions;
@@ -75,6 +75,12 @@ public class RouteProvider {
 	private static final int MIN_DISTANCE_FOR_INSERTING_ROUTE_SEGMENT = 60;
 	private static final int ADDITIONAL_DISTANCE_FOR_START_POINT = 300;
 	private static final int MIN_STRAIGHT_DIST = 50000;
+	// time to order intermediates by road travel times
+	private static final long TSP_TIME_BUDGET_MS = 2000;
+
+	// routing context of last calculation with warm tiles and reverse search tree for incremental recalculation
+	private RoutingContext incrementalContext;
+	private RouteCalculationResult incrementalResult;
 
 	public static Location createLocation(WptPt pt){
 		Location loc = new Location("OsmandRouteProvider");
@@ -584,6 +590,22 @@ public class RouteProvider {
 		return calculateRoutingEnvironment(params, false, true);
 	}
 
+	/**
+	 * @return order of points by road travel times as {@link net.osmand.router.TspSolver#solve()} or null if
+	 * offline routing isn't used by mode
+	 */
+	public int[] optimizeIntermediates(OsmandApplication ctx, ApplicationMode mode, LatLon start, LatLon end,
+									   List<LatLon> intermediates) throws IOException, InterruptedException {
+		if (mode.getRouteService() != RouteService.OSMAND) {
+			return null;
+		}
+		RoutingEnvironment env = getRoutingEnvironment(ctx, mode, start, end);
+		if (env == null) {
+			return null;
+		}
+		return env.getRouter().optimizeIntermediates(env.getCtx(), start, end, intermediates, TSP_TIME_BUDGET_MS);
+	}
+
 	public List<GpxPoint> generateGpxPoints(RoutingEnvironment env, GpxRouteApproximation gctx, LocationsHolder locationsHolder) {
 		return env.getRouter().generateGpxPoints(gctx, locationsHolder);
 	}
@@ -597,6 +619,7 @@ public class RouteProvider {
 		RoutePlannerFrontEnd router = new RoutePlannerFrontEnd();
 		OsmandSettings settings = params.ctx.getSettings();
 		router.setUseFastRecalculation(settings.USE_FAST_RECALCULATION.get());
+		router.setUseIncrementalRecalculation(settings.USE_FAST_RECALCULATION.get());
 
 		RoutingConfiguration.Builder config = params.ctx.getRoutingConfigForMode(params.mode);
 		GeneralRouter generalRouter = params.ctx.getRouter(config, params.mode);
@@ -642,7 +665,22 @@ public class RouteProvider {
 
 		params.ctx.getResourceManager().getRenderer().checkInitialized(15, lib, leftX, rightX, bottomY, topY);
 
-		RoutingContext ctx = router.buildRoutingContext(cf, lib, files, RouteCalculationMode.NORMAL);
+		RoutingContext ctx = null;
+		if (lib == null && params.onlyStartPointChanged && incrementalContext != null
+				&& params.previousToRecalculate == incrementalResult) {
+			ctx = incrementalContext;
+			ctx.config.initialDirection = cf.initialDirection;
+			ctx.config.memoryLimitation = cf.memoryLimitation;
+			ctx.setRouteCalculationTime(cf.routeCalculationTime);
+		}
+		incrementalContext = null;
+		incrementalResult = null;
+		if (ctx == null) {
+			ctx = router.buildRoutingContext(cf, lib, files, RouteCalculationMode.NORMAL);
+			if (settings.USE_OSM_LIVE_FOR_ROUTING.get()) {
+				ctx.setLiveUpdates(params.ctx.getResourceManager().getChangesManager().getLiveRouteIndexes());
+			}
+		}
 
 		RoutingContext complexCtx = null;
 		boolean complex = !skipComplex && params.mode.isDerivedRoutingFrom(ApplicationMode.CAR) && !settings.DISABLE_COMPLEX_ROUTING.get()
@@ -664,6 +702,7 @@ public class RouteProvider {
 		}
 		if (complex) {
 			complexCtx = router.buildRoutingContext(cf, lib, files, RouteCalculationMode.COMPLEX);
+			complexCtx.setLiveUpdates(ctx.getLiveUpdates());
 			complexCtx.calculationProgress = params.calculationProgress;
 			complexCtx.leftSideNavigation = params.leftSide;
 			complexCtx.previouslyCalculatedRoute = ctx.previouslyCalculatedRoute;
@@ -777,6 +816,18 @@ public class RouteProvider {
 				RouteCalculationResult res = new RouteCalculationResult(result, params.start, params.end,
 						params.intermediates, params.ctx, params.leftSide, ctx, params.gpxRoute  == null? null: params.gpxRoute.wpt,
 								params.mode, true);
+				if (ctx.getAlternativeRoutes() != null && !ctx.getAlternativeRoutes().isEmpty()) {
+					List<RouteCalculationResult> alternatives = new ArrayList<RouteCalculationResult>();
+					for (List<RouteSegmentResult> alt : ctx.getAlternativeRoutes()) {
+						alternatives.add(new RouteCalculationResult(alt, params.start, params.end, params.intermediates,
+								params.ctx, params.leftSide, ctx, null, params.mode, true));
+					}
+					res.setAlternativeRoutes(alternatives);
+				}
+				if (ctx.hasReverseSearchTree()) {
+					incrementalContext = ctx;
+					incrementalResult = res;
+				}
 				return res;
 			}
 		} catch (RuntimeException e) {
@@ -544,6 +544,18 @@ public class RoutingHelper {
 					}
 				}
 			}
+			if (!processed && dist > posTolerance) {
+				// look ahead window could be too short (i.e. dense points after tunnel or gps gap)
+				int segment = RoutingHelperUtils.findRouteSegmentAhead(route, currentLocation, lastFixedLocation,
+						currentRoute, posTolerance);
+				if (segment >= 0) {
+					if (log.isDebugEnabled()) {
+						log.debug("Processed by route index : " + segment + " " + dist); //$NON-NLS-1$//$NON-NLS-2$
+					}
+					newCurrentRoute = segment;
+					processed = true;
+				}
+			}
 			if (processed) {
 				// that node already passed
 				route.updateCurrentRoute(newCurrentRoute + 1);
@@ -872,6 +884,11 @@ public class RoutingHelper {
 		return route;
 	}
 
+	@NonNull
+	public List<RouteCalculationResult> getAlternativeRoutes() {
+		return route.getAlternativeRoutes();
+	}
+
 	public GPXFile generateGPXFileWithRoute(String name) {
 		return generateGPXFileWithRoute(route, name);
 	}
@@ -884,6 +901,11 @@ public class RoutingHelper {
 		return provider.getRoutingEnvironment(ctx, mode, start, end);
 	}
 
+	@Nullable
+	public int[] optimizeIntermediates(LatLon start, LatLon end, List<LatLon> intermediates) throws IOException, InterruptedException {
+		return provider.optimizeIntermediates(app, mode, start, end, intermediates);
+	}
+
 	public List<GpxPoint> generateGpxPoints(RoutingEnvironment env, GpxRouteApproximation gctx, LocationsHolder locationsHolder) {
 		return provider.generateGpxPoints(env, gctx, locationsHolder);
 	}
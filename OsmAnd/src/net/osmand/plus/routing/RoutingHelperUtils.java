@@ -8,6 +8,8 @@ import net.osmand.data.LatLon;
 import net.osmand.data.QuadRect;
 import net.osmand.plus.OsmandApplication;
 import net.osmand.plus.TargetPointsHelper;
+import net.osmand.router.RouteGeometryIndex;
+import net.osmand.router.RouteGeometryIndex.RoutePosition;
 import net.osmand.util.MapUtils;
 
 import java.util.List;
@@ -97,6 +99,39 @@ public class RoutingHelperUtils {
 		return index;
 	}
 
+	/**
+	 * Finds route segment ahead of current route point which is closer than radius
+	 * and consistent with movement bearing, using spatial index instead of limited look ahead.
+	 * Segments further along the route than could be passed since last fixed location are rejected,
+	 * so passing near a later leg of loop or out-and-back route doesn't skip the route part between.
+	 * @return index of segment start point or -1
+	 */
+	static int findRouteSegmentAhead(@NonNull RouteCalculationResult route, @NonNull Location currentLocation,
+	                                 @Nullable Location lastFixedLocation, int currentRoute, double radius) {
+		RouteGeometryIndex index = route.getGeometryIndex();
+		if (index.getPointsCount() < 2 || currentRoute >= index.getPointsCount()) {
+			return -1;
+		}
+		double bearing = Double.NaN;
+		double expectedAdvance = radius;
+		if (currentLocation.hasBearing()) {
+			bearing = currentLocation.getBearing();
+		} else if (lastFixedLocation != null) {
+			bearing = lastFixedLocation.bearingTo(currentLocation);
+		}
+		if (lastFixedLocation != null) {
+			expectedAdvance += 2 * lastFixedLocation.distanceTo(currentLocation);
+		}
+		double lastDistance = index.getDistanceFromStart(Math.max(currentRoute - 1, 0));
+		RoutePosition pos = index.findPosition(currentLocation.getLatitude(), currentLocation.getLongitude(),
+				bearing, lastDistance, expectedAdvance, radius, null);
+		if (pos != null && pos.segmentIndex >= currentRoute && pos.distance < radius
+				&& pos.distanceFromStart - lastDistance <= expectedAdvance) {
+			return pos.segmentIndex;
+		}
+		return -1;
+	}
+
 	/**
 	 * Wrong movement direction is considered when between
 	 * current location bearing (determines by 2 last fixed position or provided)
@@ -30,6 +30,7 @@ import net.osmand.router.TransportRoutePlanner.TransportRouteResultSegment;
 import net.osmand.router.TransportRouteResult;
 import net.osmand.router.TransportRoutingConfiguration;
 import net.osmand.router.TransportRoutingContext;
+import net.osmand.router.TransportStopsIndex;
 import net.osmand.util.MapUtils;
 
 import java.io.IOException;
@@ -77,6 +78,7 @@ public class TransportRoutingHelper {
 	private long lastTimeEvaluatedRoute = 0;
 
 	private TransportRouteCalculationProgressCallback progressRoute;
+	private TransportStopsIndex transportStopsIndex;
 
 
 	public TransportRoutingHelper(@NonNull OsmandApplication app) {
@@ -377,6 +379,13 @@ public class TransportRoutingHelper {
 		return r.left == 0 && r.right == 0 ? null : r;
 	}
 
+	private synchronized TransportStopsIndex getTransportStopsIndex(BinaryMapIndexReader[] files) {
+		if (transportStopsIndex == null || !transportStopsIndex.isSameFiles(files)) {
+			transportStopsIndex = new TransportStopsIndex(files);
+		}
+		return transportStopsIndex;
+	}
+
 	public void setApplicationMode(ApplicationMode applicationMode) {
 		this.applicationMode = applicationMode;
 	}
@@ -501,7 +510,8 @@ public class TransportRoutingHelper {
 			GeneralRouter prouter = config.getRouter(params.mode.getRoutingProfile());
 			TransportRoutingConfiguration cfg = new TransportRoutingConfiguration(prouter, params.params);
 
-			TransportRoutingContext ctx = new TransportRoutingContext(cfg, library, files);
+			TransportStopsIndex stopsIndex = transportRoutingHelper.getTransportStopsIndex(files);
+			TransportRoutingContext ctx = new TransportRoutingContext(cfg, library, stopsIndex);
 			ctx.calculationProgress = params.calculationProgress;
 			if (ctx.library != null && !settings.PT_SAFE_MODE.get()) {
 				NativeTransportRoutingResult[] nativeRes = library.runNativePTRouting(
@@ -11,6 +11,7 @@ import net.osmand.Location;
 import net.osmand.data.RotatedTileBox;
 import net.osmand.util.MapAlgorithms;
 import net.osmand.util.MapUtils;
+import net.osmand.util.PolylineLevels;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -26,6 +27,7 @@ public abstract class GeometryWay<T extends GeometryWayContext, D extends Geomet
 	private D drawer;
 	private TreeMap<Integer, PathGeometryZoom> zooms = new TreeMap<>();
 	private GeometryWayProvider locationProvider;
+	private PolylineLevels polylineLevels;
 	private Map<Integer, GeometryWayStyle<?>> styleMap = Collections.emptyMap();
 
 	// cache arrays
@@ -108,6 +110,7 @@ public abstract class GeometryWay<T extends GeometryWayContext, D extends Geomet
 		this.styleMap = styleMap == null ? Collections.<Integer, GeometryWayStyle<?>>emptyMap() : styleMap;
 		this.mapDensity = tb.getMapDensity();
 		this.zooms.clear();
+		this.polylineLevels = null;
 	}
 
 	public void updateWay(@NonNull List<Location> locations, @NonNull RotatedTileBox tb) {
@@ -119,24 +122,42 @@ public abstract class GeometryWay<T extends GeometryWayContext, D extends Geomet
 		this.styleMap = styleMap == null ? Collections.<Integer, GeometryWayStyle<?>>emptyMap() : styleMap;
 		this.mapDensity = tb.getMapDensity();
 		this.zooms.clear();
+		this.polylineLevels = null;
 	}
 
 	public void clearWay() {
 		locationProvider = null;
 		styleMap = Collections.emptyMap();
 		zooms.clear();
+		polylineLevels = null;
 	}
 
 	private PathGeometryZoom getGeometryZoom(RotatedTileBox tb) {
 		int zoom = tb.getZoom();
 		PathGeometryZoom zm = zooms.size() > zoom ? zooms.get(zoom) : null;
 		if (zm == null) {
-			zm = new PathGeometryZoom(locationProvider, tb, tb.getZoom() < context.getSimplificationZoom());
+			boolean simplify = tb.getZoom() < context.getSimplificationZoom();
+			zm = new PathGeometryZoom(locationProvider, simplify ? getPolylineLevels() : null, tb);
 			zooms.put(zoom, zm);
 		}
 		return zm;
 	}
 
+	// significance of points is calculated once for all zooms
+	private PolylineLevels getPolylineLevels() {
+		if (polylineLevels == null) {
+			int size = locationProvider.getSize();
+			int[] x31 = new int[size];
+			int[] y31 = new int[size];
+			for (int i = 0; i < size; i++) {
+				x31[i] = MapUtils.get31TileNumberX(locationProvider.getLongitude(i));
+				y31[i] = MapUtils.get31TileNumberY(locationProvider.getLatitude(i));
+			}
+			polylineLevels = new PolylineLevels(x31, y31);
+		}
+		return polylineLevels;
+	}
+
 	@NonNull
 	public abstract GeometryWayStyle<?> getDefaultWayStyle();
 
@@ -370,11 +391,19 @@ public abstract class GeometryWay<T extends GeometryWayContext, D extends Geomet
 
 		private static final float EPSILON_IN_DPI = 2;
 
+		private static double getDistance31(RotatedTileBox tb, int pixX, int pixY, int pixX2, int pixY2) {
+			double dx = MapUtils.get31TileNumberX(tb.getLonFromPixel(pixX2, pixY2))
+					- (double) MapUtils.get31TileNumberX(tb.getLonFromPixel(pixX, pixY));
+			double dy = MapUtils.get31TileNumberY(tb.getLatFromPixel(pixX2, pixY2))
+					- (double) MapUtils.get31TileNumberY(tb.getLatFromPixel(pixX, pixY));
+			return Math.sqrt(dx * dx + dy * dy);
+		}
+
 		private final TByteArrayList simplifyPoints;
 		private List<Double> distances;
 		private List<Double> angles;
 
-		public PathGeometryZoom(GeometryWayProvider locationProvider, RotatedTileBox tb, boolean simplify) {
+		public PathGeometryZoom(GeometryWayProvider locationProvider, PolylineLevels levels, RotatedTileBox tb) {
 			//  this.locations = locations;
 			tb = new RotatedTileBox(tb);
 			tb.setZoomAndAnimation(tb.getZoom(), 0, tb.getZoomFloatPart());
@@ -382,14 +411,13 @@ public abstract class GeometryWay<T extends GeometryWayContext, D extends Geomet
 			simplifyPoints = new TByteArrayList(size);
 			distances = new ArrayList<>(size);
 			angles = new ArrayList<>(size);
-			if (simplify) {
-				simplifyPoints.fill(0, size, (byte) 0);
-				if (size > 0) {
-					simplifyPoints.set(0, (byte) 1);
+			if (levels != null) {
+				// EPSILON_IN_DPI screen pixels at current zoom (including float part) and density
+				double pix31 = getDistance31(tb, 0, 0, tb.getPixWidth(), 0) / tb.getPixWidth();
+				double cullDistance31 = pix31 * (EPSILON_IN_DPI * Math.max(1, tb.getDensity()));
+				for (int i = 0; i < size; i++) {
+					simplifyPoints.add(levels.isKept(i, cullDistance31) ? (byte) 1 : (byte) 0);
 				}
-				double distInPix = (tb.getDistance(0, 0, tb.getPixWidth(), 0) / tb.getPixWidth());
-				double cullDistance = (distInPix * (EPSILON_IN_DPI * Math.max(1, tb.getDensity())));
-				cullRamerDouglasPeucker(simplifyPoints, locationProvider, 0, size - 1, cullDistance);
 			} else {
 				simplifyPoints.fill(0, size, (byte) 1);
 			}
@@ -424,27 +452,6 @@ public abstract class GeometryWay<T extends GeometryWayContext, D extends Geomet
 			return angles;
 		}
 
-		private void cullRamerDouglasPeucker(TByteArrayList survivor, GeometryWayProvider locationProvider,
-											 int start, int end, double epsillon) {
-			double dmax = Double.NEGATIVE_INFINITY;
-			int index = -1;
-			for (int i = start + 1; i < end; i++) {
-				double d = MapUtils.getOrthogonalDistance(locationProvider.getLatitude(i), locationProvider.getLongitude(i),
-						locationProvider.getLatitude(start), locationProvider.getLongitude(start),
-						locationProvider.getLatitude(end), locationProvider.getLongitude(end));
-				if (d > dmax) {
-					dmax = d;
-					index = i;
-				}
-			}
-			if (dmax > epsillon) {
-				cullRamerDouglasPeucker(survivor, locationProvider, start, index, epsillon);
-				cullRamerDouglasPeucker(survivor, locationProvider, index, end, epsillon);
-			} else {
-				survivor.set(end, (byte) 1);
-			}
-		}
-
 		public TByteArrayList getSimplifyPoints() {
 			return simplifyPoints;
 		}